@@ -24,6 +24,7 @@ import org.apache.pekko.persistence.JournalProtocol;
 import org.apache.pekko.persistence.SnapshotOffer;
 import org.apache.pekko.persistence.SnapshotProtocol;
 import org.cafienne.actormodel.command.BootstrapMessage;
+import org.cafienne.actormodel.command.ModelCommand;
 import org.cafienne.actormodel.communication.reply.state.IncomingRequestState;
 import org.cafienne.actormodel.communication.request.state.RemoteActorState;
 import org.cafienne.actormodel.event.ActorModified;
@@ -231,9 +232,22 @@ public abstract class ModelActor extends AbstractPersistentActor {
     void takeABreak(String msg) {
         getLogger().debug(msg);
 //        System.out.println(msg);
+        caseSystem.engine().passivate(this);
+    }
+
+    /**
+     * The supervisor passivates this actor. The messages that are already in the mailbox are handled first,
+     * and the actor stops when it reaches the PoisonPill. Commands that are still routed to this actor
+     * in the meantime are handed back to the supervisor, which keeps them until the actor has terminated.
+     */
+    void stopGracefully() {
         self().tell(PoisonPill.getInstance(), self());
     }
 
+    void handBack(ModelCommand command) {
+        getContext().getParent().forward(command, getContext());
+    }
+
     protected void handleBootstrapMessage(BootstrapMessage message) {
         this.tenant = message.tenant();
     }
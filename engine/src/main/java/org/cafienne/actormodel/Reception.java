@@ -20,6 +20,7 @@ package org.cafienne.actormodel;
 import org.apache.pekko.persistence.JournalProtocol;
 import org.apache.pekko.persistence.SnapshotProtocol;
 import org.cafienne.actormodel.command.ModelCommand;
+import org.cafienne.actormodel.command.StopModelActor;
 import org.cafienne.actormodel.communication.CaseSystemCommunicationMessage;
 import org.cafienne.actormodel.communication.request.command.RequestModelActor;
 import org.cafienne.actormodel.event.ModelEvent;
@@ -42,6 +43,7 @@ class Reception {
     private boolean bootstrapPending = true;
     private final ModelActor actor;
     private boolean isBroken = false;
+    private boolean isStopping = false;
     private String recoveryFailureInformation = "";
     private boolean isInStorageProcess = false;
     private String actorType = "";
@@ -64,7 +66,16 @@ class Reception {
     }
 
     void handleMessage(Object message) {
+        if (isStopping && message instanceof ModelCommand command) {
+            // The supervisor no longer routes to us, but this command was sent before it found out we are stopping.
+            actor.handBack(command);
+            return;
+        }
         switch (message) {
+            case StopModelActor stop -> {
+                isStopping = true;
+                actor.stopGracefully();
+            }
             case IncomingActorMessage visitor -> {
                 // Responses are always allowed, as they come only when we have requested something
                 if (visitor.isResponse() || canPass(visitor.asCommand())) {
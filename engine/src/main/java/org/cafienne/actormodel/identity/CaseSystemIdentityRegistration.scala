@@ -18,23 +18,25 @@
 package org.cafienne.actormodel.identity
 
 import com.typesafe.scalalogging.LazyLogging
-import org.cafienne.cmmn.repository.file.SimpleLRUCache
 import org.cafienne.persistence.infrastructure.lastmodified.LastModifiedHeader
 import org.cafienne.persistence.querydb.query.tenant.TenantQueries
 import org.cafienne.persistence.querydb.query.tenant.implementation.TenantQueriesImpl
 import org.cafienne.persistence.querydb.record.TenantRecord
 import org.cafienne.system.CaseSystem
+import org.cafienne.util.ConcurrentCache
 
 import scala.concurrent.{ExecutionContext, Future}
+import scala.jdk.FutureConverters.{CompletionStageOps, FutureOps}
 
 class CaseSystemIdentityRegistration(caseSystem: CaseSystem)(implicit val ec: ExecutionContext) extends IdentityRegistration with LazyLogging {
   val tenantQueries: TenantQueries = new TenantQueriesImpl(caseSystem.queryDB)
 
-  // TODO: this should be a most recently used cache
-  // TODO: check for multithreading issues now that event materializer can clear.
-  private val platformUserCache = new SimpleLRUCache[String, PlatformUser](caseSystem.config.api.security.identityCacheSize)
-  private val tenantCache = new SimpleLRUCache[String, TenantRecord](caseSystem.config.api.security.identityCacheSize)
-  private val tokens = new SimpleLRUCache[String, String](caseSystem.config.api.security.tokenCacheSize)
+  private val securityConfig = caseSystem.config.api.security
+  private val ttl = securityConfig.identityCacheTtl.toMillis
+  // Concurrent requests for the same user or tenant share a single query through getOrLoad
+  private val platformUserCache = new ConcurrentCache[String, PlatformUser]("identity-platform-users", securityConfig.identityCacheSize, ttl)
+  private val tenantCache = new ConcurrentCache[String, TenantRecord]("identity-tenants", securityConfig.identityCacheSize, ttl)
+  private val tokens = new ConcurrentCache[String, String]("identity-user-tokens", securityConfig.tokenCacheSize, ttl)
 
   override def getPlatformUser(user: UserIdentity, tenantLastModified: LastModifiedHeader): Future[PlatformUser] = {
     tenantLastModified.available.flatMap(_ => executeUserQuery(user))
@@ -53,26 +55,12 @@ class CaseSystemIdentityRegistration(caseSystem: CaseSystem)(implicit val ec: Ex
     }
   }
 
-  private def cacheUser(user: PlatformUser) = {
-    platformUserCache.put(user.id, user)
-    user
-  }
-
   private def executeUserQuery(user: UserIdentity): Future[PlatformUser] = {
-    platformUserCache.get(user.id) match {
-      case user: PlatformUser => Future(user)
-      case null => tenantQueries.getPlatformUser(user.id).map(cacheUser)
-    }
+    platformUserCache.getOrLoad(user.id, userId => tenantQueries.getPlatformUser(userId).asJava).asScala
   }
 
   override def getTenant(tenantId: String): Future[TenantRecord] = {
-    tenantCache.get(tenantId) match {
-      case tenant: TenantRecord => Future(tenant)
-      case null => tenantQueries.getTenant(tenantId).map(tenant => {
-        tenantCache.put(tenantId, tenant)
-        tenant
-      })
-    }
+    tenantCache.getOrLoad(tenantId, id => tenantQueries.getTenant(id).asJava).asScala
   }
 
   override def clear(userId: String): Unit = {
@@ -22,7 +22,6 @@ import org.cafienne.infrastructure.serialization.DeserializationError;
 import org.cafienne.infrastructure.serialization.Fields;
 import org.cafienne.json.ValueMap;
 import org.cafienne.processtask.definition.ProcessDefinition;
-import org.cafienne.util.XMLHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Element;
@@ -88,9 +87,11 @@ public abstract class CMMNElementDefinition extends XMLElementDefinition {
 
     public static <T extends CMMNElementDefinition> T fromJSON(String sourceClassName, ValueMap json, Class<T> tClass) {
         String guid = json.readString(Fields.elementId);
-        String source = json.readString(Fields.source);
         try {
-            DefinitionsDocument def = new DefinitionsDocument(XMLHelper.loadXML(source));
+            // Definitions are either serialized with their full source, or with a reference to the source
+            DefinitionsDocument def = json.has(Fields.sourceRef)
+                    ? DefinitionsDocumentCache.getByReference(json.readString(Fields.sourceRef))
+                    : DefinitionsDocumentCache.get(json.readString(Fields.source));
             T element = def.getElement(guid, tClass);
             return element;
         } catch (InvalidDefinitionException e) {
@@ -112,8 +113,14 @@ public abstract class CMMNElementDefinition extends XMLElementDefinition {
         if (identifier == null || identifier.isEmpty()) {
             identifier = this.getName();
         }
-        String source = getModelDefinition().getDefinitionsDocument().getSource();
-        ValueMap json = new ValueMap(Fields.elementId, identifier, Fields.source, source);
+        DefinitionsDocument document = getModelDefinition().getDefinitionsDocument();
+        if (DefinitionsDocumentCache.storesByReference()) {
+            String reference = DefinitionsDocumentCache.getReference(document);
+            if (reference != null) {
+                return new ValueMap(Fields.elementId, identifier, Fields.sourceRef, reference);
+            }
+        }
+        ValueMap json = new ValueMap(Fields.elementId, identifier, Fields.source, document.getSource());
         return json;
     }
 }
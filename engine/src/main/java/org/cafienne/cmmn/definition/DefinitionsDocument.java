@@ -21,6 +21,7 @@ import org.cafienne.cmmn.definition.casefile.CaseFileItemDefinitionDefinition;
 import org.cafienne.cmmn.definition.casefile.ImportDefinition;
 import org.cafienne.cmmn.repository.MissingDefinitionException;
 import org.cafienne.processtask.definition.ProcessDefinition;
+import org.cafienne.util.ContentDigest;
 import org.cafienne.util.XMLHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,6 +61,10 @@ public class DefinitionsDocument implements Serializable {
      */
     private transient Collection<String> definitionErrors = new ArrayList<>();
     private transient Collection<InvalidDefinitionException> fatals = new ArrayList<>();
+    /**
+     * Digest of the source document, calculated upon first usage.
+     */
+    private transient String digest;
 
     /**
      * Creates a new DefinitionsDocument based on the given XML Document.
@@ -222,6 +227,18 @@ public class DefinitionsDocument implements Serializable {
         return sourceDocument;
     }
 
+    /**
+     * Returns a digest of the source, that can be used to uniquely refer to the contents of this document.
+     *
+     * @return
+     */
+    public String getDigest() {
+        if (digest == null) {
+            digest = ContentDigest.sha256(sourceDocument);
+        }
+        return digest;
+    }
+
     /**
      * Returns the XML document representing the unparsed DefinitionsDocument.
      *
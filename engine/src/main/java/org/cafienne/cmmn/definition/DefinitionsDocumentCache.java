@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.cmmn.definition;
+
+import org.cafienne.persistence.eventdb.definition.DefinitionSourceStore;
+import org.cafienne.system.metrics.CacheMetrics;
+import org.cafienne.system.metrics.MetricsMonitor;
+import org.cafienne.util.ContentDigest;
+import org.cafienne.util.XMLHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Process wide cache of parsed definitions documents, keyed by a digest of their source.
+ * Events and commands carry the full source of the definition they have been created with.
+ * Deserializing them through this cache avoids parsing and validating the same source
+ * again for each and every case instance that has been started with the same definition.
+ * <p>
+ * Note that DefinitionsDocument instances are not changed after they have been parsed,
+ * and can therefore safely be shared across case instances (just like the FileBasedDefinitionProvider already does).
+ * <p>
+ * Optionally a {@link DefinitionSourceStore} can be registered. Events can then refer to the definitions document
+ * through its digest instead of carrying the full source, and the source is read from the store upon a cache miss.
+ * Sources are written into the store asynchronously, and a digest is only handed out once its source has been stored.
+ */
+public class DefinitionsDocumentCache {
+    private final static Logger logger = LoggerFactory.getLogger(DefinitionsDocumentCache.class);
+    private final static int DEFAULT_SIZE = 100;
+    private static volatile int maxSize = DEFAULT_SIZE;
+    private final static Map<String, DefinitionsDocument> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DefinitionsDocument> eldest) {
+            boolean remove = size() > maxSize;
+            if (remove) {
+                metrics.eviction();
+                logger.debug("Removing definitions document with digest {} from the cache, since max cache size {} has been reached.", eldest.getKey(), maxSize);
+            }
+            return remove;
+        }
+    };
+    private final static CacheMetrics metrics = MetricsMonitor.addCache("definitions-document-cache").withSize(DefinitionsDocumentCache::size);
+    private static volatile Supplier<DefinitionSourceStore> sourceStore = () -> null;
+    private static volatile boolean storeByReference = false;
+    private final static Set<String> storedDigests = ConcurrentHashMap.newKeySet();
+    private final static Set<String> pendingDigests = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Set the maximum number of definitions documents to keep in memory. A size of 0 disables caching.
+     */
+    public static void configure(int size) {
+        synchronized (cache) {
+            maxSize = Math.max(size, 0);
+            if (cache.size() > maxSize) {
+                // Simply start all over again
+                cache.clear();
+            }
+        }
+    }
+
+    /**
+     * Register the store to resolve definitions documents that are referred to by digest.
+     * If storeByReference is true, newly serialized definitions will also be written into the store, and referred to by their digest.
+     */
+    public static void useSourceStore(Supplier<DefinitionSourceStore> store, boolean byReference) {
+        sourceStore = store;
+        storeByReference = byReference;
+        storedDigests.clear();
+    }
+
+    /**
+     * Returns true if definitions must be serialized as a reference to the source store.
+     */
+    public static boolean storesByReference() {
+        return storeByReference;
+    }
+
+    /**
+     * Starts writing the source of the document into the source store, if definitions are stored by reference.
+     * Writing happens asynchronously, and until it has completed, the document is serialized with its full source.
+     * Definition providers invoke this method when they load a new definitions document, so that the source is
+     * usually stored by the time the first case is started with it.
+     */
+    public static void prepareReference(DefinitionsDocument document) {
+        if (!storeByReference) {
+            return;
+        }
+        String digest = document.getDigest();
+        if (storedDigests.contains(digest) || !pendingDigests.add(digest)) {
+            return;
+        }
+        DefinitionSourceStore store = getSourceStore();
+        if (store == null) {
+            pendingDigests.remove(digest);
+            logger.warn("Cannot store definitions by reference, as there is no definition source store available");
+            return;
+        }
+        try {
+            store.store(digest, document.getSource()).whenComplete((ignored, failure) -> {
+                if (failure == null) {
+                    storedDigests.add(digest);
+                    if (maxSize > 0) {
+                        // Also make sure it will be found upon deserialization
+                        synchronized (cache) {
+                            cache.putIfAbsent(digest, document);
+                        }
+                    }
+                } else {
+                    logger.warn("Could not store definitions document with digest {}; it will be serialized with its full source", digest, failure);
+                }
+                pendingDigests.remove(digest);
+            });
+        } catch (RuntimeException e) {
+            pendingDigests.remove(digest);
+            logger.warn("Could not store definitions document with digest {}; it will be serialized with its full source", digest, e);
+        }
+    }
+
+    /**
+     * Returns the digest with which the document can be referred to, or null if its source is not (yet) in the source store.
+     * In the latter case, storing the source is started, but this method does not wait for it.
+     */
+    public static String getReference(DefinitionsDocument document) {
+        String digest = document.getDigest();
+        if (storedDigests.contains(digest)) {
+            return digest;
+        }
+        prepareReference(document);
+        // Stores that complete right away (like the in-memory store) allow referring to the source immediately
+        return storedDigests.contains(digest) ? digest : null;
+    }
+
+    private static DefinitionSourceStore getSourceStore() {
+        return sourceStore.get();
+    }
+
+    public static int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Returns the parsed definitions document for the source. Parses the source only if it is not yet available in the cache.
+     */
+    public static DefinitionsDocument get(String source) throws InvalidDefinitionException, IOException, ParserConfigurationException, SAXException {
+        if (maxSize == 0) {
+            return parse(source);
+        }
+
+        String digest = ContentDigest.sha256(source);
+        synchronized (cache) {
+            DefinitionsDocument document = cache.get(digest);
+            if (document != null) {
+                metrics.hit();
+                return document;
+            }
+        }
+        metrics.miss();
+        // Parsing happens outside of the lock, since it is expensive.
+        //  If another thread parsed the same source in the meantime, we stick to the earlier one.
+        DefinitionsDocument parsed = parse(source);
+        synchronized (cache) {
+            DefinitionsDocument existing = cache.putIfAbsent(digest, parsed);
+            return existing != null ? existing : parsed;
+        }
+    }
+
+    /**
+     * Returns the parsed definitions document with the given digest. If it is not yet in the cache,
+     * the source is read from the source store and parsed.
+     */
+    public static DefinitionsDocument getByReference(String digest) throws InvalidDefinitionException, IOException, ParserConfigurationException, SAXException {
+        synchronized (cache) {
+            DefinitionsDocument document = cache.get(digest);
+            if (document != null) {
+                metrics.hit();
+                return document;
+            }
+        }
+        metrics.miss();
+        DefinitionSourceStore store = getSourceStore();
+        if (store == null) {
+            throw new IOException("Cannot read definitions document with digest " + digest + ", as there is no definition source store available");
+        }
+        String source = store.read(digest);
+        if (source == null) {
+            throw new IOException("Cannot find a definitions document with digest " + digest + " in the definition source store");
+        }
+        storedDigests.add(digest);
+        DefinitionsDocument parsed = parse(source);
+        if (maxSize == 0) {
+            return parsed;
+        }
+        synchronized (cache) {
+            DefinitionsDocument existing = cache.putIfAbsent(digest, parsed);
+            return existing != null ? existing : parsed;
+        }
+    }
+
+    private static DefinitionsDocument parse(String source) throws InvalidDefinitionException, IOException, ParserConfigurationException, SAXException {
+        return new DefinitionsDocument(XMLHelper.loadXML(source));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.cmmn.expression.spel;
+
+import org.cafienne.cmmn.expression.spel.api.APIRootObject;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process wide pool of SpEL evaluation contexts, with a separate pool per type of {@link APIRootObject}.
+ * Definitions (and hence their expressions) are shared across case instances, and case instances run on multiple threads.
+ * Therefore a context is taken out of the pool for the duration of a single evaluation, and returned afterwards.
+ * The property reader of the context resolves the model actor from the root object, so that it need not be created for each evaluation.
+ */
+public class EvaluationContextPool {
+    private final static int DEFAULT_SIZE = 16;
+    private static volatile int maxPerType = DEFAULT_SIZE;
+    private final static Map<Class<?>, Pool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Set the maximum number of idle contexts to keep per root object type. A size of 0 disables pooling.
+     */
+    public static void configure(int size) {
+        maxPerType = Math.max(0, size);
+        if (maxPerType == 0) {
+            pools.clear();
+        }
+    }
+
+    /**
+     * Returns a context that evaluates expressions against the root object.
+     * The context must be handed back through {@link #release(PooledEvaluationContext)} once the evaluation is done.
+     */
+    static PooledEvaluationContext acquire(APIRootObject<?> rootObject) {
+        PooledEvaluationContext context = null;
+        if (maxPerType > 0) {
+            context = pools.computeIfAbsent(rootObject.getClass(), type -> new Pool()).poll();
+        }
+        if (context == null) {
+            context = new PooledEvaluationContext(rootObject.getClass());
+        }
+        context.setRootObject(rootObject);
+        return context;
+    }
+
+    static void release(PooledEvaluationContext context) {
+        // Clear all state from the evaluation, so that no case information is kept in the pool
+        context.reset();
+        if (maxPerType > 0) {
+            pools.computeIfAbsent(context.rootType, type -> new Pool()).offer(context);
+        }
+    }
+
+    private static class Pool {
+        private final Queue<PooledEvaluationContext> contexts = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        PooledEvaluationContext poll() {
+            PooledEvaluationContext context = contexts.poll();
+            if (context != null) {
+                size.decrementAndGet();
+            }
+            return context;
+        }
+
+        void offer(PooledEvaluationContext context) {
+            if (size.incrementAndGet() <= maxPerType) {
+                contexts.offer(context);
+            } else {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Evaluation context that keeps variables in a map of its own, so that variables assigned
+     * inside an expression (e.g. '#x = 1') can be cleared before the context is used again.
+     */
+    static class PooledEvaluationContext extends StandardEvaluationContext {
+        private final Class<?> rootType;
+        private final Map<String, Object> variables = new HashMap<>();
+
+        private PooledEvaluationContext(Class<?> rootType) {
+            this.rootType = rootType;
+            // The property reader can dynamically resolve properties that belong to the ModelActor context.
+            addPropertyAccessor(new SpelReadableRecognizer());
+        }
+
+        @Override
+        public void setVariable(String name, Object value) {
+            if (name == null) {
+                return;
+            }
+            if (value != null) {
+                variables.put(name, value);
+            } else {
+                variables.remove(name);
+            }
+        }
+
+        @Override
+        public Object lookupVariable(String name) {
+            return variables.get(name);
+        }
+
+        private void reset() {
+            variables.clear();
+            setRootObject(null);
+        }
+    }
+}
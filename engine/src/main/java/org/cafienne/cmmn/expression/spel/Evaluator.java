@@ -23,22 +23,35 @@ import org.cafienne.cmmn.expression.spel.api.APIRootObject;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
 
 public class Evaluator {
-    private final ExpressionParser parser;
+    private static volatile ExpressionParser parser = new SpelExpressionParser();
     private final Expression expression;
     private final String source;
     private final CMMNElementDefinition definition;
 
     public Evaluator(CMMNElementDefinition definition, String source) {
-        this.parser = new SpelExpressionParser();
         this.definition = definition;
         this.source = source;
         this.expression = parseExpression();
     }
 
+    /**
+     * Set the compiler mode of the parser for expressions that are parsed from now on.
+     * With {@link SpelCompilerMode#MIXED} and {@link SpelCompilerMode#IMMEDIATE} expressions are compiled into byte code
+     * once they have been evaluated, which avoids walking the expression tree on each evaluation.
+     */
+    public static void configure(SpelCompilerMode compilerMode) {
+        if (compilerMode == SpelCompilerMode.OFF) {
+            parser = new SpelExpressionParser();
+        } else {
+            parser = new SpelExpressionParser(new SpelParserConfiguration(compilerMode, Evaluator.class.getClassLoader()));
+        }
+    }
+
     public boolean isValid() {
         return expression != null;
     }
@@ -64,12 +77,12 @@ public class Evaluator {
 
     public <T> T evaluate(APIRootObject<?> rootObject) {
         // System.out.println("Now evaluating the expression " + definition.getBody());
-        StandardEvaluationContext context = new StandardEvaluationContext(rootObject);
-        // The property reader can dynamically resolve properties that belong to the ModelActor context.
-        SpelReadableRecognizer spelPropertyReader = new SpelReadableRecognizer(rootObject.getActor());
-        context.addPropertyAccessor(spelPropertyReader);
-
-        return returnValue(rootObject, () -> expression.getValue(context));
+        EvaluationContextPool.PooledEvaluationContext context = EvaluationContextPool.acquire(rootObject);
+        try {
+            return returnValue(rootObject, () -> expression.getValue(context));
+        } finally {
+            EvaluationContextPool.release(context);
+        }
     }
 
     protected <T> T returnValue(APIRootObject<?> rootObject, ExpressionRunner runner) {
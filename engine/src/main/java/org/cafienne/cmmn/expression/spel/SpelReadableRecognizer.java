@@ -18,17 +18,25 @@
 package org.cafienne.cmmn.expression.spel;
 
 import org.cafienne.actormodel.ModelActor;
+import org.cafienne.cmmn.expression.spel.api.APIRootObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.asm.MethodVisitor;
 import org.springframework.expression.AccessException;
 import org.springframework.expression.EvaluationContext;
-import org.springframework.expression.PropertyAccessor;
 import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.CodeFlow;
+import org.springframework.expression.spel.CompilablePropertyAccessor;
 
 /**
  * Hook for Spel through which we can read Cafienne specific API properties in expressions.
+ * The accessor is compilable, so that expressions that read case file values and API properties
+ * can also be compiled when a SpEL compiler mode is configured. Compiled expressions read the properties
+ * through {@link #readCompiled(Object, String)}, which does not add debug information on the values read.
  */
-public class SpelReadableRecognizer implements PropertyAccessor {
+public class SpelReadableRecognizer implements CompilablePropertyAccessor {
+    private final static String INTERNAL_NAME = SpelReadableRecognizer.class.getName().replace('.', '/');
+
     private final static Logger logger = LoggerFactory.getLogger(SpelReadableRecognizer.class);
 
     public final ModelActor model;
@@ -37,6 +45,22 @@ public class SpelReadableRecognizer implements PropertyAccessor {
         this.model = model;
     }
 
+    /**
+     * Creates a property reader that takes the model actor from the root object of the evaluation context,
+     * so that it can be reused across evaluations.
+     */
+    public SpelReadableRecognizer() {
+        this(null);
+    }
+
+    private ModelActor getModel(EvaluationContext context) {
+        if (model != null) {
+            return model;
+        }
+        Object root = context.getRootObject().getValue();
+        return root instanceof APIRootObject ? ((APIRootObject<?>) root).getActor() : null;
+    }
+
     @Override
     public boolean canRead(EvaluationContext context, Object object, String propertyName) {
         boolean canRead = false;
@@ -47,7 +71,8 @@ public class SpelReadableRecognizer implements PropertyAccessor {
     }
 
     @Override
-    public TypedValue read(EvaluationContext arg0, Object object, String propertyName) {
+    public TypedValue read(EvaluationContext context, Object object, String propertyName) {
+        ModelActor model = getModel(context);
         if (object instanceof SpelReadable) {
             // Read the value
             Object value = ((SpelReadable) object).read(propertyName);
@@ -55,11 +80,15 @@ public class SpelReadableRecognizer implements PropertyAccessor {
             if (value instanceof SpelPropertyValueProvider) {
                 value = ((SpelPropertyValueProvider) value).getValue();
             }
-            model.addDebugInfo(() -> "Reading property '" + propertyName + "' results in value: ", value);
+            if (model != null) {
+                model.addDebugInfo(() -> "Reading property '" + propertyName + "' results in value: ", value);
+            }
             return new TypedValue(value);
         } else {
             // It is actually weird if we end up in this code. Since it means that on 'canRead' we have returned true...
-            if (object == null) {
+            if (model == null) {
+                logger.warn("Cannot read property " + propertyName + " from object of type " + (object == null ? "null" : object.getClass().getName()));
+            } else if (object == null) {
                 model.addDebugInfo(() -> "Cannot read property " + propertyName + " from null object");
             } else {
                 model.addDebugInfo(() -> "Cannot read property " + propertyName + " from strange context of type " + object.getClass().getName() + ": with value ", object);
@@ -68,6 +97,40 @@ public class SpelReadableRecognizer implements PropertyAccessor {
         }
     }
 
+    /**
+     * Reads the property from compiled expressions. Returns the same value as {@link #read(EvaluationContext, Object, String)}.
+     */
+    public static Object readCompiled(Object object, String propertyName) {
+        if (object instanceof SpelReadable readable) {
+            Object value = readable.read(propertyName);
+            return value instanceof SpelPropertyValueProvider provider ? provider.getValue() : value;
+        }
+        // The compiled expression ran on a different type of object than when it was compiled.
+        // In MIXED compiler mode this makes the expression fall back to interpretation.
+        throw new IllegalStateException("Cannot read property " + propertyName + " from object of type " + (object == null ? "null" : object.getClass().getName()));
+    }
+
+    @Override
+    public boolean isCompilable() {
+        return true;
+    }
+
+    @Override
+    public Class<?> getPropertyType() {
+        // Properties can hold any type of value
+        return Object.class;
+    }
+
+    @Override
+    public void generateCode(String propertyName, MethodVisitor mv, CodeFlow cf) {
+        if (cf.lastDescriptor() == null) {
+            // Nothing on the stack yet, so the property is read from the root object
+            cf.loadTarget(mv);
+        }
+        mv.visitLdcInsn(propertyName);
+        mv.visitMethodInsn(INVOKESTATIC, INTERNAL_NAME, "readCompiled", "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", false);
+    }
+
     @Override
     public Class<?>[] getSpecificTargetClasses() {
         // TODO Auto-generated method stub
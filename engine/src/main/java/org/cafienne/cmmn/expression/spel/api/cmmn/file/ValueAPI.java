@@ -30,7 +30,8 @@ public class ValueAPI extends APIObject<Case> implements SpelPropertyValueProvid
 
     public ValueAPI(CaseFileItem item) {
         super(item.getCaseInstance());
-        this.value = item.getValue();
+        // The case file holds a reference to values that are kept in the blob store, but expressions must see the value itself
+        this.value = item.getCaseInstance().caseSystem.blobStorage().resolve(item.getValue());
     }
 
     @Override
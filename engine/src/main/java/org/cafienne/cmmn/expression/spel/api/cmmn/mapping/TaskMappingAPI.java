@@ -29,7 +29,8 @@ import org.cafienne.json.Value;
 abstract class TaskMappingAPI extends CaseRootObject {
     protected TaskMappingAPI(String parameterName, Value<?> parameterValue, Task<?> task) {
         super(task.getCaseInstance());
-        addPropertyReader(parameterName, () -> parameterValue);
+        // Parameters taken from the case file may hold references to the blob store
+        addPropertyReader(parameterName, () -> task.getCaseInstance().caseSystem.blobStorage().resolve(parameterValue));
         registerPlanItem(task);
     }
 }
@@ -52,6 +52,10 @@ import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class Case extends ModelActor {
 
@@ -65,6 +69,12 @@ public class Case extends ModelActor {
      * List of plan items in the case.
      */
     private final Collection<PlanItem<?>> planItems = new ArrayList<>();
+    /**
+     * Indexes on the plan items, to avoid iterating all plan items when handling (or recovering) plan item events.
+     * The name index holds the plan items in the order in which they were added to the case.
+     */
+    private final Map<String, PlanItem<?>> planItemsById = new HashMap<>();
+    private final Map<String, List<PlanItem<?>>> planItemsByName = new HashMap<>();
     /**
      * Pointer to the case file instance of the case.
      */
@@ -150,6 +160,16 @@ public class Case extends ModelActor {
      */
     void registerPlanItem(PlanItem<?> planItem) {
         planItems.add(planItem);
+        planItemsById.put(planItem.getId(), planItem);
+        planItemsByName.computeIfAbsent(planItem.getName(), name -> new ArrayList<>()).add(planItem);
+    }
+
+    /**
+     * Plan item names are taken from their item definition, and may therefore change during case migration.
+     */
+    private void reindexPlanItemNames() {
+        planItemsByName.clear();
+        planItems.forEach(planItem -> planItemsByName.computeIfAbsent(planItem.getName(), name -> new ArrayList<>()).add(planItem));
     }
 
     /**
@@ -203,7 +223,7 @@ public class Case extends ModelActor {
      * @return
      */
     public <T extends PlanItem<?>> T getPlanItemById(String id) {
-        return (T) planItems.stream().filter(p -> p.getId().equals(id)).findFirst().orElse(null);
+        return (T) planItemsById.get(id);
     }
 
     /**
@@ -214,13 +234,8 @@ public class Case extends ModelActor {
      * @return
      */
     public PlanItem<?> getPlanItemByName(String name) {
-        PlanItem<?> lastWithThisName = null;
-        for (PlanItem<?> planItem : planItems) {
-            if (planItem.getName().equals(name)) {
-                lastWithThisName = planItem;
-            }
-        }
-        return lastWithThisName;
+        List<PlanItem<?>> withThisName = planItemsByName.get(name);
+        return withThisName == null || withThisName.isEmpty() ? null : withThisName.get(withThisName.size() - 1);
     }
 
     /**
@@ -242,12 +257,23 @@ public class Case extends ModelActor {
      * @return
      */
     public Collection<PlanItem<?>> getPlanItems(String identifier) {
-        ArrayList<PlanItem<?>> list = new ArrayList<>();
-        for (PlanItem<?> planItem : getPlanItems()) {
-            if (planItem.getName().equals(identifier) || planItem.getId().equals(identifier)) {
-                list.add(0, planItem);
+        List<PlanItem<?>> withThisName = planItemsByName.getOrDefault(identifier, List.of());
+        PlanItem<?> withThisId = planItemsById.get(identifier);
+        if (withThisId != null && !withThisName.contains(withThisId)) {
+            if (withThisName.isEmpty()) {
+                return List.of(withThisId);
+            }
+            // Rare case of an identifier that is both a name and an id; scan to keep the order of the case
+            ArrayList<PlanItem<?>> list = new ArrayList<>();
+            for (PlanItem<?> planItem : getPlanItems()) {
+                if (planItem.getName().equals(identifier) || planItem.getId().equals(identifier)) {
+                    list.add(0, planItem);
+                }
             }
+            return list;
         }
+        ArrayList<PlanItem<?>> list = new ArrayList<>(withThisName);
+        Collections.reverse(list);
         return list;
     }
 
@@ -448,11 +474,17 @@ public class Case extends ModelActor {
         getCaseTeam().migrateDefinition(newDefinition.getCaseTeamModel(), event.newCaseTeam, recoveryRunning());
         getCaseFile().migrateDefinition(newDefinition.getCaseFileModel(), recoveryRunning());
         getCasePlan().migrateDefinition(newDefinition.getCasePlanModel(), recoveryRunning());
+        reindexPlanItemNames();
     }
 
     public void removeDroppedPlanItem(PlanItem<?> item) {
         getSentryNetwork().disconnect(item);
         planItems.remove(item);
+        planItemsById.remove(item.getId());
+        List<PlanItem<?>> withThisName = planItemsByName.get(item.getName());
+        if (withThisName != null) {
+            withThisName.remove(item);
+        }
     }
 
     public void updateState(CaseDefinitionApplied event) {
@@ -421,6 +421,15 @@ public class Path implements Serializable {
         return name;
     }
 
+    /**
+     * Returns the name of the top level element of this path.
+     *
+     * @return
+     */
+    public String getRootName() {
+        return root.name;
+    }
+
     /**
      * Returns the path index (or -1 if it does not have one)
      *
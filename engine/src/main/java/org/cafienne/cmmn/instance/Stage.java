@@ -27,12 +27,19 @@ import org.w3c.dom.Element;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class Stage<T extends StageDefinition> extends TaskStage<T> {
     private final Collection<PlanItem<?>> planItems = new ArrayList<>();
+    /**
+     * Children grouped by their item definition, in order of creation. Repeated and planned items
+     * use this to determine their index, and recovery uses it to find the previous repetition.
+     */
+    private final Map<ItemDefinition, List<PlanItem<?>>> childrenByItemDefinition = new HashMap<>();
     private final boolean usePureCMMNFaultHandling;
 
     public Stage(String id, int index, ItemDefinition itemDefinition, T definition, Stage<?> parent, Case caseInstance) {
@@ -45,13 +52,31 @@ public class Stage<T extends StageDefinition> extends TaskStage<T> {
     }
 
     void register(PlanItem<?> child) {
+        List<PlanItem<?>> siblings = siblingsOf(child.getItemDefinition());
         if (getCaseInstance().recoveryRunning() && child.getIndex() > 0) {
-            planItems.stream().filter(p -> p.getDefinition().equals(child.getDefinition()) && p.getIndex() + 1 == child.getIndex()).forEach(leftSibling -> {
+            siblings.stream().filter(p -> p.getDefinition().equals(child.getDefinition()) && p.getIndex() + 1 == child.getIndex()).forEach(leftSibling -> {
                 // Recovering repeated plan items should no longer connect their entry criteria to the sentry network
                 leftSibling.getEntryCriteria().stopListening();
             });
         }
         planItems.add(child);
+        siblings.add(child);
+    }
+
+    private List<PlanItem<?>> siblingsOf(ItemDefinition itemDefinition) {
+        return childrenByItemDefinition.computeIfAbsent(itemDefinition, d -> new ArrayList<>());
+    }
+
+    /**
+     * Returns the number of children with the item definition, which is also the index for a next one.
+     */
+    int countChildren(ItemDefinition itemDefinition) {
+        return childrenByItemDefinition.getOrDefault(itemDefinition, List.of()).size();
+    }
+
+    private void reindexChildren() {
+        childrenByItemDefinition.clear();
+        planItems.forEach(item -> siblingsOf(item.getItemDefinition()).add(item));
     }
 
     public Collection<PlanItem<?>> getPlanItems() {
@@ -64,7 +89,7 @@ public class Stage<T extends StageDefinition> extends TaskStage<T> {
      */
     void planChild(DiscretionaryItem discretionaryItem, String planItemId) {
         // Determine index by iterating sibling plan items (i.e., those that have the same item definition).
-        int index = Long.valueOf(this.planItems.stream().filter(item -> item.getItemDefinition().equals(discretionaryItem.getDefinition())).count()).intValue();
+        int index = countChildren(discretionaryItem.getDefinition());
         addChild(discretionaryItem.getDefinition(), planItemId, index, true);
     }
 
@@ -80,7 +105,7 @@ public class Stage<T extends StageDefinition> extends TaskStage<T> {
         // Make sure we have a proper next index, by counting the number of existing plan items in this stage with the same definition
         //  An alternative was to do (this.index + 1) but actually it can happen that multiple items are active simultaneously
         //  and in that case, when completing an earlier one of those it may lead to a duplicate index if we apply only +1
-        int nextIndex = (int) getPlanItems().stream().map(PlanItem::getItemDefinition).filter(sibling -> sibling.equals(itemDefinition)).count();
+        int nextIndex = countChildren(itemDefinition);
         // Create a new plan item
         addDebugInfo(() -> child + ": creating repeat item with index " + nextIndex + " and id " + repeatItemId);
         return addChild(itemDefinition, repeatItemId, nextIndex, true);
@@ -382,6 +407,8 @@ public class Stage<T extends StageDefinition> extends TaskStage<T> {
         super.migrateItemDefinition(newItemDefinition, newDefinition, skipLogic);
         // Migrate existing children (potentially dropping and removing them)
         new ArrayList<>(planItems).forEach(item -> migrateChild(item, skipLogic));
+        // Children may have gotten a new item definition
+        reindexChildren();
         if (skipLogic) return;
 
         // When the Stage is in state Available, it is not yet active, and starting the Stage
@@ -444,5 +471,9 @@ public class Stage<T extends StageDefinition> extends TaskStage<T> {
 
     void removeDroppedPlanItem(PlanItem<?> item) {
         planItems.remove(item);
+        List<PlanItem<?>> siblings = childrenByItemDefinition.get(item.getItemDefinition());
+        if (siblings != null) {
+            siblings.remove(item);
+        }
     }
 }
@@ -30,6 +30,7 @@ import org.cafienne.cmmn.instance.parameter.TaskOutputParameter;
 import org.cafienne.cmmn.instance.task.validation.ValidationResponse;
 import org.cafienne.json.Value;
 import org.cafienne.json.ValueMap;
+import org.cafienne.persistence.blob.BlobStorage;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
@@ -161,21 +162,32 @@ public abstract class Task<D extends TaskDefinition<?>> extends TaskStage<D> {
      * This method is called to complete a task
      */
     public boolean goComplete(ValueMap rawOutputParameters) {
-        return makeTransitionWithOutput(Transition.Complete, rawOutputParameters);
+        return makeTransitionWithOutput(Transition.Complete, rawOutputParameters, null);
+    }
+
+    /**
+     * This method is called to complete a task with output of which the large values are already in the blob store,
+     * so that they need not be stored again. The raw output is used for the mappings, the externalized output for the event.
+     */
+    public boolean goComplete(ValueMap rawOutputParameters, ValueMap externalizedOutputParameters) {
+        return makeTransitionWithOutput(Transition.Complete, rawOutputParameters, externalizedOutputParameters);
     }
 
     /**
      * This method is called when a task fails
      */
     public void goFault(ValueMap rawOutputParameters) {
-        makeTransitionWithOutput(Transition.Fault, rawOutputParameters);
+        makeTransitionWithOutput(Transition.Fault, rawOutputParameters, null);
     }
 
-    private boolean makeTransitionWithOutput(Transition transition, ValueMap rawOutputParameters) {
+    private boolean makeTransitionWithOutput(Transition transition, ValueMap rawOutputParameters, ValueMap externalizedOutputParameters) {
         prepareTransition(transition);
         if (rawOutputParameters != null) {
             ValueMap newTaskOutput = transformOutputParameters(rawOutputParameters, transition == Transition.Complete);
-            addEvent(new TaskOutputFilled(this, newTaskOutput, rawOutputParameters));
+            // Large values are kept in the blob store, such that the event and the case file only carry a reference
+            BlobStorage blobStorage = getCaseInstance().caseSystem.blobStorage();
+            ValueMap externalizedRawOutput = externalizedOutputParameters != null ? externalizedOutputParameters : blobStorage.externalize(rawOutputParameters);
+            addEvent(new TaskOutputFilled(this, blobStorage.externalize(newTaskOutput), externalizedRawOutput));
         }
         return super.makeTransition(transition);
     }
@@ -187,7 +199,8 @@ public abstract class Task<D extends TaskDefinition<?>> extends TaskStage<D> {
      * @param validateOutput Indicates whether a check on mandatory parameter values must be done
      */
     protected ValueMap transformOutputParameters(ValueMap output, boolean validateOutput) {
-        ValueMap taskImplementationOutput = output == null ? new ValueMap() : output;
+        // Output of process tasks and sub cases may hold references to the blob store; the mappings need the actual values
+        ValueMap taskImplementationOutput = output == null ? new ValueMap() : getCaseInstance().caseSystem.blobStorage().resolve(output);
 
         // Create maps to store the values that must be validated.
         Collection<ParameterMappingDefinition> mappings = getDefinition().getParameterMappings();
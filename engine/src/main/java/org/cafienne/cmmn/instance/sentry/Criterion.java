@@ -68,6 +68,10 @@ public abstract class Criterion<D extends CriterionDefinition> extends CMMNEleme
         return listener.item;
     }
 
+    Collection<OnPart<?, ?, ?>> getOnParts() {
+        return onParts;
+    }
+
     public Stage<?> getStage() {
         return getTarget() instanceof CasePlan ? (CasePlan) getTarget() : getTarget().getStage();
     }
@@ -220,6 +224,8 @@ public abstract class Criterion<D extends CriterionDefinition> extends CMMNEleme
                 migratePlanItemOnPart((PlanItemOnPart) onPart, newDefinition, skipLogic);
             }
         });
+        // On parts may now listen to other sources, so let the network update its index
+        getCaseInstance().getSentryNetwork().reindex(this);
         addDebugInfo(() -> " - migrated " + this);
     }
 
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.cmmn.instance.sentry;
+
+import org.cafienne.cmmn.definition.DefinitionElement;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the elements (typically criteria) that listen to items of a certain source definition.
+ * On parts match their source on either id or name (see {@link DefinitionElement#hasMatchingIdentifier(DefinitionElement)}),
+ * hence elements are indexed on both. A lookup returns the same elements as a scan of all elements
+ * for a source with a matching identifier would.
+ */
+class SentryIndex<C> {
+    private final Map<String, Set<C>> listeners = new HashMap<>();
+
+    /**
+     * Add the element as listener to items with a definition matching the source
+     */
+    void add(DefinitionElement source, C element) {
+        for (String key : keys(source)) {
+            listeners.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(element);
+        }
+    }
+
+    /**
+     * Remove the element from all sources it listens to
+     */
+    void remove(C element) {
+        listeners.values().removeIf(set -> set.remove(element) && set.isEmpty());
+    }
+
+    /**
+     * Returns the elements that listen to items with the given definition, sorted in the given order.
+     */
+    List<C> find(DefinitionElement definition, Comparator<C> order) {
+        Set<C> candidates = new LinkedHashSet<>();
+        for (String key : keys(definition)) {
+            Set<C> found = listeners.get(key);
+            if (found != null) {
+                candidates.addAll(found);
+            }
+        }
+        List<C> result = new ArrayList<>(candidates);
+        if (result.size() > 1) {
+            result.sort(order);
+        }
+        return result;
+    }
+
+    private String[] keys(DefinitionElement source) {
+        return new String[]{"id:" + source.getId(), "name:" + source.getName()};
+    }
+}
@@ -17,28 +17,48 @@
 
 package org.cafienne.cmmn.instance.sentry;
 
+import org.cafienne.cmmn.definition.DefinitionElement;
 import org.cafienne.cmmn.definition.sentry.ExitCriterionDefinition;
 import org.cafienne.cmmn.instance.PlanItem;
 import org.cafienne.cmmn.instance.casefile.CaseFileItem;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Wrapper class for the collection of all sentries inside the case instance.
+ * The network keeps an index of the criteria by the identifiers of the source definitions of their on parts,
+ * so that a new plan item or case file item is only offered to the criteria that may actually connect to it.
  */
 public class SentryNetwork {
     private final TransitionCallStack callStack = new TransitionCallStack();
     /**
-     * List of sentries active within the case.
+     * List of sentries active within the case, with the order in which they were added.
      */
-    private final Collection<Criterion<?>> criteria = new ArrayList<>();
+    private final Map<Criterion<?>, Long> criteria = new LinkedHashMap<>();
+    private long sequenceNr = 0;
+    /**
+     * Criteria with plan item on parts, indexed by the source plan item definition.
+     */
+    private final SentryIndex<Criterion<?>> planItemListeners = new SentryIndex<>();
+    /**
+     * Criteria with case file item on parts, indexed by the source case file item definition.
+     */
+    private final SentryIndex<Criterion<?>> caseFileItemListeners = new SentryIndex<>();
+    /**
+     * Criteria per plan item they belong to.
+     */
+    private final Map<PlanItem<?>, List<Criterion<?>>> criteriaByTarget = new IdentityHashMap<>();
 
     /**
      * Connect a new {@link CaseFileItem} to the network
      */
     public void connect(CaseFileItem item) {
-        for (Criterion<?> criterion : criteria) {
+        for (Criterion<?> criterion : findListeners(caseFileItemListeners, item.getDefinition())) {
             criterion.establishPotentialConnection(item);
         }
     }
@@ -47,15 +67,15 @@ public class SentryNetwork {
      * Disconnect the item from the network (typically when the case file item is lost in migration)
      */
     public void disconnect(CaseFileItem item) {
-        criteria.forEach(criterion -> criterion.removeConnection(item));
+        criteria.keySet().forEach(criterion -> criterion.removeConnection(item));
     }
 
     /**
      * Connect a new {@link PlanItem} to the network
      */
     public void connect(PlanItem<?> item) {
-        // Visit each existing criterion in the network and inform them about the new plan item.
-        for (Criterion<?> criterion : criteria) {
+        // Visit each existing criterion in the network that listens to the definition and inform them about the new plan item.
+        for (Criterion<?> criterion : findListeners(planItemListeners, item.getItemDefinition())) {
             criterion.establishPotentialConnection(item);
         }
     }
@@ -65,14 +85,16 @@ public class SentryNetwork {
      * Disconnect the item from the network (typically when the plan item is lost in migration)
      */
     public void disconnect(PlanItem<?> item) {
-        criteria.forEach(criterion -> criterion.removeConnection(item));
+        criteria.keySet().forEach(criterion -> criterion.removeConnection(item));
     }
 
     /**
      * Add a criterion to the network
      */
     void add(Criterion<?> criterion) {
-        criteria.add(criterion);
+        criteria.put(criterion, sequenceNr++);
+        criteriaByTarget.computeIfAbsent(criterion.getTarget(), target -> new ArrayList<>()).add(criterion);
+        index(criterion);
     }
 
     /**
@@ -80,12 +102,61 @@ public class SentryNetwork {
      */
     void remove(Criterion<?> criterion) {
         this.criteria.remove(criterion);
+        List<Criterion<?>> targetCriteria = criteriaByTarget.get(criterion.getTarget());
+        if (targetCriteria != null) {
+            targetCriteria.remove(criterion);
+            if (targetCriteria.isEmpty()) {
+                criteriaByTarget.remove(criterion.getTarget());
+            }
+        }
+        unindex(criterion);
+    }
+
+    /**
+     * Update the index of the criterion, as the definitions of its on parts may have changed during migration.
+     */
+    void reindex(Criterion<?> criterion) {
+        if (criteria.containsKey(criterion)) {
+            unindex(criterion);
+            index(criterion);
+        }
+    }
+
+    private void index(Criterion<?> criterion) {
+        for (OnPart<?, ?, ?> onPart : criterion.getOnParts()) {
+            SentryIndex<Criterion<?>> listeners = getListeners(onPart);
+            if (listeners != null) {
+                listeners.add(onPart.getDefinition().getSourceDefinition(), criterion);
+            }
+        }
+    }
+
+    private void unindex(Criterion<?> criterion) {
+        planItemListeners.remove(criterion);
+        caseFileItemListeners.remove(criterion);
+    }
+
+    private SentryIndex<Criterion<?>> getListeners(OnPart<?, ?, ?> onPart) {
+        if (onPart instanceof PlanItemOnPart) {
+            return planItemListeners;
+        } else if (onPart instanceof CaseFileItemOnPart) {
+            return caseFileItemListeners;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the criteria that may connect to an item with the given definition, in the order in which they were added to the network.
+     */
+    private List<Criterion<?>> findListeners(SentryIndex<Criterion<?>> listeners, DefinitionElement definition) {
+        return listeners.find(definition, Comparator.comparing(criteria::get));
     }
 
     @Override
     public String toString() {
         StringBuilder string = new StringBuilder("SentryNetwork has " + criteria.size()+ " criteria: ");
-        criteria.forEach(c -> string.append("\n\t- ").append(c));
+        criteria.keySet().forEach(c -> string.append("\n\t- ").append(c));
         return string + "\n";
     }
 
@@ -95,12 +166,10 @@ public class SentryNetwork {
      * @return The related criterion, or null if it is not found.
      */
     Criterion<?> findRelatedExitCriterion(PlanItem<?> item, ExitCriterionDefinition definition) {
-       for (Criterion<?> criterion : criteria) {
-           if (criterion.getDefinition().equals(definition)) {
-                if (criterion.getTarget() == item) {
-                        return criterion;
-                }
-           }
+        for (Criterion<?> criterion : criteriaByTarget.getOrDefault(item, List.of())) {
+            if (criterion.getDefinition().equals(definition)) {
+                return criterion;
+            }
         }
         // Pretty weird, not sure what to do here. Probably we need to make it such that when the
         // exit criterion is created, it will also connect to those entry criteria that relate to it.
@@ -20,9 +20,10 @@ package org.cafienne.cmmn.repository;
 import org.cafienne.actormodel.exception.AuthorizationException;
 import org.cafienne.actormodel.identity.UserIdentity;
 import org.cafienne.cmmn.definition.DefinitionsDocument;
+import org.cafienne.cmmn.definition.DefinitionsDocumentCache;
 import org.cafienne.cmmn.definition.InvalidDefinitionException;
-import org.cafienne.cmmn.repository.file.SimpleLRUCache;
 import org.cafienne.infrastructure.config.RepositoryConfig;
+import org.cafienne.util.ConcurrentCache;
 import org.cafienne.util.XMLHelper;
 import org.xml.sax.SAXException;
 
@@ -30,15 +31,14 @@ import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public class StartCaseDefinitionProvider implements DefinitionProvider {
-    private final Map<String, DefinitionsDocument> cache;
+    private final ConcurrentCache<String, DefinitionsDocument> cache;
     private final static String AUTHORIZED_TENANT_ROLES = "authorized-tenant-roles";
     private final List<String> authorizedTenantRoles;
 
     public StartCaseDefinitionProvider(RepositoryConfig config) {
-        this.cache = new SimpleLRUCache<>(config.cacheSize());
+        this.cache = new ConcurrentCache<>("start-case-definitions", config.cacheSize(), 0);
         this.authorizedTenantRoles = config.readStringList(AUTHORIZED_TENANT_ROLES, new ArrayList<>());;
     }
 
@@ -71,6 +71,7 @@ public class StartCaseDefinitionProvider implements DefinitionProvider {
             DefinitionsDocument cacheEntry = cache.get(contents);
             if (cacheEntry == null) {
                 cacheEntry = new DefinitionsDocument(XMLHelper.loadXML(contents));
+                DefinitionsDocumentCache.prepareReference(cacheEntry);
                 cache.put(contents, cacheEntry);
             }
             return cacheEntry;
@@ -19,6 +19,7 @@ package org.cafienne.cmmn.repository.file;
 
 import org.cafienne.actormodel.identity.UserIdentity;
 import org.cafienne.cmmn.definition.DefinitionsDocument;
+import org.cafienne.cmmn.definition.DefinitionsDocumentCache;
 import org.cafienne.cmmn.definition.InvalidDefinitionException;
 import org.cafienne.cmmn.repository.DefinitionProvider;
 import org.cafienne.cmmn.repository.MissingDefinitionException;
@@ -26,6 +27,7 @@ import org.cafienne.cmmn.repository.WriteDefinitionException;
 import org.cafienne.infrastructure.config.CaseSystemConfig;
 import org.cafienne.infrastructure.config.RepositoryConfig;
 import org.cafienne.infrastructure.config.util.SystemConfig;
+import org.cafienne.util.ConcurrentCache;
 import org.cafienne.util.XMLHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,7 +43,7 @@ import java.util.*;
 
 public class FileBasedDefinitionProvider implements DefinitionProvider {
     private final static Logger logger = LoggerFactory.getLogger(FileBasedDefinitionProvider.class);
-    private final Map<String, FileBasedDefinition> cache;
+    private final ConcurrentCache<String, FileBasedDefinition> cache;
     private String deployDirectory = null;
     private final String EXTENSION = ".xml";
 
@@ -49,7 +51,7 @@ public class FileBasedDefinitionProvider implements DefinitionProvider {
 
     public FileBasedDefinitionProvider(RepositoryConfig config) {
         this.config = config;
-        this.cache = new SimpleLRUCache<>(config.cacheSize());
+        this.cache = new ConcurrentCache<>("file-based-definitions", config.cacheSize(), 0);
         this.deployDirectory = config.location();
         File file = new File(deployDirectory);
         if (!file.exists()) {
@@ -76,26 +78,29 @@ public class FileBasedDefinitionProvider implements DefinitionProvider {
         if (!name.endsWith(EXTENSION)) name = name + EXTENSION;
         try {
             long lastModified = -1; // Note, -1 is the default value for reading files from class path (resourceAsStream)
-            InputStream contents = null;
 
             // First check to see if the file is present on the file system (allowing for "hot" deploment)
             File sourceFile = getFile(name);
-            if (sourceFile.exists()) {
-                contents = new FileInputStream(sourceFile);
+            boolean onFileSystem = sourceFile.exists();
+            if (onFileSystem) {
                 lastModified = sourceFile.lastModified();
-            } else {
+            }
+
+            // Now check to see if the file is already in our cache, and, if so, check whether it has the same last modified.
+            //  Only if not, we open the file and put the new definition in the cache instead
+            FileBasedDefinition cacheEntry = cache.get(name);
+            if (cacheEntry != null && cacheEntry.lastModified == lastModified) {
+                return cacheEntry.contents;
+            }
+
+            try (InputStream contents = onFileSystem ? new FileInputStream(sourceFile) : DefinitionsDocument.class.getClassLoader().getResourceAsStream(name)) {
                 // If the file does not exist, we try to load it from the classpath
-                contents = DefinitionsDocument.class.getClassLoader().getResourceAsStream(name);
                 if (contents == null) {
                     throw new IOException("A file with name " + name + " cannot be found in the deployment directory, nor in the class path");
                 }
-            }
-
-            // Now check to see if the file is already in our cache, and, if so, check whether it has the same last modified; if not, put the new one in the cache instead
-            FileBasedDefinition cacheEntry = cache.get(name);
-            if (cacheEntry == null || cacheEntry.lastModified != lastModified) {
                 DefinitionsDocument def = new DefinitionsDocument(XMLHelper.getXMLDocument(contents));
                 cacheEntry = new FileBasedDefinition(lastModified, def);
+                DefinitionsDocumentCache.prepareReference(def);
                 cache.put(name, cacheEntry);
             }
             return cacheEntry.contents;
@@ -236,9 +236,11 @@ public class WorkflowTask extends CMMNElement<WorkflowTaskDefinition> {
             checkOwnershipChange(user.id());
         }
 
-        addEvent(new HumanTaskCompleted(task, taskOutput));
+        // Large values are stored once in the blob store; the task output event uses the same references
+        ValueMap externalizedOutput = getCaseInstance().caseSystem.blobStorage().externalize(taskOutput);
+        addEvent(new HumanTaskCompleted(task, externalizedOutput));
         // This will generate PlanItemTransitioned and CaseFileItem events
-        return task.goComplete(taskOutput);
+        return task.goComplete(taskOutput, externalizedOutput);
     }
 
     public void setDueDate(Instant newDueDate) {
@@ -248,7 +250,7 @@ public class WorkflowTask extends CMMNElement<WorkflowTaskDefinition> {
     }
 
     public void saveOutput(ValueMap taskOutput) {
-        addEvent(new HumanTaskOutputSaved(task, taskOutput));
+        addEvent(new HumanTaskOutputSaved(task, getCaseInstance().caseSystem.blobStorage().externalize(taskOutput)));
     }
 
     public void updateState(CaseAppliedPlatformUpdate event) {
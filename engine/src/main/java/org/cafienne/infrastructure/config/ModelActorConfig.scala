@@ -47,4 +47,29 @@ class ModelActorConfig(val parent: CaseSystemConfig) extends ChildConfigReader {
     // Note: for now, we can better take this from model-actor config, but we should also read the old option
     readBoolean("debug", parent.readBoolean("debug", default = false))
   }
+
+  /**
+    * How messages are routed to the ModelActors.
+    *  - local: through a router actor per type of ModelActor, on a single node (default)
+    *  - direct: directly to the ModelActor when it is in memory, on a single node
+    *  - sharded: through Pekko Cluster Sharding, across the nodes of the cluster
+    */
+  lazy val routing: String = {
+    val routing = readString("routing", "local")
+    if (!Seq("local", "direct", "sharded").contains(routing)) {
+      fail(s"Actor routing must be one of 'local', 'direct' or 'sharded' (found '$routing')")
+    }
+    routing
+  }
+
+  /**
+    * Number of shards across which the ModelActors are spread in sharded routing mode.
+    * Must be the same on all nodes, and should not be changed while the cluster is running.
+    */
+  lazy val numberOfShards: Int = readInt("sharding.number-of-shards", 100).max(1)
+
+  /**
+    * Number of supervisor actors that create the ModelActors in direct routing mode
+    */
+  lazy val numberOfSupervisors: Int = readInt("direct.supervisors", 16).max(1)
 }
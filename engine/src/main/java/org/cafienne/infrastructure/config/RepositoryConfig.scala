@@ -38,4 +38,12 @@ class RepositoryConfig(val parent: CaseSystemConfig) extends MandatoryConfig {
     if (config.hasPath("cache.size")) config.getInt("cache.size")
     100
   }
+
+  /**
+    * Size of the process wide cache of definitions documents that are read from events and commands
+    */
+  lazy val deserializationCacheSize: Int = {
+    if (config.hasPath("deserialization-cache.size")) config.getInt("deserialization-cache.size")
+    else 100
+  }
 }
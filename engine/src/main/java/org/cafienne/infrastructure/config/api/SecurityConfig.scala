@@ -19,6 +19,8 @@ package org.cafienne.infrastructure.config.api
 
 import org.cafienne.infrastructure.config.util.MandatoryConfig
 
+import scala.concurrent.duration.{DurationInt, FiniteDuration}
+
 class SecurityConfig(val parent: ApiConfig) extends MandatoryConfig {
   def path = "security"
 
@@ -43,4 +45,25 @@ class SecurityConfig(val parent: ApiConfig) extends MandatoryConfig {
     }
     size
   }
+
+  /**
+    * Number of tokens that are kept after their signature and claims have been verified,
+    * so that repeated requests with the same token need not verify it again.
+    */
+  lazy val verifiedTokenCacheSize: Int = {
+    val key = "token.verification.cache.size"
+    val size = readInt(key, 10000)
+    if (size == 0) {
+      logger.info("Verified token caching is disabled")
+    } else {
+      logger.info("Running with Verified Token Cache of size " + size)
+    }
+    size
+  }
+
+  /**
+    * Time to live of entries in the identity, tenant and token caches.
+    * Entries are also removed earlier when the underlying information changes on this node.
+    */
+  lazy val identityCacheTtl: FiniteDuration = readDuration("identity.cache.ttl", 10.minutes)
 }
@@ -18,6 +18,7 @@
 package org.cafienne.infrastructure.config.engine
 
 import org.cafienne.infrastructure.config.util.ChildConfigReader
+import org.springframework.expression.spel.SpelCompilerMode
 
 class CMMNInterpreterConfig(val parent: EngineConfig) extends ChildConfigReader {
   def path = "interpreter"
@@ -30,4 +31,16 @@ class CMMNInterpreterConfig(val parent: EngineConfig) extends ChildConfigReader
 
     setting
   }
+
+  /**
+    * Spring compiler mode for SpEL expressions. Defaults to OFF, i.e., expressions are interpreted.
+    * In MIXED mode expressions are compiled after a number of interpreted runs, and fall back to interpretation if compiled code fails.
+    * In IMMEDIATE mode expressions are compiled after their first run, and failures of compiled code are raised.
+    */
+  lazy val spelCompilerMode: SpelCompilerMode = readEnum("spel.compiler-mode", classOf[SpelCompilerMode], SpelCompilerMode.OFF)
+
+  /**
+    * Maximum number of idle evaluation contexts kept per type of expression root object. 0 means a new context for each evaluation.
+    */
+  lazy val spelContextPoolSize: Int = readInt("spel.context-pool-size", 16)
 }
@@ -33,6 +33,16 @@ class EngineConfig(val parent: CaseSystemConfig) extends ChildConfigReader {
     */
   lazy val mailService = new MailServiceConfig(this)
 
+  /**
+    * Settings for the execution of http calls in process tasks
+    */
+  lazy val httpCall = new HTTPCallConfig(this)
+
+  /**
+    * Settings for the generation of pdf reports in process tasks
+    */
+  lazy val pdfReport = new PDFReportConfig(this)
+
   lazy val storage: StorageConfig = new StorageConfig(this)
 
   val interpreter = new CMMNInterpreterConfig(this)
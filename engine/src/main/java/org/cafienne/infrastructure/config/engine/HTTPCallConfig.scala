@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.infrastructure.config.engine
+
+import org.cafienne.infrastructure.config.util.ChildConfigReader
+
+import java.util.concurrent.TimeUnit
+import scala.concurrent.duration.FiniteDuration
+
+class HTTPCallConfig(val parent: EngineConfig) extends ChildConfigReader {
+  def path = "http-call"
+
+  /**
+    * Maximum number of http calls of process tasks that are in progress at the same time. Further calls wait for their turn.
+    */
+  lazy val maxConcurrentCalls: Int = {
+    val max = readInt("max-concurrent-calls", 256)
+    if (max <= 0) {
+      fail(s"Maximum number of concurrent http calls must be positive (found $max)")
+    }
+    max
+  }
+
+  /**
+    * Time to wait for a connection with the target server, unless the process definition specifies otherwise
+    */
+  lazy val connectTimeout: FiniteDuration = readDuration("connect-timeout", FiniteDuration(10, TimeUnit.SECONDS))
+
+  /**
+    * Time to wait for the response of the target server, unless the process definition specifies otherwise
+    */
+  lazy val readTimeout: FiniteDuration = readDuration("read-timeout", FiniteDuration(60, TimeUnit.SECONDS))
+}
@@ -20,6 +20,8 @@ package org.cafienne.infrastructure.config.engine
 import org.cafienne.infrastructure.config.util.MandatoryConfig
 
 import java.util.Properties
+import java.util.concurrent.TimeUnit
+import scala.concurrent.duration.FiniteDuration
 
 class MailServiceConfig(val parent: EngineConfig) extends MandatoryConfig {
   def path = "mail-service"
@@ -28,8 +30,27 @@ class MailServiceConfig(val parent: EngineConfig) extends MandatoryConfig {
     val mailProperties = new Properties
     config.entrySet().forEach(entry => {
 //      logger.warn(entry.getKey + ": " + entry.getValue.unwrapped)
-      mailProperties.put(entry.getKey, entry.getValue.unwrapped)
+      // Pool settings are for the engine, not for the mail server connection
+      if (!entry.getKey.startsWith("pool.")) {
+        mailProperties.put(entry.getKey, entry.getValue.unwrapped)
+      }
     })
     mailProperties
   }
+
+  /**
+    * Maximum number of connections that are open to the same mail server at the same time
+    */
+  lazy val poolMaxConnections: Int = {
+    val max = readInt("pool.max-connections", 4)
+    if (max <= 0) {
+      fail(s"Maximum number of mail server connections must be positive (found $max)")
+    }
+    max
+  }
+
+  /**
+    * Connections to a mail server that have not been used for this long are closed
+    */
+  lazy val poolIdleTimeout: FiniteDuration = readDuration("pool.idle-timeout", FiniteDuration(60, TimeUnit.SECONDS))
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.infrastructure.config.engine
+
+import org.cafienne.infrastructure.config.util.ChildConfigReader
+
+class PDFReportConfig(val parent: EngineConfig) extends ChildConfigReader {
+  def path = "pdf-report"
+
+  /**
+    * Number of compiled report templates that are kept in memory. Only applies to templates that are passed as task input,
+    * templates inside the process definition are compiled when the definition is loaded.
+    */
+  lazy val compiledReportCacheSize: Int = readInt("compiled-report-cache-size", 100).max(0)
+
+  /**
+    * Number of reports that are generated at the same time. Further reports wait for their turn.
+    */
+  lazy val maxConcurrentReports: Int = {
+    val max = readInt("max-concurrent-reports", Runtime.getRuntime.availableProcessors())
+    if (max <= 0) {
+      fail(s"Maximum number of concurrent reports must be positive (found $max)")
+    }
+    max
+  }
+
+  /**
+    * Number of reports that wait for one of the workers. Process tasks that request a report beyond this number fail.
+    */
+  lazy val maxQueuedReports: Int = {
+    val max = readInt("max-queued-reports", 1000)
+    if (max <= 0) {
+      fail(s"Maximum number of queued reports must be positive (found $max)")
+    }
+    max
+  }
+}
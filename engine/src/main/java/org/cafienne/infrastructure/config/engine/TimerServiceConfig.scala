@@ -56,4 +56,52 @@ class TimerServiceConfig(val parent: EngineConfig) extends ChildConfigReader {
     }
     interval
   }
-}
\ No newline at end of file
+
+  /**
+    * Duration of a tick of the timing wheel that holds the timers of the active window.
+    * This is the precision with which timers go off.
+    */
+  lazy val wheelTick: FiniteDuration = {
+    // Note: not using readDuration, as that only has a precision of seconds
+    val path = "wheel.tick"
+    val tick = if (config.hasPath(path)) FiniteDuration(config.getDuration(path).toMillis, TimeUnit.MILLISECONDS) else FiniteDuration(100, TimeUnit.MILLISECONDS)
+    tick.max(FiniteDuration(1, TimeUnit.MILLISECONDS))
+  }
+
+  /**
+    * Number of slots in the timing wheel. A revolution of the wheel takes size * tick,
+    * and timers further ahead share the slots, so a larger wheel means fewer timers per slot.
+    */
+  lazy val wheelSize: Int = {
+    val size = readInt("wheel.size", 4096)
+    if (size <= 0) {
+      fail(s"Timer service wheel size must be positive (found $size)")
+    }
+    size
+  }
+
+  /**
+    * Number of timers read from storage in one go when loading the timers of the next window
+    */
+  lazy val catchUpBatchSize: Int = readInt("catch-up.batch-size", 1000).max(1)
+
+  /**
+    * Maximum number of overdue timers raised per second, e.g. after the engine has been down for a while. 0 means no limit.
+    */
+  lazy val catchUpMaxRate: Int = readInt("catch-up.max-rate", 100).max(0)
+
+  /**
+    * Maximum number of consecutive timer events that are stored in a single transaction
+    */
+  lazy val eventBatchSize: Int = readInt("event-batch.max-events", 100).max(1)
+
+  /**
+    * Maximum time to wait for more timer events to join the same transaction
+    */
+  lazy val eventBatchLatency: FiniteDuration = {
+    // Note: not using readDuration, as that only has a precision of seconds
+    val path = "event-batch.max-latency"
+    val latency = if (config.hasPath(path)) FiniteDuration(config.getDuration(path).toMillis, TimeUnit.MILLISECONDS) else FiniteDuration(50, TimeUnit.MILLISECONDS)
+    latency.max(FiniteDuration(1, TimeUnit.MILLISECONDS))
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.infrastructure.config.persistence
+
+import org.cafienne.infrastructure.config.util.ChildConfigReader
+import org.cafienne.persistence.blob.{BlobStorage, BlobStore}
+
+class BlobStoreConfig(val parent: PersistenceConfig) extends ChildConfigReader {
+  def path = "blob-store"
+
+  /**
+    * When enabled, large text values in task output are stored in the blob store, and events only carry a reference to them
+    */
+  lazy val enabled: Boolean = readBoolean("enabled", default = false)
+
+  /**
+    * Text values with more than this number of bytes are stored in the blob store
+    */
+  lazy val threshold: Long = {
+    val size = if (config.hasPath("threshold")) config.getBytes("threshold").longValue() else 256 * 1024L
+    if (size <= 0) {
+      fail(s"Blob store threshold must be positive (found $size)")
+    }
+    size
+  }
+
+  /**
+    * Directory of the file system based blob store
+    */
+  lazy val directory: String = readString("directory", "./blobs")
+
+  /**
+    * The blob store implementation; the class must have a constructor taking the BlobStoreConfig
+    */
+  lazy val store: BlobStore = {
+    val providerClassName = readString("provider", "org.cafienne.persistence.blob.FileSystemBlobStore")
+    Class.forName(providerClassName).getDeclaredConstructor(classOf[BlobStoreConfig]).newInstance(this).asInstanceOf[BlobStore]
+  }
+
+  /**
+    * The blob storage that the engine and the queries use; it leaves values as they are if the blob store is not enabled
+    */
+  lazy val storage: BlobStorage = if (enabled) new BlobStorage(store, threshold) else BlobStorage.DISABLED
+}
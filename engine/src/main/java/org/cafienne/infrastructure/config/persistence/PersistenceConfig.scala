@@ -38,6 +38,11 @@ class PersistenceConfig(val parent: CaseSystemConfig) extends ChildConfigReader
 
   lazy val eventDB: EventDBConfig = new EventDBConfig(this, parent.systemConfig.config)
 
+  /**
+    * Returns configuration options for storing large values outside of the events
+    */
+  lazy val blobStore: BlobStoreConfig = new BlobStoreConfig(this)
+
   lazy val readJournal: String = findReadJournalSetting()
 
   private def findReadJournalSetting(): String = {
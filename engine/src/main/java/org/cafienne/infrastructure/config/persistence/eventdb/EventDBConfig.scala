@@ -20,6 +20,7 @@ package org.cafienne.infrastructure.config.persistence.eventdb
 import com.typesafe.config.Config
 import org.cafienne.infrastructure.config.persistence.PersistenceConfig
 import org.cafienne.infrastructure.config.util.ChildConfigReader
+import org.cafienne.infrastructure.serialization.SerializationFormat
 
 class EventDBConfig(val parent: PersistenceConfig, val systemConfig: Config) extends ChildConfigReader {
   def path = "event-db"
@@ -38,6 +39,33 @@ class EventDBConfig(val parent: PersistenceConfig, val systemConfig: Config) ext
 
   lazy val jdbcConfig: JDBCConfig = new JDBCConfig(parent, systemConfig, journal)
 
+  /**
+    * If enabled, events and commands carry a reference to the source of the definitions document,
+    * instead of the full source. The source is stored once in a separate table in the event database.
+    * This is only supported for JDBC (and in-memory) journals.
+    */
+  lazy val storeDefinitionsByReference: Boolean = {
+    val setting = readBoolean("definitions-by-reference", default = false)
+    if (setting && !(isJDBC || isInMemory)) {
+      logger.warn("Storing definitions by reference is only supported for JDBC based event journals; definitions will be stored inline")
+      false
+    } else {
+      setting
+    }
+  }
+
+  /**
+    * Format in which events (and other serializable objects) are written. Defaults to compact json.
+    * Reading events always supports all formats.
+    */
+  lazy val serializationFormat: SerializationFormat = {
+    val format = SerializationFormat.from(readString("serialization-format", SerializationFormat.JSON.value))
+    if (format == SerializationFormat.CBOR) {
+      logger.warn("Events are written in CBOR serialization format; these events cannot be read by engine versions that only support json")
+    }
+    format
+  }
+
   lazy val isJDBC: Boolean = journalKey.contains("jdbc")
   lazy val isCassandra: Boolean = journalKey.contains("cassandra")
   lazy val isLevelDB: Boolean = journalKey.contains("level")
@@ -24,6 +24,8 @@ import org.cafienne.infrastructure.config.util.MandatoryConfig
 import slick.basic.DatabaseConfig
 import slick.jdbc.JdbcProfile
 
+import scala.concurrent.duration.{DurationInt, FiniteDuration}
+
 
 class QueryDBConfig(val parent: PersistenceConfig) extends MandatoryConfig {
   def path = "query-db"
@@ -54,11 +56,86 @@ class QueryDBConfig(val parent: PersistenceConfig) extends MandatoryConfig {
 
   lazy val restartSettings: RestartSettings = new RestartConfig(this).settings
   lazy val debug: Boolean = readBoolean("debug", default = false)
+
+  /**
+    * Number of partitions in which the case events are projected in parallel. Defaults to 1 (sequential projection).
+    */
+  lazy val parallelism: Int = {
+    val parallelism = readInt("parallelism", 1)
+    if (parallelism > 1) {
+      logger.info(s"Case events are projected into the query database in $parallelism parallel partitions")
+    }
+    Math.max(1, parallelism)
+  }
+
+  /**
+    * Interval at which the offset up to which all parallel partitions have committed is stored. Defaults to 1 second.
+    */
+  lazy val watermarkInterval: FiniteDuration = readDuration("watermark-interval", 1.second).max(1.second)
+
+  /**
+    * Maximum number of consecutive case event batches that are written in a single database transaction. Defaults to 1.
+    */
+  lazy val transactionGroupSize: Int = Math.max(1, readInt("transaction-group.max-batches", 1))
+
+  /**
+    * Maximum time the case projection waits for more batches to join the same database transaction.
+    */
+  lazy val transactionGroupLatency: FiniteDuration = {
+    // Note: not using readDuration, as that only has a precision of seconds
+    val path = "transaction-group.max-latency"
+    val latency = if (config.hasPath(path)) config.getDuration(path).toMillis.millis else 10.millis
+    latency.max(1.millis)
+  }
+
+  /**
+    * Whether the case file is stored as a single document (the default), or with a separate record per top level case file item.
+    */
+  lazy val storeCaseFileItems: Boolean = {
+    readString("case-file-storage", "document").toLowerCase match {
+      case "document" => false
+      case "items" =>
+        logger.info("Case files are stored in the query database with a record per top level case file item")
+        true
+      case other => fail(s"Invalid value '$other' for case-file-storage; expecting either 'document' or 'items'")
+    }
+  }
+
+  /**
+    * Number of cases for which the case projection keeps the latest plan item, task and case file records in memory,
+    * so that they need not be read back from the database upon the next batch of events. 0 disables the cache.
+    */
+  lazy val recordCacheSize: Int = Math.max(0, readInt("record-cache-size", 1000))
+
+  /**
+    * Maximum number of plan item and task records the record cache keeps for a single case.
+    * Cases with more records are not kept in the cache.
+    */
+  lazy val recordCacheMaxRecordsPerCase: Int = Math.max(0, readInt("record-cache-max-records-per-case", 1000))
+
   lazy val readJournal: String = {
     val foundJournal = readString("read-journal")
     logger.warn(s"Obtaining read-journal settings from 'cafienne.querydb.read-journal' = $foundJournal is deprecated; please place these settings in 'cafienne.read-journal' instead")
     foundJournal
   }
-}
 
+  /**
+    * Maximum number of actors for which the query side keeps the last modified moment, to support read-after-write queries.
+    */
+  lazy val lastModifiedMaxSize: Int = readInt("last-modified.max-size", 100000).max(1)
+
+  /**
+    * Period after which the last modified moment of an actor is removed from memory.
+    */
+  lazy val lastModifiedRetention: FiniteDuration = readDuration("last-modified.retention", 10.minutes)
 
+  /**
+    * Maximum time a query waits for the last modified moment it depends on to be projected.
+    */
+  lazy val lastModifiedWaiterTimeout: FiniteDuration = {
+    // Note: not using readDuration, as that only has a precision of seconds
+    val path = "last-modified.waiter-timeout"
+    val timeout = if (config.hasPath(path)) config.getDuration(path).toMillis.millis else 30.seconds
+    timeout.max(1.millis)
+  }
+}
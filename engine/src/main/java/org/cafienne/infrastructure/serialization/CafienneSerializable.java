@@ -17,9 +17,7 @@
 
 package org.cafienne.infrastructure.serialization;
 
-import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import org.cafienne.actormodel.command.ModelCommand;
 import org.cafienne.cmmn.definition.CMMNElementDefinition;
 import org.cafienne.cmmn.instance.Path;
@@ -30,6 +28,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Collection;
 
@@ -37,11 +36,12 @@ public interface CafienneSerializable {
     Logger logger = LoggerFactory.getLogger(CafienneSerializer.class);
 
     default byte[] toBytes() {
-        JsonFactory factory = new JsonFactory();
+        return toBytes(SerializationFormat.current());
+    }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (JsonGenerator generator = factory.createGenerator(baos)) {
-            generator.setPrettyPrinter(new DefaultPrettyPrinter());
+    default byte[] toBytes(SerializationFormat format) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
+        try (JsonGenerator generator = format.createGenerator(baos)) {
             this.writeThisObject(generator);
         } catch (IOException e) {
             throw new RuntimeException("Failure in serialization of an object with type " + this.getClass().getName() + "\n" + e.getMessage(), e);
@@ -52,8 +52,11 @@ public interface CafienneSerializable {
         return baos.toByteArray();
     }
 
+    /**
+     * Returns a readable (pretty printed json) string of this object, regardless of the configured serialization format.
+     */
     default String asString() {
-        return new String(toBytes());
+        return new String(toBytes(SerializationFormat.PRETTY_JSON), StandardCharsets.UTF_8);
     }
 
     /**
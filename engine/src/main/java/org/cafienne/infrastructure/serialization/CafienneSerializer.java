@@ -24,7 +24,6 @@ import org.cafienne.infrastructure.serialization.serializers.EventSerializers;
 import org.cafienne.infrastructure.serialization.serializers.ResponseSerializers;
 import org.cafienne.infrastructure.serialization.serializers.StorageSerializers;
 import org.cafienne.json.JSONParseFailure;
-import org.cafienne.json.JSONReader;
 import org.cafienne.json.ValueMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -128,7 +127,8 @@ public class CafienneSerializer extends SerializerWithStringManifest {
 
     @Override
     public Object fromBinary(byte[] eventBlob, String manifestString) {
-        return deserialize(manifestString, () -> JSONReader.parse(eventBlob), () -> eventBlob);
+        // Note: the blob can be in any of the supported serialization formats, not necessarily the currently configured one
+        return deserialize(manifestString, () -> SerializationFormat.parse(eventBlob), () -> eventBlob);
     }
 
     @Override
@@ -115,6 +115,7 @@ public enum Fields {
     role,
     elementId,
     source,
+    sourceRef,
     script,
     waitTime,
     assignee,
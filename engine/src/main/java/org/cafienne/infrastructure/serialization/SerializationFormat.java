@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.infrastructure.serialization;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import org.cafienne.json.JSONParseFailure;
+import org.cafienne.json.JSONReader;
+import org.cafienne.json.Value;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Format in which {@link CafienneSerializable} objects are written to bytes (e.g. in the event journal).
+ * Reading the bytes does not depend on the configured format: CBOR content is recognized by
+ * the CBOR self-describe tag that is written as header, and all other content is parsed as JSON.
+ * Hence, existing (pretty-printed) JSON events can always be read, whatever the configured format.
+ */
+public enum SerializationFormat {
+    /**
+     * Compact JSON, without whitespace. This is the default.
+     */
+    JSON("json"),
+    /**
+     * Pretty printed JSON, which was the only format in earlier versions of the engine.
+     */
+    PRETTY_JSON("pretty-json"),
+    /**
+     * Binary CBOR encoding of the JSON structure. Note that older engine versions cannot read this format.
+     */
+    CBOR("cbor");
+
+    /**
+     * The CBOR self-describe tag (55799), written at the start of each CBOR serialized object.
+     */
+    private final static byte[] CBOR_HEADER = {(byte) 0xD9, (byte) 0xD9, (byte) 0xF7};
+    private final static CBORFactory cborFactory = CBORFactory.builder().enable(CBORGenerator.Feature.WRITE_TYPE_HEADER).build();
+
+    private static volatile SerializationFormat current = JSON;
+
+    public final String value;
+
+    SerializationFormat(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Set the format that is used to write objects in {@link CafienneSerializable#toBytes()}
+     */
+    public static void configure(SerializationFormat format) {
+        current = format;
+    }
+
+    public static SerializationFormat current() {
+        return current;
+    }
+
+    public static SerializationFormat from(String value) {
+        return Arrays.stream(values()).filter(format -> format.value.equalsIgnoreCase(value)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Serialization format '" + value + "' is not supported. Use one of " + Arrays.stream(values()).map(format -> format.value).toList()));
+    }
+
+    JsonGenerator createGenerator(OutputStream output) throws IOException {
+        return switch (this) {
+            case JSON -> JSONReader.getJSONFactory().createGenerator(output);
+            case PRETTY_JSON -> JSONReader.getJSONFactory().createGenerator(output).setPrettyPrinter(new DefaultPrettyPrinter());
+            case CBOR -> cborFactory.createGenerator(output);
+        };
+    }
+
+    /**
+     * Parse the bytes, either in CBOR or in JSON format.
+     */
+    public static <T extends Value<?>> T parse(byte[] bytes) throws IOException, JSONParseFailure {
+        if (isCBOR(bytes)) {
+            try (JsonParser parser = cborFactory.createParser(bytes)) {
+                return (T) JSONReader.read(parser, null);
+            }
+        }
+        return JSONReader.parse(bytes);
+    }
+
+    private static boolean isCBOR(byte[] bytes) {
+        return bytes.length >= CBOR_HEADER.length && Arrays.equals(bytes, 0, CBOR_HEADER.length, CBOR_HEADER, 0, CBOR_HEADER.length);
+    }
+}
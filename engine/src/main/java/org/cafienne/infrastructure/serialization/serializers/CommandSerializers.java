@@ -151,6 +151,7 @@ public class CommandSerializers {
         CafienneSerializer.addManifestWrapper(SuspendProcess.class, SuspendProcess::new);
         CafienneSerializer.addManifestWrapper(TerminateProcess.class, TerminateProcess::new);
         CafienneSerializer.addManifestWrapper(MigrateProcessDefinition.class, MigrateProcessDefinition::new);
+        CafienneSerializer.addManifestWrapper(CompleteProcessCall.class, CompleteProcessCall::new);
     }
 
     private static void addTenantCommands() {
@@ -30,7 +30,9 @@ import java.io.InputStream;
  */
 public class JSONReader {
 
-    private static JsonFactory getJSONFactory() {
+    private final static JsonFactory factory = createJSONFactory();
+
+    private static JsonFactory createJSONFactory() {
         JsonFactory factory = new JsonFactory();
         factory.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
         factory.configure(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true);
@@ -39,6 +41,14 @@ public class JSONReader {
         return factory;
     }
 
+    /**
+     * Returns the shared JsonFactory. The factory is thread-safe once configured,
+     * and sharing it also shares it's buffer recycling across parsers and generators.
+     */
+    public static JsonFactory getJSONFactory() {
+        return factory;
+    }
+
     /**
      * Parse the specified string into a {@link Value} object
      * @param jsonString
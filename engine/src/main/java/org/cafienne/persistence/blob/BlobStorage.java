@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.persistence.blob;
+
+import org.cafienne.json.*;
+import org.cafienne.util.ContentDigest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps large text values out of the events. Values that exceed the configured threshold are written
+ * once into the {@link BlobStore}, and replaced with a reference of the form <code>blob:sha256:&lt;digest&gt;</code>.
+ * The references are resolved into the original value again when the content is needed.
+ * When no blob store is configured, values are left as they are.
+ * <p>
+ * Note: values are written into the blob store while the event that refers to them is created, i.e., on the thread of the actor.
+ * This blocks the actor, but guarantees that an event never refers to a blob that is not yet stored.
+ * Only values above the threshold are written, and content that is already in the store is not written again.
+ * <p>
+ * Each case system has its own instance, see {@link org.cafienne.infrastructure.config.persistence.BlobStoreConfig#storage()}.
+ */
+public class BlobStorage {
+    private final static Logger logger = LoggerFactory.getLogger(BlobStorage.class);
+    private final static String REFERENCE_PREFIX = "blob:sha256:";
+    private final static Pattern REFERENCE = Pattern.compile(REFERENCE_PREFIX + "[0-9a-f]{64}");
+
+    /**
+     * Blob storage that leaves all values as they are.
+     */
+    public final static BlobStorage DISABLED = new BlobStorage(null, Long.MAX_VALUE);
+
+    private final BlobStore store;
+    private final long threshold;
+
+    /**
+     * Keep values larger than the threshold in the store. Passing a null store disables the blob storage.
+     */
+    public BlobStorage(BlobStore store, long thresholdInBytes) {
+        this.store = store;
+        this.threshold = thresholdInBytes;
+    }
+
+    public boolean isEnabled() {
+        return store != null;
+    }
+
+    /**
+     * Returns the value with all text values above the threshold stored in the blob store and replaced by a reference.
+     * The value passed is not changed; if nothing had to be stored, the same value is returned.
+     */
+    public <V extends Value<?>> V externalize(V value) {
+        if (store == null || value == null) {
+            return value;
+        }
+        @SuppressWarnings("unchecked")
+        V result = (V) transform(value, this::externalize);
+        return result;
+    }
+
+    /**
+     * Returns the value with all blob references replaced by the content from the blob store.
+     * The value passed is not changed; if there are no references, the same value is returned.
+     */
+    public <V extends Value<?>> V resolve(V value) {
+        if (store == null || value == null) {
+            return value;
+        }
+        @SuppressWarnings("unchecked")
+        V result = (V) transform(value, this::resolve);
+        return result;
+    }
+
+    /**
+     * Resolves the blob references inside a JSON document, as it is kept in the query database.
+     */
+    public String resolveJson(String json) {
+        if (store == null || json == null || !json.contains(REFERENCE_PREFIX)) {
+            return json;
+        }
+        try {
+            return resolve(JSONReader.<Value<?>>parse(json)).toString();
+        } catch (IOException | JSONParseFailure e) {
+            logger.warn("Could not resolve blob references, because the content cannot be parsed as JSON", e);
+            return json;
+        }
+    }
+
+    private StringValue externalize(StringValue string) {
+        String text = string.getValue();
+        // A character takes at most 3 bytes in UTF-8, so short strings need not be encoded to be measured
+        if (text == null || (long) text.length() * 3 <= threshold) {
+            return string;
+        }
+        byte[] content = text.getBytes(StandardCharsets.UTF_8);
+        if (content.length <= threshold || REFERENCE.matcher(text).matches()) {
+            // Small enough, or already externalized
+            return string;
+        }
+        String digest = ContentDigest.sha256(content);
+        store.store(digest, content);
+        return new StringValue(REFERENCE_PREFIX + digest);
+    }
+
+    private StringValue resolve(StringValue string) {
+        String text = string.getValue();
+        if (text == null || !text.startsWith(REFERENCE_PREFIX) || !REFERENCE.matcher(text).matches()) {
+            return string;
+        }
+        String digest = text.substring(REFERENCE_PREFIX.length());
+        byte[] content = store.read(digest);
+        if (content == null) {
+            logger.warn("Blob " + digest + " cannot be found in the blob store; returning the reference instead");
+            return string;
+        }
+        return new StringValue(new String(content, StandardCharsets.UTF_8));
+    }
+
+    private interface StringTransformer {
+        StringValue apply(StringValue string);
+    }
+
+    /**
+     * Applies the transformer on all strings inside the value, and only copies the maps and lists that change.
+     */
+    private static Value<?> transform(Value<?> value, StringTransformer transformer) {
+        if (value instanceof StringValue string) {
+            return transformer.apply(string);
+        } else if (value instanceof ValueMap map) {
+            ValueMap copy = null;
+            for (Map.Entry<String, Value<?>> field : map.getValue().entrySet()) {
+                Value<?> fieldValue = transform(field.getValue(), transformer);
+                if (fieldValue != field.getValue() && copy == null) {
+                    copy = new ValueMap();
+                    // Copy the fields that came before
+                    for (Map.Entry<String, Value<?>> earlier : map.getValue().entrySet()) {
+                        if (earlier.getKey().equals(field.getKey())) break;
+                        copy.put(earlier.getKey(), earlier.getValue().cloneValueNode());
+                    }
+                }
+                if (copy != null) {
+                    copy.put(field.getKey(), fieldValue == field.getValue() ? fieldValue.cloneValueNode() : fieldValue);
+                }
+            }
+            return copy != null ? copy : map;
+        } else if (value instanceof ValueList list) {
+            List<Value<?>> items = list.getValue();
+            ValueList copy = null;
+            for (int i = 0; i < items.size(); i++) {
+                Value<?> item = items.get(i);
+                Value<?> transformed = transform(item, transformer);
+                if (transformed != item && copy == null) {
+                    copy = new ValueList();
+                    for (int j = 0; j < i; j++) {
+                        copy.add(items.get(j).cloneValueNode());
+                    }
+                }
+                if (copy != null) {
+                    copy.add(transformed == item ? item.cloneValueNode() : transformed);
+                }
+            }
+            return copy != null ? copy : list;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.persistence.blob;
+
+/**
+ * Storage for large values that are kept outside of the events, addressed by the digest of their content.
+ * Implementations must have a public constructor taking the {@link org.cafienne.infrastructure.config.persistence.BlobStoreConfig}.
+ */
+public interface BlobStore {
+    /**
+     * Store the content under the given digest. Storing the same content more than once must be harmless.
+     */
+    void store(String digest, byte[] content);
+
+    /**
+     * Returns the content stored under the digest, or null if it cannot be found.
+     */
+    byte[] read(String digest);
+}
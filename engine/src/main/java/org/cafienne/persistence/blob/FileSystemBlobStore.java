@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.persistence.blob;
+
+import org.cafienne.infrastructure.config.persistence.BlobStoreConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+
+/**
+ * Stores blobs as files in a directory on the local file system.
+ * Files are spread over subdirectories named after the first two characters of the digest,
+ * and written through a temporary file, so that readers never see a partially written blob.
+ */
+public class FileSystemBlobStore implements BlobStore {
+    private final Path root;
+
+    public FileSystemBlobStore(BlobStoreConfig config) {
+        this(Paths.get(config.directory()));
+    }
+
+    public FileSystemBlobStore(Path root) {
+        this.root = root.toAbsolutePath();
+    }
+
+    private Path pathOf(String digest) {
+        return root.resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
+    @Override
+    public void store(String digest, byte[] content) {
+        Path target = pathOf(digest);
+        if (Files.exists(target)) {
+            // Same digest means same content, so nothing to do
+            return;
+        }
+        try {
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), digest, ".tmp");
+            try {
+                Files.write(temp, content);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store blob " + digest + " in " + root, e);
+        }
+    }
+
+    @Override
+    public byte[] read(String digest) {
+        try {
+            return Files.readAllBytes(pathOf(digest));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read blob " + digest + " from " + root, e);
+        }
+    }
+}
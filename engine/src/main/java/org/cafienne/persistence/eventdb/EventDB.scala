@@ -1,14 +1,19 @@
 package org.cafienne.persistence.eventdb
 
 import com.typesafe.scalalogging.LazyLogging
+import org.apache.pekko.actor.ActorSystem
+import org.apache.pekko.persistence.jdbc.db.SlickExtension
 import org.cafienne.infrastructure.config.persistence.PersistenceConfig
 import org.cafienne.infrastructure.config.persistence.eventdb.Profile
+import org.cafienne.persistence.eventdb.definition.{DefinitionSourceStore, InMemoryDefinitionSourceStore, JDBCDefinitionSourceStore}
 import org.cafienne.persistence.eventdb.schema.EventDBSchema
 import org.cafienne.persistence.eventdb.schema.h2.H2EventDBSchema
 import org.cafienne.persistence.eventdb.schema.postgres.PostgresEventDBSchema
 import org.cafienne.persistence.eventdb.schema.sqlserver.SQLServerEventDBSchema
 import org.flywaydb.core.Flyway
 import org.flywaydb.core.api.resolver.MigrationResolver
+import slick.basic.DatabaseConfig
+import slick.jdbc.JdbcProfile
 
 class EventDB(config: PersistenceConfig) extends LazyLogging {
   if (config.initializeDatabaseSchemas && config.eventDB.isJDBC) {
@@ -39,4 +44,22 @@ class EventDB(config: PersistenceConfig) extends LazyLogging {
     val flyway = flywayConfiguration.load()
     flyway.migrate()
   }
+
+  /**
+    * Creates the storage for definitions documents that are referred to from within events (instead of having the source inline).
+    * Only available for JDBC and in-memory event journals. The JDBC store uses the database of the event journal;
+    * note that the connection pool is only shared if the journal is configured with "use-shared-db".
+    */
+  def createDefinitionSourceStore(system: ActorSystem): Option[DefinitionSourceStore] = {
+    if (config.eventDB.isJDBC) {
+      val jdbcConfig = config.eventDB.jdbcConfig
+      val dbConfig: DatabaseConfig[JdbcProfile] = DatabaseConfig.forConfig("", jdbcConfig.dbConfig.getConfig(jdbcConfig.databaseKey))
+      val journalDatabase = SlickExtension(system).database(config.eventDB.journal).database
+      Some(new JDBCDefinitionSourceStore(dbConfig, config.tablePrefix, journalDatabase))
+    } else if (config.eventDB.isInMemory) {
+      Some(new InMemoryDefinitionSourceStore)
+    } else {
+      None
+    }
+  }
 }
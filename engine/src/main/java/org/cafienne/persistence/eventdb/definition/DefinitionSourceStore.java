@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.persistence.eventdb.definition;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Storage for the source of definitions documents, addressed by the digest of the source.
+ * When definitions are stored by reference, events only carry the digest and the element identifier,
+ * instead of the full definitions document source.
+ */
+public interface DefinitionSourceStore {
+    /**
+     * Store the source under the given digest. Storing the same source more than once must be harmless.
+     * The returned stage completes when the source is durably stored, and only then it can be referred to.
+     */
+    CompletionStage<Void> store(String digest, String source);
+
+    /**
+     * Returns the source stored under the digest, or null if it cannot be found.
+     */
+    String read(String digest);
+}
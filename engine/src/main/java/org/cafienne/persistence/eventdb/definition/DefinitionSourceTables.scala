@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.persistence.eventdb.definition
+
+import org.cafienne.persistence.infrastructure.jdbc.SlickTableExtensions
+
+import java.time.Instant
+
+trait DefinitionSourceTables extends SlickTableExtensions {
+  import dbConfig.profile.api._
+
+  // Schema for the "definition_source" table:
+  final class DefinitionSourceTable(tag: Tag) extends CafienneTable[DefinitionSourceRecord](tag, "definition_source") {
+
+    def digest = column[String]("digest", O.PrimaryKey)
+
+    def source = column[String]("source")
+
+    def created = column[Instant]("created")
+
+    def * = (digest, source, created).mapTo[DefinitionSourceRecord]
+  }
+}
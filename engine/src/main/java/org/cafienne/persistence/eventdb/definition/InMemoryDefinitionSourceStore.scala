@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.persistence.eventdb.definition
+
+import java.util.concurrent.{CompletableFuture, CompletionStage, ConcurrentHashMap}
+
+/**
+  * Keeps definitions documents in memory. Only to be used in combination with an in-memory event journal,
+  * since the references in the events do not survive a restart of the JVM.
+  */
+class InMemoryDefinitionSourceStore extends DefinitionSourceStore {
+  private val sources = new ConcurrentHashMap[String, String]()
+
+  override def store(digest: String, source: String): CompletionStage[Void] = {
+    sources.putIfAbsent(digest, source)
+    CompletableFuture.completedFuture(null)
+  }
+
+  override def read(digest: String): String = sources.get(digest)
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.persistence.eventdb.definition
+
+import com.typesafe.scalalogging.LazyLogging
+import slick.basic.DatabaseConfig
+import slick.jdbc.{JdbcBackend, JdbcProfile}
+
+import java.time.Instant
+import java.util.concurrent.CompletionStage
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{Await, ExecutionContext}
+import scala.jdk.FutureConverters.FutureOps
+
+/**
+  * Stores definitions documents in the event database, using the connection pool of the event journal.
+  * Writing is asynchronous; the DefinitionsDocumentCache only refers to a source after it has been stored.
+  * Reading is blocking, as it is invoked while deserializing events; the cache makes sure each source is read at most once.
+  */
+class JDBCDefinitionSourceStore(val dbConfig: DatabaseConfig[JdbcProfile], val tablePrefix: String, journalDatabase: JdbcBackend.Database)
+  extends DefinitionSourceStore
+    with DefinitionSourceTables
+    with LazyLogging {
+
+  import dbConfig.profile.api._
+
+  // Use the database of the event journal instead of opening another connection pool
+  override lazy val db: dbConfig.profile.backend.JdbcDatabaseDef = journalDatabase.asInstanceOf[dbConfig.profile.backend.JdbcDatabaseDef]
+
+  override def store(digest: String, source: String): CompletionStage[Void] = {
+    logger.debug(s"Storing definitions document with digest $digest")
+    // Upsert, as other nodes in the cluster may store the same source concurrently
+    db.run(TableQuery[DefinitionSourceTable].insertOrUpdate(DefinitionSourceRecord(digest, source, Instant.now))).map(_ => null.asInstanceOf[Void])(ExecutionContext.parasitic).asJava
+  }
+
+  override def read(digest: String): String = {
+    val query = TableQuery[DefinitionSourceTable].filter(_.digest === digest).map(_.source)
+    Await.result(db.run(query.result.headOption), 30.seconds).orNull
+  }
+}
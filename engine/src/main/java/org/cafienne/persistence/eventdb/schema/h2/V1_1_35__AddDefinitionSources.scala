@@ -0,0 +1,22 @@
+package org.cafienne.persistence.eventdb.schema.h2
+
+import org.cafienne.persistence.eventdb.schema.ClassicEventDBSchemaScript
+
+class V1_1_35__AddDefinitionSources(tablePrefix: String) extends ClassicEventDBSchemaScript {
+
+  val version = "1.1.35"
+
+  val scriptName = "org.cafienne.persistence.schema.V1_1_35__AddDefinitionSources"
+
+  val description = "AddDefinitionSources"
+
+  override def sql: String = {
+    s"""CREATE TABLE IF NOT EXISTS PUBLIC."${tablePrefix}definition_source" (
+       |  "digest" VARCHAR(64) NOT NULL,
+       |  "source" CHARACTER LARGE OBJECT NOT NULL,
+       |  "created" TIMESTAMP NOT NULL,
+       |  PRIMARY KEY("digest")
+       |);
+       |""".stripMargin
+  }
+}
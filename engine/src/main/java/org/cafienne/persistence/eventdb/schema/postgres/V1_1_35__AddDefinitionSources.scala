@@ -0,0 +1,22 @@
+package org.cafienne.persistence.eventdb.schema.postgres
+
+import org.cafienne.persistence.eventdb.schema.ClassicEventDBSchemaScript
+
+class V1_1_35__AddDefinitionSources(tablePrefix: String) extends ClassicEventDBSchemaScript {
+
+  val version = "1.1.35"
+
+  val scriptName = "org.cafienne.persistence.schema.V1_1_35__AddDefinitionSources"
+
+  val description = "AddDefinitionSources"
+
+  override def sql: String = {
+    s"""CREATE TABLE IF NOT EXISTS ${tablePrefix}definition_source (
+       |	"digest" character varying(64) COLLATE pg_catalog."default" NOT NULL,
+       |	"source" text COLLATE pg_catalog."default" NOT NULL,
+       |	"created" timestamp without time zone NOT NULL,
+       |
+       |	CONSTRAINT ${tablePrefix}definition_source_pkey PRIMARY KEY (digest)
+       |);""".stripMargin
+  }
+}
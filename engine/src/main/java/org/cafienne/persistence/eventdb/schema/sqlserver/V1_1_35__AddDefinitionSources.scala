@@ -0,0 +1,26 @@
+package org.cafienne.persistence.eventdb.schema.sqlserver
+
+import org.cafienne.persistence.eventdb.schema.ClassicEventDBSchemaScript
+
+class V1_1_35__AddDefinitionSources(tablePrefix: String) extends ClassicEventDBSchemaScript {
+
+  val version = "1.1.35"
+
+  val description = "AddDefinitionSources"
+
+  val scriptName = "V1_1_35__AddDefinitionSources.sql"
+
+  val definitionSourceTableName = s"${tablePrefix}definition_source"
+
+  override def sql: String = {
+    s"""IF OBJECT_ID(N'[$definitionSourceTableName]', 'U') IS NULL
+       |BEGIN
+       |CREATE TABLE $definitionSourceTableName (
+       |	"digest" VARCHAR(64) NOT NULL,
+       |	"source" NVARCHAR(MAX) NOT NULL,
+       |	"created" [datetimeoffset](6) NOT NULL,
+       |    PRIMARY KEY ("digest")
+       |)
+       |END;""".stripMargin
+  }
+}
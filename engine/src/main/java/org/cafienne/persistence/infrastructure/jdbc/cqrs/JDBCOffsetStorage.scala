@@ -50,6 +50,11 @@ trait JDBCOffsetStorage extends OffsetStorage with OffsetStoreTables with SlickT
         Offset.noOffset
     }
   }
+
+  /**
+    * Stores the offset record (which may have another name than the storage)
+    */
+  def setOffset(offset: OffsetRecord): Future[Unit] = db.run(offsetQuery.insertOrUpdate(offset)).map(_ => ())
 }
 
 trait OffsetStoreTables extends SlickTableExtensions {
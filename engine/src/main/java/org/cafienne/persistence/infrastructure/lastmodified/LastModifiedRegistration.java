@@ -20,18 +20,33 @@ package org.cafienne.persistence.infrastructure.lastmodified;
 import org.apache.pekko.dispatch.Futures;
 import org.cafienne.actormodel.event.ActorModified;
 import org.cafienne.actormodel.response.ActorLastModified;
+import org.cafienne.system.metrics.MetricsMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import scala.concurrent.Promise;
 
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Registration of the last modified timestamp per case instance. Can be used by writers to and query actors to get notified about CaseLastModified.
+ * <p>
+ * The registration is bounded. Entries are evicted when they are older than the retention period, or when the maximum size is reached,
+ * oldest first. The latest timestamp of the evicted entries is kept as a high-water mark per partition of the projection;
+ * requests for an unknown actor with a moment up to the mark of its partition are considered to be available already.
+ * A single mark for all partitions cannot be used, as partitions are projected independently and one may lag behind another.
+ * Waiters have a deadline; when it passes, they stop waiting, so that the query runs anyway.
  */
 public class LastModifiedRegistration {
     private final static Logger logger = LoggerFactory.getLogger(LastModifiedRegistration.class);
@@ -39,84 +54,192 @@ public class LastModifiedRegistration {
      * Global startup moment of the whole JVM for last modified requests trying to be jumpy.
      */
     private final static Instant startupMoment = Instant.now();
-    private final Map<String, Instant> lastModifiedRegistration = new HashMap<>();
-    private final Map<String, List<Waiter>> waiters = new HashMap<>();
+    private static volatile int maxSize = 100000;
+    private static volatile long retentionMillis = TimeUnit.MINUTES.toMillis(10);
+    private static volatile long waiterTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+    private final static ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "last-modified-waiter-deadlines");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        deadlines.setRemoveOnCancelPolicy(true);
+    }
+
+    private final Map<String, Instant> lastModifiedRegistration = new ConcurrentHashMap<>();
+    /**
+     * Registrations in the order in which they were made, used for eviction. May contain outdated entries for an actor,
+     * these are skipped when they reach the head of the queue.
+     */
+    private final Queue<Registration> registrationOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger registrationOrderSize = new AtomicInteger();
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+    private volatile AtomicReferenceArray<Instant> evictedHighWaterMarks = createMarks(1);
+    private final Map<String, List<Waiter>> waiters = new ConcurrentHashMap<>();
+    private final AtomicInteger waiterCount = new AtomicInteger();
     public final String name;
 
     public LastModifiedRegistration(String name) {
         this.name = name;
+        MetricsMonitor.addGauges("last-modified-registration")
+                .withGauge(name + ".registered", lastModifiedRegistration::size)
+                .withGauge(name + ".waiters", waiterCount::get);
+    }
+
+    /**
+     * Configure the bounds of all registrations
+     *
+     * @param size            Maximum number of actors to keep the last modified moment of
+     * @param retention       Period in milliseconds after which the last modified moment of an actor is removed
+     * @param waiterTimeout   Maximum time in milliseconds a request waits for the last modified moment of an actor to arrive
+     */
+    public static void configure(int size, long retention, long waiterTimeout) {
+        maxSize = Math.max(1, size);
+        retentionMillis = retention;
+        waiterTimeoutMillis = waiterTimeout;
+    }
+
+    /**
+     * Set the number of partitions in which the events are projected. This must match the partitioning of the projection,
+     * i.e., the hash of the actor id modulo the number of partitions.
+     * Should be invoked before the projection starts, as it resets the high-water marks.
+     */
+    public void usePartitions(int partitions) {
+        evictedHighWaterMarks = createMarks(partitions);
+    }
+
+    private static AtomicReferenceArray<Instant> createMarks(int partitions) {
+        AtomicReferenceArray<Instant> marks = new AtomicReferenceArray<>(Math.max(1, partitions));
+        for (int i = 0; i < marks.length(); i++) {
+            marks.set(i, startupMoment);
+        }
+        return marks;
+    }
+
+    private int partitionOf(AtomicReferenceArray<Instant> marks, String actorId) {
+        return Math.floorMod(actorId.hashCode(), marks.length());
+    }
+
+    /**
+     * Returns the moment until which the projection has handled all events of the partition of the actor
+     */
+    Instant knownUntil(String actorId) {
+        AtomicReferenceArray<Instant> marks = evictedHighWaterMarks;
+        return marks.get(partitionOf(marks, actorId));
     }
 
     public Promise<String> waitFor(ActorLastModified notBefore) {
         log("Executing query after response for " + notBefore);
         Promise<String> p = Futures.promise();
 
-        Instant lastKnownMoment = lastModifiedRegistration.get(notBefore.getActorId());
-        if (lastKnownMoment == null) {
-            if (notBefore.getLastModified().isBefore(startupMoment)) {
-                p.success("That's quite an old timestamp; we're not gonna wait for it; we started at " + startupMoment);
+        // Check and add the waiter while holding the waiters of the actor, so that a concurrent registration cannot be missed.
+        waiters.compute(notBefore.getActorId(), (actorId, waiterList) -> {
+            Instant lastKnownMoment = lastModifiedRegistration.get(actorId);
+            if (lastKnownMoment == null) {
+                Instant knownUntil = knownUntil(actorId);
+                if (!notBefore.getLastModified().isAfter(knownUntil)) {
+                    p.success("That's quite an old timestamp; we're not gonna wait for it; we know all timestamps until " + knownUntil);
+                } else {
+                    log("Adding waiter for actor[" + actorId + "] modified at " + notBefore.getLastModified());
+                    return addWaiter(waiterList, new Waiter(notBefore, p));
+                }
+            } else if (lastKnownMoment.isBefore(notBefore.getLastModified())) {
+                log("Adding waiter for entity " + actorId + ", because last known moment is " + lastKnownMoment + ", and we're waiting for " + notBefore.getLastModified());
+                return addWaiter(waiterList, new Waiter(notBefore, p));
             } else {
-                log("Adding waiter for actor[" + notBefore.getActorId() + "] modified at " + notBefore.getLastModified());
-                addWaiter(new Waiter(notBefore, p));
+                log("Returning because already available");
+                p.success("Your case last modified arrived already!");
             }
-        } else if (lastKnownMoment.isBefore(notBefore.getLastModified())) {
-            log("Adding waiter for entity " + notBefore.getActorId() + ", because last known moment is " + lastKnownMoment + ", and we're waiting for " + notBefore.getLastModified());
-            addWaiter(new Waiter(notBefore, p));
-        } else {
-            log("Returning because already available");
-            p.success("Your case last modified arrived already!");
-        }
+            return waiterList;
+        });
         return p;
     }
 
     // TEMPORARY LOGGING CODE
     private void log(String msg) {
-        msg = name + " in thread: " + Thread.currentThread().getName() + ": " + msg;
-        logger.debug(msg);
+        if (logger.isDebugEnabled()) {
+            logger.debug(name + " in thread: " + Thread.currentThread().getName() + ": " + msg);
+        }
     }
 
     public void handle(ActorModified event) {
         handle(event.getActorId(), event.lastModified());
     }
 
-    private void handle(String actorId, Instant newTimestamp) {
-        Instant lastKnownTimestamp = lastModifiedRegistration.get(actorId);
-        // Now check whether the new timestamp is indeed newer, and if so, update the registration
-        if (lastKnownTimestamp == null || lastKnownTimestamp.isBefore(newTimestamp)) {
-            lastModifiedRegistration.put(actorId, newTimestamp);
+    void handle(String actorId, Instant newTimestamp) {
+        // Only update the registration if the new timestamp is indeed newer
+        Instant registeredTimestamp = lastModifiedRegistration.merge(actorId, newTimestamp, (known, newer) -> known.isBefore(newer) ? newer : known);
+        if (registeredTimestamp == newTimestamp) {
+            registrationOrder.add(new Registration(actorId, newTimestamp));
+            registrationOrderSize.incrementAndGet();
             informWaiters(actorId, newTimestamp);
+            evict();
         }
     }
 
-    private void informWaiters(String id, Instant newTimestamp) {
-        // TODO: should this be synchronized code?? I think so... Or can we better use scala immutable maps?
-        synchronized (waiters) {
-            List<Waiter> waiterList = waiters.remove(id);
-            List<Waiter> newWaiters = new ArrayList<>();
-            if (waiterList == null) {
-                return;
+    private void evict() {
+        // Projections may run in parallel; one of them doing the eviction is sufficient
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long oldestAllowed = System.currentTimeMillis() - retentionMillis;
+            Registration oldest = registrationOrder.peek();
+            while (oldest != null && (registrationOrderSize.get() > maxSize || oldest.timestamp.toEpochMilli() < oldestAllowed)) {
+                registrationOrder.poll();
+                registrationOrderSize.decrementAndGet();
+                // Only remove it if the actor has not been modified since
+                if (lastModifiedRegistration.remove(oldest.actorId, oldest.timestamp)) {
+                    AtomicReferenceArray<Instant> marks = evictedHighWaterMarks;
+                    marks.accumulateAndGet(partitionOf(marks, oldest.actorId), oldest.timestamp, (mark, timestamp) -> mark.isBefore(timestamp) ? timestamp : mark);
+                }
+                oldest = registrationOrder.peek();
             }
+        } finally {
+            evicting.set(false);
+        }
+    }
 
-            log("Found " + newTimestamp + "/" + id+" for " + waiterList.size() + " waiters");
+    private void informWaiters(String id, Instant newTimestamp) {
+        waiters.computeIfPresent(id, (actorId, waiterList) -> {
+            log("Found " + newTimestamp + "/" + id + " for " + waiterList.size() + " waiters");
+            List<Waiter> newWaiters = new ArrayList<>();
             for (Waiter waiter : waiterList) {
                 if (newTimestamp.isBefore(waiter.moment())) {
                     log("-need " + waiter.notBefore.getLastModified() + "/" + waiter.notBefore.getActorId());
                     newWaiters.add(waiter);
                 } else {
-                    waiter.stopWaiting();
+                    waiter.stopWaiting("Your case last modified arrived just now");
                 }
             }
+            return newWaiters.isEmpty() ? null : newWaiters;
+        });
+    }
 
-            if (!newWaiters.isEmpty()) {
-                waiters.put(id, newWaiters);
+    private List<Waiter> addWaiter(List<Waiter> waiterList, Waiter waiter) {
+        List<Waiter> list = waiterList == null ? new ArrayList<>() : waiterList;
+        list.add(waiter);
+        waiterCount.incrementAndGet();
+        return list;
+    }
+
+    private void removeWaiter(Waiter waiter) {
+        waiters.computeIfPresent(waiter.id(), (actorId, waiterList) -> {
+            if (waiterList.remove(waiter)) {
+                waiter.stopWaiting("Stopped waiting for your case last modified after " + waiterTimeoutMillis + " milliseconds");
             }
-        }
+            return waiterList.isEmpty() ? null : waiterList;
+        });
     }
 
-    private void addWaiter(Waiter waiter) {
-        synchronized (waiters) {
-            List<Waiter> waiterList = waiters.computeIfAbsent(waiter.id(), k -> new ArrayList<>());
-            waiterList.add(waiter);
+    private static class Registration {
+        private final String actorId;
+        private final Instant timestamp;
+
+        Registration(String actorId, Instant timestamp) {
+            this.actorId = actorId;
+            this.timestamp = timestamp;
         }
     }
 
@@ -124,18 +247,22 @@ public class LastModifiedRegistration {
         private final ActorLastModified notBefore;
         private final Promise<String> promise;
         private final long createdAt = System.currentTimeMillis();
+        private final ScheduledFuture<?> deadline;
 
         Waiter(ActorLastModified notBefore, Promise<String> promise) {
 
             this.notBefore = notBefore;
             this.promise = promise;
+            this.deadline = deadlines.schedule(() -> removeWaiter(this), waiterTimeoutMillis, TimeUnit.MILLISECONDS);
         }
 
-        void stopWaiting() {
+        void stopWaiting(String reason) {
+            deadline.cancel(false);
+            waiterCount.decrementAndGet();
             log("Waited " + (System.currentTimeMillis() - createdAt) + " milliseconds");
             if (!promise.isCompleted()) {
                 // Only invoke the promise if no one has done it yet
-                promise.success("Your case last modified arrived just now");
+                promise.success(reason);
             } else {
                 log("AFTER STOP WAITING, BUT ALREADY COMPLETED?!");
             }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.persistence.querydb.materializer
+
+import com.typesafe.scalalogging.LazyLogging
+import org.apache.pekko.Done
+import org.apache.pekko.persistence.query.{NoOffset, Offset, Sequence, TimeBasedUUID}
+import org.cafienne.infrastructure.cqrs.offset.OffsetRecord
+
+import scala.collection.mutable
+import scala.concurrent.{ExecutionContext, Future}
+
+/**
+  * Keeps track of the offsets of event batches that are consumed in parallel partitions (see [[QueryDBEventSink]]).
+  * Batches are assigned to a partition based on the hash of their persistence id, so that the events of
+  * a single ModelActor are always handled in the order in which they were written.
+  *
+  * Each batch stores the offset of the batch itself under the name of its partition, in the same transaction as its projection changes.
+  * The watermark (the offset up to which all batches have been committed) is stored separately under the name of the sink,
+  * outside of the partition transactions, see [[storeWatermark]]. This avoids that all partitions update the same record.
+  * After a restart, events are read again from the stored watermark onwards, and batches that are not after the committed
+  * offset of their partition are skipped. Hence, batches are not applied twice, even if the stored watermark lags behind.
+  *
+  * Note that the partition offsets depend on the number of partitions; changing the parallelism (or switching back to
+  * sequential mode) may lead to re-applying the batches that were committed after the watermark.
+  *
+  * @param offsetName       The name under which the watermark is stored
+  * @param partitions       Number of partitions
+  * @param watermark        The offset from which the events are read
+  * @param partitionOffsets The committed offsets of each of the partitions
+  */
+class PartitionedOffsetTracker(val offsetName: String, val partitions: Int, private var watermark: Offset, partitionOffsets: Seq[Offset]) extends LazyLogging {
+  private val committedOffsets: Array[Offset] = partitionOffsets.toArray
+  private val pendingBatches = new mutable.Queue[PartitionedBatch]()
+  private var storedWatermark: Offset = watermark
+  private var storingWatermark: Boolean = false
+
+  def partitionOf(persistenceId: String): Int = Math.floorMod(persistenceId.hashCode, partitions)
+
+  /**
+    * Registers a new batch. This must be invoked in the order in which the batches are read from the journal.
+    */
+  def register(batch: QueryDBEventBatch): PartitionedBatch = synchronized {
+    val partitionedBatch = new PartitionedBatch(this, batch, partitionOf(batch.persistenceId))
+    pendingBatches.enqueue(partitionedBatch)
+    batch.partitionedBatch = Some(partitionedBatch)
+    partitionedBatch
+  }
+
+  def isCommitted(batch: PartitionedBatch): Boolean = synchronized {
+    !PartitionedOffsetTracker.isAfter(batch.offset, committedOffsets(batch.partition))
+  }
+
+  /**
+    * Returns the offset records that must be stored in the same transaction as the changes of the batch.
+    */
+  def createOffsetRecords(batch: PartitionedBatch): Seq[OffsetRecord] = {
+    Seq(OffsetRecord(PartitionedOffsetTracker.partitionOffsetName(offsetName, batch.partition, partitions), batch.offset))
+  }
+
+  def currentWatermark: Offset = synchronized(watermark)
+
+  /**
+    * Stores the watermark if it moved forward since it was last stored.
+    * This is invoked periodically by the sink, and runs in its own transaction.
+    */
+  def storeWatermark(storage: QueryDBStorage)(implicit ec: ExecutionContext): Future[Done] = {
+    val offsetToStore = synchronized {
+      // Only store the watermark when there is one, see also PartitionedOffsetTracker.load
+      if (storingWatermark || watermark == NoOffset || !PartitionedOffsetTracker.isAfter(watermark, storedWatermark)) {
+        None
+      } else {
+        storingWatermark = true
+        Some(watermark)
+      }
+    }
+    offsetToStore.fold(Future.successful(Done))(offset => {
+      storage.storeOffset(OffsetRecord(offsetName, offset)).andThen {
+        case result => synchronized {
+          storingWatermark = false
+          if (result.isSuccess && PartitionedOffsetTracker.isAfter(offset, storedWatermark)) {
+            storedWatermark = offset
+          }
+        }
+      }.map(_ => Done)
+    })
+  }
+
+  /**
+    * Invoked after the batch has been committed (or skipped); moves the watermark forward if possible.
+    */
+  def completed(batch: PartitionedBatch): Unit = synchronized {
+    batch.done = true
+    if (PartitionedOffsetTracker.isAfter(batch.offset, committedOffsets(batch.partition))) {
+      committedOffsets(batch.partition) = batch.offset
+    }
+    // Note: if the event source restarts, batches may be offered again, and then the offset may be lower than the current watermark.
+    while (pendingBatches.nonEmpty && pendingBatches.head.done) {
+      val batch = pendingBatches.dequeue()
+      if (PartitionedOffsetTracker.isAfter(batch.offset, watermark)) {
+        watermark = batch.offset
+      }
+    }
+  }
+}
+
+object PartitionedOffsetTracker {
+  /**
+    * Reads the watermark and the offsets of the partitions from the storage
+    */
+  def load(storage: QueryDBStorage, offsetName: String, partitions: Int)(implicit ec: ExecutionContext): Future[PartitionedOffsetTracker] = {
+    val partitionOffsetNames = (0 until partitions).map(partitionOffsetName(offsetName, _, partitions))
+    for {
+      watermark <- storage.getOffset(offsetName)
+      partitionOffsets <- Future.sequence(partitionOffsetNames.map(storage.getOffset))
+    } yield {
+      // Without a watermark (e.g. when the offset has been reset in order to rebuild the query db) the partition offsets cannot be used.
+      //  Note that this also re-applies the batches of a first run that stopped before the watermark was stored for the first time.
+      val validOffsets = if (watermark == NoOffset) partitionOffsets.map(_ => NoOffset) else partitionOffsets
+      new PartitionedOffsetTracker(offsetName, partitions, watermark, validOffsets)
+    }
+  }
+
+  def partitionOffsetName(offsetName: String, partition: Int, partitions: Int): String = s"$offsetName-partition-${partition + 1}-of-$partitions"
+
+  def isAfter(offset: Offset, other: Offset): Boolean = (offset, other) match {
+    case (_, NoOffset) => true
+    case (NoOffset, _) => false
+    case (a: Sequence, b: Sequence) => a.value > b.value
+    case (a: TimeBasedUUID, b: TimeBasedUUID) => a.compare(b) > 0
+    case _ => true
+  }
+}
+
+/**
+  * Wrapper around a batch that is consumed in a partition.
+  */
+class PartitionedBatch(val tracker: PartitionedOffsetTracker, val batch: QueryDBEventBatch, val partition: Int) extends LazyLogging {
+  val offset: Offset = batch.events.last.offset
+  @volatile private[materializer] var done = false
+
+  def consume(): Unit = {
+    if (!isCommitted) {
+      batch.consume()
+    }
+    tracker.completed(this)
+  }
+
+  def isCommitted: Boolean = {
+    val committed = tracker.isCommitted(this)
+    if (committed) {
+      logger.whenDebugEnabled(logger.debug(s"Skipping batch of ${batch.persistenceId} at offset $offset, as it has already been committed in partition ${partition + 1}"))
+    }
+    committed
+  }
+
+  def createOffsetRecords(): Seq[OffsetRecord] = tracker.createOffsetRecords(this)
+}
+
+object PartitionedBatch {
+  /**
+    * Consumes consecutive batches of a partition in as few database transactions as possible, see [[TransactionGroup]].
+    * The offset record of the last batch in a transaction also covers the preceding batches of the partition.
+    */
+  def consume(batches: Seq[PartitionedBatch]): Unit = {
+    TransactionGroup.consume(batches.filterNot(_.isCommitted).map(_.batch))
+    batches.foreach(batch => batch.tracker.completed(batch))
+  }
+}
@@ -17,17 +17,48 @@
 
 package org.cafienne.persistence.querydb.materializer
 
+import org.apache.pekko.persistence.query.Offset
 import org.cafienne.actormodel.event.CommitEvent
 import org.cafienne.infrastructure.cqrs.ModelEventEnvelope
 import org.cafienne.infrastructure.cqrs.batch.EventBatch
+import org.cafienne.infrastructure.cqrs.offset.OffsetRecord
 
 trait QueryDBEventBatch extends EventBatch {
 
+  /**
+    * Set if the batch is consumed in a partition of a parallel projection.
+    */
+  var partitionedBatch: Option[PartitionedBatch] = None
+
+  /**
+    * Returns the offset records to be stored in the same transaction as the changes of this batch.
+    * Normally that is just the given offset, but in a parallel projection the offsets are determined by the partition.
+    */
+  def createOffsetRecords(offsetName: String, offset: Offset): Seq[OffsetRecord] = {
+    partitionedBatch.fold(Seq(OffsetRecord(offsetName, offset)))(_.createOffsetRecords())
+  }
+
   def handleEvent(envelope: ModelEventEnvelope): Unit
 
   def commit(envelope: ModelEventEnvelope, transactionEvent: CommitEvent): Unit
 
+  def dBTransaction: QueryDBTransaction
+
+  /**
+    * Whether the batch can be written in a single database transaction with other batches, see [[TransactionGroup]].
+    */
+  def canJoinGroup: Boolean = false
+
   def consume(): Unit = {
+    handleEvents()
+    committed()
+  }
+
+  /**
+    * Handles the events and commits the changes.
+    * If the transaction is part of a group, the changes are written when the group is committed.
+    */
+  def handleEvents(): Unit = {
 
     //  Note, this can be improved if specific transactions handle the events in a smarter manner (e.g. all plan item events with the same id in a single shot instead of consecutively)
     for (event <- events) {
@@ -35,4 +66,9 @@ trait QueryDBEventBatch extends EventBatch {
     }
     commit(events.last, commitEvent)
   }
+
+  /**
+    * Invoked after the changes of the batch have been written to the database.
+    */
+  def committed(): Unit = {}
 }
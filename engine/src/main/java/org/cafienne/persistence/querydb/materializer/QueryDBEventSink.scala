@@ -26,11 +26,14 @@ import org.cafienne.infrastructure.cqrs.batch.EventBatchSource
 import org.cafienne.system.CaseSystem
 import org.cafienne.system.health.HealthMonitor
 
-import scala.concurrent.Future
+import scala.concurrent.duration.{DurationInt, FiniteDuration}
+import scala.concurrent.{ExecutionContext, Future}
 import scala.util.{Failure, Success}
 
 trait QueryDBEventSink extends EventBatchSource[QueryDBEventBatch] with LazyLogging {
   val caseSystem: CaseSystem // Need to provide a CaseSystem
+  val storage: QueryDBStorage // And the storage to write to
+  val offsetName: String // And the name under which the offset is stored
 
   override def system: ActorSystem = caseSystem.system
   override val readJournal: String = caseSystem.config.persistence.readJournal
@@ -39,10 +42,49 @@ trait QueryDBEventSink extends EventBatchSource[QueryDBEventBatch] with LazyLogg
 
   import scala.concurrent.ExecutionContext.Implicits.global
 
+  /**
+    * Number of partitions in which batches are consumed in parallel.
+    * Defaults to 1, meaning that batches are consumed one after the other.
+    */
+  def parallelism: Int = 1
+
+  /**
+    * Interval at which the watermark of the partitions is stored, see [[PartitionedOffsetTracker.storeWatermark]].
+    */
+  def watermarkInterval: FiniteDuration = 1.second
+
+  /**
+    * Loads the tracker for the offsets of the partitions
+    */
+  def createOffsetTracker(): Future[PartitionedOffsetTracker] = PartitionedOffsetTracker.load(storage, offsetName, parallelism)
+
+  /**
+    * Maximum number of consecutive batches that are written in a single database transaction, see [[TransactionGroup]].
+    * Defaults to 1, meaning that each batch is written in its own transaction.
+    */
+  def transactionGroupSize: Int = 1
+
+  /**
+    * Maximum time to wait for more batches to join the transaction.
+    */
+  def transactionGroupLatency: FiniteDuration = 10.millis
+
   /**
     * Start reading and processing events
     */
   def start(): Unit = {
+    if (parallelism > 1) {
+      startPartitioned()
+    } else {
+      startSequential()
+    }
+  }
+
+  private def startSequential(): Unit = {
+    if (transactionGroupSize > 1) {
+      startGrouped()
+      return
+    }
     batches
       .mapAsync(1)(batch => {
         batch.consume()
@@ -55,6 +97,59 @@ trait QueryDBEventSink extends EventBatchSource[QueryDBEventBatch] with LazyLogg
       }
   }
 
+  private def startGrouped(): Unit = {
+    logger.info(s"Starting ${getClass.getSimpleName} with up to $transactionGroupSize batches per transaction")
+    batches
+      .groupedWithin(transactionGroupSize, transactionGroupLatency)
+      .mapAsync(1)(group => {
+        TransactionGroup.consume(group)
+        Future.successful(Done)
+      })
+      .runWith(Sink.ignore)
+      .onComplete {
+        case Success(_) => //
+        case Failure(ex) => reportUnhealthy(ex)
+      }
+  }
+
+  /**
+    * Batches are routed to a partition based on the hash of the persistence id,
+    * and each partition consumes it's batches one after the other. See also [[PartitionedOffsetTracker]].
+    */
+  private def startPartitioned(): Unit = {
+    // Batch consumption blocks on database calls, so run it on the dispatcher for blocking work
+    val blockingDispatcher: ExecutionContext = system.dispatchers.lookup("pekko.actor.default-blocking-io-dispatcher")
+    createOffsetTracker().map(tracker => {
+      logger.info(s"Starting ${tracker.offsetName} with ${tracker.partitions} parallel partitions")
+      // The watermark is stored periodically, in a transaction of its own, instead of in each of the partition transactions
+      val watermarkWriter = system.scheduler.scheduleWithFixedDelay(watermarkInterval, watermarkInterval)(() => {
+        tracker.storeWatermark(storage).failed.foreach(ex => logger.warn(s"Could not store the watermark of ${tracker.offsetName}", ex))
+      })
+      val partitions = batches
+        .map(tracker.register)
+        .groupBy(tracker.partitions, _.partition)
+      val consumedPartitions = if (transactionGroupSize > 1) {
+        partitions
+          .groupedWithin(transactionGroupSize, transactionGroupLatency)
+          .mapAsync(1)(group => Future(PartitionedBatch.consume(group))(blockingDispatcher))
+      } else {
+        partitions
+          .mapAsync(1)(batch => Future(batch.consume())(blockingDispatcher))
+      }
+      consumedPartitions
+        .mergeSubstreams
+        .runWith(Sink.ignore)
+        .andThen {
+          case _ =>
+            watermarkWriter.cancel()
+            tracker.storeWatermark(storage)
+        }
+    }).flatten.onComplete {
+      case Success(_) => //
+      case Failure(ex) => reportUnhealthy(ex)
+    }
+  }
+
   def reportUnhealthy(throwable: Throwable): Unit = {
     logger.error(s"${getClass.getSimpleName} bumped into an issue that it cannot recover from: ${throwable.getMessage}", throwable)
     HealthMonitor.readJournal.hasFailed(throwable)
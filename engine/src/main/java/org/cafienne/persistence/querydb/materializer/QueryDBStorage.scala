@@ -18,6 +18,7 @@
 package org.cafienne.persistence.querydb.materializer
 
 import org.apache.pekko.persistence.query.Offset
+import org.cafienne.infrastructure.cqrs.offset.OffsetRecord
 import org.cafienne.persistence.querydb.materializer.cases.CaseStorageTransaction
 import org.cafienne.persistence.querydb.materializer.consentgroup.ConsentGroupStorageTransaction
 import org.cafienne.persistence.querydb.materializer.tenant.TenantStorageTransaction
@@ -37,4 +38,9 @@ trait QueryDBStorage {
   def createTenantTransaction(tenant: String): TenantStorageTransaction
 
   def getOffset(offsetName: String): Future[Offset]
+
+  /**
+    * Stores the offset in a transaction of its own
+    */
+  def storeOffset(offset: OffsetRecord): Future[Unit]
 }
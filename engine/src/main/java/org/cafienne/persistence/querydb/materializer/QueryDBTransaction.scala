@@ -24,4 +24,17 @@ trait QueryDBTransaction {
   def upsert(record: OffsetRecord): Unit
 
   def commit(): Unit
+
+  /**
+    * Transactions can be grouped, in order to write the changes of multiple batches in a single database transaction.
+    * A grouped transaction keeps its changes upon commit; they are written when the group is committed.
+    * Returns false if the transaction cannot be grouped.
+    */
+  def joinGroup(): Boolean = false
+
+  /**
+    * Writes the changes of the grouped transactions in a single database transaction.
+    * Transactions that do not support grouping commit each member on its own, in order.
+    */
+  def commitGroup(members: Seq[QueryDBTransaction]): Unit = members.foreach(_.commit())
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.persistence.querydb.materializer
+
+import com.typesafe.scalalogging.LazyLogging
+
+import scala.collection.mutable.ListBuffer
+
+/**
+  * Consumes a sequence of batches with as few database transactions as possible.
+  * Consecutive batches are written in a single transaction, as long as they stem from different ModelActors
+  * (since the projection of a batch may read the records written by the previous batch of the same actor).
+  * Batches that cannot join a group are consumed on their own, after the preceding group has been committed,
+  * so that the offsets are always stored in the order of the batches.
+  */
+object TransactionGroup extends LazyLogging {
+
+  def consume(batches: Seq[QueryDBEventBatch]): Unit = {
+    val group = ListBuffer[QueryDBEventBatch]()
+
+    def commitGroup(): Unit = {
+      if (group.nonEmpty) {
+        commit(group.toSeq)
+        group.clear()
+      }
+    }
+
+    batches.foreach(batch => {
+      if (group.exists(_.persistenceId == batch.persistenceId)) {
+        commitGroup()
+      }
+      if (batch.canJoinGroup && batch.dBTransaction.joinGroup()) {
+        group += batch
+      } else {
+        commitGroup()
+        batch.consume()
+      }
+    })
+    commitGroup()
+  }
+
+  private def commit(group: Seq[QueryDBEventBatch]): Unit = {
+    group.foreach(_.handleEvents())
+    group.head.dBTransaction.commitGroup(group.map(_.dBTransaction))
+    logger.whenDebugEnabled(logger.debug(s"Committed ${group.size} batches in a single transaction"))
+    group.foreach(_.committed())
+  }
+}
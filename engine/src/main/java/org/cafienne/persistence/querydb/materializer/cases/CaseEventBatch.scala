@@ -42,7 +42,7 @@ class CaseEventBatch(val sink: CaseEventSink, override val persistenceId: String
   private val casePlanProjection = new CasePlanProjection(this)
   private val caseProjection = new CaseProjection(this, caseFileProjection)
 
-  def createOffsetRecord(offset: Offset): OffsetRecord = OffsetRecord(CaseEventSink.offsetName, offset)
+  def createOffsetRecords(offset: Offset): Seq[OffsetRecord] = createOffsetRecords(CaseEventSink.offsetName, offset)
 
   override def handleEvent(envelope: ModelEventEnvelope): Unit = {
     logger.whenDebugEnabled(logger.debug("Handling event of type " + envelope.event.getClass.getSimpleName + " in case " + caseInstanceId))
@@ -71,14 +71,31 @@ class CaseEventBatch(val sink: CaseEventSink, override val persistenceId: String
     caseFileProjection.prepareCommit()
     casePlanProjection.prepareCommit(caseModified)
     // Update the offset storage with the latest & greatest offset we handled
-    dBTransaction.upsert(createOffsetRecord(envelope.offset))
+    createOffsetRecords(envelope.offset).foreach(dBTransaction.upsert)
 
-    // Commit and then inform the last modified registration
+    // Commit, and then in committed() inform the last modified registration
     dBTransaction.commit()
-    CaseReader.lastModifiedRegistration.handle(caseModified)
+  }
+
+  /**
+    * Only batches that end with CaseModified can be grouped; platform updates are written directly.
+    */
+  override def canJoinGroup: Boolean = commitEvent.isInstanceOf[CaseModified]
+
+  override def committed(): Unit = {
+    commitEvent match {
+      case caseModified: CaseModified =>
+        // Only now that the records are in the database they can be cached for the next batch of this case
+        caseFileProjection.committed()
+        casePlanProjection.committed()
+        CaseReader.lastModifiedRegistration.handle(caseModified)
+      case _ => // Nothing to inform
+    }
   }
 
   private def updateUserIds(event: CaseAppliedPlatformUpdate, envelope: ModelEventEnvelope): Unit = {
-    dBTransaction.updateCaseUserInformation(event.getCaseInstanceId, event.newUserInformation.info, createOffsetRecord(envelope.offset))
+    // User information is updated directly in the database, so the cached records of the case are outdated
+    sink.recordCache.invalidate(caseInstanceId)
+    dBTransaction.updateCaseUserInformation(event.getCaseInstanceId, event.newUserInformation.info, createOffsetRecords(envelope.offset))
   }
 }
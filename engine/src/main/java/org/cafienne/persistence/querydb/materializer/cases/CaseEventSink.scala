@@ -24,11 +24,26 @@ import org.cafienne.persistence.querydb.materializer.{QueryDBEventSink, QueryDBS
 import org.cafienne.system.CaseSystem
 
 import scala.concurrent.Future
+import scala.concurrent.duration.FiniteDuration
 
-class CaseEventSink(val caseSystem: CaseSystem, storage: QueryDBStorage) extends QueryDBEventSink with LazyLogging {
+class CaseEventSink(val caseSystem: CaseSystem, val storage: QueryDBStorage) extends QueryDBEventSink with LazyLogging {
   override val tag: String = CaseEvent.TAG
 
-  override def getOffset: Future[Offset] = storage.getOffset(CaseEventSink.offsetName)
+  override val parallelism: Int = caseSystem.config.persistence.queryDB.parallelism
+  // Last modified moments of evicted cases are kept per partition, as partitions may lag behind each other
+  CaseReader.lastModifiedRegistration.usePartitions(parallelism)
+
+  override val watermarkInterval: FiniteDuration = caseSystem.config.persistence.queryDB.watermarkInterval
+
+  override val transactionGroupSize: Int = caseSystem.config.persistence.queryDB.transactionGroupSize
+
+  override val transactionGroupLatency: FiniteDuration = caseSystem.config.persistence.queryDB.transactionGroupLatency
+
+  val recordCache: CaseRecordCache = new CaseRecordCache(caseSystem.config.persistence.queryDB.recordCacheSize, caseSystem.config.persistence.queryDB.recordCacheMaxRecordsPerCase)
+
+  override val offsetName: String = CaseEventSink.offsetName
+
+  override def getOffset: Future[Offset] = storage.getOffset(offsetName)
 
   override def createBatch(persistenceId: String): CaseEventBatch = new CaseEventBatch(this, persistenceId, storage)
 }
@@ -42,4 +57,5 @@ trait CaseEventMaterializer {
   lazy val caseInstanceId: String = batch.persistenceId
   lazy val dBTransaction: CaseStorageTransaction = batch.dBTransaction
   lazy val tenant: String = batch.tenant
+  lazy val recordCache: CaseRecordCache = batch.sink.recordCache
 }
@@ -23,10 +23,12 @@ import org.cafienne.cmmn.actorapi.event.migration.CaseDefinitionMigrated
 import org.cafienne.cmmn.actorapi.event.{CaseDefinitionApplied, CaseEvent, CaseModified}
 import org.cafienne.cmmn.instance.State
 import org.cafienne.persistence.querydb.materializer.cases.file.CaseFileProjection
-import org.cafienne.persistence.querydb.record.{CaseDefinitionRecord, CaseRecord, CaseRoleRecord}
+import org.cafienne.persistence.querydb.record.{CaseDefinitionRecord, CaseRecord, CaseRoleRecord, CaseStatisticsRecord}
 
 class CaseProjection(override val batch: CaseEventBatch, caseFileProjection: CaseFileProjection) extends CaseEventMaterializer with LazyLogging {
   private var caseInstance: Option[CaseRecord] = None
+  // The case record as it was in the database before this batch, used to update the case statistics
+  private var originalCaseInstance: Option[CaseRecord] = None
   private var caseDefinition: Option[CaseDefinitionRecord] = None
 
   def handleCaseEvent(event: CaseEvent): Unit = {
@@ -39,6 +41,10 @@ class CaseProjection(override val batch: CaseEventBatch, caseFileProjection: Cas
   }
 
   private def createCaseInstance(event: CaseDefinitionApplied): Unit = {
+    // A new case does not have any records yet; clear what may be left of a former case with the same id
+    recordCache.invalidate(caseInstanceId)
+    // When events are replayed, the case is already in the database, and then it is already counted in the statistics
+    this.originalCaseInstance = dBTransaction.getCaseInstance(caseInstanceId)
     upsertCaseDefinitionRecords(event)
     this.caseInstance = Some(CaseRecord(
       id = event.getCaseInstanceId,
@@ -85,6 +91,7 @@ class CaseProjection(override val batch: CaseEventBatch, caseFileProjection: Cas
         logger.whenDebugEnabled(logger.debug(s"Retrieving Case[$caseInstanceId] from database"))
         dBTransaction.getCaseInstance(caseInstanceId) match  {
           case Some(instance) =>
+            this.originalCaseInstance = Some(instance)
             this.caseInstance = Some(changer(instance))
           case None =>
             logger.error(s"Cannot find Case[$caseInstanceId] in database to handle ${event.getClass.getSimpleName}.\nEventBatch has ${batch.events.size} events:\n- ${batch.events.map(e => e.event.getDescription).mkString("\n- ")}\n=============\n")
@@ -98,5 +105,13 @@ class CaseProjection(override val batch: CaseEventBatch, caseFileProjection: Cas
   def prepareCommit(): Unit = {
     this.caseInstance.foreach(instance => dBTransaction.upsert(instance))
     this.caseDefinition.foreach(instance => dBTransaction.upsert(instance))
+    updateStatistics()
+  }
+
+  /**
+    * Moves the case from the statistics of its original name and state to those of its new name and state.
+    */
+  private def updateStatistics(): Unit = {
+    CaseStatisticsRecord.delta(originalCaseInstance, caseInstance).foreach(delta => dBTransaction.updateStatistics(delta))
   }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.persistence.querydb.materializer.cases
+
+import org.cafienne.json.ValueMap
+import org.cafienne.persistence.querydb.record.{PlanItemRecord, TaskRecord}
+import org.cafienne.system.metrics.{CacheMetrics, MetricsMonitor}
+
+import java.util
+
+/**
+  * Keeps the plan items, tasks and case file that the case projection wrote for the most recently active cases,
+  * so that the next batch of events of such a case need not read them back from the query database.
+  * Records are added only after the batch has been committed, hence the cache never holds data that is not in the database.
+  * Batches of different cases can be handled in parallel, but those of a single case are always handled one after the other.
+  *
+  * Cases with more plan items and tasks than maxRecordsPerCase are removed from the cache,
+  * so that the memory taken by the cache is bounded by the number of records, and not only by the number of cases.
+  *
+  * @param maxSize           Maximum number of cases kept in the cache; 0 disables the cache
+  * @param maxRecordsPerCase Maximum number of plan item and task records kept for a single case
+  */
+class CaseRecordCache(maxSize: Int, maxRecordsPerCase: Int = 1000) {
+  private val enabled = maxSize > 0
+  private val metrics: CacheMetrics = MetricsMonitor.addCache("query-db-case-records").withSize(() => size)
+
+  private val cases = new util.LinkedHashMap[String, CachedCase](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: util.Map.Entry[String, CachedCase]): Boolean = {
+      val evict = this.size() > maxSize
+      if (evict) metrics.eviction()
+      evict
+    }
+  }
+
+  def size: Int = cases.synchronized(cases.size())
+
+  private def get(caseInstanceId: String): Option[CachedCase] = {
+    if (!enabled) return None
+    Option(cases.synchronized(cases.get(caseInstanceId)))
+  }
+
+  private def lookup[T](result: Option[T]): Option[T] = {
+    if (enabled) {
+      if (result.isDefined) metrics.hit() else metrics.miss()
+    }
+    result
+  }
+
+  def getPlanItem(caseInstanceId: String, planItemId: String): Option[PlanItemRecord] = lookup(get(caseInstanceId).flatMap(_.planItems.get(planItemId)))
+
+  def getTask(caseInstanceId: String, taskId: String): Option[TaskRecord] = lookup(get(caseInstanceId).flatMap(_.tasks.get(taskId)))
+
+  /**
+    * Removes the case file from the cache and returns it. The case file projection modifies the json in place,
+    * and it is only put back into the cache when the modifications have been committed.
+    */
+  def takeCaseFile(caseInstanceId: String): Option[ValueMap] = lookup(get(caseInstanceId).flatMap(cached => {
+    val caseFile = cached.caseFile
+    cached.caseFile = None
+    caseFile
+  }))
+
+  /**
+    * Add the committed records of the case to the cache.
+    */
+  def update(caseInstanceId: String, planItems: Iterable[PlanItemRecord], tasks: Iterable[TaskRecord], caseFile: Option[ValueMap]): Unit = {
+    if (!enabled) return
+    val cached = cases.synchronized(cases.computeIfAbsent(caseInstanceId, _ => new CachedCase))
+    planItems.foreach(item => cached.planItems.put(item.id, item))
+    tasks.foreach(task => cached.tasks.put(task.id, task))
+    caseFile.foreach(json => cached.caseFile = Some(json))
+    if (cached.planItems.size + cached.tasks.size > maxRecordsPerCase) {
+      // Too large to keep; the next batch of this case reads its records from the database
+      cases.synchronized(cases.remove(caseInstanceId, cached))
+      metrics.eviction()
+    }
+  }
+
+  def removePlanItem(caseInstanceId: String, planItemId: String): Unit = get(caseInstanceId).foreach(_.planItems.remove(planItemId))
+
+  def removeTask(caseInstanceId: String, taskId: String): Unit = get(caseInstanceId).foreach(_.tasks.remove(taskId))
+
+  /**
+    * Remove all records of the case from the cache, e.g. because the records have been changed outside of the projection.
+    */
+  def invalidate(caseInstanceId: String): Unit = {
+    if (enabled) cases.synchronized(cases.remove(caseInstanceId))
+  }
+}
+
+private class CachedCase {
+  val planItems = scala.collection.mutable.HashMap[String, PlanItemRecord]()
+  val tasks = scala.collection.mutable.HashMap[String, TaskRecord]()
+  var caseFile: Option[ValueMap] = None
+}
@@ -34,8 +34,24 @@ trait CaseStorageTransaction extends QueryDBTransaction {
 
   def upsert(record: CaseFileRecord): Unit
 
+  def upsert(record: CaseFileItemRecord): Unit
+
+  def deleteCaseFileItem(caseInstanceId: String, name: String): Unit
+
+  def deleteCaseFileItems(caseInstanceId: String): Unit
+
   def upsert(record: CaseBusinessIdentifierRecord): Unit
 
+  /**
+    * Applies the difference in the record to the case statistics
+    */
+  def updateStatistics(delta: CaseStatisticsRecord): Unit
+
+  /**
+    * Applies the difference in the record to the task statistics
+    */
+  def updateStatistics(delta: TaskStatisticsRecord): Unit
+
   def upsert(record: CaseRoleRecord): Unit
 
   def upsert(record: CaseTeamUserRecord): Unit
@@ -62,9 +78,11 @@ trait CaseStorageTransaction extends QueryDBTransaction {
 
   def getCaseFile(caseInstanceId: String): Option[CaseFileRecord]
 
+  def getCaseFileItems(caseInstanceId: String): Seq[CaseFileItemRecord]
+
   def getCaseInstance(caseInstanceId: String): Option[CaseRecord]
 
   def getTask(taskId: String): Option[TaskRecord]
 
-  def updateCaseUserInformation(caseId: String, info: Seq[NewUserInformation], offset: OffsetRecord): Unit
+  def updateCaseUserInformation(caseId: String, info: Seq[NewUserInformation], offsets: Seq[OffsetRecord]): Unit
 }
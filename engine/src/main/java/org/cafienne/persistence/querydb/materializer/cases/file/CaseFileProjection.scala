@@ -20,20 +20,32 @@ package org.cafienne.persistence.querydb.materializer.cases.file
 import com.typesafe.scalalogging.LazyLogging
 import org.cafienne.cmmn.actorapi.event.file._
 import org.cafienne.cmmn.actorapi.event.migration.{CaseFileItemDropped, CaseFileItemMigrated}
-import org.cafienne.json.{JSONReader, ValueMap}
-import org.cafienne.persistence.querydb.materializer.cases.{CaseEventBatch, CaseStorageTransaction}
-import org.cafienne.persistence.querydb.record.{CaseBusinessIdentifierRecord, CaseFileRecord}
+import org.cafienne.json.{JSONReader, Value, ValueMap}
+import org.cafienne.persistence.querydb.materializer.cases.{CaseEventBatch, CaseRecordCache, CaseStorageTransaction}
+import org.cafienne.persistence.querydb.record.{CaseBusinessIdentifierRecord, CaseFileItemRecord, CaseFileRecord}
+
+import scala.jdk.CollectionConverters._
 
 class CaseFileProjection(batch: CaseEventBatch) extends LazyLogging {
   lazy val dBTransaction: CaseStorageTransaction = batch.dBTransaction
   lazy val caseInstanceId: String = batch.caseInstanceId
   lazy val tenant: String = batch.tenant
+  lazy val recordCache: CaseRecordCache = batch.sink.recordCache
+  lazy val storeItems: Boolean = batch.sink.caseSystem.config.persistence.queryDB.storeCaseFileItems
 
   private val businessIdentifiers = scala.collection.mutable.Set[CaseBusinessIdentifierRecord]()
   private val bufferedCaseFileEvents = new CaseFileEventBuffer()
   private var caseFile: Option[ValueMap] = None
+  // Names of the top level case file items that have changed in this batch
+  private val changedItems = scala.collection.mutable.Set[String]()
+  // Whether the case file is (partially) stored in another format than the configured one
+  private var convertStorage = false
+  private var isNewCase = false
 
-  def handleCaseCreation(): Unit = setCaseFile(new ValueMap()) // Always create an empty case file
+  def handleCaseCreation(): Unit = {
+    isNewCase = true
+    setCaseFile(new ValueMap()) // Always create an empty case file
+  }
 
   def handleCaseFileEvent(event: CaseFileEvent): Unit = {
     event match {
@@ -55,6 +67,7 @@ class CaseFileProjection(batch: CaseEventBatch) extends LazyLogging {
 
   private def handleCaseFileItemEvent(event: CaseFileItemTransitioned): Unit = {
     bufferedCaseFileEvents.addEvent(event)
+    changedItems += event.getPath.getRootName
     // Fetch the existing case file data, so that we can apply the events to it later on
     //TODO OW: response is not used what is done here that is expected elsewhere?
     getCaseFile(caseInstanceId)
@@ -62,6 +75,8 @@ class CaseFileProjection(batch: CaseEventBatch) extends LazyLogging {
 
   private def handleCaseFileMigration(event: CaseFileItemMigrated): Unit = {
     // Fetch the existing case file data, and then change the existing path to which the event is pointing into the new one
+    changedItems += event.formerPath.getRootName
+    changedItems += event.path.getRootName
     val json = getCaseFile(caseInstanceId)
     val parent = event.formerPath.resolveParent(json)
     parent.put(event.path.name, parent.get(event.formerPath.name))
@@ -70,6 +85,7 @@ class CaseFileProjection(batch: CaseEventBatch) extends LazyLogging {
 
   private def handleCaseFileDropped(event: CaseFileItemDropped): Unit = {
     // Fetch the existing case file data, and then change the existing path to which the event is pointing into the new one
+    changedItems += event.path.getRootName
     val json = getCaseFile(caseInstanceId)
     val parent = event.path.resolveParent(json)
     parent.getValue.remove(event.path.name)
@@ -82,25 +98,57 @@ class CaseFileProjection(batch: CaseEventBatch) extends LazyLogging {
 
   private def getCaseFile(caseInstanceId: String): ValueMap = {
     if (this.caseFile.isEmpty) {
-      logger.whenDebugEnabled(logger.debug("Retrieving casefile caseInstanceId={} from database", caseInstanceId))
-      val json: ValueMap = dBTransaction.getCaseFile(caseInstanceId).fold(new ValueMap())(record => JSONReader.parse(record.data).asInstanceOf[ValueMap])
+      val json: ValueMap = recordCache.takeCaseFile(caseInstanceId).getOrElse(readCaseFile())
       setCaseFile(json)
     } else {
      this.caseFile.get
     }
   }
 
+  private def readCaseFile(): ValueMap = {
+    logger.whenDebugEnabled(logger.debug("Retrieving casefile caseInstanceId={} from database", caseInstanceId))
+    val record = dBTransaction.getCaseFile(caseInstanceId)
+    val json: ValueMap = record.fold(new ValueMap())(record => JSONReader.parse(record.data).asInstanceOf[ValueMap])
+    // Item records only exist next to an empty case file document (i.e., in items mode, or left over from it)
+    val items = if (record.exists(_.mayHaveItems)) dBTransaction.getCaseFileItems(caseInstanceId) else Seq()
+    convertStorage = if (storeItems) !json.getValue.isEmpty else items.nonEmpty
+    items.foreach(item => json.put(item.name, JSONReader.parse[Value[_]](item.data)))
+    json
+  }
+
   def prepareCommit(): Unit = {
     // Update case file and identifiers
-    this.caseFile.map(getUpdatedCaseFile).foreach(caseFile => dBTransaction.upsert(caseFile))
+    this.caseFile.foreach(caseFileInProgress => {
+      bufferedCaseFileEvents.update(caseFileInProgress)
+      if (storeItems) {
+        writeCaseFileItems(caseFileInProgress)
+      } else {
+        dBTransaction.upsert(CaseFileRecord(caseInstanceId, tenant, caseFileInProgress.toString))
+        if (convertStorage) dBTransaction.deleteCaseFileItems(caseInstanceId)
+      }
+    })
     this.businessIdentifiers.toSeq.foreach(item => dBTransaction.upsert(item))
   }
 
   /**
-    * Depending on the presence of CaseFileEvents this will add a new CaseFileRecord
+    * Keep the updated case file for the next batch of events of this case
     */
-  private def getUpdatedCaseFile(caseFileInProgress: ValueMap): CaseFileRecord = {
-    bufferedCaseFileEvents.update(caseFileInProgress)
-    CaseFileRecord(caseInstanceId, tenant, caseFileInProgress.toString)
+  def committed(): Unit = recordCache.update(caseInstanceId, Seq(), Seq(), caseFile)
+
+  /**
+    * Only writes the top level case file items that have changed. The case file record itself remains as an empty document.
+    */
+  private def writeCaseFileItems(caseFileInProgress: ValueMap): Unit = {
+    if (isNewCase || convertStorage) {
+      dBTransaction.upsert(CaseFileRecord(caseInstanceId, tenant, "{}"))
+    }
+    val items = if (convertStorage) changedItems ++ caseFileInProgress.fieldNames().asScala else changedItems
+    items.foreach(name => {
+      if (caseFileInProgress.has(name)) {
+        dBTransaction.upsert(CaseFileItemRecord(caseInstanceId, tenant, name, caseFileInProgress.get(name).toString))
+      } else {
+        dBTransaction.deleteCaseFileItem(caseInstanceId, name)
+      }
+    })
   }
 }
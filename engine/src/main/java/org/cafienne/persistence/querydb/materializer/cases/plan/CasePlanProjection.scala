@@ -24,12 +24,16 @@ import org.cafienne.cmmn.actorapi.event.plan._
 import org.cafienne.humantask.actorapi.event._
 import org.cafienne.humantask.actorapi.event.migration.{HumanTaskDropped, HumanTaskMigrated}
 import org.cafienne.persistence.querydb.materializer.cases.{CaseEventBatch, CaseEventMaterializer}
-import org.cafienne.persistence.querydb.record.{PlanItemRecord, TaskRecord}
+import org.cafienne.persistence.querydb.record.{PlanItemRecord, TaskRecord, TaskStatisticsRecord}
 
 class CasePlanProjection(override val batch: CaseEventBatch) extends CaseEventMaterializer with LazyLogging {
 
   private val planItems = scala.collection.mutable.HashMap[String, PlanItemRecord]()
   private val tasks = scala.collection.mutable.HashMap[String, TaskRecord]()
+  // The task records as they were before this batch (None for new tasks), used to update the task statistics
+  private val originalTasks = scala.collection.mutable.HashMap[String, Option[TaskRecord]]()
+  private var committedPlanItems: Iterable[PlanItemRecord] = Seq()
+  private var committedTasks: Iterable[TaskRecord] = Seq()
 
   def handleCasePlanEvent(event: CasePlanEvent): Unit = {
     event match {
@@ -44,6 +48,7 @@ class CasePlanProjection(override val batch: CaseEventBatch) extends CaseEventMa
   private def handlePlanItemEvent(event: CasePlanEvent): Unit = {
     event match {
       case dropped: PlanItemDropped =>
+        recordCache.removePlanItem(caseInstanceId, dropped.getPlanItemId)
         dBTransaction.deletePlanItemRecord(dropped.getPlanItemId)
       case _ =>
         event match {
@@ -75,9 +80,12 @@ class CasePlanProjection(override val batch: CaseEventBatch) extends CaseEventMa
       case Some(item) =>
         logger.whenDebugEnabled(logger.debug(s"Found plan item $planItemId in current transaction cache"))
         Some(item)
-      case None =>
-        logger.whenDebugEnabled(logger.debug(s"Retrieving plan item $planItemId from database"))
-        dBTransaction.getPlanItem(planItemId)
+      case None => recordCache.getPlanItem(caseInstanceId, planItemId) match {
+        case Some(item) => Some(item)
+        case None =>
+          logger.whenDebugEnabled(logger.debug(s"Retrieving plan item $planItemId from database"))
+          dBTransaction.getPlanItem(planItemId)
+      }
     }
   }
 
@@ -85,6 +93,7 @@ class CasePlanProjection(override val batch: CaseEventBatch) extends CaseEventMa
     // See above comments. HumanTaskActivated has replaced HumanTaskCreated.
     //  We check here to see if our version is an old or a new one, by checking whether
     //  a task is already available in the transaction (that means HumanTaskCreated was still there, the old format).
+    registerOriginalTask(evt.getTaskId)
     val updatedTask = this.tasks.get(evt.getTaskId) match {
       case None => TaskMerger.create(evt) // New format. TaskMerger will create the task
       case Some(task) => TaskMerger(evt, task) // Old format, must have been created in same transaction through HumanTaskCreated, fine too
@@ -93,12 +102,18 @@ class CasePlanProjection(override val batch: CaseEventBatch) extends CaseEventMa
   }
 
   private def deprecatedCreateTask(evt: HumanTaskCreated): Unit = {
+    registerOriginalTask(evt.getTaskId)
     this.tasks.put(evt.getTaskId, TaskMerger.create(evt))
   }
 
   private def handleHumanTaskEvent(event: HumanTaskEvent): Unit = {
     event match {
-      case dropped: HumanTaskDropped => dBTransaction.deleteTaskRecord(dropped.getTaskId) // No need trying to fetch
+      case dropped: HumanTaskDropped =>
+        // Fetch the task only to know its original contribution to the task statistics
+        fetchTask(dropped.getTaskId)
+        this.tasks.remove(dropped.getTaskId)
+        recordCache.removeTask(caseInstanceId, dropped.getTaskId)
+        dBTransaction.deleteTaskRecord(dropped.getTaskId)
       case _ =>
         // Fetch the task
         val fTask: Option[TaskRecord] = {
@@ -129,18 +144,54 @@ class CasePlanProjection(override val batch: CaseEventBatch) extends CaseEventMa
     }
   }
 
+  /**
+    * Keeps the stored version of a task that is created, in case the events are replayed, so that it is not counted twice in the statistics.
+    */
+  private def registerOriginalTask(taskId: String): Unit = {
+    if (!originalTasks.contains(taskId)) {
+      originalTasks.put(taskId, readTask(taskId))
+    }
+  }
+
   private def fetchTask(taskId: String): Option[TaskRecord] = {
     this.tasks.get(taskId) match {
+      case None if originalTasks.contains(taskId) => None // Task has been dropped in this batch
+      case None =>
+        val task = readTask(taskId)
+        originalTasks.put(taskId, task)
+        task
+      case Some(task) => Some(task)
+    }
+  }
+
+  private def readTask(taskId: String): Option[TaskRecord] = {
+    recordCache.getTask(caseInstanceId, taskId) match {
+      case Some(task) => Some(task)
       case None =>
         logger.whenDebugEnabled(logger.debug("Retrieving task " + taskId + " from database"))
         dBTransaction.getTask(taskId)
-      case Some(task) => Some(task)
     }
   }
 
   def prepareCommit(caseModified: CaseModified): Unit = {
     // Add lastModified field to plan items and tasks
-    this.planItems.values.map(item => PlanItemMerger.merge(caseModified, item)).foreach(item => dBTransaction.upsert(item))
-    this.tasks.values.map(current => TaskMerger(caseModified, current)).foreach(item => dBTransaction.upsert(item))
+    committedPlanItems = this.planItems.values.map(item => PlanItemMerger.merge(caseModified, item)).toSeq
+    committedTasks = this.tasks.values.map(current => TaskMerger(caseModified, current)).toSeq
+    committedPlanItems.foreach(item => dBTransaction.upsert(item))
+    committedTasks.foreach(item => dBTransaction.upsert(item))
+    updateTaskStatistics()
   }
+
+  /**
+    * Open tasks are counted per case, role and assignee. Compare the tasks changed in this batch with their original
+    * version, and apply the difference to the task statistics.
+    */
+  private def updateTaskStatistics(): Unit = {
+    TaskStatisticsRecord.delta(originalTasks.values.flatten, tasks.values).foreach(delta => dBTransaction.updateStatistics(delta))
+  }
+
+  /**
+    * Keep the records that have been written to the database for the next batch of events of this case
+    */
+  def committed(): Unit = recordCache.update(caseInstanceId, committedPlanItems, committedTasks, None)
 }
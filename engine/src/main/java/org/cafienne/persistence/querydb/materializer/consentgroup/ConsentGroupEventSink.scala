@@ -25,10 +25,12 @@ import org.cafienne.system.CaseSystem
 
 import scala.concurrent.Future
 
-class ConsentGroupEventSink(val caseSystem: CaseSystem, storage: QueryDBStorage) extends QueryDBEventSink with LazyLogging {
+class ConsentGroupEventSink(val caseSystem: CaseSystem, val storage: QueryDBStorage) extends QueryDBEventSink with LazyLogging {
   override val tag: String = ConsentGroupEvent.TAG
 
-  override def getOffset: Future[Offset] = storage.getOffset(ConsentGroupEventSink.offsetName)
+  override val offsetName: String = ConsentGroupEventSink.offsetName
+
+  override def getOffset: Future[Offset] = storage.getOffset(offsetName)
 
   override def createBatch(persistenceId: String): ConsentGroupEventBatch = new ConsentGroupEventBatch(this, persistenceId, storage)
 }
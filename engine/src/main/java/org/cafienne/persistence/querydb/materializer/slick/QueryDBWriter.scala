@@ -18,6 +18,7 @@
 package org.cafienne.persistence.querydb.materializer.slick
 
 import org.apache.pekko.persistence.query.Offset
+import org.cafienne.infrastructure.cqrs.offset.OffsetRecord
 import org.cafienne.persistence.infrastructure.jdbc.cqrs.JDBCOffsetStorage
 import org.cafienne.persistence.querydb.materializer.QueryDBStorage
 import org.cafienne.persistence.querydb.materializer.cases.CaseStorageTransaction
@@ -35,10 +36,14 @@ class QueryDBWriter(val queryDB: QueryDB) extends QueryDBStorage {
 
   override def createTenantTransaction(tenant: String): TenantStorageTransaction = new SlickTenantTransaction(this)
 
-  override def getOffset(offsetName: String): Future[Offset] = new JDBCOffsetStorage {
+  override def getOffset(offsetName: String): Future[Offset] = offsetStorage(offsetName).getOffset
+
+  override def storeOffset(offset: OffsetRecord): Future[Unit] = offsetStorage(offset.name).setOffset(offset)
+
+  private def offsetStorage(offsetName: String): JDBCOffsetStorage = new JDBCOffsetStorage {
     override val tablePrefix: String = queryDB.tablePrefix
     override val storageName: String = offsetName
     override lazy val dbConfig = queryDB.dbConfig
     override implicit val ec: ExecutionContext = db.ioExecutionContext
-  }.getOffset
+  }
 }
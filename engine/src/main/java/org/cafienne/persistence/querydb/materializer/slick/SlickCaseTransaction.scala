@@ -28,29 +28,36 @@ import org.cafienne.persistence.querydb.schema.table.{CaseTables, TaskTables}
 class SlickCaseTransaction(val writer: QueryDBWriter) extends SlickQueryDBTransaction
   with CaseTables
   with TaskTables
+  with StatisticsUpdates
   with CaseStorageTransaction {
 
   import dbConfig.profile.api._
 
-  override def upsert(record: CaseRecord): Unit = addStatement(TableQuery[CaseInstanceTable].insertOrUpdate(record))
+  override def upsert(record: CaseRecord): Unit = addUpsert(TableQuery[CaseInstanceTable], record)
 
-  override def upsert(record: CaseDefinitionRecord): Unit = addStatement(TableQuery[CaseInstanceDefinitionTable].insertOrUpdate(record))
+  override def upsert(record: CaseDefinitionRecord): Unit = addUpsert(TableQuery[CaseInstanceDefinitionTable], record)
 
-  override def upsert(record: TaskRecord): Unit = addStatement(TableQuery[TaskTable].insertOrUpdate(record))
+  override def upsert(record: TaskRecord): Unit = addUpsert(TableQuery[TaskTable], record)
 
-  override def upsert(record: PlanItemRecord): Unit = addStatement(TableQuery[PlanItemTable].insertOrUpdate(record))
+  override def upsert(record: PlanItemRecord): Unit = addUpsert(TableQuery[PlanItemTable], record)
 
-  override def upsert(record: CaseFileRecord): Unit = addStatement(TableQuery[CaseFileTable].insertOrUpdate(record))
+  override def upsert(record: CaseFileRecord): Unit = addUpsert(TableQuery[CaseFileTable], record)
 
-  override def upsert(record: CaseBusinessIdentifierRecord): Unit = addStatement(TableQuery[CaseBusinessIdentifierTable].insertOrUpdate(record))
+  override def upsert(record: CaseFileItemRecord): Unit = addUpsert(TableQuery[CaseFileItemTable], record)
 
-  override def upsert(record: CaseRoleRecord): Unit = addStatement(TableQuery[CaseInstanceRoleTable].insertOrUpdate(record))
+  override def upsert(record: CaseBusinessIdentifierRecord): Unit = addUpsert(TableQuery[CaseBusinessIdentifierTable], record)
 
-  override def upsert(record: CaseTeamUserRecord): Unit = addStatement(TableQuery[CaseInstanceTeamUserTable].insertOrUpdate(record))
+  override def updateStatistics(delta: CaseStatisticsRecord): Unit = updateCaseStatistics(delta)
 
-  override def upsert(record: CaseTeamTenantRoleRecord): Unit = addStatement(TableQuery[CaseInstanceTeamTenantRoleTable].insertOrUpdate(record))
+  override def updateStatistics(delta: TaskStatisticsRecord): Unit = updateTaskStatistics(delta)
 
-  override def upsert(record: CaseTeamGroupRecord): Unit = addStatement(TableQuery[CaseInstanceTeamGroupTable].insertOrUpdate(record))
+  override def upsert(record: CaseRoleRecord): Unit = addUpsert(TableQuery[CaseInstanceRoleTable], record)
+
+  override def upsert(record: CaseTeamUserRecord): Unit = addUpsert(TableQuery[CaseInstanceTeamUserTable], record)
+
+  override def upsert(record: CaseTeamTenantRoleRecord): Unit = addUpsert(TableQuery[CaseInstanceTeamTenantRoleTable], record)
+
+  override def upsert(record: CaseTeamGroupRecord): Unit = addUpsert(TableQuery[CaseInstanceTeamGroupTable], record)
 
   override def delete(record: CaseTeamUserRecord): Unit = addStatement(
     TableQuery[CaseInstanceTeamUserTable]
@@ -91,6 +98,14 @@ class SlickCaseTransaction(val writer: QueryDBWriter) extends SlickQueryDBTransa
     addStatement(TableQuery[PlanItemTable].filter(_.id === planItemId).delete)
   }
 
+  override def deleteCaseFileItem(caseInstanceId: String, name: String): Unit = {
+    addStatement(TableQuery[CaseFileItemTable].filter(_.caseInstanceId === caseInstanceId).filter(_.name === name).delete)
+  }
+
+  override def deleteCaseFileItems(caseInstanceId: String): Unit = {
+    addStatement(TableQuery[CaseFileItemTable].filter(_.caseInstanceId === caseInstanceId).delete)
+  }
+
   override def removeCaseRoles(caseInstanceId: String): Unit = {
     addStatement(TableQuery[CaseInstanceRoleTable].filter(_.caseInstanceId === caseInstanceId).delete)
   }
@@ -107,11 +122,15 @@ class SlickCaseTransaction(val writer: QueryDBWriter) extends SlickQueryDBTransa
     runSync(TableQuery[CaseFileTable].filter(_.caseInstanceId === caseInstanceId).result.headOption)
   }
 
+  override def getCaseFileItems(caseInstanceId: String): Seq[CaseFileItemRecord] = {
+    runSync(TableQuery[CaseFileItemTable].filter(_.caseInstanceId === caseInstanceId).result)
+  }
+
   override def getTask(taskId: String): Option[TaskRecord] = {
     runSync(TableQuery[TaskTable].filter(_.id === taskId).result.headOption)
   }
 
-  override def updateCaseUserInformation(caseId: String, info: Seq[NewUserInformation], offset: OffsetRecord): Unit = {
+  override def updateCaseUserInformation(caseId: String, info: Seq[NewUserInformation], offsets: Seq[OffsetRecord]): Unit = {
     // When the user id is updated, then all records relating to the case instance need to be updated
     //  - Case itself on [createdBy, modifiedBy]
     //  - CaseDefinition on [modifiedBy]
@@ -147,7 +166,7 @@ class SlickCaseTransaction(val writer: QueryDBWriter) extends SlickQueryDBTransa
     }) ++ info.map(user => {
       // Update 'owner' field in task table
       (for {cases <- TableQuery[TaskTable].filter(r => r.caseInstanceId === caseId && r.owner === user.existingUserId)} yield cases.owner).update(user.newUserId)
-    }) ++ addOffsetRecord(offset)
+    }) ++ offsets.flatMap(addOffsetRecord)
 
     // Now retrieve the case team updates, combine it with the above statements and run it
     runSync(DBIO.sequence(updateQueries ++ constructCaseTeamUserIdUpdates(caseId, info)).transactionally)
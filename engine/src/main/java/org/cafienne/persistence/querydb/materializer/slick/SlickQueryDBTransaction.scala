@@ -21,6 +21,7 @@ import org.cafienne.cmmn.actorapi.command.platform.NewUserInformation
 import org.cafienne.infrastructure.cqrs.offset.OffsetRecord
 import org.cafienne.persistence.infrastructure.jdbc.cqrs.OffsetStoreTables
 import org.cafienne.persistence.querydb.materializer.QueryDBTransaction
+import org.cafienne.persistence.querydb.materializer.slick.SlickQueryDBTransaction.StatementBuffer
 
 import scala.collection.mutable
 import scala.collection.mutable.ListBuffer
@@ -39,29 +40,69 @@ trait SlickQueryDBTransaction
 
   implicit val ec: ExecutionContext = db.ioExecutionContext // TODO: Is this the best execution context to pick?
 
-  private val dbStatements: mutable.ListBuffer[DBIO[_]] = ListBuffer[DBIO[_]]()
+  private val dbStatements: StatementBuffer = new StatementBuffer
+  private var grouped: Boolean = false
 
-  def addStatement(action: dbConfig.profile.api.DBIO[_]): Unit = dbStatements += action
+  def addStatement(action: dbConfig.profile.api.DBIO[_]): Unit = dbStatements.add(action)
+
+  /**
+    * Upserts into the same table are collected, so that they are written with a single JDBC batch statement.
+    */
+  def addUpsert[T <: Table[_]](table: TableQuery[T], record: T#TableElementType): Unit = {
+    dbStatements.addUpsert(table.baseTableRow.tableName, record, records => {
+      val typedRecords = records.asInstanceOf[Seq[T#TableElementType]]
+      if (typedRecords.size == 1) table.insertOrUpdate(typedRecords.head) else table.insertOrUpdateAll(typedRecords)
+    })
+  }
+
+  /**
+    * Counters are written at the end of the transaction, with a single statement per key that holds the sum of the deltas.
+    */
+  def addCounter[D](key: String, delta: D, merge: (D, D) => D, counterWriter: D => DBIO[_]): Unit = {
+    dbStatements.addCounter(key, delta, merge, counterWriter)
+  }
 
   private val DB_TIMEOUT: FiniteDuration = 21.seconds
 
   def runSync[R](action: DBIOAction[R, NoStream, Nothing]): R = Await.result(db.run(action), DB_TIMEOUT)
 
-  override def upsert(record: OffsetRecord): Unit = addStatement(TableQuery[OffsetStoreTable].insertOrUpdate(record))
+  override def upsert(record: OffsetRecord): Unit = dbStatements.addOffset(record)
 
   def commit(): Unit = {
-    val transaction = dbStatements.toSeq
+    if (grouped) {
+      // The statements are kept until the group commits, see commitGroup
+      return
+    }
+    val transaction = dbStatements.actions(writeOffset)
     // Clear statement buffer (the "transaction")
     dbStatements.clear()
     // Run the actions
     runSync(DBIO.sequence(transaction).transactionally)
   }
 
+  override def joinGroup(): Boolean = {
+    grouped = true
+    true
+  }
+
+  override def commitGroup(members: Seq[QueryDBTransaction]): Unit = {
+    val group = new StatementBuffer
+    members.foreach {
+      case member: SlickQueryDBTransaction =>
+        group.addAll(member.dbStatements)
+        member.dbStatements.clear()
+      case other => throw new IllegalArgumentException(s"Cannot commit a transaction of type ${other.getClass.getName} in a group of Slick transactions")
+    }
+    runSync(DBIO.sequence(group.actions(writeOffset)).transactionally)
+  }
+
   def convertUserUpdate(info: Seq[NewUserInformation]): Set[(String, Set[String])] = {
     val newUserIds: Set[String] = info.map(_.newUserId).toSet
     newUserIds.map(newUserId => (newUserId, info.filter(_.newUserId == newUserId).map(_.existingUserId).toSet))
   }
 
+  private def writeOffset(offset: OffsetRecord): DBIO[_] = TableQuery[OffsetStoreTable].insertOrUpdate(offset)
+
   //  var nr = 0L
   def addOffsetRecord(offset: OffsetRecord): Seq[DBIO[_]] = {
     //    println(s"$nr: Updating $offsetName to $offset")
@@ -69,3 +110,94 @@ trait SlickQueryDBTransaction
     Seq(TableQuery[OffsetStoreTable].insertOrUpdate(offset))
   }
 }
+
+object SlickQueryDBTransaction {
+
+  import slick.dbio.DBIO
+
+  private trait BufferedStatement {
+    def action: DBIO[_]
+
+    def addTo(buffer: StatementBuffer): Unit
+  }
+
+  private class SingleStatement(val action: DBIO[_]) extends BufferedStatement {
+    override def addTo(buffer: StatementBuffer): Unit = buffer.add(action)
+  }
+
+  private class UpsertBatch(val tableName: String, writer: Seq[Any] => DBIO[_]) extends BufferedStatement {
+    val records: ListBuffer[Any] = ListBuffer[Any]()
+
+    override def action: DBIO[_] = writer(records.toSeq)
+
+    override def addTo(buffer: StatementBuffer): Unit = records.foreach(record => buffer.addUpsert(tableName, record, writer))
+  }
+
+  private class Counter(val key: String, var delta: Any, merge: (Any, Any) => Any, writer: Any => DBIO[_]) {
+    def action: DBIO[_] = writer(delta)
+
+    def add(other: Any): Unit = delta = merge(delta, other)
+
+    def addTo(buffer: StatementBuffer): Unit = buffer.addCounter[Any](key, delta, merge, writer)
+  }
+
+  /**
+    * Keeps the statements in the order in which they are added, but joins upserts into the same table into one batch.
+    * Upserts are only joined if no other statement has been added after the batch was started,
+    * as the other statement may relate to the same records (e.g. a delete).
+    * Counters (e.g. statistics) are summed per key, and written after the statements, ordered by their key,
+    * so that concurrent transactions lock shared counter rows briefly and in the same order.
+    * Offset records are written at the end of the transaction, and only the last offset with a certain name is written.
+    */
+  private[slick] class StatementBuffer {
+    private val statements: ListBuffer[BufferedStatement] = ListBuffer[BufferedStatement]()
+    private val openUpserts: mutable.Map[String, UpsertBatch] = mutable.HashMap[String, UpsertBatch]()
+    private val counters: mutable.Map[String, Counter] = mutable.HashMap[String, Counter]()
+    private val offsets: mutable.Map[String, OffsetRecord] = mutable.LinkedHashMap[String, OffsetRecord]()
+
+    def add(action: DBIO[_]): Unit = {
+      openUpserts.clear()
+      statements += new SingleStatement(action)
+    }
+
+    /**
+      * Adds a record to the upsert batch of the table. The writer must be able to write all records of the batch.
+      */
+    def addUpsert(tableName: String, record: Any, writer: Seq[Any] => DBIO[_]): Unit = {
+      openUpserts.getOrElseUpdate(tableName, {
+        val newBatch = new UpsertBatch(tableName, writer)
+        statements += newBatch
+        newBatch
+      }).records += record
+    }
+
+    /**
+      * Adds the delta to the counter with the key. The writer must write the sum of all deltas of the key.
+      */
+    def addCounter[D](key: String, delta: D, merge: (D, D) => D, writer: D => DBIO[_]): Unit = {
+      counters.get(key) match {
+        case Some(counter) => counter.add(delta)
+        case None => counters.put(key, new Counter(key, delta, merge.asInstanceOf[(Any, Any) => Any], writer.asInstanceOf[Any => DBIO[_]]))
+      }
+    }
+
+    def addOffset(record: OffsetRecord): Unit = offsets.put(record.name, record)
+
+    def addAll(other: StatementBuffer): Unit = {
+      other.statements.foreach(_.addTo(this))
+      other.counters.values.foreach(_.addTo(this))
+      other.offsets.values.foreach(addOffset)
+    }
+
+    def actions(offsetWriter: OffsetRecord => DBIO[_]): Seq[DBIO[_]] = {
+      statements.map(_.action).toSeq ++ counters.values.toSeq.sortBy(_.key).map(_.action) ++ offsets.values.map(offsetWriter)
+    }
+
+    def clear(): Unit = {
+      statements.clear()
+      openUpserts.clear()
+      counters.clear()
+      offsets.clear()
+    }
+  }
+}
@@ -28,9 +28,9 @@ class SlickTenantTransaction(val writer: QueryDBWriter) extends SlickQueryDBTran
 
   import dbConfig.profile.api._
 
-  override def upsert(record: TenantRecord): Unit = addStatement(TableQuery[TenantTable].insertOrUpdate(record))
+  override def upsert(record: TenantRecord): Unit = addUpsert(TableQuery[TenantTable], record)
 
-  override def upsert(record: UserRoleRecord): Unit = addStatement(TableQuery[UserRoleTable].insertOrUpdate(record))
+  override def upsert(record: UserRoleRecord): Unit = addUpsert(TableQuery[UserRoleTable], record)
 
   override def delete(record: UserRoleRecord): Unit = {
     addStatement(TableQuery[UserRoleTable]
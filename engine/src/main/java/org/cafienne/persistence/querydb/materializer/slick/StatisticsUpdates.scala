@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.cafienne.persistence.querydb.materializer.slick
+
+import org.cafienne.persistence.querydb.record.{CaseStatisticsRecord, TaskStatisticsRecord}
+import org.cafienne.persistence.querydb.schema.table.{CaseTables, TaskTables}
+
+/**
+  * Statements that apply a difference to the counters in the statistics tables.
+  * The counters are incremented inside the database with a single upsert statement (instead of reading and writing them),
+  * so that transactions of parallel projections on different cases can safely update and insert the same counter.
+  * The deltas are collected per counter and written at the end of the transaction, in the order of the counter key,
+  * so that the (often shared) counter rows are locked only briefly and always in the same order.
+  */
+trait StatisticsUpdates extends CaseTables with TaskTables {
+  self: SlickQueryDBTransaction =>
+
+  import dbConfig.profile.api._
+
+  private def quote(identifier: String): String = dbConfig.profile.quoteIdentifier(identifier)
+
+  private lazy val isPostgres: Boolean = dbConfig.profile.isInstanceOf[slick.jdbc.PostgresProfile]
+  private lazy val caseStatisticsTable = TableQuery[CaseStatisticsTable].baseTableRow.tableName
+  private lazy val taskStatisticsTable = TableQuery[TaskStatisticsTable].baseTableRow.tableName
+  private lazy val caseStatisticsUpsert = upsertStatement(caseStatisticsTable, Seq("tenant", "case_name", "state"), Seq("instances", "with_failures"))
+  private lazy val taskStatisticsUpsert = upsertStatement(taskStatisticsTable, Seq("case_instance_id", "role", "assignee"), Seq("open_tasks"), others = Seq("tenant"))
+
+  def updateCaseStatistics(delta: CaseStatisticsRecord): Unit = {
+    addCounter[CaseStatisticsRecord](s"$caseStatisticsTable|${delta.tenant}|${delta.caseName}|${delta.state}", delta, _ plus _, incrementCaseStatistics)
+  }
+
+  def updateTaskStatistics(delta: TaskStatisticsRecord): Unit = {
+    addCounter[TaskStatisticsRecord](s"$taskStatisticsTable|${delta.caseInstanceId}|${delta.role}|${delta.assignee}", delta, _ plus _, writeTaskStatistics)
+  }
+
+  /**
+    * Statement that directly increments the counters, to be used when the delta is only known while running the transaction.
+    */
+  def incrementCaseStatistics(delta: CaseStatisticsRecord): DBIO[_] = {
+    if (delta.isEmpty) {
+      DBIO.successful(0)
+    } else {
+      increment(caseStatisticsUpsert, Seq(delta.tenant, delta.caseName, delta.state, delta.instances, delta.withFailures))
+    }
+  }
+
+  private def writeTaskStatistics(delta: TaskStatisticsRecord): DBIO[_] = {
+    if (delta.isEmpty) {
+      DBIO.successful(0)
+    } else {
+      val update = increment(taskStatisticsUpsert, Seq(delta.caseInstanceId, delta.role, delta.assignee, delta.tenant, delta.openTasks))
+      if (delta.openTasks < 0) {
+        // Keep the table small by removing the counters that dropped to zero
+        update.andThen(TableQuery[TaskStatisticsTable]
+          .filter(_.caseInstanceId === delta.caseInstanceId)
+          .filter(_.role === delta.role)
+          .filter(_.assignee === delta.assignee)
+          .filter(_.openTasks <= 0L)
+          .delete)
+      } else {
+        update
+      }
+    }
+  }
+
+  private def increment(statement: String, parameters: Seq[Any]): DBIO[Int] = SimpleDBIO { context =>
+    val preparedStatement = context.connection.prepareStatement(statement)
+    try {
+      parameters.zipWithIndex.foreach {
+        case (value: String, index) => preparedStatement.setString(index + 1, value)
+        case (value: Long, index) => preparedStatement.setLong(index + 1, value)
+        case (other, _) => throw new IllegalArgumentException(s"Unexpected statistics parameter of type ${other.getClass.getName}")
+      }
+      preparedStatement.executeUpdate()
+    } finally {
+      preparedStatement.close()
+    }
+  }
+
+  /**
+    * Creates the statement that inserts a counter row, or adds the values to the counters if the row already exists.
+    * Parameters are the keys, then the other columns, then the counters.
+    */
+  private def upsertStatement(tableName: String, keys: Seq[String], counters: Seq[String], others: Seq[String] = Seq()): String = {
+    val table = quote(tableName)
+    val columns = (keys ++ others ++ counters).map(quote)
+    val parameters = columns.map(_ => "?").mkString(", ")
+    if (isPostgres) {
+      val increments = counters.map(quote).map(c => s"$c = $table.$c + excluded.$c").mkString(", ")
+      s"insert into $table (${columns.mkString(", ")}) values ($parameters) on conflict (${keys.map(quote).mkString(", ")}) do update set $increments"
+    } else {
+      // Standard SQL merge, supported by SQL Server and H2. SQL Server needs a lock hint to make the merge atomic.
+      val lockHint = if (isSQLServer) " with (holdlock)" else ""
+      val matching = keys.map(quote).map(c => s"target.$c = source.$c").mkString(" and ")
+      val increments = counters.map(quote).map(c => s"$c = target.$c + source.$c").mkString(", ")
+      val terminator = if (isSQLServer) ";" else ""
+      s"merge into $table$lockHint as target using (values ($parameters)) as source (${columns.mkString(", ")}) on $matching " +
+        s"when matched then update set $increments " +
+        s"when not matched then insert (${columns.mkString(", ")}) values (${columns.map(c => s"source.$c").mkString(", ")})$terminator"
+    }
+  }
+}
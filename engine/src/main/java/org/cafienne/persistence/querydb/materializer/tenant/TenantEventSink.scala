@@ -25,10 +25,12 @@ import org.cafienne.tenant.actorapi.event.TenantEvent
 
 import scala.concurrent.Future
 
-class TenantEventSink(val caseSystem: CaseSystem, storage: QueryDBStorage) extends QueryDBEventSink with LazyLogging {
+class TenantEventSink(val caseSystem: CaseSystem, val storage: QueryDBStorage) extends QueryDBEventSink with LazyLogging {
   override val tag: String = TenantEvent.TAG
 
-  override def getOffset: Future[Offset] = storage.getOffset(TenantEventSink.offsetName)
+  override val offsetName: String = TenantEventSink.offsetName
+
+  override def getOffset: Future[Offset] = storage.getOffset(offsetName)
 
   override def createBatch(persistenceId: String): TenantEventBatch = new TenantEventBatch(this, persistenceId, storage)
 }
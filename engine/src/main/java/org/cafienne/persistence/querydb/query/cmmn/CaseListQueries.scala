@@ -17,16 +17,20 @@
 
 package org.cafienne.persistence.querydb.query.cmmn
 
-import org.cafienne.actormodel.identity.UserIdentity
+import org.cafienne.actormodel.identity.{PlatformUser, UserIdentity}
 import org.cafienne.persistence.infrastructure.jdbc.query.{Area, Sort}
 import org.cafienne.persistence.querydb.query.cmmn.filter.CaseFilter
+import org.cafienne.persistence.querydb.query.result.CaseList
 import org.cafienne.persistence.querydb.record._
 
 import scala.concurrent.Future
 
 trait CaseListQueries {
 
-  //  def getCasesStats(user: UserIdentity, tenant: Option[String], from: Int, numOfResults: Int, caseName: Option[String], status: Option[String]): Future[Seq[CaseList]] = ??? // GetCaseList
+  /**
+    * Returns the number of cases per case name in the tenants of the user, optionally filtered on tenant, case name and state.
+    */
+  def getCaseStatistics(user: PlatformUser, tenant: Option[String] = None, caseName: Option[String] = None, state: Option[String] = None): Future[Seq[CaseList]]
 
   def getCases(user: UserIdentity, filter: CaseFilter, area: Area = Area.Default, sort: Sort = Sort.NoSort): Future[Seq[CaseRecord]]
 }
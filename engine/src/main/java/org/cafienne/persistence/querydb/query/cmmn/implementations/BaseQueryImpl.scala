@@ -37,6 +37,7 @@ class BaseQueryImpl(val queryDB: QueryDB) extends TenantRegistrationQueries with
   val caseInstanceQuery = TableQuery[CaseInstanceTable]
   val caseDefinitionQuery = TableQuery[CaseInstanceDefinitionTable]
   val caseFileQuery = TableQuery[CaseFileTable]
+  val caseFileItemQuery = TableQuery[CaseFileItemTable]
   val caseIdentifiersQuery = TableQuery[CaseBusinessIdentifierTable]
 
   val planItemTableQuery = TableQuery[PlanItemTable]
@@ -21,9 +21,10 @@ class CaseInstanceQueriesImpl(queryDB: QueryDB)
       caseInstance <- getCaseInstance(caseInstanceId, user)
       caseTeam <- getCaseTeam(caseInstanceId, user)
       caseFile <- db.run(caseFileQuery.filter(_.caseInstanceId === caseInstanceId).result.headOption)
+      caseFileWithItems <- caseFile.fold(Future.successful(caseFile))(readItems(_).map(Some(_)))
       casePlan <- db.run(planItemTableQuery.filter(_.caseInstanceId === caseInstanceId).result)
       identifiers <- db.run(caseIdentifiersQuery.filter(_.caseInstanceId === caseInstanceId).filter(_.active === true).result)
-    } yield (caseInstance, caseTeam, caseFile, casePlan, identifiers)
+    } yield (caseInstance, caseTeam, caseFileWithItems.map(resolveBlobs), casePlan, identifiers)
 
     result.map(x => x._1.fold(throw CaseSearchFailure(caseInstanceId))(caseRecord => FullCase(caseRecord, file = x._3, team = x._2, planitems = x._4, identifiers = x._5)))
   }
@@ -121,12 +122,28 @@ class CaseInstanceQueriesImpl(queryDB: QueryDB)
       _ <- membershipQuery(user, caseInstanceId)
     } yield baseQuery
 
-    db.run(query.result.headOption).map {
-      case Some(result) => result
+    db.run(query.result.headOption).flatMap {
+      case Some(result) => readItems(result).map(resolveBlobs)
       case None => throw CaseSearchFailure(caseInstanceId)
     }
   }
 
+  /**
+    * When the case file is stored per top level item, the items are read and added to the case file
+    */
+  private def readItems(caseFile: CaseFileRecord): Future[CaseFileRecord] = {
+    if (caseFile.mayHaveItems) {
+      db.run(caseFileItemQuery.filter(_.caseInstanceId === caseFile.caseInstanceId).result).map(caseFile.withItems)
+    } else {
+      Future.successful(caseFile)
+    }
+  }
+
+  /**
+    * Large values in the case file may be kept in the blob store; replace the references with the actual content
+    */
+  private def resolveBlobs(caseFile: CaseFileRecord): CaseFileRecord = caseFile.copy(data = queryDB.blobStorage.resolveJson(caseFile.data))
+
   override def getCaseFileDocumentation(caseInstanceId: String, user: UserIdentity): Future[CaseFileDocumentation] = {
     val query = for {
       // Get the case file
@@ -1,9 +1,10 @@
 package org.cafienne.persistence.querydb.query.cmmn.implementations
 
-import org.cafienne.actormodel.identity.UserIdentity
+import org.cafienne.actormodel.identity.{PlatformUser, UserIdentity}
 import org.cafienne.persistence.infrastructure.jdbc.query.{Area, Sort}
 import org.cafienne.persistence.querydb.query.cmmn.CaseListQueries
 import org.cafienne.persistence.querydb.query.cmmn.filter.CaseFilter
+import org.cafienne.persistence.querydb.query.result.CaseList
 import org.cafienne.persistence.querydb.record.CaseRecord
 import org.cafienne.persistence.querydb.schema.QueryDB
 
@@ -17,68 +18,30 @@ class CaseListQueriesImpl(queryDB: QueryDB)
   import dbConfig.profile.api._
 
 
-  //  override def getCasesStats(user: UserIdentity, tenant: Option[String], from: Int, numOfResults: Int, caseName: Option[String] = None, status: Option[String] = None): Future[Seq[CaseList]] = {
-  //    // TODO
-  //    // Query must be converted to:
-  //    //   select count(*), case_name, state, failures from case_instance group by case_name, state, failures [having state == and case_name == ]
-  //    val definitionFilter = caseName.getOrElse("")
-  //    val statusFilter = status.getOrElse("")
-  //
-  //    val tenantSet = tenant match {
-  //      case Some(tenant) => Seq(tenant)
-  //      case None => user.tenants
-  //    }
-  //    // NOTE: this uses a direct query. Fields must be escaped with quotes for the in-memory Hsql Database usage.
-  //    val action = {
-  //      status match {
-  //        //        case Some(s) => sql"""select count("case_name") as count, "tenant", "case_name", "state", "failures" from  "case_instance" group by "tenant", "case_name", "state", "failures" having "state" = '#$s' """.as[(Long, String, String, String, Int)]
-  //        case Some(s) => s.toLowerCase() match {
-  //          case "active" => sql"""select count("case_name") as count, "tenant", "case_name", "state", "failures" from  "case_instance" group by "tenant", "case_name", "state", "failures" having "state" = 'Active'""".as[(Long, String, String, String, Int)]
-  //          case "completed" => sql"""select count("case_name") as count, "tenant", "case_name", "state", "failures" from  "case_instance" group by "tenant", "case_name", "state", "failures" having "state" = 'Completed'""".as[(Long, String, String, String, Int)]
-  //          case "terminated" => sql"""select count("case_name") as count, "tenant", "case_name", "state", "failures" from  "case_instance" group by "tenant", "case_name", "state", "failures" having "state" = 'Terminated'""".as[(Long, String, String, String, Int)]
-  //          case "suspended" => sql"""select count("case_name") as count, "tenant", "case_name", "state", "failures" from  "case_instance" group by "tenant", "case_name", "state", "failures" having "state" = 'Suspended'""".as[(Long, String, String, String, Int)]
-  //          case "failed" => sql"""select count("case_name") as count, "tenant", "case_name", "state", "failures" from  "case_instance" group by "tenant", "case_name", "state", "failures" having "state" = 'Failed'""".as[(Long, String, String, String, Int)]
-  //          case "closed" => sql"""select count("case_name") as count, "tenant", "case_name", "state", "failures" from  "case_instance" group by "tenant", "case_name", "state", "failures" having "state" = 'Closed'""".as[(Long, String, String, String, Int)]
-  //          case other => throw new SearchFailure(s"Status $other is invalid")
-  //        }
-  //        case None => sql"""select count("case_name") as count, "tenant", "case_name", "state", "failures" from  "case_instance" group by "tenant", "case_name", "state", "failures" """.as[(Long, String, String, String, Int)]
-  //      }
-  //
-  //    }
-  //    db.run(action).map { value =>
-  //      val r = collection.mutable.Map.empty[String, CaseList]
-  //      value.filter(caseInstance => tenantSet.contains(caseInstance._2)).foreach { caseInstance =>
-  //        val count = caseInstance._1
-  //        val caseName = caseInstance._3
-  //        if (definitionFilter == "" || definitionFilter == caseName) {
-  //          // Only add stats for a certain filter if it is the same
-  //          val state = caseInstance._4
-  //          val failures = caseInstance._5
-  //
-  //          if (statusFilter == "" || statusFilter == state) {
-  //            val caseList: CaseList = r.getOrElse(caseName, CaseList(caseName = caseName))
-  //            val newCaseList: CaseList = {
-  //              var list: CaseList = state match {
-  //                case "Active" => caseList.copy(numActive = caseList.numActive + count)
-  //                case "Completed" => caseList.copy(numCompleted = caseList.numCompleted + count)
-  //                case "Terminated" => caseList.copy(numTerminated = caseList.numTerminated + count)
-  //                case "Suspended" => caseList.copy(numSuspended = caseList.numSuspended + count)
-  //                case "Failed" => caseList.copy(numFailed = caseList.numFailed + count)
-  //                case "Closed" => caseList.copy(numClosed = caseList.numClosed + count)
-  //                case _ => caseList
-  //              }
-  //              if (failures > 0) {
-  //                list = list.copy(numWithFailures = caseList.numWithFailures + count)
-  //              }
-  //              list
-  //            }
-  //            r.put(caseName, newCaseList)
-  //          }
-  //        }
-  //      }
-  //      r.values.toSeq
-  //    }
-  //  }
+  override def getCaseStatistics(user: PlatformUser, tenant: Option[String], caseName: Option[String], state: Option[String]): Future[Seq[CaseList]] = {
+    // Statistics are maintained per tenant, case name and state by the case projection; only the user's tenants can be read.
+    val tenants = tenant.fold(user.tenants)(t => user.tenants.filter(_ == t))
+    val query = TableQuery[CaseStatisticsTable]
+      .filter(_.tenant.inSet(tenants))
+      .filterOpt(caseName)(_.caseName === _)
+      .filterOpt(state)(_.state === _)
+    db.run(query.result).map(records => {
+      records.groupBy(_.caseName).map {
+        case (name, statistics) => statistics.foldLeft(CaseList(caseName = name))((list, record) => {
+          val counted = list.copy(totalInstances = list.totalInstances + record.instances, numWithFailures = list.numWithFailures + record.withFailures)
+          record.state match {
+            case "Active" => counted.copy(numActive = counted.numActive + record.instances)
+            case "Completed" => counted.copy(numCompleted = counted.numCompleted + record.instances)
+            case "Terminated" => counted.copy(numTerminated = counted.numTerminated + record.instances)
+            case "Suspended" => counted.copy(numSuspended = counted.numSuspended + record.instances)
+            case "Failed" => counted.copy(numFailed = counted.numFailed + record.instances)
+            case "Closed" => counted.copy(numClosed = counted.numClosed + record.instances)
+            case _ => counted
+          }
+        })
+      }.toSeq.sortBy(_.caseName)
+    })
+  }
 
   override def getCases(user: UserIdentity, filter: CaseFilter, area: Area, sort: Sort): Future[Seq[CaseRecord]] = {
     val query = for {
@@ -25,7 +25,8 @@ class TaskQueriesImpl(queryDB: QueryDB) extends BaseQueryImpl(queryDB) with Task
     } yield baseQuery
 
     db.run(query.result.headOption).map {
-      case Some(task) => task
+      // Large values in input and output may be kept in the blob store; tasks in lists keep the references
+      case Some(task) => task.copy(input = queryDB.blobStorage.resolveJson(task.input), output = queryDB.blobStorage.resolveJson(task.output))
       case None => throw TaskSearchFailure(taskId)
     }
   }
@@ -139,34 +140,28 @@ class TaskQueriesImpl(queryDB: QueryDB) extends BaseQueryImpl(queryDB) with Task
   }
 
   override def getCountForUser(user: UserIdentity, tenant: Option[String]): Future[TaskCount] = {
-    val claimedTasksQuery = TableQuery[TaskTable].filter(_.assignee === user.id)
-      .filterNot(_.taskState === "Completed")
-      .filterNot(_.taskState === "Terminated")
+    // The counts are read from the task statistics, which hold the number of open tasks per case, role and assignee.
+    // Note: this is not a constant time lookup. The claimed count reads one row per case in which the user has open tasks,
+    // and the unclaimed count reads one row per case role the user has, across all cases in which the user is a member.
+    val claimedTasksQuery = TableQuery[TaskStatisticsTable]
+      .filter(_.assignee === user.id)
       .filterOpt(tenant)(_.tenant === _)
-
-    // Select all unassigned tasks (optionally from the specified tenant)
-    val unclaimedTasksQuery = for {
-      // Select all unassigned tasks (optionally from the specified tenant)
-      unclaimedTasks <- TableQuery[TaskTable].filter(_.assignee === "").filterOpt(tenant)(_.tenant === _)
-        // And only active tasks, not completed or terminated
-        .filterNot(_.taskState === "Completed").filterNot(_.taskState === "Terminated")
-        .filter(task =>
-          // Apply the filters: _1 is the case instance id, _2 is the case role
-          consentGroupCoupledCaseRoles(user).filter(task.caseInstanceId === _._1).filter(task.role === _._2).exists
-            || tenantRoleCoupledCaseRoles(user).filter(task.caseInstanceId === _._1).filter(task.role === _._2).exists
-            || userCoupledCaseRoles(user).filter(task.caseInstanceId === _._1).filter(task.role === _._2).exists)
-    } yield unclaimedTasks
+      .map(_.openTasks).sum
+
+    // Unassigned tasks are counted if the user has the role of the task in the case team.
+    // The query starts from the case roles of the user, so that it does not scan the statistics of all cases with unassigned tasks.
+    val caseRolesOfUser = consentGroupCoupledCaseRoles(user).map(role => (role._1, role._2))
+      .union(tenantRoleCoupledCaseRoles(user).map(role => (role._1, role._2)))
+      .union(userCoupledCaseRoles(user).map(role => (role._1, role._2)))
+    val unclaimedTasksQuery = caseRolesOfUser
+      .join(TableQuery[TaskStatisticsTable].filter(_.assignee === "")).on((caseRole, statistics) => statistics.caseInstanceId === caseRole._1 && statistics.role === caseRole._2)
+      .map(_._2)
+      .filterOpt(tenant)(_.tenant === _)
+      .map(_.openTasks).sum
 
     implicit val ec: ExecutionContext = db.ioExecutionContext
-    val count = for {
-      claimedTasks <- db.run(claimedTasksQuery.distinct.length.result)
-      unclaimedTasks <- db.run(unclaimedTasksQuery.distinct.length.result)
-    } yield (claimedTasks, unclaimedTasks)
-
-    count.map(c => {
-      val tc = TaskCount(c._1, c._2)
-      //      println("Returning Count: : " + tc)
-      tc
-    })
+    db.run(claimedTasksQuery.result.zip(unclaimedTasksQuery.result)).map {
+      case (claimedTasks, unclaimedTasks) => TaskCount(claimedTasks.getOrElse(0L), unclaimedTasks.getOrElse(0L))
+    }
   }
 }
@@ -69,6 +69,56 @@ final case class CaseDefinitionRecord(caseInstanceId: String, name: String, desc
 
 final case class CaseFileRecord(caseInstanceId: String, tenant: String, data: String) extends CafienneJson {
   override def toValue: ValueMap = JSONReader.parse(data)
+
+  /**
+    * When the case file is stored per item, the case file document itself is empty.
+    * Only then there can be separate item records, so only then these need to be read.
+    */
+  def mayHaveItems: Boolean = data.length <= 16 && data.filterNot(_.isWhitespace) == "{}"
+
+  /**
+    * Returns the case file including the top level items that are stored in separate records.
+    */
+  def withItems(items: Seq[CaseFileItemRecord]): CaseFileRecord = {
+    if (items.isEmpty) {
+      this
+    } else {
+      val json = toValue
+      items.foreach(item => json.put(item.name, JSONReader.parse[Value[_]](item.data)))
+      copy(data = json.toString)
+    }
+  }
+}
+
+/**
+  * Holds the data of a top level case file item, when the case file is stored per item.
+  */
+final case class CaseFileItemRecord(caseInstanceId: String, tenant: String, name: String, data: String)
+
+/**
+  * Number of cases with a certain name and state in a tenant, and how many of those have failures.
+  * When used to update the statistics, the numbers hold the difference to apply.
+  */
+final case class CaseStatisticsRecord(tenant: String, caseName: String, state: String, instances: Long, withFailures: Long) {
+  def plus(other: CaseStatisticsRecord): CaseStatisticsRecord = copy(instances = instances + other.instances, withFailures = withFailures + other.withFailures)
+
+  def isEmpty: Boolean = instances == 0 && withFailures == 0
+}
+
+object CaseStatisticsRecord {
+  /**
+    * Returns the differences to apply to the statistics when the case record changes from before to after.
+    * A new case has no record before, and an existing record that is written again leads to no difference at all.
+    */
+  def delta(before: Option[CaseRecord], after: Option[CaseRecord]): Seq[CaseStatisticsRecord] = {
+    def statistics(instance: CaseRecord, count: Long) = CaseStatisticsRecord(instance.tenant, instance.caseName, instance.state, count, if (instance.failures > 0) count else 0)
+
+    (before.map(statistics(_, -1)).toSeq ++ after.map(statistics(_, 1)).toSeq)
+      .groupBy(delta => (delta.tenant, delta.caseName, delta.state))
+      .values.map(_.reduce(_ plus _))
+      .filterNot(_.isEmpty)
+      .toSeq
+  }
 }
 
 final case class CaseBusinessIdentifierRecord(caseInstanceId: String, tenant: String, name: String, value: Option[String], active: Boolean, path: String) extends CafienneJson {
@@ -76,3 +76,30 @@ case class PerformableTaskRecord(task: TaskRecord, mayPerform: Boolean) extends
   override def toValue: Value[_] = task.toValue.asMap().plus("mayPerform", mayPerform)
 }
 
+/**
+  * Number of open tasks (i.e., not Completed or Terminated) in a case, per role and assignee.
+  * Unassigned tasks have an empty assignee. When used to update the statistics, openTasks holds the difference to apply.
+  */
+final case class TaskStatisticsRecord(caseInstanceId: String, tenant: String, role: String, assignee: String, openTasks: Long) {
+  def plus(other: TaskStatisticsRecord): TaskStatisticsRecord = copy(openTasks = openTasks + other.openTasks)
+
+  def isEmpty: Boolean = openTasks == 0
+}
+
+object TaskStatisticsRecord {
+  def isOpen(task: TaskRecord): Boolean = task.taskState != "Completed" && task.taskState != "Terminated"
+
+  /**
+    * Returns the differences to apply to the statistics when the tasks change from before to after.
+    * Before holds the original version of the changed tasks (as far as they existed), after holds their new version.
+    */
+  def delta(before: Iterable[TaskRecord], after: Iterable[TaskRecord]): Seq[TaskStatisticsRecord] = {
+    def statistics(task: TaskRecord, count: Long) = TaskStatisticsRecord(task.caseInstanceId, task.tenant, task.role, task.assignee, count)
+
+    (before.filter(isOpen).map(statistics(_, -1)) ++ after.filter(isOpen).map(statistics(_, 1)))
+      .groupBy(delta => (delta.caseInstanceId, delta.role, delta.assignee))
+      .values.map(_.reduce(_ plus _))
+      .filterNot(_.isEmpty)
+      .toSeq
+  }
+}
@@ -19,6 +19,7 @@ package org.cafienne.persistence.querydb.schema
 
 import com.typesafe.scalalogging.LazyLogging
 import org.cafienne.infrastructure.config.persistence.PersistenceConfig
+import org.cafienne.persistence.blob.BlobStorage
 import org.cafienne.persistence.infrastructure.jdbc.schema.{CustomMigrationInfo, QueryDBSchemaVersion, SlickMigrationExtensions}
 import org.cafienne.persistence.querydb.materializer.cases.CaseEventSink
 import org.cafienne.persistence.querydb.materializer.consentgroup.ConsentGroupEventSink
@@ -32,6 +33,8 @@ import slick.jdbc.JdbcProfile
 class QueryDB(config: PersistenceConfig, val dbConfig: DatabaseConfig[JdbcProfile]) extends SlickMigrationExtensions with LazyLogging {
   override val tablePrefix: String = config.tablePrefix
   val writer = new QueryDBWriter(this)
+  // Large values in the case file and task input and output may be kept in the blob store
+  lazy val blobStorage: BlobStorage = config.blobStore.storage
 
   def startEventSinks(caseSystem: CaseSystem): Unit = {
     new CaseEventSink(caseSystem, writer).start()
@@ -97,6 +100,8 @@ class QueryDB(config: PersistenceConfig, val dbConfig: DatabaseConfig[JdbcProfil
       new QueryDB_1_1_16(dbConfig, tablePrefix),
       new QueryDB_1_1_18(dbConfig, tablePrefix),
       new QueryDB_1_1_22(dbConfig, tablePrefix),
+      new QueryDB_1_1_35(dbConfig, tablePrefix),
+      new QueryDB_1_1_36(dbConfig, tablePrefix),
     )
   }
 
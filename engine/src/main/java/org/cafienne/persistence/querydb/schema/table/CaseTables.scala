@@ -123,6 +123,19 @@ trait CaseTables extends CaseTeamTables {
     lazy val indexCaseInstanceId = oldStyleIndex(caseInstanceId)
   }
 
+  class CaseFileItemTable(tag: Tag) extends CafienneTenantTable[CaseFileItemRecord](tag, "case_file_item") {
+
+    lazy val caseInstanceId: Rep[String] = idColumn[String]("case_instance_id")
+    lazy val name: Rep[String] = idColumn[String]("name")
+    lazy val data: Rep[String] = jsonColumn[String]("data")
+
+    lazy val * = (caseInstanceId, tenant, name, data).mapTo[CaseFileItemRecord]
+
+    lazy val pk = primaryKey(pkName, (caseInstanceId, name))
+
+    lazy val indexCaseInstanceId = index(caseInstanceId)
+  }
+
   final class CaseBusinessIdentifierTable(tag: Tag) extends CafienneTenantTable[CaseBusinessIdentifierRecord](tag, "case_business_identifier") {
     override def getSortColumn(field: String): ColumnOrdered[_] = field match {
       case "name" => name
@@ -158,4 +171,16 @@ trait CaseTables extends CaseTeamTables {
 
     lazy val indexCaseInstanceId = oldStyleIndex(caseInstanceId)
   }
+
+  class CaseStatisticsTable(tag: Tag) extends CafienneTenantTable[CaseStatisticsRecord](tag, "case_statistics") {
+
+    lazy val caseName: Rep[String] = idColumn[String]("case_name")
+    lazy val state: Rep[String] = stateColumn[String]("state")
+    lazy val instances: Rep[Long] = column[Long]("instances")
+    lazy val withFailures: Rep[Long] = column[Long]("with_failures")
+
+    lazy val * = (tenant, caseName, state, instances, withFailures).mapTo[CaseStatisticsRecord]
+
+    lazy val pk = primaryKey(pkName, (tenant, caseName, state))
+  }
 }
@@ -18,7 +18,7 @@
 package org.cafienne.persistence.querydb.schema.table
 
 import org.cafienne.persistence.infrastructure.jdbc.SlickTableExtensions
-import org.cafienne.persistence.querydb.record.TaskRecord
+import org.cafienne.persistence.querydb.record.{TaskRecord, TaskStatisticsRecord}
 import slick.lifted.ColumnOrdered
 
 import java.time.Instant
@@ -84,4 +84,22 @@ trait TaskTables extends SlickTableExtensions {
 
     lazy val * = (id, caseInstanceId, tenant, taskName, taskState, role, assignee, owner, dueDate, createdOn, createdBy, lastModified, modifiedBy, input, output, taskModel).mapTo[TaskRecord]
   }
+
+  // Schema for the "task_statistics" table, holding the number of open tasks per case, role and assignee
+  final class TaskStatisticsTable(tag: Tag) extends CafienneTenantTable[TaskStatisticsRecord](tag, "task_statistics") {
+
+    lazy val caseInstanceId = idColumn[String]("case_instance_id")
+
+    lazy val role = idColumn[String]("role")
+
+    lazy val assignee = userColumn[String]("assignee")
+
+    lazy val openTasks = column[Long]("open_tasks")
+
+    lazy val * = (caseInstanceId, tenant, role, assignee, openTasks).mapTo[TaskStatisticsRecord]
+
+    lazy val pk = primaryKey(pkName, (caseInstanceId, role, assignee))
+
+    lazy val indexAssignee = index(assignee)
+  }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.persistence.querydb.schema.versions
+
+import org.cafienne.persistence.infrastructure.jdbc.schema.QueryDBSchemaVersion
+import org.cafienne.persistence.querydb.schema.table.CaseTables
+import slick.basic.DatabaseConfig
+import slick.jdbc.JdbcProfile
+import slick.migration.api.TableMigration
+
+class QueryDB_1_1_35(val dbConfig: DatabaseConfig[JdbcProfile], val tablePrefix: String)
+  extends QueryDBSchemaVersion
+    with CaseTables {
+
+  val version = "1.1.35"
+  val migrations = createCaseFileItemTable
+
+  import dbConfig.profile.api._
+
+  def createCaseFileItemTable = TableMigration(TableQuery[CaseFileItemTable])
+    .create
+    .addColumns(
+      _.caseInstanceId,
+      _.tenant,
+      _.name,
+      _.data,
+    )
+    .addPrimaryKeys(_.pk)
+    .addIndexes(_.indexCaseInstanceId)
+}
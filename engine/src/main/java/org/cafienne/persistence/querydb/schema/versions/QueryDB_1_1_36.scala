@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.cafienne.persistence.querydb.schema.versions
+
+import org.cafienne.persistence.infrastructure.jdbc.schema.QueryDBSchemaVersion
+import org.cafienne.persistence.querydb.schema.table.{CaseTables, TaskTables}
+import slick.basic.DatabaseConfig
+import slick.jdbc.JdbcProfile
+import slick.migration.api.TableMigration
+
+class QueryDB_1_1_36(val dbConfig: DatabaseConfig[JdbcProfile], val tablePrefix: String)
+  extends QueryDBSchemaVersion
+    with CaseTables
+    with TaskTables {
+
+  val version = "1.1.36"
+  val migrations = createCaseStatisticsTable
+    .&(fillCaseStatisticsTable)
+    .&(createTaskStatisticsTable)
+    .&(fillTaskStatisticsTable)
+
+  import dbConfig.profile.api._
+
+  def createCaseStatisticsTable = TableMigration(TableQuery[CaseStatisticsTable])
+    .create
+    .addColumns(
+      _.tenant,
+      _.caseName,
+      _.state,
+      _.instances,
+      _.withFailures,
+    )
+    .addPrimaryKeys(_.pk)
+
+  def fillCaseStatisticsTable = {
+    val statistics = TableQuery[CaseInstanceTable].groupBy(c => (c.tenant, c.caseName, c.state)).map {
+      case ((tenant, caseName, state), cases) =>
+        (tenant, caseName, state, cases.length.asColumnOf[Long], cases.map(c => Case.If(c.failures > 0).Then(1L).Else(0L)).sum.getOrElse(0L))
+    }
+    asSqlMigration(TableQuery[CaseStatisticsTable].map(s => (s.tenant, s.caseName, s.state, s.instances, s.withFailures)) forceInsertQuery statistics)
+  }
+
+  def createTaskStatisticsTable = TableMigration(TableQuery[TaskStatisticsTable])
+    .create
+    .addColumns(
+      _.caseInstanceId,
+      _.tenant,
+      _.role,
+      _.assignee,
+      _.openTasks,
+    )
+    .addPrimaryKeys(_.pk)
+    .addIndexes(_.indexAssignee)
+
+  def fillTaskStatisticsTable = {
+    val statistics = TableQuery[TaskTable]
+      .filterNot(_.taskState === "Completed")
+      .filterNot(_.taskState === "Terminated")
+      .groupBy(t => (t.caseInstanceId, t.tenant, t.role, t.assignee)).map {
+        case ((caseInstanceId, tenant, role, assignee), tasks) => (caseInstanceId, tenant, role, assignee, tasks.length.asColumnOf[Long])
+      }
+    asSqlMigration(TableQuery[TaskStatisticsTable].map(s => (s.caseInstanceId, s.tenant, s.role, s.assignee, s.openTasks)) forceInsertQuery statistics)
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.processtask.actorapi.command;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.cafienne.actormodel.identity.UserIdentity;
+import org.cafienne.infrastructure.serialization.Fields;
+import org.cafienne.infrastructure.serialization.Manifest;
+import org.cafienne.json.ValueMap;
+import org.cafienne.processtask.implementation.SubProcess;
+import org.cafienne.processtask.instance.ProcessTaskActor;
+
+import java.io.IOException;
+
+/**
+ * Hands the outcome of work that a process implementation ran outside of the actor (e.g. an http call)
+ * back to the process task, see {@link SubProcess#runOutsideActor}.
+ * A command without call identifier informs the process task that its call got interrupted, see {@link SubProcess#recoveryCompleted()}.
+ */
+@Manifest
+public class CompleteProcessCall extends ProcessCommand {
+    private final String callId;
+    private final ValueMap outcome;
+
+    public CompleteProcessCall(UserIdentity user, String id, String callId, ValueMap outcome) {
+        super(user, id);
+        this.callId = callId;
+        this.outcome = outcome;
+    }
+
+    /**
+     * Creates the command that informs the process task that its call is lost.
+     */
+    public static CompleteProcessCall interrupted(UserIdentity user, String id) {
+        return new CompleteProcessCall(user, id, null, new ValueMap());
+    }
+
+    public CompleteProcessCall(ValueMap json) {
+        super(json);
+        this.callId = json.readString(Fields.identifier);
+        this.outcome = json.readMap(Fields.response);
+    }
+
+    @Override
+    public void process(ProcessTaskActor processTaskActor) {
+        // No response, as there is nobody waiting for it
+        process(processTaskActor, processTaskActor.getImplementation());
+    }
+
+    @Override
+    protected void process(ProcessTaskActor processTaskActor, SubProcess<?> implementation) {
+        if (implementation != null) {
+            implementation.handleOutcome(callId, outcome);
+        }
+    }
+
+    @Override
+    public void write(JsonGenerator generator) throws IOException {
+        super.writeModelCommand(generator);
+        writeField(generator, Fields.identifier, callId);
+        writeField(generator, Fields.response, outcome);
+    }
+}
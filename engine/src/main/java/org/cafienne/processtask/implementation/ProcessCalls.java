@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.cafienne.processtask.implementation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the calls that process tasks run outside of their actor, see {@link SubProcess#runOutsideActor}.
+ * A call is registered until the process task has handled its outcome. A process task that recovers
+ * (e.g. after it was removed from memory while waiting) uses this to find back the call it is waiting for.
+ * The calls are only kept in memory; if a process task recovers in an engine that does not know its call
+ * (e.g. after a restart), the call is considered to be interrupted.
+ */
+public class ProcessCalls {
+    private final Map<String, String> calls = new ConcurrentHashMap<>();
+
+    void started(String processId, String callId) {
+        calls.put(processId, callId);
+    }
+
+    void finished(String processId, String callId) {
+        if (callId != null) {
+            calls.remove(processId, callId);
+        }
+    }
+
+    /**
+     * Returns the identifier of the call of the process that is in progress, or null if there is none.
+     */
+    public String inProgress(String processId) {
+        return calls.get(processId);
+    }
+
+    /**
+     * Forget about the call of the process, as if it never was started in this engine.
+     */
+    public void forget(String processId) {
+        calls.remove(processId);
+    }
+}
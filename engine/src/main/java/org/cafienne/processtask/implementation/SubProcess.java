@@ -17,18 +17,26 @@
 
 package org.cafienne.processtask.implementation;
 
+import org.apache.pekko.actor.ActorRef;
+import org.cafienne.actormodel.identity.UserIdentity;
 import org.cafienne.cmmn.instance.State;
 import org.cafienne.cmmn.instance.Transition;
 import org.cafienne.json.Value;
 import org.cafienne.json.ValueMap;
+import org.cafienne.processtask.actorapi.command.CompleteProcessCall;
 import org.cafienne.processtask.definition.SubProcessDefinition;
 import org.cafienne.processtask.definition.SubProcessOutputMappingDefinition;
 import org.cafienne.processtask.implementation.http.HTTPCallDefinition;
 import org.cafienne.processtask.instance.ProcessTaskActor;
+import org.cafienne.system.CaseSystem;
+import org.cafienne.util.Guid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 /**
  * Process Tasks in the engine can be implemented through this Java interface.
@@ -49,6 +57,12 @@ public abstract class SubProcess<T extends SubProcessDefinition> {
     
     private final ValueMap processOutputParameters = new ValueMap();
 
+    /**
+     * Identifier of the call started with {@link #runOutsideActor(Executor, Supplier)} that is in progress.
+     * Outcomes of other calls (e.g. of a call that got terminated) are ignored.
+     */
+    private String callId;
+
     protected SubProcess(ProcessTaskActor processTask, T processDefinition) {
         this.processTaskActor = processTask;
         this.definition = processDefinition;
@@ -174,6 +188,101 @@ public abstract class SubProcess<T extends SubProcessDefinition> {
      */
     public abstract void resume();
 
+    /**
+     * Runs the work on the executor, and hands its outcome back to the process task through {@link CompleteProcessCall}.
+     * The work runs outside of the actor, and must not use the process task state.
+     * The outcome is passed to {@link #handleCallOutcome(ValueMap)}, unless the call is no longer in progress by then.
+     * Implementations that use this must also override {@link #callsOutsideActor()}.
+     * Returns the identifier of the call. If the executor rejects the work, the call is not started,
+     * and the {@link RejectedExecutionException} is passed on.
+     */
+    protected final String runOutsideActor(Executor executor, Supplier<ValueMap> work) {
+        final String callId = new Guid().toString();
+        final UserIdentity user = processTaskActor.getCurrentUser();
+        final String processId = processTaskActor.getId();
+        final CaseSystem caseSystem = processTaskActor.caseSystem;
+        this.callId = callId;
+        caseSystem.processCalls().started(processId, callId);
+        try {
+            executor.execute(() -> {
+                ValueMap outcome = work.get();
+                caseSystem.engine().inform(new CompleteProcessCall(user, processId, callId, outcome), ActorRef.noSender());
+            });
+        } catch (RejectedExecutionException rejected) {
+            this.callId = null;
+            caseSystem.processCalls().finished(processId, callId);
+            throw rejected;
+        }
+        return callId;
+    }
+
+    /**
+     * Indicates whether the implementation runs its work with {@link #runOutsideActor(Executor, Supplier)},
+     * i.e., whether it waits for the outcome of a call as long as the process is running.
+     */
+    protected boolean callsOutsideActor() {
+        return false;
+    }
+
+    /**
+     * Invoked when the process task has recovered while the process is still running.
+     * If the call is still in progress (e.g. the process task was removed from memory while waiting for it),
+     * the process continues to wait for it. Otherwise the call got lost (e.g. the engine restarted in between),
+     * and the process task informs itself that the call was interrupted, see {@link #handleInterruptedCall()}.
+     */
+    public void recoveryCompleted() {
+        if (!callsOutsideActor()) {
+            return;
+        }
+        final CaseSystem caseSystem = processTaskActor.caseSystem;
+        callId = caseSystem.processCalls().inProgress(processTaskActor.getId());
+        if (callId == null) {
+            logger.warn("Process task " + processTaskActor.getId() + " is running, but its call is no longer in progress");
+            caseSystem.engine().inform(CompleteProcessCall.interrupted(processTaskActor.getCurrentUser(), processTaskActor.getId()), ActorRef.noSender());
+        }
+    }
+
+    /**
+     * Invoked through {@link CompleteProcessCall} when a call started with {@link #runOutsideActor(Executor, Supplier)} has finished,
+     * or when the call is found to be interrupted (in which case the callId is null).
+     * The outcome is only handled if the process is still running, and if it belongs to the call in progress.
+     * Note that after a recovery of the process task the call may no longer be known (see {@link #recoveryCompleted()}),
+     * and then the outcome of any call is accepted.
+     */
+    public final void handleOutcome(String callId, ValueMap outcome) {
+        processTaskActor.caseSystem.processCalls().finished(processTaskActor.getId(), callId);
+        if (!processTaskActor.isRunning()) {
+            processTaskActor.addDebugInfo(() -> "Ignoring outcome of call " + callId + ", as the process is no longer running");
+            return;
+        }
+        if (this.callId != null && !this.callId.equals(callId)) {
+            processTaskActor.addDebugInfo(() -> "Ignoring outcome of call " + callId + ", as it is no longer in progress");
+            return;
+        }
+        this.callId = null;
+        if (callId == null) {
+            handleInterruptedCall();
+        } else {
+            handleCallOutcome(outcome);
+        }
+    }
+
+    /**
+     * Invoked with the outcome of the work that was run with {@link #runOutsideActor(Executor, Supplier)}.
+     * Implementations that run work outside of the actor must override this method.
+     */
+    protected void handleCallOutcome(ValueMap outcome) {
+        processTaskActor.addDebugInfo(() -> "Ignoring outcome of call, as " + getClass().getSimpleName() + " does not expect it");
+    }
+
+    /**
+     * Invoked when the process is still running, but its call got lost, e.g. because the engine restarted while the call was in progress.
+     * By default the process fails, as it is not known whether the call had any effect; it can be reactivated to do the call again.
+     */
+    protected void handleInterruptedCall() {
+        raiseFault("The call of process " + processTaskActor.getName() + " was interrupted before it finished");
+    }
+
     public void migrateDefinition(SubProcessDefinition implementation) {
         processTaskActor.addDebugInfo(() -> "Setting new " + implementation.getClass().getSimpleName());
         // Somewhere else (in the command MigrateProcessDefinition) we check that this new implementation has the same class
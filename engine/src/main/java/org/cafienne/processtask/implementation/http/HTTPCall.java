@@ -17,24 +17,31 @@
 
 package org.cafienne.processtask.implementation.http;
 
+import org.cafienne.json.ValueMap;
+import org.cafienne.processtask.actorapi.command.CompleteProcessCall;
 import org.cafienne.processtask.implementation.SubProcess;
 import org.cafienne.processtask.instance.ProcessTaskActor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Runs the http call of a process task. The request is resolved against the process task input,
+ * and then handed to the {@link HTTPCallExecutor}, so that the actor is not blocked while waiting for the response.
+ * The outcome comes back to the process task through the {@link CompleteProcessCall} command.
+ */
 public class HTTPCall extends SubProcess<HTTPCallDefinition> {
     private final static Logger logger = LoggerFactory.getLogger(HTTPCall.class);
 
-    private final Result result = new Result(this);
-
     public HTTPCall(ProcessTaskActor processTask, HTTPCallDefinition definition) {
         super(processTask, definition);
     }
@@ -46,81 +53,106 @@ public class HTTPCall extends SubProcess<HTTPCallDefinition> {
 
     @Override
     public void start() {
-        boolean successful = runCall();
+        final Result result = new Result(this);
+
+        // Bind any parameters in the URL, any content and the http method to the input parameters of this task.
+        //  This must happen inside the actor, the call itself can run elsewhere.
+        URL targetURL = getDefinition().getURL().resolveURL(processTaskActor);
+        result.setTargetURL(targetURL);
+        String requestMethod = getDefinition().getMethod().resolve(processTaskActor);
+        result.setRequestMethod(requestMethod);
+
+        // Map headers to simple strings (does parameter substitution).
+        Map<String, String> headers = new LinkedHashMap<>();
+        getDefinition().getHeaders(processTaskActor).forEach(header -> headers.put(header.getName(), header.getValue()));
+        // Store the headers in the call status object for debugging purposes
+        result.setRequestHeaders(headers);
+
+        String requestPayload = null;
+        if (requestMethod.equalsIgnoreCase("POST") || requestMethod.equalsIgnoreCase("PUT")) {
+            requestPayload = getDefinition().getContent().resolve(processTaskActor).toString();
+            result.setRequestPayload(requestPayload);
+        }
+
+        final String payload = requestPayload;
+        final HTTPCallExecutor executor = processTaskActor.caseSystem.httpCallExecutor();
+        final int connectTimeout = executor.connectTimeout(getDefinition().getConnectTimeout());
+        final int readTimeout = executor.readTimeout(getDefinition().getReadTimeout());
+        processTaskActor.addDebugInfo(() -> "Scheduling call " + requestMethod + " " + targetURL + " (connect timeout " + connectTimeout + "ms, read timeout " + readTimeout + "ms)");
+
+        runOutsideActor(executor::execute, () -> {
+            boolean successful;
+            try {
+                successful = runCall(result, headers, payload, connectTimeout, readTimeout);
+            } catch (RuntimeException unexpected) {
+                successful = result.handleFailure("Unexpected failure while calling " + targetURL, unexpected);
+            }
+            return result.toOutcome(successful);
+        });
+    }
+
+    @Override
+    protected boolean callsOutsideActor() {
+        return true;
+    }
+
+    @Override
+    protected void handleCallOutcome(ValueMap outcome) {
         // Print debug information
-        processTaskActor.addDebugInfo(result::getDebugInfo);
+        processTaskActor.addDebugInfo(() -> outcome.get(Result.OUTCOME_DEBUG_INFO));
         // Set raw output parameters
-        getRawOutputParameters().merge(result.toJSON());
+        getRawOutputParameters().merge(outcome.readMap(Result.OUTCOME_OUTPUT));
 
-        if (successful) {
+        if (outcome.readBoolean(Result.OUTCOME_SUCCESSFUL)) {
             raiseComplete();
         } else {
-            setFault(result.getException());
-            raiseFault(result.getErrorDescription());
+            setFault(outcome.get(Result.OUTCOME_EXCEPTION));
+            raiseFault(outcome.readString(Result.OUTCOME_ERROR));
         }
     }
 
-    private boolean runCall() {
-        // Bind any parameters in the URL, any content and the http method to the input parameters of this task.
-        URL targetURL = getDefinition().getURL().resolveURL(processTaskActor);
-        result.setTargetURL(targetURL);
-        String requestMethod = getDefinition().getMethod().resolve(processTaskActor);
-        result.setRequestMethod(requestMethod);
+    /**
+     * Does the actual http call. Runs outside of the actor, and must therefore only use the information passed to it.
+     */
+    private static boolean runCall(Result result, Map<String, String> headers, String requestPayload, int connectTimeout, int readTimeout) {
+        URL targetURL = result.getTargetURL();
+        String requestMethod = result.getRequestMethod();
 
         // Now fetch and open the URL
         HttpURLConnection httpConnection;
-        DataOutputStream ostream;
-
         try {
-            processTaskActor.addDebugInfo(() -> "Opening url " + targetURL);
             // First let's try to open the connection
             httpConnection = (HttpURLConnection) targetURL.openConnection();
         } catch (IOException failedToOpenURL) {
             return result.handleFailure("Could not create a connection with " + targetURL, failedToOpenURL);
         }
+        httpConnection.setConnectTimeout(connectTimeout);
+        httpConnection.setReadTimeout(readTimeout);
 
         // Fill in the http method. This is parameterized, and may fail, in which case we cannot continue with the http call and need to raise an error.
         try {
-            processTaskActor.addDebugInfo(() -> "Setting request method " + requestMethod);
             httpConnection.setRequestMethod(requestMethod);
         } catch (IOException e) {
             return result.handleFailure("Cannot set http method " + requestMethod, e);
         }
 
-        // Now fill the http headers
-        // 1. Map headers to simple strings (does parameter substitution).
-        Map<String, String> headers = new LinkedHashMap<>();
-        getDefinition().getHeaders(processTaskActor).forEach(header -> headers.put(header.getName(), header.getValue()));
-        // Store the headers in the call status object for debugging purposes
-        result.setRequestHeaders(headers);
         // Set the headers on the connection
         headers.forEach(httpConnection::setRequestProperty);
 
-        if (requestMethod.equalsIgnoreCase("POST") || requestMethod.equalsIgnoreCase("PUT")) {
-            String requestPayload = getDefinition().getContent().resolve(processTaskActor).toString();
-            result.setRequestPayload(requestPayload);
-
-            // Only if there is any input to be posted to the URL will we setup an interactive connection and start writing the data
-            if (requestPayload.trim().length() > 0) {
-                httpConnection.setDoInput(true);
-                httpConnection.setDoOutput(true);
-                try {
-                    processTaskActor.addDebugInfo(() -> "Sending request payload");
-                    ostream = new DataOutputStream(httpConnection.getOutputStream());
-                    ostream.writeBytes(requestPayload);
-                    ostream.flush();
-                    ostream.close();
-                } catch (IOException e) {
-                    return result.handleFailure("Failed to write content to " + targetURL, e);
-                }
+        // Only if there is any input to be posted to the URL will we setup an interactive connection and start writing the data
+        if (requestPayload != null && !requestPayload.isBlank()) {
+            httpConnection.setDoInput(true);
+            httpConnection.setDoOutput(true);
+            try (OutputStream ostream = httpConnection.getOutputStream()) {
+                ostream.write(requestPayload.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                return result.handleFailure("Failed to write content to " + targetURL, e);
             }
         }
 
         // Now start reading the response ...
         try {
-            int responseCode = httpConnection.getResponseCode();
-            processTaskActor.addDebugInfo(() -> "Reading response code gave  "+ responseCode);
-            result.setResponseCode(responseCode);
+            result.setResponseCode(httpConnection.getResponseCode());
             result.setResponseMessage(httpConnection.getResponseMessage());
             result.setResponseHeaders(httpConnection.getHeaderFields());
         } catch (IOException ioe) {
@@ -128,54 +160,50 @@ public class HTTPCall extends SubProcess<HTTPCallDefinition> {
         }
 
         // ... and if it is not in the HTTP 200 range, we will read the error from the connection and raise it back into the plan-item (which will go "Failed")
+        //  Note: the connection is not disconnected. Fully reading and closing the streams enables the JDK to reuse it for subsequent calls.
         if (result.isOutOf200Range()) {
-            processTaskActor.addDebugInfo(() -> "Reading connection failure information");
-            StringBuilder errorMessage = new StringBuilder();
-            InputStream errorStream = null;
-            try {
-                errorStream = httpConnection.getErrorStream();
-                int c;
-                while (errorStream != null && (c = errorStream.read()) != -1) {
-                    errorMessage.append((char) c);
-                }
-                result.setResponsePayload(errorMessage.toString());
+            try (InputStream errorStream = httpConnection.getErrorStream()) {
+                result.setResponsePayload(readPayload(errorStream, httpConnection.getContentType()));
                 return result.handleFailure("Status code " + result.getCode() + " is interpreted as a failure");
             } catch (IOException e) {
-                result.setResponsePayload(errorMessage.toString());
                 return result.handleFailure("Failed to read response payload for status code " + result.getCode(), e);
-            } finally {
-                try {
-                    if (errorStream != null) {
-                        errorStream.close();
-                    }
-                } catch (IOException e) {
-                    logger.warn("Failed to close the error stream", e);
-                }
             }
         } else { // ... in this path things are "HTTP_OK"
             // And we'll now start reading the content
-            try {
-                processTaskActor.addDebugInfo(() -> "Reading response payload");
-                InputStream payloadStream = httpConnection.getInputStream();
-                StringBuilder payload = new StringBuilder();
-                int c;
-                while ((c = payloadStream.read()) != -1) {
-                    payload.append((char) c);
-                }
-
-                result.setResponsePayload(payload.toString());
-
-                payloadStream.close();
+            try (InputStream payloadStream = httpConnection.getInputStream()) {
+                result.setResponsePayload(readPayload(payloadStream, httpConnection.getContentType()));
             } catch (IOException e) {
                 return result.handleFailure("Technical failure while reading http response although http code was " + result.getCode(), e);
             }
         }
 
-        if (httpConnection != null) {
-            httpConnection.disconnect();
+        return true;
+    }
+
+    private static String readPayload(InputStream stream, String contentType) throws IOException {
+        if (stream == null) {
+            return "";
         }
+        return new String(stream.readAllBytes(), charsetOf(contentType));
+    }
 
-        return true;
+    /**
+     * Returns the charset from the content type header, defaulting to UTF-8.
+     */
+    private static Charset charsetOf(String contentType) {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String[] nameValue = parameter.trim().split("=", 2);
+                if (nameValue.length == 2 && nameValue[0].trim().equalsIgnoreCase("charset")) {
+                    try {
+                        return Charset.forName(nameValue[1].trim().replace("\"", ""));
+                    } catch (IllegalArgumentException unsupported) {
+                        logger.warn("Response has unsupported charset in content type '{}', reading it as UTF-8", contentType);
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
     }
 
     @Override
@@ -184,6 +212,7 @@ public class HTTPCall extends SubProcess<HTTPCallDefinition> {
 
     @Override
     public void terminate() {
+        // The call cannot be stopped, but its outcome will no longer be handled
     }
 
     @Override
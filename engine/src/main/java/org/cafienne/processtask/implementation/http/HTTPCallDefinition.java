@@ -46,6 +46,8 @@ public class HTTPCallDefinition extends SubProcessDefinition {
     private final MethodDefinition httpMethod;
     private final URLDefinition sourceURL;
     private final List<HeaderDefinition> httpHeaders = new ArrayList<>();
+    private final int connectTimeout;
+    private final int readTimeout;
 
     public HTTPCallDefinition(Element element, ModelDefinition processDefinition, CMMNElementDefinition parentElement) {
         super(element, processDefinition, parentElement);
@@ -53,6 +55,25 @@ public class HTTPCallDefinition extends SubProcessDefinition {
         this.httpMethod = parse("method", MethodDefinition.class, true);
         this.contentTemplate = parse("post-content", ContentDefinition.class, false);
         parseGrandChildren("http-headers", "http-header", HeaderDefinition.class, httpHeaders);
+        this.connectTimeout = parseTimeout("connectTimeout");
+        this.readTimeout = parseTimeout("readTimeout");
+    }
+
+    /**
+     * Optional timeout in milliseconds; returns 0 if it is not specified.
+     */
+    private int parseTimeout(String attributeName) {
+        String timeout = parseAttribute(attributeName, false, "0");
+        try {
+            int millis = Integer.parseInt(timeout.trim());
+            if (millis < 0) {
+                getModelDefinition().addDefinitionError(attributeName + " of http call must not be negative, found " + timeout);
+            }
+            return millis;
+        } catch (NumberFormatException e) {
+            getModelDefinition().addDefinitionError(attributeName + " of http call must be a number of milliseconds, found '" + timeout + "'");
+            return 0;
+        }
     }
 
     @Override
@@ -85,6 +106,20 @@ public class HTTPCallDefinition extends SubProcessDefinition {
         return contentTemplate;
     }
 
+    /**
+     * Connect timeout in milliseconds, or 0 if the engine default must be used
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Read timeout in milliseconds, or 0 if the engine default must be used
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
     @Override
     public HTTPCall createInstance(ProcessTaskActor processTaskActor) {
         return new HTTPCall(processTaskActor, this);
@@ -104,6 +139,8 @@ public class HTTPCallDefinition extends SubProcessDefinition {
                 && same(this.contentTemplate, other.contentTemplate)
                 && same(httpMethod, other.httpMethod)
                 && same(sourceURL, other.sourceURL)
-                && same(httpHeaders, other.httpHeaders);
+                && same(httpHeaders, other.httpHeaders)
+                && connectTimeout == other.connectTimeout
+                && readTimeout == other.readTimeout;
     }
 }
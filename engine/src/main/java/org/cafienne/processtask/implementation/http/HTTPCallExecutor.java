@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.processtask.implementation.http;
+
+import org.cafienne.infrastructure.config.engine.HTTPCallConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs the http calls of process tasks outside of the actor threads of the engine,
+ * so that slow endpoints do not hold up the handling of other cases.
+ * Each call runs on a virtual thread, and the number of calls in progress at the same time is bounded.
+ * Each CaseSystem has its own executor, configured from the engine's http-call settings.
+ */
+public class HTTPCallExecutor {
+    private final static Logger logger = LoggerFactory.getLogger(HTTPCallExecutor.class);
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-call-", 0).factory());
+    private final Semaphore permits;
+    private final int connectTimeout;
+    private final int readTimeout;
+
+    public HTTPCallExecutor(HTTPCallConfig config) {
+        this.permits = new Semaphore(config.maxConcurrentCalls());
+        this.connectTimeout = (int) config.connectTimeout().toMillis();
+        this.readTimeout = (int) config.readTimeout().toMillis();
+    }
+
+    /**
+     * Returns the connect timeout to use; the configured default if the definition does not specify one.
+     */
+    int connectTimeout(int definedTimeout) {
+        return definedTimeout > 0 ? definedTimeout : connectTimeout;
+    }
+
+    /**
+     * Returns the read timeout to use; the configured default if the definition does not specify one.
+     */
+    int readTimeout(int definedTimeout) {
+        return definedTimeout > 0 ? definedTimeout : readTimeout;
+    }
+
+    /**
+     * Runs the call as soon as the number of calls in progress permits it.
+     */
+    void execute(Runnable call) {
+        executor.execute(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                call.run();
+            } catch (Throwable t) {
+                logger.error("Unexpected failure while running http call", t);
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Stops accepting new calls; calls in progress run to completion.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -26,6 +26,13 @@ import java.util.List;
 import java.util.Map;
 
 class Result {
+    // Keys of the outcome that is handed back to the process task
+    static final String OUTCOME_SUCCESSFUL = "successful";
+    static final String OUTCOME_OUTPUT = "output";
+    static final String OUTCOME_ERROR = "errorDescription";
+    static final String OUTCOME_EXCEPTION = "exception";
+    static final String OUTCOME_DEBUG_INFO = "debugInfo";
+
     private URL targetURL;
     private String requestMethod;
     private Map<String, String> requestHeaders;
@@ -46,10 +53,18 @@ class Result {
         this.targetURL = targetURL;
     }
 
+    URL getTargetURL() {
+        return targetURL;
+    }
+
     void setRequestMethod(String method) {
         this.requestMethod = method;
     }
 
+    String getRequestMethod() {
+        return requestMethod;
+    }
+
     void setRequestHeaders(Map<String, String> requestHeaders) {
         this.requestHeaders = requestHeaders;
     }
@@ -107,6 +122,13 @@ class Result {
         }
     }
 
+    /**
+     * Summary of the call, to be handed back to the process task that started it
+     */
+    ValueMap toOutcome(boolean successful) {
+        return new ValueMap(OUTCOME_SUCCESSFUL, successful, OUTCOME_OUTPUT, toJSON(), OUTCOME_ERROR, errorDescription, OUTCOME_EXCEPTION, getException(), OUTCOME_DEBUG_INFO, getDebugInfo());
+    }
+
     ValueMap toJSON() {
         ValueMap responseJson = new ValueMap();
 
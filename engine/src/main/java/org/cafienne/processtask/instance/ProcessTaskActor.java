@@ -43,8 +43,10 @@ public class ProcessTaskActor extends ModelActor {
     private String rootActorId;
     private SubProcess<?> taskImplementation;
     private ValueMap inputParameters;
+    private ValueMap resolvedInputParameters;
     private ValueMap outputParameters;
     private ParentProcessTaskState processTaskState; // Can only be created when the parent invokes us
+    private boolean running; // Whether the process is started or reactivated, and not yet completed, failed or terminated
 
     public ProcessTaskActor(CaseSystem caseSystem) {
         super(caseSystem);
@@ -78,14 +80,27 @@ public class ProcessTaskActor extends ModelActor {
         return rootActorId;
     }
 
+    /**
+     * Returns the input of the process, with references to large values in the blob store replaced by their content.
+     */
     public ValueMap getMappedInputParameters() {
-        return inputParameters;
+        if (resolvedInputParameters == null && inputParameters != null) {
+            resolvedInputParameters = caseSystem.blobStorage().resolve(inputParameters);
+        }
+        return resolvedInputParameters;
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * Returns true if the process has been started (or reactivated), and has not yet completed, failed or terminated.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
     public <S extends SubProcess<?>> S getImplementation() {
         return (S) taskImplementation;
     }
@@ -106,6 +121,8 @@ public class ProcessTaskActor extends ModelActor {
         this.parentActorId = event.parentActorId;
         this.rootActorId = event.rootActorId;
         this.inputParameters = event.inputParameters;
+        this.resolvedInputParameters = null;
+        this.running = true;
         if (!recoveryRunning()) {
             addDebugInfo(() -> "Starting process task " + name + " with input: ", inputParameters);
             getImplementation().start();
@@ -115,6 +132,8 @@ public class ProcessTaskActor extends ModelActor {
     public void updateState(ProcessReactivated event) {
         this.taskImplementation = definition.getImplementation().createInstance(this);
         this.inputParameters = event.inputParameters;
+        this.resolvedInputParameters = null;
+        this.running = true;
         if (!recoveryRunning()) {
             addDebugInfo(() -> "Reactivating process " + getName());
             getImplementation().resetOutput();
@@ -137,6 +156,9 @@ public class ProcessTaskActor extends ModelActor {
     }
 
     public void updateState(ProcessTerminated event) {
+        this.running = false;
+        // The call of the process (if any) may still be in progress, but its outcome is no longer needed
+        caseSystem.processCalls().forget(getId());
         if (!recoveryRunning()) {
             addDebugInfo(() -> "Terminating process " + getName());
             getImplementation().terminate();
@@ -144,6 +166,7 @@ public class ProcessTaskActor extends ModelActor {
     }
 
     public void updateState(ProcessCompleted event) {
+        this.running = false;
         this.outputParameters = event.output;
         addDebugInfo(() -> "Completing process task " + name + " of process type " + getImplementation().getClass().getName() + " with output:", outputParameters);
         if (recoveryFinished()) {
@@ -152,6 +175,7 @@ public class ProcessTaskActor extends ModelActor {
     }
 
     public void updateState(ProcessFailed event) {
+        this.running = false;
         outputParameters = event.output;
         processTaskState.inform(new FailTask(this, outputParameters));
 
@@ -169,25 +193,33 @@ public class ProcessTaskActor extends ModelActor {
         addDebugInfo(() -> "====== Completed Migration on ProcessTask[" + getId() + "] with name " + getDefinition().getName());
     }
 
+    @Override
+    protected void recoveryCompleted() {
+        super.recoveryCompleted();
+        if (running) {
+            getImplementation().recoveryCompleted();
+        }
+    }
+
     @Override
     protected Logger getLogger() {
         return logger;
     }
 
     public void completed(ValueMap processOutputParameters) {
-        addEvent(new ProcessCompleted(this, processOutputParameters));
+        addEvent(new ProcessCompleted(this, caseSystem.blobStorage().externalize(processOutputParameters)));
     }
 
     public void failed(String errorDescription, ValueMap processOutputParameters) {
         addDebugInfo(() -> "Encountered failure in process task '" + name + "' of process type " + getImplementation().getClass().getName());
         addDebugInfo(() -> "Error: " + errorDescription);
         addDebugInfo(() -> "Output: ", processOutputParameters);
-        addEvent(new ProcessFailed(this, processOutputParameters));
+        addEvent(new ProcessFailed(this, caseSystem.blobStorage().externalize(processOutputParameters)));
     }
 
     public void failed(ValueMap processOutputParameters) {
         addDebugInfo(() -> "Reporting failure in process task " + name + " of process type " + getImplementation().getClass().getName() + " with output: ", processOutputParameters);
-        addEvent(new ProcessFailed(this, processOutputParameters));
+        addEvent(new ProcessFailed(this, caseSystem.blobStorage().externalize(processOutputParameters)));
     }
 
     @Override
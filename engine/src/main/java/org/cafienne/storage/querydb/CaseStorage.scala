@@ -17,10 +17,11 @@
 
 package org.cafienne.storage.querydb
 
-import org.cafienne.persistence.querydb.materializer.slick.QueryDBWriter
+import org.cafienne.persistence.querydb.materializer.slick.{QueryDBWriter, StatisticsUpdates}
+import org.cafienne.persistence.querydb.record.CaseStatisticsRecord
 import org.cafienne.persistence.querydb.schema.table.{CaseTables, TaskTables}
 
-class CaseStorage(val writer: QueryDBWriter) extends QueryDBStorage with CaseTables with TaskTables {
+class CaseStorage(val writer: QueryDBWriter) extends QueryDBStorage with CaseTables with TaskTables with StatisticsUpdates {
 
   import dbConfig.profile.api._
 
@@ -28,12 +29,19 @@ class CaseStorage(val writer: QueryDBWriter) extends QueryDBStorage with CaseTab
     addStatement(TableQuery[CaseInstanceDefinitionTable].filter(_.caseInstanceId === caseId).delete)
     addStatement(TableQuery[PlanItemTable].filter(_.caseInstanceId === caseId).delete)
     addStatement(TableQuery[CaseFileTable].filter(_.caseInstanceId === caseId).delete)
+    addStatement(TableQuery[CaseFileItemTable].filter(_.caseInstanceId === caseId).delete)
     addStatement(TableQuery[CaseBusinessIdentifierTable].filter(_.caseInstanceId === caseId).delete)
     addStatement(TableQuery[CaseInstanceRoleTable].filter(_.caseInstanceId === caseId).delete)
     addStatement(TableQuery[CaseInstanceTeamUserTable].filter(_.caseInstanceId === caseId).delete)
     addStatement(TableQuery[CaseInstanceTeamTenantRoleTable].filter(_.caseInstanceId === caseId).delete)
     addStatement(TableQuery[CaseInstanceTeamGroupTable].filter(_.caseInstanceId === caseId).delete)
     addStatement(TableQuery[TaskTable].filter(_.caseInstanceId === caseId).delete)
+    addStatement(TableQuery[TaskStatisticsTable].filter(_.caseInstanceId === caseId).delete)
+    // The case no longer counts in the statistics of its name and state
+    addStatement(TableQuery[CaseInstanceTable].filter(_.id === caseId).result.headOption.flatMap {
+      case Some(record) => DBIO.sequence(CaseStatisticsRecord.delta(Some(record), None).map(incrementCaseStatistics))
+      case None => DBIO.successful(0)
+    })
     addStatement(TableQuery[CaseInstanceTable].filter(_.id === caseId).delete)
     commit()
   }
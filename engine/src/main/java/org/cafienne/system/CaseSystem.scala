@@ -20,11 +20,18 @@ package org.cafienne.system
 import com.typesafe.scalalogging.LazyLogging
 import org.apache.pekko.actor._
 import org.cafienne.actormodel.identity.{CaseSystemIdentityRegistration, IdentityRegistration}
+import org.cafienne.cmmn.definition.DefinitionsDocumentCache
+import org.cafienne.cmmn.expression.spel.{EvaluationContextPool, Evaluator}
 import org.cafienne.infrastructure.EngineVersion
 import org.cafienne.infrastructure.config.CaseSystemConfig
 import org.cafienne.infrastructure.config.util.SystemConfig
+import org.cafienne.infrastructure.serialization.SerializationFormat
+import org.cafienne.persistence.blob.BlobStorage
 import org.cafienne.persistence.eventdb.EventDB
+import org.cafienne.persistence.infrastructure.lastmodified.LastModifiedRegistration
 import org.cafienne.persistence.querydb.schema.QueryDB
+import org.cafienne.processtask.implementation.ProcessCalls
+import org.cafienne.processtask.implementation.http.HTTPCallExecutor
 import org.cafienne.system.bootstrap.BootstrapPlatformConfiguration
 
 import scala.concurrent.ExecutionContextExecutor
@@ -47,6 +54,19 @@ class CaseSystem(val systemConfig: SystemConfig, val system: ActorSystem, val qu
 
   implicit val ec: ExecutionContextExecutor = system.dispatcher
 
+  // Determine the format in which events are written
+  SerializationFormat.configure(config.persistence.eventDB.serializationFormat)
+  // Size the cache of definitions read from events before any of the model actors starts recovery
+  DefinitionsDocumentCache.configure(config.repository.deserializationCacheSize)
+  // Expressions are parsed when definitions are loaded, so also configure the expression evaluation upfront
+  Evaluator.configure(config.engine.interpreter.spelCompilerMode)
+  EvaluationContextPool.configure(config.engine.interpreter.spelContextPoolSize)
+  // Bounds of the registrations that queries use to wait for the projection of the last modified moment of an actor
+  LastModifiedRegistration.configure(config.persistence.queryDB.lastModifiedMaxSize, config.persistence.queryDB.lastModifiedRetention.toMillis, config.persistence.queryDB.lastModifiedWaiterTimeout.toMillis)
+  // Events may refer to definitions stored in the event database. Note: the store is only instantiated upon first usage.
+  private lazy val definitionSourceStore = eventDB.createDefinitionSourceStore(system)
+  DefinitionsDocumentCache.useSourceStore(() => definitionSourceStore.orNull, config.persistence.eventDB.storeDefinitionsByReference)
+
   /**
     * Retrieve a router for case messages. This will forward the messages to the correct case instance
     */
@@ -54,6 +74,22 @@ class CaseSystem(val systemConfig: SystemConfig, val system: ActorSystem, val qu
 
   val service: CaseServiceGateway = new CaseServiceGateway(this)
 
+  /**
+    * Large task output is kept outside of the events if a blob store is enabled
+    */
+  lazy val blobStorage: BlobStorage = config.persistence.blobStore.storage
+
+  /**
+    * Calls that process tasks run outside of their actor, kept so that a process task can recover while waiting for the outcome
+    */
+  val processCalls: ProcessCalls = new ProcessCalls
+
+  /**
+    * Http calls of process tasks run on their own threads, with bounded concurrency
+    */
+  val httpCallExecutor: HTTPCallExecutor = new HTTPCallExecutor(config.engine.httpCall)
+  system.registerOnTermination(httpCallExecutor.shutdown())
+
   lazy val identityRegistration: IdentityRegistration = new CaseSystemIdentityRegistration(this)
 
   // First, start platform bootstrap configuration
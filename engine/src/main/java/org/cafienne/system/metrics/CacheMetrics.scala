@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.system.metrics
+
+import org.cafienne.json.ValueMap
+
+import java.util.concurrent.atomic.LongAdder
+
+/**
+  * Keeps track of hits, misses and evictions of a cache.
+  * Counters are lock free, so that they can be updated from any thread without contention.
+  */
+class CacheMetrics(val key: String) extends MetricsMeasurePoint {
+  private val hits = new LongAdder
+  private val misses = new LongAdder
+  private val evictions = new LongAdder
+  @volatile private var sizeProvider: () => Int = () => 0
+
+  def hit(): Unit = hits.increment()
+
+  def miss(): Unit = misses.increment()
+
+  def eviction(): Unit = evictions.increment()
+
+  def hitCount: Long = hits.sum()
+
+  def missCount: Long = misses.sum()
+
+  def evictionCount: Long = evictions.sum()
+
+  /**
+    * Register a function that gives the current number of entries in the cache
+    */
+  def withSize(provider: java.util.function.IntSupplier): CacheMetrics = {
+    sizeProvider = () => provider.getAsInt
+    this
+  }
+
+  def hitRatio: Double = {
+    val total = hitCount + missCount
+    if (total == 0) 0d else hitCount.toDouble / total
+  }
+
+  override def asJSON(): ValueMap = {
+    new ValueMap("size", sizeProvider(), "hits", hitCount, "misses", missCount, "evictions", evictionCount, "hit-ratio", hitRatio)
+  }
+}
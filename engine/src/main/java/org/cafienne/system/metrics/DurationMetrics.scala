@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.system.metrics
+
+import org.cafienne.json.ValueMap
+
+import java.util.concurrent.atomic.{LongAccumulator, LongAdder}
+
+/**
+  * Keeps track of the number of times an operation was measured, and of the total and maximum time it took.
+  * Counters are lock free, so that they can be updated from any thread without contention.
+  */
+class DurationMetrics(val key: String) extends MetricsMeasurePoint {
+  private val count = new LongAdder
+  private val totalNanos = new LongAdder
+  private val maxNanos = new LongAccumulator((a: Long, b: Long) => Math.max(a, b), 0)
+
+  /**
+    * Record a single measurement, with the duration in nanoseconds
+    */
+  def record(nanos: Long): Unit = {
+    count.increment()
+    totalNanos.add(nanos)
+    maxNanos.accumulate(nanos)
+  }
+
+  /**
+    * Measure the duration of the given operation, also if it fails
+    */
+  def measure[T](operation: => T): T = {
+    val start = System.nanoTime()
+    try {
+      operation
+    } finally {
+      record(System.nanoTime() - start)
+    }
+  }
+
+  override def asJSON(): ValueMap = {
+    val measurements = count.sum()
+    val total = totalNanos.sum()
+    val average = if (measurements == 0) 0d else total.toDouble / measurements / 1000000
+    new ValueMap("count", measurements, "total-ms", total / 1000000, "average-ms", average, "max-ms", maxNanos.get() / 1000000d)
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.system.metrics
+
+import org.cafienne.json.ValueMap
+
+import java.util
+import java.util.Collections
+
+/**
+  * A set of named values that are read at the moment the metrics are reported,
+  * e.g. the size of a queue or the age of its oldest element.
+  */
+class GaugeMetrics(val key: String) extends MetricsMeasurePoint {
+  private val gauges: util.Map[String, java.util.function.LongSupplier] = Collections.synchronizedMap(new util.LinkedHashMap[String, java.util.function.LongSupplier]())
+
+  /**
+    * Register a function that gives the current value of the gauge with the given name
+    */
+  def withGauge(name: String, provider: java.util.function.LongSupplier): GaugeMetrics = {
+    gauges.put(name, provider)
+    this
+  }
+
+  override def asJSON(): ValueMap = {
+    val json = new ValueMap()
+    gauges.synchronized {
+      gauges.forEach((name, provider) => json.plus(name, provider.getAsLong))
+    }
+    json
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.system.metrics
+
+import org.cafienne.json.ValueMap
+
+import java.util
+import java.util.Collections
+
+/**
+  * Metrics monitor keeps track of runtime measurements inside the Case System,
+  * like the effectiveness of the various caches.
+  */
+object MetricsMonitor {
+
+  // Make it an ordered map, so that the json structure is stable.
+  private val measures: util.Map[String, MetricsMeasurePoint] = Collections.synchronizedMap(new util.LinkedHashMap[String, MetricsMeasurePoint]())
+
+  def report: ValueMap = {
+    val json = new ValueMap()
+    measures.synchronized {
+      measures.forEach((key, measure) => json.put(key, measure.asJSON()))
+    }
+    json
+  }
+
+  /**
+    * Adds a measure point. If a measure point with the same key is already registered, that one is returned instead.
+    */
+  def addMeasure[M <: MetricsMeasurePoint](measure: M): M = {
+    measures.putIfAbsent(measure.key, measure) match {
+      case null => measure
+      case existing => existing.asInstanceOf[M]
+    }
+  }
+
+  def addCache(key: String): CacheMetrics = addMeasure(new CacheMetrics(key))
+
+  def addGauges(key: String): GaugeMetrics = addMeasure(new GaugeMetrics(key))
+
+  def addDurations(key: String): DurationMetrics = addMeasure(new DurationMetrics(key))
+}
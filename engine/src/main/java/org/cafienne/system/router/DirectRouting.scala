@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.cafienne.system.router
+
+import com.typesafe.scalalogging.LazyLogging
+import org.apache.pekko.actor.{ActorRef, Props}
+import org.cafienne.actormodel.command.ModelCommand
+import org.cafienne.system.CaseSystem
+
+import scala.collection.concurrent.TrieMap
+
+/**
+  * Local routing that sends commands directly to the ModelActor if it is in memory,
+  * instead of passing each and every command through a single router actor.
+  * ModelActors are created and watched by a striped set of LocalRouter actors that act as supervisors.
+  * The stripe is determined by the actor id, so that an actor is always created and terminated by the same supervisor,
+  * and only commands for actors that are not (yet) in memory go through a supervisor.
+  * When an actor stops, the supervisor first removes it from the routing table, and keeps the commands for it
+  * until it has terminated. A command for which the reference was read just before the removal can still reach
+  * the stopping actor. The actor hands such commands back to its supervisor, and the ones that arrive after it
+  * has stopped are picked up by the supervisor from the dead letters. Either way they reach a new instance of the actor.
+  */
+class DirectRouting(caseSystem: CaseSystem) extends ModelActorRouting with LazyLogging {
+  private val numberOfSupervisors: Int = caseSystem.config.actor.numberOfSupervisors
+  private val terminationRequests = TrieMap[String, ActorRef]()
+  private val actors = TrieMap[String, ActorRef]()
+  private val supervisors: Array[ActorRef] = Array.tabulate(numberOfSupervisors)(stripe => {
+    caseSystem.system.actorOf(Props.create(classOf[LocalRouter], caseSystem, actors, terminationRequests), s"model-actors-$stripe")
+  })
+  logger.info(s"Starting case system in local mode, with direct routing through $numberOfSupervisors supervisors")
+
+  private def supervisorOf(actorId: String): ActorRef = supervisors(Math.abs(actorId.hashCode % numberOfSupervisors))
+
+  override def route(command: ModelCommand): ActorRef = actors.getOrElse(command.actorId, supervisorOf(command.actorId))
+
+  override def terminationRoute(actorId: String): ActorRef = supervisorOf(actorId)
+}
@@ -18,8 +18,8 @@
 package org.cafienne.system.router
 
 import com.typesafe.scalalogging.LazyLogging
-import org.apache.pekko.actor.{Actor, ActorRef, Props, Terminated}
-import org.cafienne.actormodel.command.{ModelCommand, TerminateModelActor}
+import org.apache.pekko.actor.{Actor, ActorRef, DeadLetter, Terminated}
+import org.cafienne.actormodel.command.{ModelCommand, StopModelActor, TerminateModelActor}
 import org.cafienne.actormodel.response.ActorTerminated
 import org.cafienne.infrastructure.serialization.DeserializationFailure
 import org.cafienne.system.CaseSystem
@@ -31,14 +31,20 @@ import scala.collection.mutable
  * Facilitates actor management in a non-clustered actor system.
  */
 class LocalRouter(caseSystem: CaseSystem, actors: mutable.Map[String, ActorRef], terminationRequests: mutable.Map[String, ActorRef]) extends Actor with LazyLogging {
+  // Commands for ModelActors that are stopping; they are forwarded to a new ModelActor when the old one has terminated
+  private val stoppingActors = mutable.Map[String, Seq[(ModelCommand, ActorRef)]]()
   logger.info(s"Starting case system in local mode, opening router for ${self.path.name}")
+  // Commands that reach a ModelActor after it has stopped end up in dead letters; we pick them up to route them again
+  context.system.eventStream.subscribe(self, classOf[DeadLetter])
 
   def receive: Actor.Receive = {
     case kill: TerminateModelActor =>
       logger.info(s"Received termination request for actor ${kill.actorId}")
       terminateActor(kill)
-    case m: ModelCommand => forwardMessage(m)
+    case m: ModelCommand => forwardMessage(m, sender())
+    case LocalRouter.Passivate => passivate(sender())
     case t: Terminated => removeActorRef(t)
+    case d: DeadLetter => handleDeadLetter(d)
     case d: DeserializationFailure => handleDeserializationFailure(d)
     case other => handleUnknownMessage(other);
   }
@@ -57,8 +63,25 @@ class LocalRouter(caseSystem: CaseSystem, actors: mutable.Map[String, ActorRef],
     *
     * @param m
     */
-  def forwardMessage(m: ModelCommand): Unit = {
-    actors.getOrElseUpdate(m.actorId, createActorRef(m)).forward(m)
+  def forwardMessage(m: ModelCommand, sender: ActorRef): Unit = {
+    if (stoppingActors.contains(m.actorId)) {
+      stoppingActors.put(m.actorId, stoppingActors(m.actorId) :+ (m, sender))
+    } else {
+      actors.getOrElseUpdate(m.actorId, createActorRef(m)).tell(m, sender)
+    }
+  }
+
+  /**
+    * A command that was routed directly to a ModelActor, but only arrived after the actor stopped, is routed again.
+    * This is the case for commands still in the mailbox of a terminated actor, and for commands sent to it afterwards.
+    */
+  private def handleDeadLetter(deadLetter: DeadLetter): Unit = {
+    deadLetter.message match {
+      case m: ModelCommand if deadLetter.recipient.path.parent == self.path =>
+        logger.whenDebugEnabled(logger.debug(s"Routing ${m.getClass.getSimpleName} again, as ModelActor[${m.actorId}] stopped before it could handle it"))
+        forwardMessage(m, deadLetter.sender)
+      case _ => // Not a command for one of our actors
+    }
   }
 
   /**
@@ -69,7 +92,7 @@ class LocalRouter(caseSystem: CaseSystem, actors: mutable.Map[String, ActorRef],
     */
   private def createActorRef(m: ModelCommand): ActorRef = {
     // Note: we create the ModelActor as a child to our context
-    val ref = context.actorOf(Props.create(m.actorClass, caseSystem), m.actorId)
+    val ref = context.actorOf(ModelActorRouting.props(caseSystem, m), m.actorId)
     // Also start watching the lifecycle of the model actor
     context.watch(ref)
     ref
@@ -77,14 +100,40 @@ class LocalRouter(caseSystem: CaseSystem, actors: mutable.Map[String, ActorRef],
 
   def terminateActor(msg: TerminateModelActor): Unit = {
     val actorId = msg.actorId;
-    // If the actor is not (or no longer) in memory, We can immediately inform the sender
-    actors.get(actorId).fold({
-      sender() ! ActorTerminated(actorId)
-    })(actor => {
-      // Otherwise, store the request, stop the actor and, when the Termination is received, we will inform the requester.
+    if (stoppingActors.contains(actorId)) {
+      // The actor is already stopping; inform the requester when the Termination is received.
       terminationRequests.put(actorId, sender())
-      context.stop(actor)
-    })
+    } else {
+      // If the actor is not (or no longer) in memory, We can immediately inform the sender
+      actors.get(actorId).fold({
+        sender() ! ActorTerminated(actorId)
+      })(actor => {
+        // Otherwise, store the request, stop the actor and, when the Termination is received, we will inform the requester.
+        terminationRequests.put(actorId, sender())
+        stopActor(actorId, actor, gracefully = false)
+      })
+    }
+  }
+
+  /**
+    * The ModelActor has been idle and asks to be removed from memory. It handles the messages it already has before it stops.
+    */
+  private def passivate(actor: ActorRef): Unit = {
+    val actorId = actor.path.name
+    if (actors.get(actorId).contains(actor)) {
+      stopActor(actorId, actor, gracefully = true)
+    }
+  }
+
+  /**
+    * Removes the routing reference before stopping the actor, so that new commands come to the router
+    * and are kept until the actor has terminated, instead of being sent to an actor that is stopping.
+    * Gracefully means the actor handles the messages it already has, and hands back the commands that reach it later.
+    */
+  private def stopActor(actorId: String, actor: ActorRef, gracefully: Boolean): Unit = {
+    actors.remove(actorId)
+    stoppingActors.put(actorId, Seq())
+    if (gracefully) actor ! StopModelActor(actorId) else context.stop(actor)
   }
 
   /**
@@ -96,9 +145,19 @@ class LocalRouter(caseSystem: CaseSystem, actors: mutable.Map[String, ActorRef],
   def removeActorRef(t: Terminated): Unit = {
     val actorId = t.actor.path.name
     logger.whenDebugEnabled(logger.debug("ModelActor[" + actorId + "] has been terminated. Removing routing reference"))
-    if (actors.remove(actorId).isEmpty) {
+    val pendingCommands = stoppingActors.remove(actorId)
+    if (actors.remove(actorId).isEmpty && pendingCommands.isEmpty) {
       logger.warn("Received a Termination message for actor " + actorId + ", but it was not registered in the LocalRoutingService. Termination message is ignored")
     }
     terminationRequests.remove(actorId).foreach(requester => requester ! ActorTerminated(actorId))
+    // Commands that arrived while the actor was stopping go to a new instance of it
+    pendingCommands.toSeq.flatten.foreach(pending => actors.getOrElseUpdate(actorId, createActorRef(pending._1)).tell(pending._1, pending._2))
   }
 }
+
+object LocalRouter {
+  /**
+    * Sent by a ModelActor that has been idle, to be removed from memory
+    */
+  case object Passivate
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.cafienne.system.router
+
+import com.typesafe.scalalogging.LazyLogging
+import org.apache.pekko.actor.{Actor, ActorRef, PoisonPill, Terminated}
+import org.apache.pekko.cluster.sharding.ShardRegion
+import org.cafienne.actormodel.command.{ModelCommand, TerminateModelActor}
+import org.cafienne.actormodel.response.ActorTerminated
+import org.cafienne.system.CaseSystem
+
+/**
+  * Sharded entity that holds a single ModelActor. The ModelActor is created upon the first command,
+  * with the actor class that the command requires, and with the actor id as its name.
+  * When the ModelActor has been idle, it asks the entity to passivate, and the entity stops it through the shard,
+  * so that messages that arrive in the meantime are buffered by the shard instead of getting lost.
+  * Commands that reach the entity while the ModelActor is stopping are buffered until it has terminated.
+  */
+class ModelActorEntity(caseSystem: CaseSystem) extends Actor with LazyLogging {
+  private var modelActor: Option[ActorRef] = None
+  private var actorStopping = false
+  private var pendingCommands: Seq[(ModelCommand, ActorRef)] = Seq()
+  private var terminationRequests: Seq[ActorRef] = Seq()
+  private var stopping = false
+
+  def receive: Actor.Receive = {
+    case command: ModelCommand => forwardCommand(command)
+    case kill: TerminateModelActor => terminateActor(kill)
+    case ModelActorEntity.Idle => passivate()
+    case ModelActorEntity.Stop =>
+      stopping = true
+      // Let the ModelActor handle the messages it already has, before stopping
+      modelActor.fold(if (!actorStopping) context.stop(self))(actor => stopModelActor(actor, gracefully = true))
+    case t: Terminated => removeActorRef(t)
+    case other => logger.warn("The " + getClass.getSimpleName + " received an unknown message of type " + other.getClass.getName)
+  }
+
+  private def forwardCommand(command: ModelCommand): Unit = {
+    if (actorStopping) {
+      pendingCommands :+= (command, sender())
+    } else {
+      getModelActor(command).forward(command)
+    }
+  }
+
+  private def getModelActor(command: ModelCommand): ActorRef = {
+    modelActor.getOrElse({
+      val ref = context.actorOf(ModelActorRouting.props(caseSystem, command), command.actorId)
+      context.watch(ref)
+      modelActor = Some(ref)
+      ref
+    })
+  }
+
+  /**
+    * Clears the reference to the ModelActor before stopping it, so that no commands are sent to it after the stop.
+    * Gracefully means that the ModelActor first handles the messages it already has.
+    */
+  private def stopModelActor(actor: ActorRef, gracefully: Boolean): Unit = {
+    modelActor = None
+    actorStopping = true
+    if (gracefully) actor ! PoisonPill else context.stop(actor)
+  }
+
+  private def terminateActor(kill: TerminateModelActor): Unit = {
+    logger.info(s"Received termination request for actor ${kill.actorId}")
+    if (actorStopping) {
+      terminationRequests :+= sender()
+    } else {
+      modelActor.fold({
+        sender() ! ActorTerminated(kill.actorId)
+        passivate()
+      })(actor => {
+        terminationRequests :+= sender()
+        stopModelActor(actor, gracefully = false)
+      })
+    }
+  }
+
+  private def removeActorRef(t: Terminated): Unit = {
+    val actorId = t.actor.path.name
+    logger.whenDebugEnabled(logger.debug("ModelActor[" + actorId + "] has been terminated"))
+    modelActor = None
+    actorStopping = false
+    terminationRequests.foreach(requester => requester ! ActorTerminated(actorId))
+    terminationRequests = Seq()
+    val commands = pendingCommands
+    pendingCommands = Seq()
+    if (stopping) {
+      // Hand the pending commands back to the shard; it buffers them and starts a new entity when this one has stopped
+      commands.foreach(pending => context.parent.tell(pending._1, pending._2))
+      context.stop(self)
+    } else if (commands.nonEmpty) {
+      // Commands arrived during termination; they go to a new instance of the ModelActor
+      commands.foreach(pending => getModelActor(pending._1).tell(pending._1, pending._2))
+    } else {
+      passivate()
+    }
+  }
+
+  private def passivate(): Unit = {
+    context.parent ! ShardRegion.Passivate(ModelActorEntity.Stop)
+  }
+}
+
+object ModelActorEntity {
+  /**
+    * Sent by the ModelActor when it has been idle for the configured period
+    */
+  case object Idle
+
+  /**
+    * Sent by the shard when the entity can stop
+    */
+  case object Stop
+}
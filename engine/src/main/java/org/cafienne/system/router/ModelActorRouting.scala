@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.cafienne.system.router
+
+import org.apache.pekko.actor.{ActorRef, Props}
+import org.cafienne.actormodel.ModelActor
+import org.cafienne.actormodel.command.ModelCommand
+import org.cafienne.processtask.instance.ProcessTaskActor
+import org.cafienne.system.CaseSystem
+
+/**
+  * Determines how the CaseEngineGateway gets messages to the ModelActors.
+  */
+trait ModelActorRouting {
+  /**
+    * Returns the actor to which the command must be sent in order to get it to the ModelActor
+    */
+  def route(command: ModelCommand): ActorRef
+
+  /**
+    * Returns the actor that handles a TerminateModelActor request for the actor with the given id
+    */
+  def terminationRoute(actorId: String): ActorRef
+
+  /**
+    * Remove the ModelActor from memory, as it has been idle for a while.
+    * The LocalRouter that supervises the actor stops it, and keeps new commands until it has terminated.
+    */
+  def passivate(actor: ModelActor): Unit = {
+    actor.getContext.getParent.tell(LocalRouter.Passivate, actor.self)
+  }
+}
+
+object ModelActorRouting {
+  /**
+    * Returns the Props to create the ModelActor that handles the command.
+    * Process tasks run on a separate dispatcher, as their implementations may block.
+    */
+  def props(caseSystem: CaseSystem, command: ModelCommand): Props = {
+    val props = Props.create(command.actorClass, caseSystem)
+    if (command.actorClass == classOf[ProcessTaskActor]) props.withDispatcher("pekko.actor.processtask-dispatcher") else props
+  }
+}
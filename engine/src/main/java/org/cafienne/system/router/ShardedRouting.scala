@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.cafienne.system.router
+
+import com.typesafe.scalalogging.LazyLogging
+import org.apache.pekko.actor.{ActorRef, Props}
+import org.apache.pekko.cluster.sharding.{ClusterSharding, ClusterShardingSettings, ShardRegion}
+import org.cafienne.actormodel.ModelActor
+import org.cafienne.actormodel.command.{ModelCommand, TerminateModelActor}
+import org.cafienne.system.CaseSystem
+
+/**
+  * Routing through Pekko Cluster Sharding, so that the ModelActors are spread across the nodes of the cluster.
+  * There is a single shard region for all types of ModelActor; each entity is a [[ModelActorEntity]] that
+  * creates the ModelActor of the type required by the first command it receives.
+  * Note that this requires the actor system to run with the cluster actor provider.
+  */
+class ShardedRouting(caseSystem: CaseSystem) extends ModelActorRouting with LazyLogging {
+  private val numberOfShards: Int = caseSystem.config.actor.numberOfShards
+  logger.info(s"Starting case system in clustered mode, with $numberOfShards shards")
+
+  private val extractEntityId: ShardRegion.ExtractEntityId = {
+    case command: ModelCommand => (command.actorId, command)
+    case kill: TerminateModelActor => (kill.actorId, kill)
+  }
+
+  private val extractShardId: ShardRegion.ExtractShardId = {
+    case command: ModelCommand => shardOf(command.actorId)
+    case kill: TerminateModelActor => shardOf(kill.actorId)
+    case ShardRegion.StartEntity(actorId) => shardOf(actorId)
+  }
+
+  private def shardOf(actorId: String): String = Math.abs(actorId.hashCode % numberOfShards).toString
+
+  // Entities are passivated based on the idle period of the ModelActor, so no passivation strategy from sharding itself
+  private val region: ActorRef = ClusterSharding(caseSystem.system).start(
+    typeName = "model-actors",
+    entityProps = Props.create(classOf[ModelActorEntity], caseSystem),
+    settings = ClusterShardingSettings(caseSystem.system).withNoPassivationStrategy(),
+    extractEntityId = extractEntityId,
+    extractShardId = extractShardId)
+
+  override def route(command: ModelCommand): ActorRef = region
+
+  override def terminationRoute(actorId: String): ActorRef = region
+
+  override def passivate(actor: ModelActor): Unit = {
+    actor.getContext.getParent.tell(ModelActorEntity.Idle, actor.self)
+  }
+}
@@ -18,6 +18,7 @@
 package org.cafienne.timerservice
 
 import org.cafienne.actormodel.identity.{CaseUserIdentity, Origin}
+import org.cafienne.cmmn.actorapi.event.plan.eventlistener.TimerSet
 
 import java.time.Instant
 
@@ -27,3 +28,14 @@ case class Timer(caseInstanceId: String, timerId: String, moment: Instant, userI
   override def toString: String = s"[$timerId - $moment]"
 }
 
+object Timer {
+  def apply(event: TimerSet): Timer = Timer(event.getCaseInstanceId, event.getTimerId, event.getTargetMoment, event.getUser.id)
+
+  /**
+    * Timers are ordered on their moment, and then on their id, which is the order in which the TimerService pages through them
+    */
+  implicit val ordering: Ordering[Timer] = (x: Timer, y: Timer) => {
+    val byMoment = x.moment.compareTo(y.moment)
+    if (byMoment != 0) byMoment else x.timerId.compareTo(y.timerId)
+  }
+}
@@ -19,6 +19,7 @@ package org.cafienne.timerservice
 
 import org.apache.pekko.Done
 import org.apache.pekko.actor.ActorSystem
+import org.apache.pekko.pattern.retry
 import org.apache.pekko.persistence.query.Offset
 import org.apache.pekko.stream.RestartSettings
 import org.apache.pekko.stream.scaladsl.Sink
@@ -26,7 +27,9 @@ import org.cafienne.cmmn.actorapi.event.plan.eventlistener._
 import org.cafienne.infrastructure.cqrs.{ModelEventEnvelope, TaggedEventSource}
 import org.cafienne.system.health.HealthMonitor
 
-import scala.concurrent.Future
+import scala.collection.mutable
+import scala.concurrent.{ExecutionContext, Future}
+import scala.concurrent.duration.FiniteDuration
 import scala.util.{Failure, Success}
 
 class TimerEventSink(val timerService: TimerService) extends TaggedEventSource {
@@ -36,19 +39,43 @@ class TimerEventSink(val timerService: TimerService) extends TaggedEventSource {
 
   override def getOffset: Future[Offset] = timerService.storage.getOffset
   override val tag: String = TimerBaseEvent.TAG
+  private val batchSize: Int = timerService.caseSystem.config.engine.timerService.eventBatchSize
+  private val batchLatency: FiniteDuration = timerService.caseSystem.config.engine.timerService.eventBatchLatency
 
-  def consumeModelEvent(envelope: ModelEventEnvelope): Future[Done] = {
+  /**
+    * Timer changes are applied to the in-memory schedule right away, so that timers that are near are not delayed by storing them.
+    */
+  def consumeModelEvent(envelope: ModelEventEnvelope): ModelEventEnvelope = {
     envelope.event match {
       case event: TimerSet =>
         logger.debug(s"${event.getClass.getSimpleName} on timer ${event.getTimerId} in case ${event.getActorId} (triggering at ${event.getTargetMoment})")
-        timerService.monitor.addTimer(event, envelope.offset)
+        timerService.monitor.addTimer(event)
       case event: TimerCleared =>
         logger.debug(s"${event.getClass.getSimpleName} on timer ${event.getTimerId} in case ${event.getActorId}")
-        timerService.monitor.removeTimer(event.getTimerId, Some(envelope.offset))
+        timerService.monitor.removeTimer(event.getTimerId)
       case other =>
         logger.warn(s"Timer Service received an unexpected event of type ${other.getClass.getName}")
-        Future.successful(Done)
     }
+    envelope
+  }
+
+  /**
+    * Stores the changes of a batch of consecutive timer events in one go.
+    * Only the latest change per timer is stored, along with the offset of the last event.
+    * If storing fails, the same batch is tried again with the backoff of the restart settings.
+    * When all attempts fail, the stream fails, and the offset of the batch has not been stored;
+    * the events of the batch are then read again when the stream is restarted.
+    */
+  def storeModelEvents(envelopes: Seq[ModelEventEnvelope]): Future[Done] = {
+    val (timers, removedTimerIds) = TimerEventSink.latestChanges(envelopes.map(_.event).collect {
+      case event: TimerSet => (event.getTimerId, Some(Timer(event)))
+      case event: TimerCleared => (event.getTimerId, None)
+      // Unexpected events are already reported in consumeModelEvent
+    })
+    val offset = envelopes.lastOption.map(_.offset)
+    TimerEventSink.retryStorage(restartSettings) {
+      timerService.monitor.storeTimers(timers, removedTimerIds, offset)
+    }(system)
   }
 
   /**
@@ -58,7 +85,9 @@ class TimerEventSink(val timerService: TimerService) extends TaggedEventSource {
     import scala.concurrent.ExecutionContext.Implicits.global
 
     taggedEvents
-      .mapAsync(1)(consumeModelEvent)
+      .map(consumeModelEvent)
+      .groupedWithin(batchSize, batchLatency)
+      .mapAsync(1)(storeModelEvents)
       .runWith(Sink.ignore)
       .onComplete {
         case Success(_) => //
@@ -69,3 +98,27 @@ class TimerEventSink(val timerService: TimerService) extends TaggedEventSource {
       }
   }
 }
+
+object TimerEventSink {
+  /**
+    * Reduces a sequence of timer changes to the latest change per timer, in the order of first appearance.
+    * A change is either the new timer, or None if the timer is removed.
+    * Returns the timers to store and the ids of the timers to remove.
+    */
+  def latestChanges(changes: Seq[(String, Option[Timer])]): (Seq[Timer], Seq[String]) = {
+    val latest = mutable.LinkedHashMap[String, Option[Timer]]()
+    changes.foreach(change => latest.put(change._1, change._2))
+    val timers = latest.values.flatten.toSeq
+    val removedTimerIds = latest.collect { case (timerId, None) => timerId }.toSeq
+    (timers, removedTimerIds)
+  }
+
+  /**
+    * Runs the storage function, and runs it again upon failure, with the backoff and maximum number of restarts of the settings.
+    */
+  def retryStorage(settings: RestartSettings)(storage: => Future[Done])(implicit system: ActorSystem): Future[Done] = {
+    implicit val ec: ExecutionContext = system.dispatcher
+    val attempts = if (settings.maxRestarts < 0) Int.MaxValue else settings.maxRestarts + 1
+    retry(() => storage, attempts, settings.minBackoff, settings.maxBackoff, settings.randomFactor)(ec, system.scheduler)
+  }
+}
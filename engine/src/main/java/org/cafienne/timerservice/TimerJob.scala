@@ -18,29 +18,21 @@
 package org.cafienne.timerservice
 
 import com.typesafe.scalalogging.LazyLogging
-import org.apache.pekko.actor.{Cancellable, Scheduler}
 import org.cafienne.actormodel.response.{CommandFailure, ModelResponse}
 import org.cafienne.cmmn.actorapi.command.plan.eventlistener.RaiseEvent
 
-import java.util.concurrent.TimeUnit
-import scala.concurrent.ExecutionContext.Implicits.global
-import scala.concurrent.duration.{Duration, FiniteDuration}
-
-class TimerJob(val timerService: TimerService, val timer: Timer, val scheduler: Scheduler) extends Runnable with LazyLogging {
+/**
+  * A timer that is due within the active window. The TimerMonitor keeps it in its timing wheel, and runs it when the moment has come.
+  * After the timer has been raised, the job is put in the wheel again, to retry raising it if no response is received in time.
+  */
+class TimerJob(val timerService: TimerService, val timer: Timer, val wheel: TimingWheel[TimerJob]) extends Runnable with TimingWheel.Entry with LazyLogging {
   val command = new RaiseEvent(timer.user, timer.caseInstanceId, timer.timerId)
-  private val millis: Long = timer.moment.toEpochMilli
-  private val delay: Long = millis - System.currentTimeMillis
-  private val responseTracker = new ResponseTracker
+  val millis: Long = timer.moment.toEpochMilli
   private var count = 0L
 
-  val duration: FiniteDuration = Duration.create(delay, TimeUnit.MILLISECONDS)
-  logger.whenDebugEnabled(logger.debug(s"Scheduling to run timer request ${timer.timerId} in ${duration.length / 1000}.${duration.length % 1000} seconds from now (at ${timer.moment})"))
-  val schedule: Cancellable = scheduler.scheduleOnce(duration, this)
-
   def run(): Unit = {
-    // This is the first time the timer goes off. We're sending raiseEvent, and start an additional internal timer.
-    //  this internal timer tracks whether a response is gotten back from the case instance.
-    //  if this is not received within 10 seconds, it tries again, up to 10 times.
+    // This is invoked when the timer goes off, and again when no response is received from the case instance within 10 seconds.
+    //  It tries up to 10 times.
     invokeTimer()
   }
 
@@ -50,41 +42,32 @@ class TimerJob(val timerService: TimerService, val timer: Timer, val scheduler:
     if (count > 1) {
       logger.warn(s"Attempt number $count to raise timer $timer in case ${timer.caseInstanceId}.")
     }
+    // Schedule the retry before raising, so that a fast response can cancel it
+    if (count > 10) {
+      logger.warn(s"Tried 10 attempts to trigger timer $timer in case ${timer.caseInstanceId}, without getting a response. Timer-retry mechanism is canceled.")
+    } else {
+      wheel.add(this, System.currentTimeMillis + TimerJob.retryMillis)
+    }
     timerService.caseSystem.engine.inform(command, timerService.self);
-    responseTracker.start()
   }
 
-  def cancel(): Boolean = {
-    responseTracker.stop()
-    schedule.cancel()
+  def cancel(): Unit = {
+    wheel.remove(this)
   }
 
   def handleResponse(response: ModelResponse): Unit = {
-    responseTracker.stop()
+    wheel.remove(this)
     response match {
       case failure: CommandFailure =>
         logger.warn(s"Could not trigger timer $timer in case ${timer.caseInstanceId}:" + failure.exception())
-      case _ => // nothing to do, the response tracker is already stopped.
+      case _ => // nothing to do, the retry is already removed from the wheel.
     }
   }
+}
 
-  private class ResponseTracker extends Runnable {
-    private var retry: Option[Cancellable] = None
-
-    def run(): Unit = {
-      invokeTimer()
-    }
-
-    def start(): Unit = {
-      if (count > 10) {
-        logger.warn(s"Tried 10 attempts to trigger timer $timer in case ${timer.caseInstanceId}, without getting a response. Timer-retry mechanism is canceled.")
-      } else {
-        stop() // First stop any current schedules
-        retry = Some(scheduler.scheduleOnce(Duration.create(10, TimeUnit.SECONDS), this))
-      }
-    }
-    def stop(): Unit = {
-      retry.foreach(_.cancel());
-    }
-  }
+object TimerJob {
+  /**
+    * Time to wait for a response on the RaiseEvent command before trying again
+    */
+  val retryMillis: Long = 10000
 }
@@ -26,15 +26,31 @@ import org.cafienne.cmmn.actorapi.event.plan.eventlistener.TimerSet
 import org.cafienne.storage.actormodel.command.ClearTimerData
 import org.cafienne.storage.actormodel.event.TimerDataCleared
 import org.cafienne.system.health.HealthMonitor
+import org.cafienne.system.metrics.MetricsMonitor
 
+import java.util.concurrent.atomic.LongAdder
 import scala.collection.mutable
 import scala.concurrent.duration.FiniteDuration
 import scala.concurrent.{ExecutionContext, Future}
 
 class TimerMonitor(val timerService: TimerService) extends LazyLogging {
-  private val activeTimers: mutable.Map[String, TimerJob] = mutable.Map()
+  // Active timers by timer id, with additional indexes on the id of the RaiseEvent command and on the case instance id
+  private val activeTimers: mutable.Map[String, TimerJob] = mutable.HashMap()
+  private val timersByMessageId: mutable.Map[String, TimerJob] = mutable.HashMap()
+  private val timersByCase: mutable.Map[String, mutable.Set[TimerJob]] = mutable.HashMap()
   implicit val dispatcher: ExecutionContext = timerService.caseSystem.system.dispatcher
   val scheduler: Scheduler = timerService.caseSystem.system.scheduler
+  val wheelTick: FiniteDuration = timerService.caseSystem.config.engine.timerService.wheelTick
+  private val wheel = new TimingWheel[TimerJob](wheelTick.toMillis, timerService.caseSystem.config.engine.timerService.wheelSize)
+  // Timers whose moment has already passed when they are scheduled (e.g. after downtime) are raised at a limited rate
+  private val overdueTimers: mutable.LinkedHashSet[TimerJob] = mutable.LinkedHashSet()
+  private val overdueRateLimiter = new TokenBucket(timerService.caseSystem.config.engine.timerService.catchUpMaxRate)
+  private val raisedOverdueTimers = new LongAdder
+  MetricsMonitor.addGauges("timer-service")
+    .withGauge("active-timers", () => synchronized(activeTimers.size).toLong)
+    .withGauge("overdue-backlog", () => overdueBacklog.toLong)
+    .withGauge("overdue-lag-ms", () => overdueLag)
+    .withGauge("overdue-raised", () => raisedOverdueTimers.sum())
   val reader = new TimerStorageReader(this)
 
   def start(): Unit = {
@@ -45,13 +61,20 @@ class TimerMonitor(val timerService: TimerService) extends LazyLogging {
     // ... and then schedule the reader to repeat itself at the configured interval
     val interval: FiniteDuration = timerService.caseSystem.config.engine.timerService.interval
     scheduler.scheduleWithFixedDelay(interval, interval)(reader)
+
+    // A single schedule drives the timing wheel, instead of a separate schedule per timer
+    val ticker: Runnable = () => {
+      wheel.advance().foreach(_.run())
+      raiseOverdueTimers()
+    }
+    scheduler.scheduleWithFixedDelay(wheelTick, wheelTick)(ticker)
   }
 
   def handleActorMessage(message: Object): Future[Done] = {
     message match {
       case response: ModelResponse =>
         // Find the active timer we just triggered and inform it about the response
-        activeTimers.values.filter(timer => timer.command.getMessageId eq response.getMessageId).foreach(_.handleResponse(response))
+        synchronized(timersByMessageId.get(response.getMessageId)).foreach(_.handleResponse(response))
         Future.successful(Done)
       case clearTimers: ClearTimerData =>
         val sender: ActorRef = timerService.sender()
@@ -66,14 +89,13 @@ class TimerMonitor(val timerService: TimerService) extends LazyLogging {
   }
 
   def removeCaseTimers(caseInstanceId: String): Future[Done] = {
-    activeTimers.values.filter(timer => timer.command.actorId eq caseInstanceId).map(schedule => schedule.cancel())
+    synchronized(timersByCase.remove(caseInstanceId).toSeq.flatten.foreach(removeJob))
     runStorage(timerService.storage.removeCaseTimers(caseInstanceId))
     Future.successful(Done)
   }
 
-  def removeTimer(timerId: String, offset: Option[Offset]): Future[Done] = {
-    activeTimers.remove(timerId).map(schedule => schedule.cancel())
-    runStorage(timerService.storage.removeTimer(timerId, offset))
+  def removeTimer(timerId: String): Unit = {
+    synchronized(activeTimers.get(timerId).foreach(removeJob))
   }
 
   def runStorage(function: => Future[Done]): Future[Done] = {
@@ -88,16 +110,88 @@ class TimerMonitor(val timerService: TimerService) extends LazyLogging {
     }
   }
 
-  def addTimer(event: TimerSet, offset: Offset): Future[Done] = {
-    val job: Timer = Timer(event.getCaseInstanceId, event.getTimerId, event.getTargetMoment, event.getUser.id)
-    // If the timer fits the current window ahead, immediately schedule it. Otherwise just persist.
+  def addTimer(event: TimerSet): Unit = {
+    val job: Timer = Timer(event)
+    // If the timer fits the current window ahead, immediately schedule it. Storing it is done by the TimerEventSink.
     if (reader.fitsActiveWindow(job)) {
       scheduleTimer(job)
     }
-    runStorage(timerService.storage.storeTimer(job, Some(offset)))
+  }
+
+  /**
+    * Store a batch of timer changes in one go, together with the offset of the last event of the batch
+    */
+  def storeTimers(timers: Seq[Timer], removedTimerIds: Seq[String], offset: Option[Offset]): Future[Done] = {
+    runStorage(timerService.storage.storeTimers(timers, removedTimerIds, offset))
   }
 
   def scheduleTimer(timer: Timer): Unit = {
-    activeTimers.getOrElseUpdate(timer.timerId, new TimerJob(timerService, timer, scheduler))
+    synchronized {
+      if (!activeTimers.contains(timer.timerId)) {
+        val job = new TimerJob(timerService, timer, wheel)
+        activeTimers.put(timer.timerId, job)
+        timersByMessageId.put(job.command.getMessageId, job)
+        timersByCase.getOrElseUpdate(timer.caseInstanceId, mutable.HashSet()).add(job)
+        logger.whenDebugEnabled(logger.debug(s"Scheduling to run timer request ${timer.timerId} in ${job.millis - System.currentTimeMillis} milliseconds from now (at ${timer.moment})"))
+        if (!wheel.add(job, job.millis)) {
+          // Timers that are already due are raised with the next tick, within the limits of the catch-up rate
+          overdueTimers.add(job)
+        }
+      }
+    }
+  }
+
+  /**
+    * Number of timers that are due, but not yet raised because of the catch-up rate limit
+    */
+  def overdueBacklog: Int = synchronized(overdueTimers.size)
+
+  /**
+    * Milliseconds since the moment of the first timer in the overdue backlog
+    */
+  private def overdueLag: Long = synchronized(overdueTimers.headOption).fold(0L)(job => Math.max(0L, System.currentTimeMillis - job.millis))
+
+  private def raiseOverdueTimers(): Unit = {
+    val dueJobs: Seq[TimerJob] = synchronized {
+      val jobs = overdueTimers.take(overdueRateLimiter.acquire(overdueTimers.size)).toSeq
+      jobs.foreach(overdueTimers.remove)
+      jobs
+    }
+    raisedOverdueTimers.add(dueJobs.size)
+    dueJobs.foreach(_.run())
+  }
+
+  private def removeJob(job: TimerJob): Unit = {
+    activeTimers.remove(job.timer.timerId)
+    timersByMessageId.remove(job.command.getMessageId)
+    timersByCase.get(job.timer.caseInstanceId).foreach(jobs => {
+      jobs.remove(job)
+      if (jobs.isEmpty) timersByCase.remove(job.timer.caseInstanceId)
+    })
+    wheel.remove(job)
+    overdueTimers.remove(job)
+    job.cancel()
+  }
+
+  /**
+    * Token bucket that refills with the given rate per second, and can hold at most a second worth of tokens.
+    * A rate of 0 means there is no limit.
+    */
+  private class TokenBucket(ratePerSecond: Int) {
+    private var tokens: Double = ratePerSecond
+    private var lastRefill: Long = System.currentTimeMillis
+
+    /**
+      * Takes at most the requested number of tokens, and returns how many were taken
+      */
+    def acquire(requested: Int): Int = {
+      if (ratePerSecond <= 0) return requested
+      val now = System.currentTimeMillis
+      tokens = Math.min(ratePerSecond.toDouble, tokens + (now - lastRefill) * ratePerSecond / 1000d)
+      lastRefill = now
+      val granted = Math.min(requested, tokens.toInt)
+      tokens -= granted
+      granted
+    }
   }
 }
@@ -18,10 +18,12 @@
 package org.cafienne.timerservice
 
 import com.typesafe.scalalogging.LazyLogging
+import org.apache.pekko.pattern.after
 import org.cafienne.system.health.HealthMonitor
 import org.cafienne.timerservice.persistence.TimerStore
 
 import java.time.Instant
+import java.util.concurrent.atomic.AtomicBoolean
 import scala.concurrent.duration.FiniteDuration
 import scala.concurrent.{ExecutionContext, Future}
 
@@ -29,27 +31,79 @@ class TimerStorageReader(schedule: TimerMonitor) extends Runnable with LazyLoggi
   implicit val dispatcher: ExecutionContext = schedule.timerService.caseSystem.system.dispatcher
   private val storage: TimerStore = schedule.timerService.storage
   private val window: FiniteDuration = schedule.timerService.caseSystem.config.engine.timerService.window
-  private var activeWindow: Long = -1
+  private val batchSize: Int = schedule.timerService.caseSystem.config.engine.timerService.catchUpBatchSize
+  @volatile private var activeWindow: Long = -1
+  private val loading = new AtomicBoolean(false)
 
   override def run(): Unit = loadNextWindow
 
   def loadNextWindow: Future[Unit] = {
     val nextWindow = Instant.now().plusMillis(window.toMillis)
     activeWindow = nextWindow.toEpochMilli
+    if (!loading.compareAndSet(false, true)) {
+      // The pages of the previous window are still being read; that will now continue up to the new window
+      logger.warn(s"Timers of the previous window are still being loaded; continuing with the next window up to $nextWindow")
+      return Future.unit
+    }
     logger.whenDebugEnabled(logger.debug(s"Reading timers from TimerStore for next $window (setting active window to $nextWindow)"))
+    val load = if (storage.supportsPaging) loadPage(None) else loadWindow()
+    load.andThen(_ => loading.set(false))
+  }
+
+  /**
+    * Reads the next page of timers in the order of their moment, and schedules them.
+    * Before reading the next page, the reader waits until the backlog of overdue timers has shrunk below the batch size,
+    * so that after downtime the overdue timers are loaded at the pace at which they are raised.
+    */
+  private def loadPage(lastTimer: Option[Timer]): Future[Unit] = {
+    if (schedule.overdueBacklog >= batchSize) {
+      return after(schedule.wheelTick, schedule.scheduler)(loadPage(lastTimer))
+    }
 
-    val timers = {
-      try {
-        val result = storage.getTimers(nextWindow)
-        HealthMonitor.timerService.isOK()
-        result
-      } catch {
-        case t: Throwable =>
-          HealthMonitor.timerService.hasFailed(t)
-          Future.successful(Seq())
+    val timers = readTimers(storage.getTimers(Instant.ofEpochMilli(activeWindow), lastTimer, batchSize))
+    timers.flatMap(page => {
+      page.foreach(schedule.scheduleTimer)
+      if (page.size < batchSize) {
+        Future.unit
+      } else {
+        loadPage(page.lastOption)
       }
+    })
+  }
+
+  /**
+    * Reads all timers of the window at once, for stores that cannot read them page by page.
+    * They are scheduled in batches, at the same pace as the pages of loadPage.
+    * If the active window moved on while scheduling, the timers up to the new window are read as well.
+    */
+  private def loadWindow(): Future[Unit] = {
+    val readWindow = activeWindow
+    readTimers(storage.getTimers(Instant.ofEpochMilli(readWindow)))
+      .flatMap(timers => scheduleInBatches(timers.sorted))
+      .flatMap(_ => if (activeWindow != readWindow) loadWindow() else Future.unit)
+  }
+
+  private def scheduleInBatches(timers: Seq[Timer]): Future[Unit] = {
+    if (timers.isEmpty) {
+      Future.unit
+    } else if (schedule.overdueBacklog >= batchSize) {
+      after(schedule.wheelTick, schedule.scheduler)(scheduleInBatches(timers))
+    } else {
+      timers.take(batchSize).foreach(schedule.scheduleTimer)
+      scheduleInBatches(timers.drop(batchSize))
+    }
+  }
+
+  private def readTimers(read: => Future[Seq[Timer]]): Future[Seq[Timer]] = {
+    try {
+      val result = read
+      HealthMonitor.timerService.isOK()
+      result
+    } catch {
+      case t: Throwable =>
+        HealthMonitor.timerService.hasFailed(t)
+        Future.successful(Seq())
     }
-    timers.map(_.foreach(schedule.scheduleTimer))
   }
 
   def fitsActiveWindow(timer: Timer): Boolean = {
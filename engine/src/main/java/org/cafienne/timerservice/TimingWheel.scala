@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.timerservice
+
+import scala.collection.mutable
+import scala.collection.mutable.ListBuffer
+
+/**
+  * Hashed timing wheel holding the timers that are due within the active window of the TimerService.
+  * Entries are put in the slot of the tick in which their deadline falls, which makes adding and removing them O(1).
+  * The wheel must be advanced regularly (typically every tick), and then returns the entries that have become due.
+  * Since a revolution of the wheel is shorter than the window, a slot can hold entries for later revolutions;
+  * these stay in the slot until the tick of their deadline has passed.
+  *
+  * @param tickMillis Duration of a single tick, this is the precision with which timers go off
+  * @param wheelSize  Number of slots in the wheel
+  */
+class TimingWheel[T <: TimingWheel.Entry](val tickMillis: Long, val wheelSize: Int, startMillis: Long = System.currentTimeMillis()) {
+  require(tickMillis > 0, "Tick duration of the timing wheel must be positive")
+  require(wheelSize > 0, "Size of the timing wheel must be positive")
+
+  private val slots: Array[mutable.LinkedHashSet[T]] = Array.fill(wheelSize)(mutable.LinkedHashSet[T]())
+  // The last tick that has been processed
+  private var currentTick: Long = startMillis / tickMillis
+  private var count: Int = 0
+
+  private def slotOf(tick: Long): mutable.LinkedHashSet[T] = slots((tick % wheelSize).toInt)
+
+  def size: Int = synchronized(count)
+
+  /**
+    * Adds the entry to the wheel.
+    * Returns false if the deadline is in a tick that has already passed; the entry is then not added, and should be run directly.
+    */
+  def add(entry: T, deadlineMillis: Long): Boolean = synchronized {
+    // Entries go off when the tick holding their deadline has passed
+    val tick = Math.ceilDiv(deadlineMillis, tickMillis)
+    if (tick <= currentTick) {
+      false
+    } else {
+      remove(entry)
+      entry.deadlineTick = tick
+      slotOf(tick).add(entry)
+      count += 1
+      true
+    }
+  }
+
+  /**
+    * Removes the entry from the wheel. Returns false if the entry is not in the wheel.
+    */
+  def remove(entry: T): Boolean = synchronized {
+    if (entry.deadlineTick < 0) {
+      false
+    } else {
+      val removed = slotOf(entry.deadlineTick).remove(entry)
+      entry.deadlineTick = -1
+      if (removed) count -= 1
+      removed
+    }
+  }
+
+  /**
+    * Moves the wheel forward to the given moment, and returns the entries whose deadline has passed.
+    */
+  def advance(nowMillis: Long = System.currentTimeMillis()): Seq[T] = synchronized {
+    val targetTick = nowMillis / tickMillis
+    val expired = ListBuffer[T]()
+    // If more than a full revolution has passed, each slot needs to be visited only once
+    val lastTick = Math.min(targetTick, currentTick + wheelSize)
+    while (currentTick < lastTick) {
+      currentTick += 1
+      val slot = slotOf(currentTick)
+      if (slot.nonEmpty) {
+        val due = slot.filter(_.deadlineTick <= targetTick)
+        due.foreach(entry => {
+          slot.remove(entry)
+          entry.deadlineTick = -1
+        })
+        count -= due.size
+        expired ++= due
+      }
+    }
+    currentTick = Math.max(currentTick, targetTick)
+    expired.toSeq
+  }
+}
+
+object TimingWheel {
+  /**
+    * Elements in the wheel keep track of the tick they are scheduled for, so that they can be removed without a search.
+    */
+  trait Entry {
+    private[timerservice] var deadlineTick: Long = -1
+  }
+}
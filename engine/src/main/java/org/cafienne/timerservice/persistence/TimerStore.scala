@@ -39,12 +39,38 @@ trait TimerStore extends LazyLogging {
 
   def getTimers(window: Instant): Future[Seq[Timer]]
 
+  /**
+    * Returns a page of at most limit timers with a moment up to the window, in the order of moment and timer id,
+    * starting after the given timer (keyset pagination).
+    * The default implementation reads the full window; stores that use it should not claim to support paging.
+    */
+  def getTimers(window: Instant, after: Option[Timer], limit: Int): Future[Seq[Timer]] = {
+    getTimers(window).map(_.filter(timer => after.forall(last => Timer.ordering.gt(timer, last))).sorted.take(limit))
+  }
+
+  /**
+    * Whether the store can read the timers of a window page by page.
+    * If not, the timers of a window are read at once with getTimers(window).
+    */
+  def supportsPaging: Boolean = true
+
   def storeTimer(job: Timer, offset: Option[Offset]): Future[Done]
 
   def removeTimer(timerId: String, offset: Option[Offset]): Future[Done]
 
   def removeCaseTimers(caseInstanceId: String): Future[Done]
 
+  /**
+    * Stores and removes a batch of timers, and then updates the offset.
+    * The default implementation runs the changes one by one, and writes the offset along with the last change.
+    */
+  def storeTimers(timers: Seq[Timer], removedTimerIds: Seq[String], offset: Option[Offset]): Future[Done] = {
+    val changes: Seq[Option[Offset] => Future[Done]] = removedTimerIds.map(timerId => removeTimer(timerId, _)) ++ timers.map(timer => storeTimer(timer, _))
+    changes.zipWithIndex.foldLeft(Future.successful[Done](Done)) {
+      case (previous, (change, index)) => previous.flatMap(_ => change(if (index == changes.size - 1) offset else None))
+    }
+  }
+
   /**
     * Return a description for this type of timer store, defaults to simple class name
     */
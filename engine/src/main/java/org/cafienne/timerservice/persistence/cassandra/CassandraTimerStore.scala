@@ -54,6 +54,17 @@ class CassandraTimerStore(val caseSystem: CaseSystem, readJournal: CassandraRead
   override def getTimers(window: Instant): Future[Seq[Timer]] = {
     logger.whenDebugEnabled(logger.debug(s"Reading existing timers from Cassandra database for window $window"))
     val select = QueryBuilder.selectFrom(keyspace, timerTable).all().whereColumn("moment").isLessThan(literal(window)).allowFiltering().build()
+    readTimers(select)
+  }
+
+  /**
+    * The timers are partitioned by timer id, and Cassandra cannot order them across partitions.
+    * Reading a page would therefore still read all timers from a moment onwards, and sort them in memory.
+    * Instead, the timers of a window are read once with getTimers(window), which is a full read of the window.
+    */
+  override def supportsPaging: Boolean = false
+
+  private def readTimers(select: SimpleStatement): Future[Seq[Timer]] = {
     readJournal.session.selectAll(select).map(rows => {
       logger.whenDebugEnabled(logger.debug("Found " + rows.length + " timers"))
       rows.map(row => {
@@ -29,32 +29,48 @@ import scala.concurrent.Future
 
 class InMemoryStore extends TimerStore with LazyLogging {
   val timers = new mutable.HashMap[String, Timer]()
+  // Timers in the order of moment and timer id, for reading pages of timers
+  private val sortedTimers = new mutable.TreeSet[Timer]()(Timer.ordering)
 
   override def getOffset: Future[Offset] = Future.successful(Offset.noOffset)
 
-  override def getTimers(window: Instant): Future[Seq[Timer]] = {
+  override def getTimers(window: Instant): Future[Seq[Timer]] = synchronized {
     Future.successful(timers.values.filter(_.moment.toEpochMilli <= window.toEpochMilli).toSeq)
   }
 
-  override def storeTimer(job: Timer, offset: Option[Offset]): Future[Done] = {
-    timers.put(job.timerId, job)
+  override def getTimers(window: Instant, after: Option[Timer], limit: Int): Future[Seq[Timer]] = synchronized {
+    val remaining = after.fold(sortedTimers.iterator)(last => sortedTimers.iteratorFrom(last).dropWhile(timer => !Timer.ordering.gt(timer, last)))
+    Future.successful(remaining.takeWhile(_.moment.toEpochMilli <= window.toEpochMilli).take(limit).toSeq)
+  }
+
+  override def storeTimer(job: Timer, offset: Option[Offset]): Future[Done] = synchronized {
+    put(job)
     logger.debug(s"Stored timer $job")
     Future.successful(Done)
   }
 
-  override def removeTimer(timerId: String, offset: Option[Offset]): Future[Done] = {
-    timers.remove(timerId)
+  override def removeTimer(timerId: String, offset: Option[Offset]): Future[Done] = synchronized {
+    remove(timerId)
     logger.debug(s"Removed timer $timerId")
     Future.successful(Done)
   }
 
-  override def removeCaseTimers(caseInstanceId: String): Future[Done] = {
-    val caseTimers = timers.values.filter(timer => timer.caseInstanceId eq caseInstanceId)
-    caseTimers.foreach(timer => timers.remove(timer.timerId))
+  override def removeCaseTimers(caseInstanceId: String): Future[Done] = synchronized {
+    val caseTimers = timers.values.filter(timer => timer.caseInstanceId == caseInstanceId).toSeq
+    caseTimers.foreach(timer => remove(timer.timerId))
     Future.successful(Done)
   }
 
-  override def importTimers(list: Seq[Timer]): Unit = {
-    list.foreach(timer => timers.put(timer.timerId, timer))
+  override def importTimers(list: Seq[Timer]): Unit = synchronized {
+    list.foreach(put)
+  }
+
+  private def put(timer: Timer): Unit = {
+    timers.put(timer.timerId, timer).foreach(sortedTimers.remove)
+    sortedTimers.add(timer)
+  }
+
+  private def remove(timerId: String): Unit = {
+    timers.remove(timerId).foreach(sortedTimers.remove)
   }
 }
@@ -44,10 +44,16 @@ class JDBCTimerStore(val dbConfig: DatabaseConfig[JdbcProfile], val tablePrefix:
     db.run(query.distinct.result).map(records => records.map(record => Timer(record.caseInstanceId, record.timerId, record.moment, record.user)))
   }
 
+  override def getTimers(window: Instant, after: Option[Timer], limit: Int): Future[Seq[Timer]] = {
+    val timersInWindow = TableQuery[TimerServiceTable].filter(_.moment <= window)
+    // Keyset pagination: continue after the last timer of the previous page
+    val query = after.fold(timersInWindow)(last => timersInWindow.filter(timer => timer.moment > last.moment || (timer.moment === last.moment && timer.timerId > last.timerId)))
+    db.run(query.sortBy(timer => (timer.moment, timer.timerId)).take(limit).result).map(records => records.map(record => Timer(record.caseInstanceId, record.timerId, record.moment, record.user)))
+  }
+
   override def storeTimer(job: Timer, offset: Option[Offset]): Future[Done] = {
     logger.debug("Storing JDBC timer " + job.timerId + " for timestamp " + job.moment)
-    val record = TimerServiceRecord(timerId = job.timerId, caseInstanceId = job.caseInstanceId, moment = job.moment, tenant = "", user = job.userId)
-    commit(offset, TableQuery[TimerServiceTable].insertOrUpdate(record))
+    commit(offset, TableQuery[TimerServiceTable].insertOrUpdate(asRecord(job)))
   }
 
   override def removeTimer(timerId: String, offset: Option[Offset]): Future[Done] = {
@@ -60,6 +66,18 @@ class JDBCTimerStore(val dbConfig: DatabaseConfig[JdbcProfile], val tablePrefix:
     commit(None, TableQuery[TimerServiceTable].filter(_.caseInstanceId === caseInstanceId).delete)
   }
 
+  override def storeTimers(timers: Seq[Timer], removedTimerIds: Seq[String], offset: Option[Offset]): Future[Done] = {
+    logger.debug(s"Storing ${timers.size} timers and removing ${removedTimerIds.size} timers")
+    val removals = if (removedTimerIds.isEmpty) None else Some(TableQuery[TimerServiceTable].filter(_.timerId inSet removedTimerIds).delete)
+    val upserts = if (timers.isEmpty) None else Some(TableQuery[TimerServiceTable].insertOrUpdateAll(timers.map(asRecord)))
+    val offsetUpdate = offset.map(offset => TableQuery[OffsetStoreTable].insertOrUpdate(OffsetRecord(storageName, offset)))
+    db.run(DBIO.seq(removals.toSeq ++ upserts ++ offsetUpdate: _*).transactionally).map(_ => Done)
+  }
+
+  private def asRecord(job: Timer): TimerServiceRecord = {
+    TimerServiceRecord(timerId = job.timerId, caseInstanceId = job.caseInstanceId, moment = job.moment, tenant = "", user = job.userId)
+  }
+
   private def commit(offset: Option[Offset], action: dbConfig.profile.api.DBIO[Int]): Future[Done] = {
     val offsetUpdate = offset.map(offset => TableQuery[OffsetStoreTable].insertOrUpdate(OffsetRecord(storageName, offset)))
     val updates = offsetUpdate.fold(Seq(action))(o => Seq(action, o))
@@ -68,7 +86,7 @@ class JDBCTimerStore(val dbConfig: DatabaseConfig[JdbcProfile], val tablePrefix:
 
   override def importTimers(list: Seq[Timer]): Unit = {
     val tx = list
-      .map(job => TimerServiceRecord(timerId = job.timerId, caseInstanceId = job.caseInstanceId, moment = job.moment, tenant = "", user = job.userId))
+      .map(asRecord)
       .map(record => TableQuery[TimerServiceTable].insertOrUpdate(record))
     Await.result(db.run(DBIO.sequence(tx).transactionally), 30.seconds)
   }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.util;
+
+import org.cafienne.system.metrics.CacheMetrics;
+import org.cafienne.system.metrics.MetricsMonitor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread safe cache with a maximum size and an optional time to live for its entries.
+ * Reads do not lock; when the maximum size is exceeded, the least recently used entries are evicted in one go.
+ * Values can be loaded asynchronously through {@link #getOrLoad(Object, Function)}, where concurrent
+ * requests for the same key share a single load.
+ * Hits, misses and evictions are reported to the {@link MetricsMonitor} under the given metrics key.
+ */
+public class ConcurrentCache<K, V> {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+    private final CacheMetrics metrics;
+    private final LongSupplier clock;
+
+    /**
+     * @param metricsKey Key under which the cache reports its metrics
+     * @param maxSize    Maximum number of entries; 0 means that nothing is cached
+     * @param ttlMillis  Time to live of an entry in milliseconds; 0 means that entries do not expire
+     */
+    public ConcurrentCache(String metricsKey, int maxSize, long ttlMillis) {
+        this(metricsKey, maxSize, ttlMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor with the clock that determines expiry and recent use, for testing purposes
+     */
+    ConcurrentCache(String metricsKey, int maxSize, long ttlMillis, LongSupplier clock) {
+        this.maxSize = Math.max(0, maxSize);
+        this.ttlMillis = Math.max(0, ttlMillis);
+        this.clock = clock;
+        this.metrics = MetricsMonitor.addCache(metricsKey).withSize(this::size);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the cached value, or null if there is none (or if it has expired)
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            metrics.miss();
+            return null;
+        }
+        long now = clock.getAsLong();
+        if (entry.hasExpired(now)) {
+            entries.remove(key, entry);
+            metrics.miss();
+            return null;
+        }
+        entry.lastAccess = now;
+        metrics.hit();
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        if (maxSize == 0 || value == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        entries.put(key, new Entry<>(value, now, ttlMillis == 0 ? Long.MAX_VALUE : now + ttlMillis));
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Returns the cached value, or loads it if it is not available. If a load for the same key is already running,
+     * the result of that load is returned instead of starting another one.
+     * Values loaded are only cached if the key has not been removed in the meantime.
+     */
+    public CompletionStage<V> getOrLoad(K key, Function<K, CompletionStage<V>> loader) {
+        V cached = get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> runningLoad = loading.putIfAbsent(key, load);
+        if (runningLoad != null) {
+            return runningLoad;
+        }
+        try {
+            loader.apply(key).whenComplete((value, failure) -> {
+                if (loading.remove(key, load) && failure == null) {
+                    put(key, value);
+                }
+                if (failure == null) {
+                    load.complete(value);
+                } else {
+                    load.completeExceptionally(failure);
+                }
+            });
+        } catch (Throwable failure) {
+            loading.remove(key, load);
+            load.completeExceptionally(failure);
+        }
+        return load;
+    }
+
+    public void remove(K key) {
+        // Also forget a running load, so that it does not put an outdated value in the cache
+        loading.remove(key);
+        entries.remove(key);
+    }
+
+    public void clear() {
+        loading.clear();
+        entries.clear();
+    }
+
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // Evict expired entries, and then the least recently used ones until we are 10% below the maximum size,
+            //  so that eviction does not have to run on every put.
+            long now = clock.getAsLong();
+            entries.entrySet().removeIf(entry -> {
+                boolean expired = entry.getValue().hasExpired(now);
+                if (expired) metrics.eviction();
+                return expired;
+            });
+            int target = maxSize - maxSize / 10;
+            int excess = entries.size() - target;
+            if (excess > 0) {
+                List<Map.Entry<K, Entry<V>>> candidates = new ArrayList<>(entries.entrySet());
+                candidates.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+                for (Map.Entry<K, Entry<V>> candidate : candidates.subList(0, Math.min(excess, candidates.size()))) {
+                    if (entries.remove(candidate.getKey(), candidate.getValue())) {
+                        metrics.eviction();
+                    }
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+        private volatile long lastAccess;
+
+        Entry(V value, long now, long expiresAt) {
+            this.value = value;
+            this.lastAccess = now;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean hasExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
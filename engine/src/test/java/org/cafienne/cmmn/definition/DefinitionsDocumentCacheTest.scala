@@ -0,0 +1,66 @@
+package org.cafienne.cmmn.definition
+
+import org.cafienne.cmmn.test.TestScript.loadCaseDefinition
+import org.cafienne.infrastructure.serialization.Fields
+import org.cafienne.persistence.eventdb.definition.{DefinitionSourceStore, InMemoryDefinitionSourceStore}
+import org.scalatest.BeforeAndAfterEach
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import java.io.IOException
+import java.util.concurrent.{CompletableFuture, CompletionStage}
+
+class DefinitionsDocumentCacheTest extends AnyFlatSpec with Matchers with BeforeAndAfterEach {
+  val caseDefinition: CaseDefinition = loadCaseDefinition("testdefinition/helloworld.xml")
+
+  override def afterEach(): Unit = DefinitionsDocumentCache.useSourceStore(() => null, false)
+
+  "DefinitionsDocumentCache" should "serialize definitions by reference once the source is stored" in {
+    val store = new InMemoryDefinitionSourceStore
+    DefinitionsDocumentCache.useSourceStore(() => store, true)
+
+    val json = caseDefinition.toJSON
+    json.has(Fields.sourceRef) shouldBe true
+    json.has(Fields.source) shouldBe false
+    store.read(json.readString(Fields.sourceRef)) shouldBe caseDefinition.getDefinitionsDocument.getSource
+
+    val deserialized = CMMNElementDefinition.fromJSON(getClass.getName, json, classOf[CaseDefinition])
+    deserialized.getId shouldBe caseDefinition.getId
+  }
+
+  it should "serialize the full source as long as the source is not yet stored" in {
+    val pending = new CompletableFuture[Void]()
+    val store = new InMemoryDefinitionSourceStore {
+      override def store(digest: String, source: String): CompletionStage[Void] = {
+        super.store(digest, source)
+        pending
+      }
+    }
+    DefinitionsDocumentCache.useSourceStore(() => store, true)
+
+    caseDefinition.toJSON.has(Fields.source) shouldBe true
+    pending.complete(null)
+    caseDefinition.toJSON.has(Fields.sourceRef) shouldBe true
+  }
+
+  it should "keep serializing the full source if storing fails" in {
+    val store = new DefinitionSourceStore {
+      override def store(digest: String, source: String): CompletionStage[Void] = CompletableFuture.failedFuture(new IOException("Database is down"))
+
+      override def read(digest: String): String = null
+    }
+    DefinitionsDocumentCache.useSourceStore(() => store, true)
+
+    caseDefinition.toJSON.has(Fields.source) shouldBe true
+    caseDefinition.toJSON.has(Fields.source) shouldBe true
+  }
+
+  it should "fail to read a reference that is not in the store" in {
+    DefinitionsDocumentCache.useSourceStore(() => new InMemoryDefinitionSourceStore, false)
+    an[IOException] should be thrownBy DefinitionsDocumentCache.getByReference("0" * 64)
+  }
+
+  it should "fail to read a reference without a store" in {
+    an[IOException] should be thrownBy DefinitionsDocumentCache.getByReference("1" * 64)
+  }
+}
@@ -0,0 +1,160 @@
+package org.cafienne.cmmn.expression.spel;
+
+import org.cafienne.actormodel.ModelActor;
+import org.cafienne.cmmn.expression.spel.EvaluationContextPool.PooledEvaluationContext;
+import org.cafienne.cmmn.expression.spel.api.APIRootObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestEvaluationContextPool {
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+
+    /**
+     * Root object without a model actor; hence the expressions in these tests do not read properties, as that logs into the actor.
+     */
+    private static class TestRoot extends APIRootObject<ModelActor> {
+        TestRoot() {
+            super(null, null);
+        }
+
+        @Override
+        public String getDescription() {
+            return "test root";
+        }
+    }
+
+    private static class OtherRoot extends TestRoot {
+        OtherRoot() {
+            super();
+        }
+    }
+
+    @Before
+    public void clearPools() {
+        // Size 0 clears the pools, so that each test starts without idle contexts
+        EvaluationContextPool.configure(0);
+        EvaluationContextPool.configure(16);
+    }
+
+    @After
+    public void restoreDefaultSize() {
+        EvaluationContextPool.configure(16);
+    }
+
+    private Object evaluate(String expression, PooledEvaluationContext context) {
+        return parser.parseExpression(expression).getValue(context);
+    }
+
+    @Test
+    public void contextsAreReused() {
+        PooledEvaluationContext first = EvaluationContextPool.acquire(new TestRoot());
+        EvaluationContextPool.release(first);
+        TestRoot root = new TestRoot();
+        PooledEvaluationContext second = EvaluationContextPool.acquire(root);
+        assertSame(first, second);
+        assertSame(root, evaluate("#root", second));
+
+        // Another type of root object gets a context of its own
+        PooledEvaluationContext other = EvaluationContextPool.acquire(new OtherRoot());
+        assertNotSame(second, other);
+        EvaluationContextPool.release(second);
+        EvaluationContextPool.release(other);
+    }
+
+    @Test
+    public void stateIsClearedUponRelease() {
+        PooledEvaluationContext context = EvaluationContextPool.acquire(new TestRoot());
+        assertEquals(5, evaluate("#counter = 5", context));
+        assertEquals(5, context.lookupVariable("counter"));
+        EvaluationContextPool.release(context);
+        assertNull(context.lookupVariable("counter"));
+        assertNull(context.getRootObject().getValue());
+
+        TestRoot root = new TestRoot();
+        PooledEvaluationContext reused = EvaluationContextPool.acquire(root);
+        assertSame(context, reused);
+        assertNull(evaluate("#counter", reused));
+        assertSame(root, evaluate("#root", reused));
+        EvaluationContextPool.release(reused);
+    }
+
+    @Test
+    public void poolIsBounded() {
+        EvaluationContextPool.configure(2);
+        List<PooledEvaluationContext> released = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            released.add(EvaluationContextPool.acquire(new TestRoot()));
+        }
+        released.forEach(EvaluationContextPool::release);
+
+        Set<PooledEvaluationContext> reacquired = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 3; i++) {
+            reacquired.add(EvaluationContextPool.acquire(new TestRoot()));
+        }
+        reacquired.retainAll(released);
+        assertEquals(2, reacquired.size());
+    }
+
+    @Test
+    public void sizeZeroDisablesPooling() {
+        EvaluationContextPool.configure(0);
+        PooledEvaluationContext first = EvaluationContextPool.acquire(new TestRoot());
+        EvaluationContextPool.release(first);
+        PooledEvaluationContext second = EvaluationContextPool.acquire(new TestRoot());
+        assertNotSame(first, second);
+        EvaluationContextPool.release(second);
+    }
+
+    @Test
+    public void concurrentBorrowAndReturn() throws Exception {
+        EvaluationContextPool.configure(4);
+        Expression assignment = parser.parseExpression("#thread = #root");
+        Expression lookup = parser.parseExpression("#thread");
+        Set<PooledEvaluationContext> inUse = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        TestRoot root = new TestRoot();
+                        PooledEvaluationContext context = EvaluationContextPool.acquire(root);
+                        try {
+                            assertTrue("A context must not be handed out twice", inUse.add(context));
+                            assertNull("A context must not contain variables of a previous evaluation", lookup.getValue(context));
+                            assignment.getValue(context);
+                            assertSame(root, lookup.getValue(context));
+                        } finally {
+                            inUse.remove(context);
+                            EvaluationContextPool.release(context);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(); // Rethrows assertion errors of the threads
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
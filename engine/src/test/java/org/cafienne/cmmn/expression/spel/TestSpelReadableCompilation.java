@@ -0,0 +1,49 @@
+package org.cafienne.cmmn.expression.spel;
+
+import org.cafienne.json.ValueMap;
+import org.junit.Test;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestSpelReadableCompilation {
+    private final SpelExpressionParser parser = new SpelExpressionParser(new SpelParserConfiguration(SpelCompilerMode.IMMEDIATE, getClass().getClassLoader()));
+
+    private StandardEvaluationContext context(String customer) {
+        StandardEvaluationContext context = new StandardEvaluationContext(new ValueMap("order", new ValueMap("customer", customer, "amount", 42)));
+        context.addPropertyAccessor(new SpelReadableRecognizer());
+        return context;
+    }
+
+    private SpelExpression compile(String expression) {
+        SpelExpression spel = (SpelExpression) parser.parseExpression(expression);
+        // Property accessors are only known after the expression has been interpreted once
+        spel.getValue(context("Jane"));
+        assertTrue("Expression '" + expression + "' should compile", spel.compileExpression());
+        return spel;
+    }
+
+    @Test
+    public void propertiesAreReadInCompiledExpressions() {
+        SpelExpression equality = compile("order.customer == 'Jane'");
+        assertTrue(equality.getValue(context("Jane"), Boolean.class));
+        assertFalse(equality.getValue(context("John"), Boolean.class));
+
+        SpelExpression method = compile("order.customer.length()");
+        assertEquals(4, method.getValue(context("Jane")));
+        assertEquals(6, method.getValue(context("Joanna")));
+    }
+
+    @Test
+    public void readCompiledReturnsNativeValues() {
+        ValueMap order = new ValueMap("customer", "Jane", "amount", 42);
+        assertEquals("Jane", SpelReadableRecognizer.readCompiled(order, "customer"));
+        assertEquals(42L, SpelReadableRecognizer.readCompiled(order, "amount"));
+    }
+}
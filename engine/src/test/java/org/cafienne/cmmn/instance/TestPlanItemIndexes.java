@@ -0,0 +1,89 @@
+package org.cafienne.cmmn.instance;
+
+import org.cafienne.cmmn.actorapi.command.migration.MigrateDefinition;
+import org.cafienne.cmmn.actorapi.command.plan.MakePlanItemTransition;
+import org.cafienne.cmmn.definition.CaseDefinition;
+import org.cafienne.cmmn.test.TestScript;
+import org.cafienne.util.Guid;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.cafienne.cmmn.test.TestScript.*;
+
+/**
+ * Checks that the plan item indexes of {@link Case} and {@link Stage} give the same results as a scan over the plan items,
+ * after recovery of many repetitions, and after a migration that renames, drops and adds plan items.
+ */
+public class TestPlanItemIndexes {
+    private static final int REPETITIONS = 100;
+    private final CaseDefinition definitions = loadCaseDefinition("testdefinition/repeatingitems.xml");
+    private final CaseDefinition migratedDefinitions = loadCaseDefinition("testdefinition/repeatingitems_migrated.xml");
+
+    private void complete(TestScript testCase, String caseInstanceId, String name, int expectedNumberOfItems) {
+        testCase.addStep(new MakePlanItemTransition(testUser, caseInstanceId, name, Transition.Complete), casePlan -> {
+            casePlan.assertPlanItems(name).assertSize(expectedNumberOfItems).assertStates(State.Completed, State.Active);
+            casePlan.assertPlanItems(name, State.Active).assertSize(1);
+        });
+    }
+
+    @Test
+    public void testIndexesAfterRecoveryOfManyRepetitions() {
+        String caseInstanceId = new Guid().toString();
+        TestScript testCase = new TestScript("plan-item-indexes-recovery");
+
+        testCase.addStep(createCaseCommand(testUser, caseInstanceId, definitions), casePlan -> casePlan.assertPlanItem("Repeat").assertState(State.Active));
+        for (int i = 1; i <= REPETITIONS; i++) {
+            complete(testCase, caseInstanceId, "Repeat", i + 1);
+        }
+        complete(testCase, caseInstanceId, "Child", 2);
+        testCase.addStep(new VerifyPlanItemIndexes(testUser, caseInstanceId));
+
+        testCase.addStep(createRecoveryCommand(testUser, caseInstanceId), casePlan -> {
+            casePlan.assertPlanItems("Repeat").assertSize(REPETITIONS + 1);
+            casePlan.assertPlanItems("Repeat", State.Active).assertSize(1);
+        });
+        testCase.addStep(new VerifyPlanItemIndexes(testUser, caseInstanceId));
+
+        // The recovered indexes must give the next repetitions the next index
+        complete(testCase, caseInstanceId, "Repeat", REPETITIONS + 2);
+        complete(testCase, caseInstanceId, "Child", 3);
+        testCase.addStep(new VerifyPlanItemIndexes(testUser, caseInstanceId));
+
+        testCase.runTest();
+    }
+
+    @Test
+    public void testIndexesAfterMigrationAndDrop() {
+        String caseInstanceId = new Guid().toString();
+        TestScript testCase = new TestScript("plan-item-indexes-migration");
+        List<String> unknownIdentifiers = new ArrayList<>(List.of("Repeat", "Dropped"));
+
+        testCase.addStep(createCaseCommand(testUser, caseInstanceId, definitions), casePlan -> unknownIdentifiers.add(casePlan.assertPlanItem("Dropped").getId()));
+        complete(testCase, caseInstanceId, "Repeat", 2);
+        complete(testCase, caseInstanceId, "Repeat", 3);
+        complete(testCase, caseInstanceId, "Child", 2);
+
+        // Repeat is renamed, Dropped is removed and New is added
+        testCase.addStep(new MigrateDefinition(testUser, caseInstanceId, migratedDefinitions, null), casePlan -> {
+            casePlan.assertPlanItems("Renamed").assertSize(3);
+            casePlan.assertPlanItems("Child").assertSize(2);
+            casePlan.assertPlanItem("New").assertState(State.Active);
+        });
+        testCase.addStep(new VerifyPlanItemIndexes(testUser, caseInstanceId, () -> unknownIdentifiers));
+
+        // Repeating continues with the next index under the new name
+        complete(testCase, caseInstanceId, "Renamed", 4);
+        complete(testCase, caseInstanceId, "Child", 3);
+        testCase.addStep(new VerifyPlanItemIndexes(testUser, caseInstanceId, () -> unknownIdentifiers));
+
+        // Recovery replays the migration and the drop
+        testCase.addStep(createRecoveryCommand(testUser, caseInstanceId), casePlan -> casePlan.assertPlanItems("Renamed").assertSize(4));
+        testCase.addStep(new VerifyPlanItemIndexes(testUser, caseInstanceId, () -> unknownIdentifiers));
+        complete(testCase, caseInstanceId, "Renamed", 5);
+        testCase.addStep(new VerifyPlanItemIndexes(testUser, caseInstanceId, () -> unknownIdentifiers));
+
+        testCase.runTest();
+    }
+}
@@ -0,0 +1,85 @@
+package org.cafienne.cmmn.instance;
+
+import org.cafienne.actormodel.exception.InvalidCommandException;
+import org.cafienne.actormodel.identity.CaseUserIdentity;
+import org.cafienne.cmmn.actorapi.command.CaseCommand;
+import org.cafienne.cmmn.definition.ItemDefinition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Test command that compares the indexes of the {@link Case} and its {@link Stage}s with a scan over all plan items.
+ * The command fails if they differ, and does not change the case.
+ */
+class VerifyPlanItemIndexes extends CaseCommand {
+    private final Supplier<Collection<String>> unknownIdentifiers;
+
+    /**
+     * @param unknownIdentifiers Ids and names that must no longer be found in the case (e.g. of dropped or renamed plan items)
+     */
+    VerifyPlanItemIndexes(CaseUserIdentity user, String caseInstanceId, Supplier<Collection<String>> unknownIdentifiers) {
+        super(user, caseInstanceId);
+        this.unknownIdentifiers = unknownIdentifiers;
+    }
+
+    VerifyPlanItemIndexes(CaseUserIdentity user, String caseInstanceId) {
+        this(user, caseInstanceId, List::of);
+    }
+
+    @Override
+    public void validate(Case caseInstance) {
+        super.validate(caseInstance);
+        List<PlanItem<?>> planItems = new ArrayList<>(caseInstance.getPlanItems());
+
+        Map<String, List<PlanItem<?>>> byName = new LinkedHashMap<>();
+        for (PlanItem<?> planItem : planItems) {
+            check(caseInstance.getPlanItemById(planItem.getId()) == planItem, "Plan item " + planItem + " is not found by its id");
+            byName.computeIfAbsent(planItem.getName(), name -> new ArrayList<>()).add(planItem);
+        }
+        byName.forEach((name, items) -> {
+            check(caseInstance.getPlanItemByName(name) == items.get(items.size() - 1), "Plan item by name '" + name + "' is not the last one with that name");
+            List<PlanItem<?>> reversed = new ArrayList<>(items);
+            Collections.reverse(reversed);
+            check(new ArrayList<>(caseInstance.getPlanItems(name)).equals(reversed), "Plan items with name '" + name + "' differ from a scan");
+        });
+
+        for (String identifier : unknownIdentifiers.get()) {
+            check(caseInstance.getPlanItemById(identifier) == null, "Plan item with id '" + identifier + "' must no longer be found");
+            check(caseInstance.getPlanItemByName(identifier) == null, "Plan item with name '" + identifier + "' must no longer be found");
+            check(caseInstance.getPlanItems(identifier).isEmpty(), "Plan items with identifier '" + identifier + "' must no longer be found");
+        }
+
+        planItems.stream().filter(item -> item instanceof Stage).map(item -> (Stage<?>) item).forEach(stage -> {
+            Map<ItemDefinition, List<PlanItem<?>>> siblings = stage.getPlanItems().stream().collect(Collectors.groupingBy(PlanItem::getItemDefinition));
+            siblings.forEach((itemDefinition, children) -> {
+                check(stage.countChildren(itemDefinition) == children.size(), "Stage " + stage + " counts " + stage.countChildren(itemDefinition) + " children '" + itemDefinition.getName() + "', but has " + children.size());
+                List<Integer> indices = children.stream().map(PlanItem::getIndex).sorted().collect(Collectors.toList());
+                check(indices.equals(IntStream.range(0, children.size()).boxed().collect(Collectors.toList())), "Children '" + itemDefinition.getName() + "' in " + stage + " have indices " + indices);
+            });
+        });
+    }
+
+    private void check(boolean condition, String message) {
+        if (!condition) {
+            throw new InvalidCommandException(message);
+        }
+    }
+
+    @Override
+    public void processCaseCommand(Case caseInstance) {
+        // Nothing to change
+    }
+
+    @Override
+    public String toString() {
+        return "Verify plan item indexes";
+    }
+}
@@ -0,0 +1,146 @@
+package org.cafienne.cmmn.instance.sentry;
+
+import org.cafienne.cmmn.definition.DefinitionElement;
+import org.cafienne.cmmn.definition.ModelDefinition;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the lookup in the {@link SentryIndex} with the linear scan over all criteria that the {@link SentryNetwork} did before.
+ * Note: the build has no JMH setup; {@link #lookupVisitsOnlyMatchingListeners()} serves as substitute for a benchmark,
+ * by showing that the number of candidates offered to a new item no longer grows with the number of criteria in the case.
+ */
+public class TestSentryIndex {
+
+    private static class Source implements DefinitionElement {
+        private final String id;
+        private final String name;
+
+        Source(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public ModelDefinition getModelDefinition() {
+            return null;
+        }
+
+        @Override
+        public boolean differs(DefinitionElement object) {
+            return !sameIdentifiers(object);
+        }
+
+        @Override
+        public boolean equalsWith(Object object) {
+            return object instanceof DefinitionElement && sameIdentifiers((DefinitionElement) object);
+        }
+    }
+
+    private static class Listener {
+        private final int nr;
+        private Source source;
+
+        Listener(int nr, Source source) {
+            this.nr = nr;
+            this.source = source;
+        }
+
+        @Override
+        public String toString() {
+            return "listener" + nr;
+        }
+    }
+
+    private final Random random = new Random(42);
+    private final Comparator<Listener> order = Comparator.comparingInt(listener -> listener.nr);
+
+    /**
+     * Sources with a limited set of ids and names, so that many of them match on either id or name
+     */
+    private Source randomSource() {
+        return new Source("id" + random.nextInt(50), "name" + random.nextInt(30));
+    }
+
+    private List<Listener> scan(List<Listener> listeners, DefinitionElement definition) {
+        return listeners.stream().filter(listener -> listener.source.hasMatchingIdentifier(definition)).sorted(order).collect(Collectors.toList());
+    }
+
+    private void assertSameAsScan(SentryIndex<Listener> index, List<Listener> listeners) {
+        for (int i = 0; i < 500; i++) {
+            Source item = randomSource();
+            assertEquals("Listeners of " + item.getId() + "/" + item.getName(), scan(listeners, item), index.find(item, order));
+        }
+    }
+
+    @Test
+    public void indexedLookupMatchesLinearScan() {
+        SentryIndex<Listener> index = new SentryIndex<>();
+        List<Listener> listeners = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Listener listener = new Listener(i, randomSource());
+            listeners.add(listener);
+            index.add(listener.source, listener);
+        }
+        assertSameAsScan(index, listeners);
+    }
+
+    @Test
+    public void indexedLookupMatchesLinearScanAfterRemoveAndReindex() {
+        SentryIndex<Listener> index = new SentryIndex<>();
+        List<Listener> listeners = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Listener listener = new Listener(i, randomSource());
+            listeners.add(listener);
+            index.add(listener.source, listener);
+        }
+        // Remove some listeners, and change the source of others (like in a migration of the definition)
+        for (Listener listener : new ArrayList<>(listeners)) {
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    listeners.remove(listener);
+                    index.remove(listener);
+                }
+                case 1 -> {
+                    index.remove(listener);
+                    listener.source = randomSource();
+                    index.add(listener.source, listener);
+                }
+                default -> {
+                }
+            }
+        }
+        assertSameAsScan(index, listeners);
+    }
+
+    @Test
+    public void lookupVisitsOnlyMatchingListeners() {
+        SentryIndex<Listener> index = new SentryIndex<>();
+        int size = 10000;
+        for (int i = 0; i < size; i++) {
+            index.add(new Source("id" + i, "name" + i), new Listener(i, null));
+        }
+        for (int i = 0; i < size; i++) {
+            // The linear scan visited all 10000 listeners for each new item
+            assertEquals(1, index.find(new Source("id" + i, "other"), order).size());
+        }
+        assertEquals(0, index.find(new Source("unknown", "unknown"), order).size());
+    }
+}
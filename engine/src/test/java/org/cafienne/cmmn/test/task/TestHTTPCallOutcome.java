@@ -0,0 +1,127 @@
+package org.cafienne.cmmn.test.task;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.typesafe.config.ConfigFactory;
+import org.apache.pekko.actor.ActorRef;
+import org.apache.pekko.actor.ActorSystem;
+import org.cafienne.cmmn.actorapi.command.plan.MakePlanItemTransition;
+import org.cafienne.cmmn.definition.CaseDefinition;
+import org.cafienne.cmmn.instance.State;
+import org.cafienne.cmmn.instance.Transition;
+import org.cafienne.cmmn.test.TestScript;
+import org.cafienne.processtask.actorapi.command.ResumeProcess;
+import org.cafienne.processtask.actorapi.event.ProcessCompleted;
+import org.cafienne.processtask.actorapi.event.ProcessFailed;
+import org.cafienne.system.CaseSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.cafienne.cmmn.test.TestScript.*;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Runs an http call that takes longer than the idle period of the process task, so that the process task is removed
+ * from memory while the call is in progress. The outcome of the call must still reach the process task.
+ */
+public class TestHTTPCallOutcome {
+    private final CaseDefinition definitions = loadCaseDefinition("testdefinition/task/httpcall.xml");
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(18089);
+
+    private ActorSystem system;
+    private CaseSystem caseSystem;
+    private String callTaskId;
+
+    @Before
+    public void startCaseSystem() {
+        system = ActorSystem.create("TestHTTPCallOutcome", ConfigFactory.parseString("cafienne.actor.idle-period = 1").withFallback(ConfigFactory.load()));
+        caseSystem = CaseSystem.apply(system);
+    }
+
+    @After
+    public void stopCaseSystem() {
+        system.terminate();
+    }
+
+    private void respondAfter(int delayMillis) {
+        wireMockRule.stubFor(get(urlEqualTo("/slow"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{}")
+                        .withFixedDelay(delayMillis)));
+    }
+
+    @Test
+    public void testOutcomeAfterPassivation() {
+        respondAfter(3000);
+        String caseInstanceId = "HTTPCallAfterPassivation";
+        TestScript testCase = new TestScript(caseInstanceId, caseSystem);
+
+        testCase.addStep(createCaseCommand(testUser, caseInstanceId, definitions), casePlan -> {
+            callTaskId = casePlan.assertPlanItem("Call").assertState(State.Active).getId();
+
+            // The process task is removed from memory after 1 second, and recovers when the response comes in
+            testCase.getEventListener().awaitPlanItemState("Call", State.Completed);
+            testCase.getEventListener().getEvents().filter(callTaskId).filter(ProcessCompleted.class).assertSize(1);
+            assertNull(caseSystem.processCalls().inProgress(callTaskId));
+        });
+
+        testCase.runTest();
+    }
+
+    @Test
+    public void testOutcomeAfterTermination() {
+        respondAfter(2000);
+        String caseInstanceId = "HTTPCallAfterTermination";
+        TestScript testCase = new TestScript(caseInstanceId, caseSystem);
+
+        testCase.addStep(createCaseCommand(testUser, caseInstanceId, definitions), casePlan -> {
+            callTaskId = casePlan.assertPlanItem("Call").assertState(State.Active).getId();
+        });
+
+        testCase.addStep(new MakePlanItemTransition(testUser, caseInstanceId, "Call", Transition.Terminate), casePlan -> {
+            casePlan.assertPlanItem("Call").assertState(State.Terminated);
+        });
+
+        // Wait until the response has come in; it must not be handled anymore
+        testCase.addStep(createPingCommand(testUser, caseInstanceId, 3000), casePlan -> {
+            casePlan.assertPlanItem("Call").assertState(State.Terminated);
+            testCase.getEventListener().getEvents().filter(callTaskId).filter(ProcessCompleted.class).assertSize(0);
+            assertNull(caseSystem.processCalls().inProgress(callTaskId));
+        });
+
+        testCase.runTest();
+    }
+
+    @Test
+    public void testInterruptedCall() {
+        respondAfter(5000);
+        String caseInstanceId = "HTTPCallInterrupted";
+        TestScript testCase = new TestScript(caseInstanceId, caseSystem);
+
+        testCase.addStep(createCaseCommand(testUser, caseInstanceId, definitions), casePlan -> {
+            callTaskId = casePlan.assertPlanItem("Call").assertState(State.Active).getId();
+            // Make the engine lose track of the call, as if it restarted while the call is in progress
+            caseSystem.processCalls().forget(callTaskId);
+        });
+
+        // Wait until the process task is removed from memory, and then make it recover
+        testCase.addStep(createPingCommand(testUser, caseInstanceId, 2000), casePlan -> {
+            caseSystem.engine().inform(new ResumeProcess(testUser, callTaskId), ActorRef.noSender());
+            testCase.getEventListener().awaitPlanItemState("Call", State.Failed);
+            testCase.getEventListener().getEvents().filter(callTaskId).filter(ProcessFailed.class).assertSize(1);
+        });
+
+        // The response of the lost call comes in after the process failed, and must not be handled anymore
+        testCase.addStep(createPingCommand(testUser, caseInstanceId, 4000), casePlan -> {
+            casePlan.assertPlanItem("Call").assertState(State.Failed);
+            testCase.getEventListener().getEvents().filter(callTaskId).filter(ProcessCompleted.class).assertSize(0);
+        });
+
+        testCase.runTest();
+    }
+}
@@ -0,0 +1,99 @@
+package org.cafienne.cmmn.test.task;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
+import org.apache.pekko.actor.ActorSystem;
+import org.cafienne.cmmn.definition.CaseDefinition;
+import org.cafienne.cmmn.instance.Path;
+import org.cafienne.cmmn.instance.State;
+import org.cafienne.cmmn.test.TestScript;
+import org.cafienne.json.StringValue;
+import org.cafienne.json.ValueMap;
+import org.cafienne.processtask.actorapi.event.ProcessCompleted;
+import org.cafienne.system.CaseSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.cafienne.cmmn.test.TestScript.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The output of a process task that exceeds the blob store threshold reaches the case as a reference into the blob store.
+ * The output mappings and the sentries of the case must work on the value itself.
+ */
+public class TestLargeProcessOutput {
+    private final CaseDefinition definitions = loadCaseDefinition("testdefinition/task/largeprocessoutput.xml");
+    private final String largeText = "x".repeat(1000);
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(18090);
+
+    private java.nio.file.Path blobDirectory;
+    private ActorSystem system;
+    private CaseSystem caseSystem;
+
+    @Before
+    public void startCaseSystem() throws IOException {
+        blobDirectory = Files.createTempDirectory("blobs");
+        system = ActorSystem.create("TestLargeProcessOutput", ConfigFactory.parseString("cafienne.persistence.blob-store { enabled = true, threshold = 100 }")
+                .withValue("cafienne.persistence.blob-store.directory", ConfigValueFactory.fromAnyRef(blobDirectory.toString()))
+                .withFallback(ConfigFactory.load()));
+        caseSystem = CaseSystem.apply(system);
+        wireMockRule.stubFor(get(urlEqualTo("/large"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(new ValueMap("text", largeText).toString())));
+    }
+
+    @After
+    public void stopCaseSystem() throws IOException {
+        system.terminate();
+        try (Stream<java.nio.file.Path> files = Files.walk(blobDirectory)) {
+            for (java.nio.file.Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testMappingAndIfPartOnLargeOutput() {
+        String caseInstanceId = "LargeProcessOutput";
+        TestScript testCase = new TestScript(caseInstanceId, caseSystem);
+
+        testCase.addStep(createCaseCommand(testUser, caseInstanceId, definitions), casePlan -> {
+            String fetchTaskId = casePlan.assertPlanItem("Fetch").getId();
+            testCase.getEventListener().awaitPlanItemState("Fetch", State.Completed);
+
+            // The process task only passes a reference to the case
+            List<ProcessCompleted> completed = testCase.getEventListener().getEvents().filter(fetchTaskId).filter(ProcessCompleted.class).getEvents();
+            assertEquals(1, completed.size());
+            String payloadText = (String) completed.get(0).output.with("payload").get("text").getValue();
+            assertTrue("Expected a blob reference instead of " + payloadText, payloadText.startsWith("blob:sha256:"));
+
+            // Yet the ifPart reads the value itself
+            testCase.getEventListener().awaitPlanItemState("LargeText", State.Completed);
+        });
+
+        testCase.addStep(createPingCommand(testUser, caseInstanceId, 0), casePlan -> {
+            casePlan.assertPlanItem("LargeText").assertState(State.Completed);
+            // And so does the output mapping
+            Number size = (Number) casePlan.assertCaseFile().assertCaseFileItem(new Path("Size")).getValue().getValue();
+            assertEquals(1000, size.intValue());
+            assertEquals(new StringValue(largeText), caseSystem.blobStorage().resolve(casePlan.assertCaseFile().assertCaseFileItem(new Path("Text")).getValue()));
+        });
+
+        testCase.runTest();
+    }
+}
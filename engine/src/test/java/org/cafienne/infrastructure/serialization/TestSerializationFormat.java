@@ -0,0 +1,76 @@
+package org.cafienne.infrastructure.serialization;
+
+import org.cafienne.cmmn.test.PingCommand;
+import org.cafienne.json.JSONReader;
+import org.cafienne.json.ValueMap;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.cafienne.cmmn.test.TestScript.createPingCommand;
+import static org.cafienne.cmmn.test.TestScript.testUser;
+import static org.junit.Assert.*;
+
+public class TestSerializationFormat {
+    private final static byte[] CBOR_HEADER = {(byte) 0xD9, (byte) 0xD9, (byte) 0xF7};
+
+    private final CafienneSerializer serializer = new CafienneSerializer();
+    private final PingCommand command = createPingCommand(testUser, "SerializationFormat", 100);
+
+    @After
+    public void resetFormat() {
+        SerializationFormat.configure(SerializationFormat.JSON);
+    }
+
+    private static boolean startsWithCBORHeader(byte[] bytes) {
+        return bytes.length >= CBOR_HEADER.length && bytes[0] == CBOR_HEADER[0] && bytes[1] == CBOR_HEADER[1] && bytes[2] == CBOR_HEADER[2];
+    }
+
+    @Test
+    public void cborRoundTrip() {
+        SerializationFormat.configure(SerializationFormat.CBOR);
+        byte[] bytes = serializer.toBinary(command);
+        assertTrue("CBOR serialized object must start with the self-describe tag", startsWithCBORHeader(bytes));
+
+        Object deserialized = serializer.fromBinary(bytes, serializer.manifest(command));
+        assertTrue("Expected a PingCommand instead of " + deserialized.getClass().getName(), deserialized instanceof PingCommand);
+        assertEquals(command.asString(), ((PingCommand) deserialized).asString());
+    }
+
+    @Test
+    public void cborHeaderIsDetected() throws Exception {
+        byte[] cbor = command.toBytes(SerializationFormat.CBOR);
+        byte[] json = command.toBytes(SerializationFormat.JSON);
+        assertTrue(startsWithCBORHeader(cbor));
+        assertFalse(startsWithCBORHeader(json));
+
+        // Both formats hold the same structure
+        ValueMap fromCBOR = SerializationFormat.parse(cbor);
+        ValueMap fromJSON = SerializationFormat.parse(json);
+        assertEquals(fromJSON, fromCBOR);
+        assertEquals(JSONReader.<ValueMap>parse(json), fromJSON);
+    }
+
+    @Test
+    public void legacyPrettyJsonStillDeserializes() {
+        // Events written by earlier versions are pretty printed json, and must be readable whatever the configured format
+        byte[] legacy = command.toBytes(SerializationFormat.PRETTY_JSON);
+        assertTrue(new String(legacy, StandardCharsets.UTF_8).contains("\n"));
+        for (SerializationFormat format : SerializationFormat.values()) {
+            SerializationFormat.configure(format);
+            Object deserialized = serializer.fromBinary(legacy, serializer.manifest(command));
+            assertTrue("Legacy json cannot be read when the format is " + format.value, deserialized instanceof PingCommand);
+            assertEquals(command.asString(), ((PingCommand) deserialized).asString());
+        }
+    }
+
+    @Test
+    public void asStringIsReadableWithCBOR() throws Exception {
+        SerializationFormat.configure(SerializationFormat.CBOR);
+        String readable = command.asString();
+        assertTrue(readable.startsWith("{"));
+        assertTrue("asString must be pretty printed", readable.contains("\n"));
+        assertEquals(SerializationFormat.parse(command.toBytes()), JSONReader.parse(readable));
+    }
+}
@@ -0,0 +1,135 @@
+package org.cafienne.persistence.blob;
+
+import org.cafienne.json.StringValue;
+import org.cafienne.json.ValueList;
+import org.cafienne.json.ValueMap;
+import org.cafienne.util.ContentDigest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class TestBlobStorage {
+    private final static int THRESHOLD = 10;
+
+    private Path directory;
+    private FileSystemBlobStore store;
+    private BlobStorage storage;
+
+    @Before
+    public void createStore() throws IOException {
+        directory = Files.createTempDirectory("blobs");
+        store = new FileSystemBlobStore(directory);
+        storage = new BlobStorage(store, THRESHOLD);
+    }
+
+    @After
+    public void removeStore() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private String reference(String content) {
+        return "blob:sha256:" + ContentDigest.sha256(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<Path> filesInStore() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void valuesAtTheThresholdStay() {
+        StringValue exact = new StringValue("0123456789");
+        assertSame(exact, storage.externalize(exact));
+        assertEquals(reference("0123456789a"), storage.externalize(new StringValue("0123456789a")).getValue());
+
+        // Threshold is in bytes, not in characters
+        StringValue multiByte = new StringValue("ééééé");
+        assertSame(multiByte, storage.externalize(multiByte));
+        assertEquals(reference("éééééé"), storage.externalize(new StringValue("éééééé")).getValue());
+    }
+
+    @Test
+    public void externalizeOnlyCopiesWhatChanges() {
+        String large = "a value that is larger than the threshold";
+        ValueMap unchanged = new ValueMap("small", "small");
+        ValueList list = new ValueList();
+        list.add(new StringValue("first"));
+        list.add(new StringValue(large));
+        ValueMap output = new ValueMap("before", "small", "large", large, "list", list, "after", unchanged);
+        String original = output.toString();
+
+        ValueMap externalized = storage.externalize(output);
+        assertNotSame(output, externalized);
+        assertEquals("The value passed must not change", original, output.toString());
+        assertEquals(reference(large), externalized.readString("large"));
+        assertEquals("small", externalized.readString("before"));
+        assertEquals(reference(large), externalized.withArray("list").getValue().get(1).getValue());
+        assertEquals("first", externalized.withArray("list").getValue().get(0).getValue());
+        assertEquals(unchanged, externalized.get("after"));
+
+        // Nothing to store means no copy
+        ValueMap small = new ValueMap("small", "small", "nested", new ValueMap("also", "small"));
+        assertSame(small, storage.externalize(small));
+        // Already externalized values stay as they are
+        assertSame(externalized, storage.externalize(externalized));
+    }
+
+    @Test
+    public void resolveReturnsTheOriginalValue() {
+        String large = "a value that is larger than the threshold";
+        ValueMap output = new ValueMap("large", large, "nested", new ValueMap("large", large + " and more"), "small", "small");
+        ValueMap externalized = storage.externalize(output);
+        assertNotEquals(output, externalized);
+        assertEquals(output, storage.resolve(externalized));
+        assertEquals(output.toString(), storage.resolveJson(externalized.toString()));
+    }
+
+    @Test
+    public void missingBlobLeavesTheReference() {
+        String reference = reference("content that was never stored");
+        ValueMap output = new ValueMap("missing", reference);
+        assertSame(output, storage.resolve(output));
+        assertEquals(reference, storage.resolve(new StringValue(reference)).getValue());
+    }
+
+    @Test
+    public void disabledStorageLeavesValuesAsTheyAre() {
+        ValueMap output = new ValueMap("large", "a value that is larger than the threshold");
+        assertSame(output, BlobStorage.DISABLED.externalize(output));
+        assertSame(output, BlobStorage.DISABLED.resolve(output));
+        assertFalse(BlobStorage.DISABLED.isEnabled());
+    }
+
+    @Test
+    public void storeWritesThroughATemporaryFile() throws IOException {
+        byte[] content = "content of the blob".getBytes(StandardCharsets.UTF_8);
+        String digest = ContentDigest.sha256(content);
+        assertNull(store.read(digest));
+
+        store.store(digest, content);
+        assertArrayEquals(content, store.read(digest));
+        // Only the blob itself remains, in a directory named after the start of the digest
+        assertEquals(List.of(directory.toAbsolutePath().resolve(digest.substring(0, 2)).resolve(digest)), filesInStore());
+
+        // Storing the same content again is harmless
+        store.store(digest, content);
+        assertArrayEquals(content, store.read(digest));
+        assertEquals(1, filesInStore().size());
+    }
+}
@@ -0,0 +1,90 @@
+package org.cafienne.persistence.infrastructure.lastmodified;
+
+import org.cafienne.actormodel.response.ActorLastModified;
+import org.junit.After;
+import org.junit.Test;
+import scala.concurrent.Await;
+import scala.concurrent.Promise;
+import scala.concurrent.duration.Duration;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestLastModifiedRegistration {
+    private final Instant now = Instant.now().plusSeconds(1);
+
+    @After
+    public void restoreDefaults() {
+        LastModifiedRegistration.configure(100000, TimeUnit.MINUTES.toMillis(10), TimeUnit.SECONDS.toMillis(30));
+    }
+
+    private Promise<String> waitFor(LastModifiedRegistration registration, String actorId, Instant moment) {
+        return registration.waitFor(new ActorLastModified(actorId, moment));
+    }
+
+    /**
+     * Returns an actor id that falls in the given partition
+     */
+    private String actorInPartition(String prefix, int partition, int partitions) {
+        for (int i = 0; ; i++) {
+            String actorId = prefix + i;
+            if (Math.floorMod(actorId.hashCode(), partitions) == partition) {
+                return actorId;
+            }
+        }
+    }
+
+    @Test
+    public void waitUntilRegistered() {
+        LastModifiedRegistration registration = new LastModifiedRegistration("test-wait");
+        Promise<String> waiter = waitFor(registration, "case", now.plusSeconds(2));
+        assertFalse(waiter.isCompleted());
+        registration.handle("case", now.plusSeconds(1));
+        assertFalse("An older moment must not release the waiter", waiter.isCompleted());
+        registration.handle("case", now.plusSeconds(2));
+        assertTrue(waiter.isCompleted());
+        assertTrue("Moments that are already registered do not wait", waitFor(registration, "case", now).isCompleted());
+    }
+
+    @Test
+    public void momentsBeforeStartupDoNotWait() {
+        LastModifiedRegistration registration = new LastModifiedRegistration("test-startup");
+        assertTrue(waitFor(registration, "unknown", Instant.now().minusSeconds(3600)).isCompleted());
+    }
+
+    @Test
+    public void evictionOnlyMovesTheMarkOfItsPartition() {
+        LastModifiedRegistration.configure(1, TimeUnit.MINUTES.toMillis(10), TimeUnit.SECONDS.toMillis(30));
+        LastModifiedRegistration registration = new LastModifiedRegistration("test-partitions");
+        registration.usePartitions(4);
+        String evicted = actorInPartition("evicted", 0, 4);
+        String samePartition = actorInPartition("same", 0, 4);
+        String otherPartition = actorInPartition("other", 1, 4);
+        String latest = actorInPartition("latest", 2, 4);
+
+        registration.handle(evicted, now.plusSeconds(10));
+        // Maximum size is 1, so this evicts the first one
+        registration.handle(latest, now.plusSeconds(11));
+        assertNotEquals(now.plusSeconds(10), registration.knownUntil(otherPartition));
+
+        assertTrue("The evicted actor itself has been projected", waitFor(registration, evicted, now.plusSeconds(10)).isCompleted());
+        assertTrue("The partition of the evicted actor has projected all earlier moments", waitFor(registration, samePartition, now.plusSeconds(5)).isCompleted());
+        Promise<String> lagging = waitFor(registration, otherPartition, now.plusSeconds(5));
+        assertFalse("Another partition may still lag behind", lagging.isCompleted());
+        registration.handle(otherPartition, now.plusSeconds(5));
+        assertTrue(lagging.isCompleted());
+    }
+
+    @Test
+    public void waitersStopAfterTheirDeadline() throws Exception {
+        LastModifiedRegistration.configure(100000, TimeUnit.MINUTES.toMillis(10), 100);
+        LastModifiedRegistration registration = new LastModifiedRegistration("test-deadline");
+        Promise<String> waiter = waitFor(registration, "never", now.plusSeconds(60));
+        String reason = Await.result(waiter.future(), Duration.create(5, TimeUnit.SECONDS));
+        assertTrue(reason, reason.startsWith("Stopped waiting"));
+    }
+}
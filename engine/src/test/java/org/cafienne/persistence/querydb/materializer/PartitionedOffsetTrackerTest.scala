@@ -0,0 +1,154 @@
+package org.cafienne.persistence.querydb.materializer
+
+import org.apache.pekko.persistence.query.{EventEnvelope, NoOffset, Offset, Sequence}
+import org.cafienne.actormodel.event.CommitEvent
+import org.cafienne.infrastructure.cqrs.ModelEventEnvelope
+import org.cafienne.infrastructure.cqrs.offset.OffsetRecord
+import org.cafienne.persistence.querydb.materializer.cases.CaseStorageTransaction
+import org.cafienne.persistence.querydb.materializer.consentgroup.ConsentGroupStorageTransaction
+import org.cafienne.persistence.querydb.materializer.tenant.TenantStorageTransaction
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.collection.mutable
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{Await, Future}
+
+class PartitionedOffsetTrackerTest extends AnyFlatSpec with Matchers {
+  val offsetName = "TestSink"
+  val partitions = 2
+
+  /**
+    * Keeps the offsets in memory, and counts the number of times the watermark is written
+    */
+  class OffsetStorage extends QueryDBStorage {
+    val offsets = new mutable.HashMap[String, OffsetRecord]()
+    var watermarkWrites = 0
+
+    override def createCaseTransaction(caseInstanceId: String): CaseStorageTransaction = ???
+
+    override def createConsentGroupTransaction(groupId: String): ConsentGroupStorageTransaction = ???
+
+    override def createTenantTransaction(tenant: String): TenantStorageTransaction = ???
+
+    override def getOffset(offsetName: String): Future[Offset] = synchronized {
+      Future.successful(offsets.get(offsetName).fold[Offset](NoOffset)(_.asOffset()))
+    }
+
+    override def storeOffset(offset: OffsetRecord): Future[Unit] = synchronized {
+      if (offset.name == offsetName) watermarkWrites += 1
+      offsets.put(offset.name, offset)
+      Future.unit
+    }
+  }
+
+  /**
+    * Batch that writes only the offset records it is given by the tracker, and keeps track of whether it has been consumed.
+    */
+  class TestBatch(val persistenceId: String, offset: Long, storage: OffsetStorage) extends QueryDBEventBatch {
+    var consumed = false
+    addEvent(ModelEventEnvelope(EventEnvelope(Sequence(offset), persistenceId, offset, null, 0L)))
+
+    override def handleEvent(envelope: ModelEventEnvelope): Unit = {}
+
+    override def commit(envelope: ModelEventEnvelope, transactionEvent: CommitEvent): Unit = {}
+
+    override def dBTransaction: QueryDBTransaction = ???
+
+    override def consume(): Unit = {
+      consumed = true
+      createOffsetRecords(offsetName, events.last.offset).foreach(storage.storeOffset)
+    }
+  }
+
+  // Persistence ids that end up in partition 0 and 1 respectively
+  val (first, second) = {
+    val ids = (1 to 100).map(i => s"case-$i")
+    (ids.find(id => Math.floorMod(id.hashCode, partitions) == 0).get, ids.find(id => Math.floorMod(id.hashCode, partitions) == 1).get)
+  }
+
+  def load(storage: OffsetStorage): PartitionedOffsetTracker = Await.result(PartitionedOffsetTracker.load(storage, offsetName, partitions), 5.seconds)
+
+  def storeWatermark(tracker: PartitionedOffsetTracker, storage: OffsetStorage): Unit = Await.result(tracker.storeWatermark(storage), 5.seconds)
+
+  "PartitionedOffsetTracker" should "only advance the watermark when all preceding batches have completed" in {
+    val storage = new OffsetStorage
+    val tracker = load(storage)
+    val batch1 = tracker.register(new TestBatch(first, 1, storage))
+    val batch2 = tracker.register(new TestBatch(second, 2, storage))
+    val batch3 = tracker.register(new TestBatch(first, 3, storage))
+    batch1.partition should not be batch2.partition
+
+    batch2.consume()
+    tracker.currentWatermark shouldBe NoOffset
+    batch1.consume()
+    tracker.currentWatermark shouldBe Sequence(2)
+    batch3.consume()
+    tracker.currentWatermark shouldBe Sequence(3)
+  }
+
+  it should "store only the partition offset in the transaction of a batch" in {
+    val storage = new OffsetStorage
+    val tracker = load(storage)
+    val batch = tracker.register(new TestBatch(second, 1, storage))
+    batch.createOffsetRecords().map(_.name) shouldBe Seq(PartitionedOffsetTracker.partitionOffsetName(offsetName, 1, partitions))
+    batch.consume()
+    storage.offsets.contains(offsetName) shouldBe false
+  }
+
+  it should "store the watermark separately, and only when it has moved" in {
+    val storage = new OffsetStorage
+    val tracker = load(storage)
+    storeWatermark(tracker, storage)
+    storage.watermarkWrites shouldBe 0 // Nothing committed yet
+
+    tracker.register(new TestBatch(first, 1, storage)).consume()
+    storeWatermark(tracker, storage)
+    storeWatermark(tracker, storage)
+    storage.watermarkWrites shouldBe 1
+    storage.offsets(offsetName).asOffset() shouldBe Sequence(1)
+
+    tracker.register(new TestBatch(second, 2, storage)).consume()
+    storeWatermark(tracker, storage)
+    storage.watermarkWrites shouldBe 2
+    storage.offsets(offsetName).asOffset() shouldBe Sequence(2)
+  }
+
+  it should "skip the batches that were committed after the stored watermark upon restart" in {
+    val storage = new OffsetStorage
+    val tracker = load(storage)
+    tracker.register(new TestBatch(first, 1, storage)).consume()
+    storeWatermark(tracker, storage)
+    // These batches are committed, but the watermark is not stored before the "restart"
+    tracker.register(new TestBatch(second, 2, storage)).consume()
+    tracker.register(new TestBatch(first, 3, storage)).consume()
+
+    // Restart: the events are read again from the stored watermark onwards
+    val restarted = load(storage)
+    restarted.currentWatermark shouldBe Sequence(1)
+    val replayed = Seq(new TestBatch(second, 2, storage), new TestBatch(first, 3, storage), new TestBatch(second, 4, storage))
+    val partitionedBatches = replayed.map(restarted.register)
+    partitionedBatches.filter(_.partition == 0).foreach(_.consume())
+    PartitionedBatch.consume(partitionedBatches.filter(_.partition == 1))
+
+    replayed.map(_.consumed) shouldBe Seq(false, false, true)
+    restarted.currentWatermark shouldBe Sequence(4)
+    storeWatermark(restarted, storage)
+    storage.offsets(offsetName).asOffset() shouldBe Sequence(4)
+  }
+
+  it should "not use the partition offsets when the watermark has been reset" in {
+    val storage = new OffsetStorage
+    val tracker = load(storage)
+    tracker.register(new TestBatch(first, 1, storage)).consume()
+    tracker.register(new TestBatch(second, 2, storage)).consume()
+    storeWatermark(tracker, storage)
+    storage.offsets.remove(offsetName)
+
+    val restarted = load(storage)
+    val batch = new TestBatch(first, 1, storage)
+    restarted.register(batch).consume()
+    batch.consumed shouldBe true
+  }
+}
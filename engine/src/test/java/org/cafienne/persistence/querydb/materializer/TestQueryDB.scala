@@ -1,6 +1,7 @@
 package org.cafienne.persistence.querydb.materializer
 
 import org.apache.pekko.persistence.query.Offset
+import org.cafienne.infrastructure.cqrs.offset.OffsetRecord
 import org.cafienne.persistence.querydb.materializer.cases.TestCaseStorageTransaction
 import org.cafienne.persistence.querydb.materializer.consentgroup.ConsentGroupStorageTransaction
 import org.cafienne.persistence.querydb.materializer.tenant.TenantStorageTransaction
@@ -34,4 +35,6 @@ object TestQueryDB extends QueryDBStorage {
   override def createTenantTransaction(tenant: String): TenantStorageTransaction = ???
 
   override def getOffset(offsetName: String): Future[Offset] = Future.successful(Offset.noOffset)
+
+  override def storeOffset(offset: OffsetRecord): Future[Unit] = Future.unit
 }
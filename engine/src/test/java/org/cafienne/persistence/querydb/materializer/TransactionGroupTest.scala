@@ -0,0 +1,72 @@
+package org.cafienne.persistence.querydb.materializer
+
+import org.apache.pekko.persistence.query.{EventEnvelope, Sequence}
+import org.cafienne.actormodel.event.CommitEvent
+import org.cafienne.infrastructure.cqrs.ModelEventEnvelope
+import org.cafienne.infrastructure.cqrs.offset.OffsetRecord
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.collection.mutable.ListBuffer
+
+class TransactionGroupTest extends AnyFlatSpec with Matchers {
+
+  /**
+    * Transaction that logs when it is written, either on its own or as part of a group
+    */
+  class TestTransaction(val name: String, log: ListBuffer[String], canGroup: Boolean) extends QueryDBTransaction {
+    private var grouped = false
+
+    override def upsert(record: OffsetRecord): Unit = {}
+
+    override def commit(): Unit = if (!grouped) log += s"commit $name"
+
+    override def joinGroup(): Boolean = {
+      grouped = canGroup
+      canGroup
+    }
+
+    override def commitGroup(members: Seq[QueryDBTransaction]): Unit = log += s"group ${members.map(_.asInstanceOf[TestTransaction].name).mkString(",")}"
+  }
+
+  class TestBatch(val persistenceId: String, offset: Long, log: ListBuffer[String], override val canJoinGroup: Boolean = true) extends QueryDBEventBatch {
+    private val name = s"$persistenceId-$offset"
+    override val dBTransaction: TestTransaction = new TestTransaction(name, log, canJoinGroup)
+    addEvent(ModelEventEnvelope(EventEnvelope(Sequence(offset), persistenceId, offset, null, 0L)))
+
+    override def handleEvent(envelope: ModelEventEnvelope): Unit = {}
+
+    override def commit(envelope: ModelEventEnvelope, transactionEvent: CommitEvent): Unit = dBTransaction.commit()
+
+    override def committed(): Unit = log += s"committed $name"
+  }
+
+  "TransactionGroup" should "write batches of different actors in a single transaction" in {
+    val log = ListBuffer[String]()
+    TransactionGroup.consume(Seq(new TestBatch("a", 1, log), new TestBatch("b", 2, log), new TestBatch("c", 3, log)))
+    log shouldBe Seq("group a-1,b-2,c-3", "committed a-1", "committed b-2", "committed c-3")
+  }
+
+  it should "start a new transaction for the next batch of the same actor" in {
+    val log = ListBuffer[String]()
+    TransactionGroup.consume(Seq(new TestBatch("a", 1, log), new TestBatch("b", 2, log), new TestBatch("a", 3, log)))
+    log shouldBe Seq("group a-1,b-2", "committed a-1", "committed b-2", "group a-3", "committed a-3")
+  }
+
+  it should "commit the preceding group before a batch that cannot join a group" in {
+    val log = ListBuffer[String]()
+    TransactionGroup.consume(Seq(new TestBatch("a", 1, log), new TestBatch("b", 2, log, canJoinGroup = false), new TestBatch("c", 3, log)))
+    log shouldBe Seq("group a-1", "committed a-1", "commit b-2", "committed b-2", "group c-3", "committed c-3")
+  }
+
+  "QueryDBTransaction" should "commit the members of a group one by one if it does not support grouping" in {
+    val log = ListBuffer[String]()
+    val members = Seq("x", "y").map(name => new QueryDBTransaction {
+      override def upsert(record: OffsetRecord): Unit = {}
+
+      override def commit(): Unit = log += s"commit $name"
+    })
+    members.head.commitGroup(members)
+    log shouldBe Seq("commit x", "commit y")
+  }
+}
@@ -27,16 +27,17 @@ class CaseFileWriterTest extends CaseEventSinkTest {
                              |  }
                              |}""".stripMargin
       import org.cafienne.infrastructure.cqrs.offset.OffsetRecord
-      import org.cafienne.persistence.querydb.record.{CaseDefinitionRecord, CaseFileRecord, CaseRecord, CaseRoleRecord}
+      import org.cafienne.persistence.querydb.record.{CaseDefinitionRecord, CaseFileRecord, CaseRecord, CaseRoleRecord, CaseStatisticsRecord}
 
       eventually {
         assert(TestQueryDB.hasTransaction(caseInstanceId))
         val transaction = TestQueryDB.getTransaction(caseInstanceId)
-        transaction.records.length shouldBe 6 // Events generate below 6 records
+        transaction.records.length shouldBe 7 // Events generate below 7 records
         transaction.records.count(_.isInstanceOf[CaseDefinitionRecord]) shouldBe 1
         transaction.records.count(_.isInstanceOf[CaseRoleRecord]) shouldBe 2
         transaction.records.count(_.isInstanceOf[CaseRecord]) shouldBe 1
         transaction.records.count(_.isInstanceOf[CaseFileRecord]) shouldBe 1
+        transaction.records.count(_.isInstanceOf[CaseStatisticsRecord]) shouldBe 1
         transaction.records.count(_.isInstanceOf[OffsetRecord]) shouldBe 1
         transaction.records.find(_.isInstanceOf[CaseFileRecord]) match {
           case Some(cs: CaseFileRecord) => cs.data shouldBe expectedCaseFileContent
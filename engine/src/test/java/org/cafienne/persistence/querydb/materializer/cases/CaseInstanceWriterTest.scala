@@ -15,17 +15,18 @@ class CaseInstanceWriterTest extends CaseEventSinkTest {
       sendEvent(eventFactory.createCaseModified(Instant.now()))
 
       import org.cafienne.infrastructure.cqrs.offset.OffsetRecord
-      import org.cafienne.persistence.querydb.record.{CaseDefinitionRecord, CaseFileRecord, CaseRecord, CaseRoleRecord}
+      import org.cafienne.persistence.querydb.record.{CaseDefinitionRecord, CaseFileRecord, CaseRecord, CaseRoleRecord, CaseStatisticsRecord}
 
       eventually {
         assert(TestQueryDB.hasTransaction(caseInstanceId))
         val transaction = TestQueryDB.getTransaction(caseInstanceId)
-        // A 'simple' CaseDefinitionApplied results always in 6 records, as below, with an empty case file record
-        transaction.records.length shouldBe 6 // Events generate below 6 records
+        // A 'simple' CaseDefinitionApplied results always in 7 records, as below, with an empty case file record
+        transaction.records.length shouldBe 7 // Events generate below 7 records
         transaction.records.count(_.isInstanceOf[CaseDefinitionRecord]) shouldBe 1
         transaction.records.count(_.isInstanceOf[CaseRoleRecord]) shouldBe 2
         transaction.records.count(_.isInstanceOf[CaseRecord]) shouldBe 1
         transaction.records.count(_.isInstanceOf[CaseFileRecord]) shouldBe 1
+        transaction.records.count(_.isInstanceOf[CaseStatisticsRecord]) shouldBe 1
         transaction.records.count(_.isInstanceOf[OffsetRecord]) shouldBe 1
         transaction.records.find(_.isInstanceOf[CaseFileRecord]) match {
           case Some(cs: CaseFileRecord) => cs.data shouldBe emptyCaseFile
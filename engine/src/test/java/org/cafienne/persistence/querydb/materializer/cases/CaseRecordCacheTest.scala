@@ -0,0 +1,59 @@
+package org.cafienne.persistence.querydb.materializer.cases
+
+import org.cafienne.json.ValueMap
+import org.cafienne.persistence.querydb.record.PlanItemRecord
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import java.time.Instant
+
+class CaseRecordCacheTest extends AnyFlatSpec with Matchers {
+
+  private def planItem(caseInstanceId: String, id: String): PlanItemRecord = {
+    PlanItemRecord(id = id, definitionId = id, stageId = "", name = id, index = 0, caseInstanceId = caseInstanceId, tenant = "tenant",
+      planItemType = "HumanTask", lastModified = Instant.now, modifiedBy = "user", createdOn = Instant.now)
+  }
+
+  "CaseRecordCache" should "hand out a cached case file only once" in {
+    val cache = new CaseRecordCache(2)
+    cache.update("case1", Seq(), Seq(), Some(new ValueMap("name", "first")))
+    cache.takeCaseFile("case1").map(_.get("name").getValue) shouldBe Some("first")
+    cache.takeCaseFile("case1") shouldBe None
+  }
+
+  it should "evict the least recently used case" in {
+    val cache = new CaseRecordCache(2)
+    cache.update("case1", Seq(), Seq(), Some(new ValueMap()))
+    cache.update("case2", Seq(), Seq(), Some(new ValueMap()))
+    cache.update("case3", Seq(), Seq(), Some(new ValueMap()))
+    cache.size shouldBe 2
+    cache.takeCaseFile("case1") shouldBe None
+    cache.takeCaseFile("case3").isDefined shouldBe true
+  }
+
+  it should "not keep anything when disabled" in {
+    val cache = new CaseRecordCache(0)
+    cache.update("case1", Seq(), Seq(), Some(new ValueMap()))
+    cache.takeCaseFile("case1") shouldBe None
+  }
+
+  it should "not keep cases with more records than the maximum per case" in {
+    val cache = new CaseRecordCache(2, maxRecordsPerCase = 3)
+    cache.update("case1", Seq(), Seq(), Some(new ValueMap()))
+    cache.update("case2", Seq(), Seq(), Some(new ValueMap()))
+    cache.size shouldBe 2
+    cache.update("case1", Seq(planItem("case1", "item1"), planItem("case1", "item2")), Seq(), None)
+    cache.getPlanItem("case1", "item2").isDefined shouldBe true
+    cache.update("case1", Seq(planItem("case1", "item3"), planItem("case1", "item4")), Seq(), None)
+    cache.size shouldBe 1
+    cache.getPlanItem("case1", "item1") shouldBe None
+    cache.takeCaseFile("case2").isDefined shouldBe true
+  }
+
+  it should "forget invalidated cases" in {
+    val cache = new CaseRecordCache(2)
+    cache.update("case1", Seq(), Seq(), Some(new ValueMap()))
+    cache.invalidate("case1")
+    cache.takeCaseFile("case1") shouldBe None
+  }
+}
@@ -17,14 +17,15 @@ class PlanItemWriterTest extends CaseEventSinkTest {
       sendEvent(planItemCreated)
       sendEvent(eventFactory.createCaseModified(Instant.now))
 
-      import org.cafienne.persistence.querydb.record.{CaseRecord, PlanItemRecord}
+      import org.cafienne.persistence.querydb.record.{CaseRecord, CaseStatisticsRecord, PlanItemRecord}
 
       eventually {
         assert(TestQueryDB.hasTransaction(caseInstanceId))
         val transaction = TestQueryDB.getTransaction(caseInstanceId)
-        transaction.records.length shouldBe 7
+        transaction.records.length shouldBe 8
         assert(transaction.records.exists(x => x.isInstanceOf[CaseRecord]))
         assert(transaction.records.exists(x => x.isInstanceOf[PlanItemRecord]))
+        assert(transaction.records.exists(x => x.isInstanceOf[CaseStatisticsRecord]))
       }
     }
   }
@@ -22,8 +22,18 @@ class TestCaseStorageTransaction(caseInstanceId: String) extends TestQueryDBTran
 
   override def upsert(record: CaseFileRecord): Unit = addRecord(record)
 
+  override def upsert(record: CaseFileItemRecord): Unit = addRecord(record)
+
+  override def deleteCaseFileItem(caseInstanceId: String, name: String): Unit = {}
+
+  override def deleteCaseFileItems(caseInstanceId: String): Unit = {}
+
   override def upsert(record: CaseBusinessIdentifierRecord): Unit = addRecord(record)
 
+  override def updateStatistics(delta: CaseStatisticsRecord): Unit = addRecord(delta)
+
+  override def updateStatistics(delta: TaskStatisticsRecord): Unit = addRecord(delta)
+
   override def upsert(record: CaseRoleRecord): Unit = addRecord(record)
 
   override def upsert(record: CaseTeamUserRecord): Unit = addRecord(record)
@@ -50,10 +60,12 @@ class TestCaseStorageTransaction(caseInstanceId: String) extends TestQueryDBTran
 
   override def getCaseFile(caseInstanceId: String): Option[CaseFileRecord] = None
 
+  override def getCaseFileItems(caseInstanceId: String): Seq[CaseFileItemRecord] = Seq()
+
   override def getCaseInstance(id: String): Option[CaseRecord] = None
 
   override def getTask(taskId: String): Option[TaskRecord] = Some(TaskRecord(id = "1", caseInstanceId = "1", tenant = "tenant", createdOn = Instant.now, lastModified = Instant.now))
 
-  override def updateCaseUserInformation(caseId: String, info: Seq[NewUserInformation], offset: OffsetRecord): Unit = {}
+  override def updateCaseUserInformation(caseId: String, info: Seq[NewUserInformation], offsets: Seq[OffsetRecord]): Unit = {}
 
 }
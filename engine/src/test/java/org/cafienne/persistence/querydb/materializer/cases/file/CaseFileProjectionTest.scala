@@ -0,0 +1,95 @@
+package org.cafienne.persistence.querydb.materializer.cases.file
+
+import org.cafienne.cmmn.instance.casefile.CaseFileItemTransition
+import org.cafienne.identity.TestIdentityFactory
+import org.cafienne.json.{JSONReader, ValueMap}
+import org.cafienne.persistence.querydb.materializer.EventFactory
+import org.cafienne.persistence.querydb.materializer.cases.{CaseRecordCache, CaseStorageTransaction, TestCaseStorageTransaction}
+import org.cafienne.persistence.querydb.record.{CaseFileItemRecord, CaseFileRecord}
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+class CaseFileProjectionTest extends AnyFlatSpec with Matchers {
+  val caseInstanceId = "case"
+  val tenant = "tenant"
+  val eventFactory = new EventFactory(null, caseInstanceId, null, TestIdentityFactory.createTenantUser("test"))
+  val greeting = new ValueMap("Message", "hi there")
+  val other = new ValueMap("Message", "unchanged")
+
+  /**
+    * Transaction that holds the stored case file, and keeps track of reading and deleting the case file items
+    */
+  class CaseFileTransaction(document: Option[String], items: Seq[CaseFileItemRecord]) extends TestCaseStorageTransaction(caseInstanceId) {
+    var itemReads = 0
+    var itemsDeleted = false
+
+    override def getCaseFile(caseInstanceId: String): Option[CaseFileRecord] = document.map(CaseFileRecord(caseInstanceId, tenant, _))
+
+    override def getCaseFileItems(caseInstanceId: String): Seq[CaseFileItemRecord] = {
+      itemReads += 1
+      items
+    }
+
+    override def deleteCaseFileItems(caseInstanceId: String): Unit = itemsDeleted = true
+
+    def caseFileRecords: Seq[CaseFileRecord] = records.collect { case record: CaseFileRecord => record }.toSeq
+
+    def itemRecords: Seq[CaseFileItemRecord] = records.collect { case record: CaseFileItemRecord => record }.toSeq
+  }
+
+  def item(name: String, value: ValueMap): CaseFileItemRecord = CaseFileItemRecord(caseInstanceId, tenant, name, value.toString)
+
+  /**
+    * Projects a change of the Greeting item on top of the stored case file
+    */
+  def project(transaction: CaseFileTransaction, items: Boolean): CaseFileTransaction = {
+    val projection = new CaseFileProjection(null) {
+      override lazy val dBTransaction: CaseStorageTransaction = transaction
+      override lazy val caseInstanceId: String = CaseFileProjectionTest.this.caseInstanceId
+      override lazy val tenant: String = CaseFileProjectionTest.this.tenant
+      override lazy val recordCache: CaseRecordCache = new CaseRecordCache(0)
+      override lazy val storeItems: Boolean = items
+    }
+    projection.handleCaseFileEvent(eventFactory.createCaseFileEvent("Greeting", greeting, CaseFileItemTransition.Create))
+    projection.prepareCommit()
+    transaction
+  }
+
+  def json(data: String): ValueMap = JSONReader.parse(data)
+
+  "In document mode, the case file projection" should "write the full document without reading items" in {
+    val transaction = project(new CaseFileTransaction(Some(new ValueMap("Other", other).toString), Seq()), items = false)
+    transaction.itemReads shouldBe 0
+    transaction.itemRecords shouldBe Seq()
+    transaction.itemsDeleted shouldBe false
+    json(transaction.caseFileRecords.head.data) shouldBe new ValueMap("Other", other, "Greeting", greeting)
+  }
+
+  it should "convert the items that were stored in items mode into the document" in {
+    val transaction = project(new CaseFileTransaction(Some("{}"), Seq(item("Other", other))), items = false)
+    transaction.itemReads shouldBe 1
+    transaction.itemsDeleted shouldBe true
+    json(transaction.caseFileRecords.head.data) shouldBe new ValueMap("Other", other, "Greeting", greeting)
+  }
+
+  "In items mode, the case file projection" should "only write the items that changed" in {
+    val transaction = project(new CaseFileTransaction(Some("{ }"), Seq(item("Other", other))), items = true)
+    transaction.itemReads shouldBe 1
+    transaction.caseFileRecords shouldBe Seq()
+    transaction.itemRecords.map(_.name) shouldBe Seq("Greeting")
+    json(transaction.itemRecords.head.data) shouldBe greeting
+  }
+
+  it should "convert a case file that was stored as a document into items" in {
+    val transaction = project(new CaseFileTransaction(Some(new ValueMap("Other", other).toString), Seq()), items = true)
+    transaction.itemReads shouldBe 0
+    transaction.caseFileRecords.map(_.data) shouldBe Seq("{}")
+    transaction.itemRecords.map(_.name).toSet shouldBe Set("Greeting", "Other")
+  }
+
+  "CaseFileRecord" should "only expect items next to an empty document" in {
+    CaseFileRecord(caseInstanceId, tenant, "{}").mayHaveItems shouldBe true
+    CaseFileRecord(caseInstanceId, tenant, new ValueMap().toString).mayHaveItems shouldBe true
+    CaseFileRecord(caseInstanceId, tenant, new ValueMap("Other", other).toString).mayHaveItems shouldBe false
+  }
+}
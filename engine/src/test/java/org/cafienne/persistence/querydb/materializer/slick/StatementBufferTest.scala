@@ -0,0 +1,107 @@
+package org.cafienne.persistence.querydb.materializer.slick
+
+import org.apache.pekko.persistence.query.Sequence
+import org.cafienne.infrastructure.cqrs.offset.OffsetRecord
+import org.cafienne.persistence.querydb.materializer.slick.SlickQueryDBTransaction.StatementBuffer
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+import slick.dbio.{DBIO, SuccessAction}
+
+class StatementBufferTest extends AnyFlatSpec with Matchers {
+
+  // The actions do not run; each action simply carries the value that would be written
+  private val upsertWriter: Seq[Any] => DBIO[_] = records => DBIO.successful(records)
+  private val offsetWriter: OffsetRecord => DBIO[_] = record => DBIO.successful(s"${record.name}=${record.offsetValue}")
+
+  private def upsert(buffer: StatementBuffer, table: String, record: String): Unit = buffer.addUpsert(table, record, upsertWriter)
+
+  private def values(buffer: StatementBuffer): Seq[Any] = buffer.actions(offsetWriter).map {
+    case SuccessAction(value) => value
+    case other => fail(s"Unexpected action $other")
+  }
+
+  "StatementBuffer" should "join upserts into the same table in a single batch" in {
+    val buffer = new StatementBuffer
+    upsert(buffer, "plan_item", "a")
+    upsert(buffer, "plan_item", "b")
+    upsert(buffer, "task", "c")
+    upsert(buffer, "plan_item", "d")
+    values(buffer) shouldBe Seq(Seq("a", "b", "d"), Seq("c"))
+  }
+
+  it should "not join upserts across another statement" in {
+    val buffer = new StatementBuffer
+    upsert(buffer, "plan_item", "a")
+    buffer.add(DBIO.successful("delete"))
+    upsert(buffer, "plan_item", "b")
+    values(buffer) shouldBe Seq(Seq("a"), "delete", Seq("b"))
+  }
+
+  it should "write only the last offset of each name, after all other statements" in {
+    val buffer = new StatementBuffer
+    buffer.addOffset(OffsetRecord("sink", Sequence(1)))
+    upsert(buffer, "plan_item", "a")
+    buffer.addOffset(OffsetRecord("other", Sequence(5)))
+    buffer.addOffset(OffsetRecord("sink", Sequence(2)))
+    values(buffer) shouldBe Seq(Seq("a"), "sink=2", "other=5")
+  }
+
+  it should "merge the statements and offsets of other buffers in order" in {
+    val first = new StatementBuffer
+    upsert(first, "plan_item", "a")
+    first.add(DBIO.successful("delete"))
+    upsert(first, "plan_item", "b")
+    first.addOffset(OffsetRecord("sink", Sequence(1)))
+
+    val second = new StatementBuffer
+    upsert(second, "plan_item", "c")
+    upsert(second, "task", "d")
+    second.addOffset(OffsetRecord("sink", Sequence(2)))
+
+    val group = new StatementBuffer
+    group.addAll(first)
+    group.addAll(second)
+    values(group) shouldBe Seq(Seq("a"), "delete", Seq("b", "c"), Seq("d"), "sink=2")
+  }
+
+  private def count(buffer: StatementBuffer, key: String, delta: Long): Unit = buffer.addCounter[Long](key, delta, _ + _, sum => DBIO.successful(s"$key+$sum"))
+
+  it should "sum the counters per key and write them ordered by key, before the offsets" in {
+    val buffer = new StatementBuffer
+    count(buffer, "task|b", 1)
+    buffer.addOffset(OffsetRecord("sink", Sequence(1)))
+    count(buffer, "case|a", 1)
+    upsert(buffer, "plan_item", "a")
+    count(buffer, "task|b", -1)
+    count(buffer, "case|a", 1)
+    values(buffer) shouldBe Seq(Seq("a"), "case|a+2", "task|b+0", "sink=1")
+  }
+
+  it should "sum the counters of the members of a group" in {
+    val first = new StatementBuffer
+    count(first, "task|b", 1)
+    count(first, "case|a", -1)
+    val second = new StatementBuffer
+    count(second, "case|a", 1)
+    count(second, "case|c", 1)
+
+    val group = new StatementBuffer
+    group.addAll(second)
+    group.addAll(first)
+    values(group) shouldBe Seq("case|a+0", "case|c+1", "task|b+1")
+  }
+
+  it should "be empty after clear" in {
+    val buffer = new StatementBuffer
+    upsert(buffer, "plan_item", "a")
+    buffer.add(DBIO.successful("delete"))
+    buffer.addOffset(OffsetRecord("sink", Sequence(1)))
+    count(buffer, "case|a", 1)
+    buffer.clear()
+    values(buffer) shouldBe Seq()
+
+    // And a new upsert does not join the batch from before the clear
+    upsert(buffer, "plan_item", "b")
+    values(buffer) shouldBe Seq(Seq("b"))
+  }
+}
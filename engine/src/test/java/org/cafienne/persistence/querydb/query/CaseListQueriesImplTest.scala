@@ -7,7 +7,8 @@ import org.cafienne.persistence.querydb.materializer.cases.CaseStorageTransactio
 import org.cafienne.persistence.querydb.materializer.tenant.TenantStorageTransaction
 import org.cafienne.persistence.querydb.query.cmmn.filter.CaseFilter
 import org.cafienne.persistence.querydb.query.cmmn.implementations.CaseListQueriesImpl
-import org.cafienne.persistence.querydb.record.{CaseRecord, CaseTeamUserRecord, PlanItemRecord}
+import org.cafienne.persistence.querydb.query.result.CaseList
+import org.cafienne.persistence.querydb.record.{CaseRecord, CaseStatisticsRecord, CaseTeamUserRecord, PlanItemRecord}
 
 import java.time.Instant
 import java.util.UUID
@@ -63,6 +64,14 @@ class CaseListQueriesImplTest extends QueryTestBaseClass("case-list-queries") {
     TestIdentityFactory.asDatabaseRecords(user).foreach(tenantUpdater.upsert)
     caseUpdater.commit()
     tenantUpdater.commit()
+    // Count the cases like the case projection does, each case in a transaction of its own, so that existing counters are incremented
+    Seq(activeCase, terminatedCase, completedCase, childCase, childCase2, grandChildCase).foreach(record => updateStatistics(None, Some(record)))
+  }
+
+  private def updateStatistics(before: Option[CaseRecord], after: Option[CaseRecord]): Unit = {
+    val caseUpdater: CaseStorageTransaction = queryDBWriter.createCaseTransaction(null)
+    CaseStatisticsRecord.delta(before, after).foreach(caseUpdater.updateStatistics)
+    caseUpdater.commit()
   }
 
   // *******************************************************************************************************************
@@ -114,22 +123,38 @@ class CaseListQueriesImplTest extends QueryTestBaseClass("case-list-queries") {
   // Responses of type CaseList
   // *******************************************************************************************************************
 
-//  it should "filter all cases by definition" in {
-//    val res = Await.result(caseQueries.getCasesStats(user = user, Some(tenant), from = 0, numOfResults = 10, caseName = Some("ddd EeE fff")), 1.second)
-//    res.size must be (1)
-//    res.head must be(caseListDDDEEEFFF)
-//  }
-//
-//  it should "filter all cases by status - active" in {
-//    val res = Await.result(caseQueries.getCasesStats(user = user, Some(tenant), from = 0, numOfResults = 10, status = Some("Active")), 1.second)
-//    res.size must be (1)
-//    res.head must be(caseListActive)
-//  }
-//
-//
-//  it should "filter all cases by status - terminated" in {
-//    val res = Await.result(caseQueries.getCasesStats(user = user, Some(tenant), from = 0, numOfResults = 10, status = Some("Terminated")), 1.second)
-//    res.size must be (1)
-//    res.head must be(caseListTerminated)
-//  }
+  it should "count all cases per case name" in {
+    val res = Await.result(caselistQueries.getCaseStatistics(user, Some(tenant)), 3.seconds)
+    res must be (Seq(
+      CaseList(caseName = "aaa bbb ccc", totalInstances = 4, numActive = 4),
+      CaseList(caseName = "ddd EeE fff", totalInstances = 2, numCompleted = 1, numTerminated = 1)))
+  }
+
+  it should "count cases filtered by case name" in {
+    val res = Await.result(caselistQueries.getCaseStatistics(user, Some(tenant), caseName = Some("ddd EeE fff")), 3.seconds)
+    res must be (Seq(CaseList(caseName = "ddd EeE fff", totalInstances = 2, numCompleted = 1, numTerminated = 1)))
+  }
+
+  it should "count cases filtered by state" in {
+    val res = Await.result(caselistQueries.getCaseStatistics(user, Some(tenant), state = Some("Terminated")), 3.seconds)
+    res must be (Seq(CaseList(caseName = "ddd EeE fff", totalInstances = 1, numTerminated = 1)))
+  }
+
+  it should "not count cases in tenants of which the user is not a member" in {
+    val res = Await.result(caselistQueries.getCaseStatistics(user, Some("not-" + tenant)), 3.seconds)
+    res must be (Seq())
+  }
+
+  it should "move a case to the statistics of its new state" in {
+    val failedCase = activeCase.copy(state = State.Failed.toString, failures = 1)
+    updateStatistics(Some(activeCase), Some(failedCase))
+    Await.result(caselistQueries.getCaseStatistics(user, Some(tenant), caseName = Some("aaa bbb ccc")), 3.seconds) must be (Seq(
+      CaseList(caseName = "aaa bbb ccc", totalInstances = 4, numActive = 3, numFailed = 1, numWithFailures = 1)))
+
+    // Replaying the same change does not count the case twice
+    updateStatistics(Some(failedCase), Some(failedCase))
+    updateStatistics(Some(failedCase), Some(activeCase))
+    Await.result(caselistQueries.getCaseStatistics(user, Some(tenant), caseName = Some("aaa bbb ccc")), 3.seconds) must be (Seq(
+      CaseList(caseName = "aaa bbb ccc", totalInstances = 4, numActive = 4)))
+  }
 }
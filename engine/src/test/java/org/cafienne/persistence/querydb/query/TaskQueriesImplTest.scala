@@ -7,7 +7,7 @@ import org.cafienne.persistence.infrastructure.jdbc.query.{Area, Sort}
 import org.cafienne.persistence.querydb.query.cmmn.authorization.AuthorizationQueriesImpl
 import org.cafienne.persistence.querydb.query.cmmn.implementations.TaskQueriesImpl
 import org.cafienne.persistence.querydb.query.exception.TaskSearchFailure
-import org.cafienne.persistence.querydb.record.{CaseRecord, TaskRecord}
+import org.cafienne.persistence.querydb.record.{CaseRecord, TaskRecord, TaskStatisticsRecord}
 
 import java.time.Instant
 import scala.concurrent.duration._
@@ -59,15 +59,24 @@ class TaskQueriesImplTest extends QueryTestBaseClass("task-list-queries") {
     caseUpdater.commit()
 
     println("Writing tasks and tenant users")
-    caseUpdater.upsert(TaskRecord("1", case33, tenant = tenant, role = "A", owner = "Jan", createdOn = Instant.now, lastModified = Instant.now))
-    caseUpdater.upsert(TaskRecord("2", case33, tenant = tenant, role = "A", owner = "Piet", taskState = "Unassigned", createdOn = Instant.now, lastModified = Instant.now))
-    caseUpdater.upsert(TaskRecord("3", case44, tenant = tenant, role = "B", owner = "Aart", createdOn = Instant.now, lastModified = Instant.now))
-    caseUpdater.upsert(TaskRecord("4", case44Child, tenant = tenant, role = "B", owner = "Gerrit", createdOn = Instant.now, lastModified = Instant.now))
+    val tasks = Seq(
+      TaskRecord("1", case33, tenant = tenant, role = "A", owner = "Jan", createdOn = Instant.now, lastModified = Instant.now),
+      TaskRecord("2", case33, tenant = tenant, role = "A", owner = "Piet", taskState = "Unassigned", createdOn = Instant.now, lastModified = Instant.now),
+      TaskRecord("3", case44, tenant = tenant, role = "B", owner = "Aart", createdOn = Instant.now, lastModified = Instant.now),
+      TaskRecord("4", case44Child, tenant = tenant, role = "B", owner = "Gerrit", createdOn = Instant.now, lastModified = Instant.now),
+    )
+    tasks.foreach(task => caseUpdater.upsert(task))
     TestIdentityFactory.asDatabaseRecords(Seq(testUser, userWithAandB, userWithBandC)).foreach(user => tenantUpdater.upsert(user))
 
     caseUpdater.commit()
     tenantUpdater.commit()
 
+    // Count the tasks like the case projection does, each task in a transaction of its own, so that existing counters are incremented
+    tasks.foreach(task => {
+      TaskStatisticsRecord.delta(Seq(), Seq(task)).foreach(caseUpdater.updateStatistics)
+      caseUpdater.commit()
+    })
+
   }
 
   "Create a table" should "succeed the second time as well" in {
@@ -0,0 +1,74 @@
+package org.cafienne.persistence.querydb.record
+
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import java.time.Instant
+
+class StatisticsRecordTest extends AnyFlatSpec with Matchers {
+  private val tenant = "tenant"
+  private val activeCase = CaseRecord(id = "case", tenant = tenant, rootCaseId = "case", caseName = "HelloWorld", state = "Active", failures = 0, lastModified = Instant.now, createdOn = Instant.now)
+
+  private def task(id: String, state: String, role: String = "A", assignee: String = "", caseInstanceId: String = "case"): TaskRecord = {
+    TaskRecord(id, caseInstanceId, tenant = tenant, taskState = state, role = role, assignee = assignee, createdOn = Instant.now, lastModified = Instant.now)
+  }
+
+  "The case statistics" should "count a new case" in {
+    CaseStatisticsRecord.delta(None, Some(activeCase)) shouldBe Seq(CaseStatisticsRecord(tenant, "HelloWorld", "Active", 1, 0))
+  }
+
+  it should "move a case to its new state" in {
+    val completed = activeCase.copy(state = "Completed")
+    CaseStatisticsRecord.delta(Some(activeCase), Some(completed)).toSet shouldBe Set(
+      CaseStatisticsRecord(tenant, "HelloWorld", "Active", -1, 0),
+      CaseStatisticsRecord(tenant, "HelloWorld", "Completed", 1, 0))
+  }
+
+  it should "move a case to its new name upon migration" in {
+    CaseStatisticsRecord.delta(Some(activeCase), Some(activeCase.copy(caseName = "HelloWorld2"))).toSet shouldBe Set(
+      CaseStatisticsRecord(tenant, "HelloWorld", "Active", -1, 0),
+      CaseStatisticsRecord(tenant, "HelloWorld2", "Active", 1, 0))
+  }
+
+  it should "only count the failures when they appear or disappear" in {
+    val failing = activeCase.copy(failures = 1)
+    CaseStatisticsRecord.delta(Some(activeCase), Some(failing)) shouldBe Seq(CaseStatisticsRecord(tenant, "HelloWorld", "Active", 0, 1))
+    CaseStatisticsRecord.delta(Some(failing), Some(failing.copy(failures = 3))) shouldBe Seq()
+    CaseStatisticsRecord.delta(Some(failing), Some(activeCase)) shouldBe Seq(CaseStatisticsRecord(tenant, "HelloWorld", "Active", 0, -1))
+  }
+
+  it should "not count a replayed case twice" in {
+    CaseStatisticsRecord.delta(Some(activeCase), Some(activeCase.copy(lastModified = Instant.now))) shouldBe Seq()
+  }
+
+  it should "remove a deleted case" in {
+    CaseStatisticsRecord.delta(Some(activeCase.copy(failures = 2)), None) shouldBe Seq(CaseStatisticsRecord(tenant, "HelloWorld", "Active", -1, -1))
+  }
+
+  "The task statistics" should "count new open tasks per case, role and assignee" in {
+    val deltas = TaskStatisticsRecord.delta(Seq(), Seq(task("1", "Unassigned"), task("2", "Unassigned"), task("3", "Assigned", assignee = "me"), task("4", "Unassigned", caseInstanceId = "other")))
+    deltas.toSet shouldBe Set(
+      TaskStatisticsRecord("case", tenant, "A", "", 2),
+      TaskStatisticsRecord("case", tenant, "A", "me", 1),
+      TaskStatisticsRecord("other", tenant, "A", "", 1))
+  }
+
+  it should "not count tasks that are completed or terminated" in {
+    TaskStatisticsRecord.delta(Seq(), Seq(task("1", "Completed"), task("2", "Terminated"))) shouldBe Seq()
+    TaskStatisticsRecord.delta(Seq(task("1", "Assigned", assignee = "me")), Seq(task("1", "Completed", assignee = "me"))) shouldBe Seq(TaskStatisticsRecord("case", tenant, "A", "me", -1))
+  }
+
+  it should "move a task to its new assignee" in {
+    TaskStatisticsRecord.delta(Seq(task("1", "Unassigned")), Seq(task("1", "Assigned", assignee = "me"))).toSet shouldBe Set(
+      TaskStatisticsRecord("case", tenant, "A", "", -1),
+      TaskStatisticsRecord("case", tenant, "A", "me", 1))
+  }
+
+  it should "not count a replayed task twice" in {
+    TaskStatisticsRecord.delta(Seq(task("1", "Unassigned")), Seq(task("1", "Unassigned"))) shouldBe Seq()
+  }
+
+  it should "remove a dropped task" in {
+    TaskStatisticsRecord.delta(Seq(task("1", "Assigned", assignee = "me")), Seq()) shouldBe Seq(TaskStatisticsRecord("case", tenant, "A", "me", -1))
+  }
+}
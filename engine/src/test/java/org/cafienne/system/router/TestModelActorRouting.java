@@ -0,0 +1,111 @@
+package org.cafienne.system.router;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.apache.pekko.actor.ActorSystem;
+import org.apache.pekko.cluster.Cluster;
+import org.cafienne.actormodel.response.CommandFailure;
+import org.cafienne.actormodel.response.ModelResponse;
+import org.cafienne.cmmn.actorapi.command.plan.GetDiscretionaryItems;
+import org.cafienne.cmmn.actorapi.command.plan.MakePlanItemTransition;
+import org.cafienne.cmmn.definition.CaseDefinition;
+import org.cafienne.cmmn.instance.State;
+import org.cafienne.cmmn.instance.Transition;
+import org.cafienne.cmmn.test.TestScript;
+import org.cafienne.system.CaseSystem;
+import org.junit.Test;
+import scala.concurrent.Await;
+import scala.concurrent.Future;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.cafienne.cmmn.test.TestScript.*;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Runs a case through each type of routing, including passivation after the idle period and termination upon recovery.
+ * After both, the next command must reach a new instance of the case, instead of getting lost in the stopped one.
+ */
+public class TestModelActorRouting {
+    private final CaseDefinition definitions = loadCaseDefinition("testdefinition/basic.xml");
+
+    @Test
+    public void testLocalRouting() {
+        runCase("localRouting", "local", ConfigFactory.empty());
+    }
+
+    @Test
+    public void testDirectRouting() {
+        runCase("directRouting", "direct", ConfigFactory.parseString("cafienne.actor.direct.supervisors = 4"));
+    }
+
+    @Test
+    public void testShardedRouting() {
+        Config cluster = ConfigFactory.parseString("pekko.actor.provider = cluster\n" +
+                "pekko.remote.artery.canonical.hostname = 127.0.0.1\n" +
+                "pekko.remote.artery.canonical.port = 0\n" +
+                "pekko.cluster.jmx.multi-mbeans-in-same-jvm = on\n" +
+                "cafienne.actor.sharding.number-of-shards = 10");
+        runCase("shardedRouting", "sharded", cluster);
+    }
+
+    @Test
+    public void testCommandsDuringPassivation() throws Exception {
+        Config config = ConfigFactory.parseString("cafienne.actor.routing = direct\ncafienne.actor.idle-period = 1\ncafienne.actor.direct.supervisors = 4")
+                .withFallback(ConfigFactory.load());
+        ActorSystem system = ActorSystem.create("commandsDuringPassivation", config);
+        CaseSystem caseSystem = CaseSystem.apply(system);
+        String caseInstanceId = "commandsDuringPassivation";
+        TestScript testCase = new TestScript(caseInstanceId, caseSystem);
+        testCase.addStep(createCaseCommand(testUser, caseInstanceId, definitions), casePlan -> casePlan.assertPlanItem("Item1").assertState(State.Active));
+        testCase.runTest();
+
+        // Each round waits until around the moment the case is passivated, and then sends a burst of commands to it.
+        // Commands that reach the case while it is stopping must get a response from a new instance of it.
+        for (int round = 0; round < 12; round++) {
+            Thread.sleep(980 + round * 15);
+            List<Future<ModelResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                responses.add(caseSystem.engine().request(new GetDiscretionaryItems(testUser, caseInstanceId)));
+            }
+            for (Future<ModelResponse> response : responses) {
+                ModelResponse result = Await.result(response, FiniteDuration.apply(10, TimeUnit.SECONDS));
+                assertFalse("Command failed in round " + round + ": " + result, result instanceof CommandFailure);
+            }
+        }
+        system.terminate();
+    }
+
+    private void runCase(String testName, String routing, Config routingConfig) {
+        Config config = ConfigFactory.parseString("cafienne.actor.routing = " + routing + "\ncafienne.actor.idle-period = 1")
+                .withFallback(routingConfig)
+                .withFallback(ConfigFactory.load());
+        ActorSystem system = ActorSystem.create(testName, config);
+        if (routing.equals("sharded")) {
+            // Single node cluster
+            Cluster cluster = Cluster.get(system);
+            cluster.join(cluster.selfAddress());
+        }
+        TestScript testCase = new TestScript(testName, CaseSystem.apply(system));
+        String caseInstanceId = testName;
+
+        testCase.addStep(createCaseCommand(testUser, caseInstanceId, definitions), casePlan -> casePlan.assertPlanItem("Item1").assertState(State.Active));
+
+        // Wait longer than the idle period, so that the case is removed from memory before the next command
+        testCase.addStep(createPingCommand(testUser, caseInstanceId, 2500));
+        testCase.addStep(new MakePlanItemTransition(testUser, caseInstanceId, "Item1", Transition.Suspend), casePlan -> casePlan.assertPlanItem("Item1").assertState(State.Suspended));
+
+        // Recovery terminates the case through the routing, and then sends a command to it
+        testCase.addStep(createRecoveryCommand(testUser, caseInstanceId));
+        testCase.addStep(new MakePlanItemTransition(testUser, caseInstanceId, "Item1", Transition.Resume), casePlan -> casePlan.assertPlanItem("Item1").assertState(State.Active));
+
+        testCase.addStep(createPingCommand(testUser, caseInstanceId, 2500));
+        testCase.addStep(new MakePlanItemTransition(testUser, caseInstanceId, "Item1", Transition.Complete), casePlan -> casePlan.assertPlanItem("Item1").assertState(State.Completed));
+
+        testCase.runTest();
+        system.terminate();
+    }
+}
@@ -0,0 +1,95 @@
+package org.cafienne.timerservice
+
+import org.apache.pekko.Done
+import org.apache.pekko.actor.ActorSystem
+import org.apache.pekko.persistence.query.{Offset, Sequence}
+import org.apache.pekko.stream.RestartSettings
+import org.apache.pekko.testkit.TestKit
+import org.cafienne.timerservice.persistence.inmemory.InMemoryStore
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.flatspec.AnyFlatSpecLike
+import org.scalatest.matchers.should.Matchers
+
+import java.time.Instant
+import scala.collection.mutable.ListBuffer
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{Await, Future}
+
+class TimerEventSinkTest extends TestKit(ActorSystem("TimerEventSinkTest")) with AnyFlatSpecLike with Matchers with BeforeAndAfterAll {
+  val start: Instant = Instant.parse("2026-01-01T00:00:00Z")
+  val settings: RestartSettings = RestartSettings(10.millis, 50.millis, 0).withMaxRestarts(2, 1.minute)
+
+  def timer(id: String, seconds: Long): Timer = Timer("case", id, start.plusSeconds(seconds), "user")
+
+  /**
+    * Store that keeps track of the offsets written, and fails on storing the timers with the given id
+    */
+  class FailingStore(failOn: String) extends InMemoryStore {
+    val offsets: ListBuffer[Option[Offset]] = ListBuffer()
+
+    override def storeTimer(job: Timer, offset: Option[Offset]): Future[Done] = {
+      if (job.timerId == failOn) {
+        Future.failed(new RuntimeException(s"Cannot store ${job.timerId}"))
+      } else {
+        offsets += offset
+        super.storeTimer(job, offset)
+      }
+    }
+
+    override def removeTimer(timerId: String, offset: Option[Offset]): Future[Done] = {
+      offsets += offset
+      super.removeTimer(timerId, offset)
+    }
+  }
+
+  override def afterAll(): Unit = TestKit.shutdownActorSystem(system)
+
+  "A batch of timer events" should "only keep the latest change per timer" in {
+    val (timers, removed) = TimerEventSink.latestChanges(Seq(
+      "a" -> Some(timer("a", 1)),
+      "b" -> Some(timer("b", 2)),
+      "a" -> None,
+      "c" -> None,
+      "a" -> Some(timer("a", 3)),
+      "b" -> None))
+    timers shouldBe Seq(timer("a", 3))
+    removed shouldBe Seq("b", "c")
+  }
+
+  it should "store the offset of the batch only with the last change" in {
+    val store = new FailingStore("none")
+    val offset = Some(Sequence(10))
+    Await.result(store.storeTimers(Seq(timer("a", 1), timer("b", 2)), Seq("c"), offset), 1.second)
+    store.offsets shouldBe Seq(None, None, offset)
+    Await.result(store.getTimers(start.plusSeconds(10)), 1.second).sorted shouldBe Seq(timer("a", 1), timer("b", 2))
+  }
+
+  it should "not store the offset if one of the changes fails" in {
+    val store = new FailingStore("b")
+    val result = store.storeTimers(Seq(timer("a", 1), timer("b", 2), timer("c", 3)), Seq(), Some(Sequence(10)))
+    an[RuntimeException] should be thrownBy Await.result(result, 1.second)
+    // The timers after the failure are not stored, and neither is the offset, so that the batch is read again after a restart
+    store.offsets shouldBe Seq(None)
+    Await.result(store.getTimers(start.plusSeconds(10)), 1.second).sorted shouldBe Seq(timer("a", 1))
+  }
+
+  "Storing a batch" should "be tried again after a failure" in {
+    var attempts = 0
+    val result = TimerEventSink.retryStorage(settings) {
+      attempts += 1
+      if (attempts < 3) Future.failed(new RuntimeException(s"Attempt $attempts fails")) else Future.successful(Done)
+    }
+    Await.result(result, 5.seconds) shouldBe Done
+    attempts shouldBe 3
+  }
+
+  it should "fail when the maximum number of restarts is exceeded" in {
+    var attempts = 0
+    val result = TimerEventSink.retryStorage(settings) {
+      attempts += 1
+      Future.failed(new RuntimeException(s"Attempt $attempts fails"))
+    }
+    an[RuntimeException] should be thrownBy Await.result(result, 5.seconds)
+    attempts shouldBe 3
+  }
+}
@@ -0,0 +1,63 @@
+package org.cafienne.timerservice
+
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+class TimingWheelTest extends AnyFlatSpec with Matchers {
+
+  class TestEntry(val name: String) extends TimingWheel.Entry
+
+  "TimingWheel" should "return entries once their deadline has passed" in {
+    val wheel = new TimingWheel[TestEntry](100, 8, startMillis = 0)
+    val first = new TestEntry("first")
+    val second = new TestEntry("second")
+    wheel.add(first, 250) shouldBe true
+    wheel.add(second, 1250) shouldBe true // Beyond a single revolution of the wheel
+
+    wheel.advance(200) shouldBe Seq()
+    wheel.advance(300).map(_.name) shouldBe Seq("first")
+    wheel.advance(1000) shouldBe Seq()
+    wheel.advance(1300).map(_.name) shouldBe Seq("second")
+    wheel.size shouldBe 0
+  }
+
+  it should "not add entries that are already due" in {
+    val wheel = new TimingWheel[TestEntry](100, 8, startMillis = 1000)
+    wheel.add(new TestEntry("overdue"), 500) shouldBe false
+    wheel.size shouldBe 0
+  }
+
+  it should "return all due entries after a delay of more than a revolution" in {
+    val wheel = new TimingWheel[TestEntry](100, 8, startMillis = 0)
+    (1 to 20).foreach(i => wheel.add(new TestEntry(s"entry$i"), i * 100L))
+    wheel.advance(5000).size shouldBe 20
+  }
+
+  it should "return an entry again when it is added after it went off" in {
+    // This is how a TimerJob retries raising the timer when no response is received
+    val wheel = new TimingWheel[TestEntry](100, 8, startMillis = 0)
+    val entry = new TestEntry("retry")
+    wheel.add(entry, 250) shouldBe true
+    wheel.advance(300).map(_.name) shouldBe Seq("retry")
+    wheel.add(entry, 300 + 10000) shouldBe true
+    wheel.advance(5000) shouldBe Seq()
+    wheel.advance(10300).map(_.name) shouldBe Seq("retry")
+
+    // And a response removes the pending retry
+    wheel.add(entry, 20300) shouldBe true
+    wheel.remove(entry) shouldBe true
+    wheel.advance(30000) shouldBe Seq()
+    wheel.size shouldBe 0
+  }
+
+  // Functional check that the bookkeeping holds with many entries in the same slots; this is not a benchmark
+  it should "keep count correctly when adding and removing a million entries" in {
+    val wheel = new TimingWheel[TestEntry](100, 4096, startMillis = 0)
+    val entries = (1 to 1000000).map(i => new TestEntry(s"entry$i"))
+    entries.zipWithIndex.foreach(e => wheel.add(e._1, 100L + e._2 * 4L))
+    wheel.size shouldBe 1000000
+    entries.foreach(wheel.remove)
+    wheel.size shouldBe 0
+    wheel.advance(5000000) shouldBe Seq()
+  }
+}
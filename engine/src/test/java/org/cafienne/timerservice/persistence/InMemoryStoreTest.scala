@@ -0,0 +1,69 @@
+package org.cafienne.timerservice.persistence
+
+import org.cafienne.timerservice.Timer
+import org.cafienne.timerservice.persistence.inmemory.InMemoryStore
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import java.time.Instant
+import scala.collection.mutable.ListBuffer
+import scala.concurrent.Await
+import scala.concurrent.duration.DurationInt
+
+class InMemoryStoreTest extends AnyFlatSpec with Matchers {
+  val start: Instant = Instant.parse("2026-01-01T00:00:00Z")
+  val window: Instant = start.plusSeconds(100)
+
+  // Several timers share the same moment, so that the pages must also be ordered on timer id
+  def timer(nr: Int, secondsFromStart: Long): Timer = Timer(s"case${nr % 3}", f"timer$nr%03d", start.plusSeconds(secondsFromStart), "user")
+
+  def page(store: TimerStore, after: Option[Timer], limit: Int): Seq[Timer] = Await.result(store.getTimers(window, after, limit), 1.second)
+
+  def readAllPages(store: TimerStore, limit: Int, betweenPages: Seq[Timer] => Unit = _ => {}): Seq[Timer] = {
+    val result = ListBuffer[Timer]()
+    var next = page(store, None, limit)
+    while (next.nonEmpty) {
+      result ++= next
+      betweenPages(next)
+      next = if (next.size < limit) Seq() else page(store, next.lastOption, limit)
+    }
+    result.toSeq
+  }
+
+  def createStore(timers: Seq[Timer]): InMemoryStore = {
+    val store = new InMemoryStore
+    store.importTimers(timers)
+    store
+  }
+
+  "InMemoryStore" should "return the timers of the window in pages, ordered on moment and timer id" in {
+    val timers = (1 to 25).map(nr => timer(nr, nr / 4)) ++ (26 to 30).map(nr => timer(nr, 200)) // The last ones are beyond the window
+    val store = createStore(scala.util.Random.shuffle(timers))
+
+    page(store, None, 10) shouldBe timers.sorted.take(10)
+    readAllPages(store, 10) shouldBe timers.take(25).sorted
+    readAllPages(store, 7) shouldBe timers.take(25).sorted
+  }
+
+  it should "continue after the last timer of the previous page, also when that timer has been removed" in {
+    val timers = (1 to 20).map(nr => timer(nr, nr / 2))
+    val store = createStore(timers)
+    val pages = readAllPages(store, 5, page => store.removeTimer(page.last.timerId, None))
+    pages shouldBe timers.sorted
+  }
+
+  it should "return a timer in its new position when its moment has changed" in {
+    val timers = (1 to 10).map(nr => timer(nr, nr))
+    val store = createStore(timers)
+    val moved = timer(1, 50)
+    store.storeTimer(moved, None)
+    readAllPages(store, 3) shouldBe (timers.drop(1) :+ moved)
+  }
+
+  it should "not return the timers of a case that have been removed" in {
+    val timers = (1 to 12).map(nr => timer(nr, nr))
+    val store = createStore(timers)
+    store.removeCaseTimers("case0")
+    readAllPages(store, 4) shouldBe timers.filterNot(_.caseInstanceId == "case0")
+  }
+}
@@ -0,0 +1,182 @@
+package org.cafienne.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestConcurrentCache {
+    private final AtomicLong clock = new AtomicLong();
+
+    private ConcurrentCache<String, String> createCache(String name, int maxSize, long ttlMillis) {
+        return new ConcurrentCache<>("test-cache-" + name, maxSize, ttlMillis, clock::get);
+    }
+
+    @Test
+    public void entriesExpireAfterTheirTimeToLive() {
+        ConcurrentCache<String, String> cache = createCache("ttl", 10, 100);
+        cache.put("a", "A");
+        clock.set(99);
+        assertEquals("A", cache.get("a"));
+        clock.set(100);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void entriesWithoutTimeToLiveDoNotExpire() {
+        ConcurrentCache<String, String> cache = createCache("no-ttl", 10, 0);
+        cache.put("a", "A");
+        clock.set(Long.MAX_VALUE - 1);
+        assertEquals("A", cache.get("a"));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvictedInOneGo() {
+        ConcurrentCache<String, String> cache = createCache("lru", 10, 0);
+        for (int i = 0; i < 10; i++) {
+            clock.set(i);
+            cache.put("key" + i, "value" + i);
+        }
+        clock.set(20);
+        cache.get("key0");
+
+        // Exceeding the maximum size evicts down to 10% below it; key0 has been used recently, key1 and key2 are the least recent
+        clock.set(21);
+        cache.put("key10", "value10");
+        assertEquals(9, cache.size());
+        assertEquals("value0", cache.get("key0"));
+        assertNull(cache.get("key1"));
+        assertNull(cache.get("key2"));
+        for (int i = 3; i <= 10; i++) {
+            assertEquals("value" + i, cache.get("key" + i));
+        }
+    }
+
+    @Test
+    public void expiredEntriesAreEvictedFirst() {
+        ConcurrentCache<String, String> cache = createCache("expired-first", 10, 100);
+        for (int i = 0; i < 5; i++) {
+            cache.put("old" + i, "old");
+        }
+        clock.set(150);
+        for (int i = 0; i < 6; i++) {
+            cache.put("new" + i, "new");
+        }
+        // Removing the expired entries is sufficient, the recent ones all remain
+        assertEquals(6, cache.size());
+    }
+
+    @Test
+    public void sizeZeroDisablesCaching() {
+        ConcurrentCache<String, String> cache = createCache("disabled", 0, 0);
+        cache.put("a", "A");
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void concurrentLoadsOfTheSameKeyAreCoalesced() throws Exception {
+        ConcurrentCache<String, String> cache = createCache("coalesce", 10, 0);
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> result = new CompletableFuture<>();
+        CompletionStage<String> first = cache.getOrLoad("a", key -> {
+            loads.incrementAndGet();
+            return result;
+        });
+        CompletionStage<String> second = cache.getOrLoad("a", key -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        assertSame(first, second);
+        result.complete("A");
+        assertEquals("A", first.toCompletableFuture().get());
+        assertEquals(1, loads.get());
+
+        // The loaded value is cached
+        assertEquals("A", cache.getOrLoad("a", key -> {
+            throw new IllegalStateException("Must not load again");
+        }).toCompletableFuture().get());
+    }
+
+    @Test
+    public void concurrentLoadsFromManyThreads() throws Exception {
+        ConcurrentCache<String, String> cache = createCache("threads", 10, 0);
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> result = new CompletableFuture<>();
+        CountDownLatch started = new CountDownLatch(16);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<CompletionStage<String>>> requests = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                requests.add(executor.submit(() -> {
+                    started.countDown();
+                    started.await();
+                    return cache.getOrLoad("a", key -> {
+                        loads.incrementAndGet();
+                        return result;
+                    });
+                }));
+            }
+            List<CompletionStage<String>> stages = new ArrayList<>();
+            for (Future<CompletionStage<String>> request : requests) {
+                stages.add(request.get(5, TimeUnit.SECONDS));
+            }
+            result.complete("A");
+            for (CompletionStage<String> stage : stages) {
+                assertEquals("A", stage.toCompletableFuture().get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void failedLoadsAreNotCached() throws Exception {
+        ConcurrentCache<String, String> cache = createCache("failure", 10, 0);
+        CompletionStage<String> failed = cache.getOrLoad("a", key -> CompletableFuture.failedFuture(new IllegalStateException("Load failed")));
+        try {
+            failed.toCompletableFuture().get();
+            fail("Load should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, cache.size());
+
+        // A loader that throws instead of returning a failed stage
+        CompletionStage<String> thrown = cache.getOrLoad("a", key -> {
+            throw new IllegalStateException("Loader failed");
+        });
+        assertTrue(thrown.toCompletableFuture().isCompletedExceptionally());
+
+        // And the next request loads again
+        assertEquals("A", cache.getOrLoad("a", key -> CompletableFuture.completedFuture("A")).toCompletableFuture().get());
+    }
+
+    @Test
+    public void removeDuringLoadDoesNotCacheTheOutdatedValue() throws Exception {
+        ConcurrentCache<String, String> cache = createCache("remove", 10, 0);
+        CompletableFuture<String> result = new CompletableFuture<>();
+        CompletionStage<String> load = cache.getOrLoad("a", key -> result);
+        cache.remove("a");
+        result.complete("outdated");
+        assertEquals("outdated", load.toCompletableFuture().get());
+        assertNull(cache.get("a"));
+    }
+}
@@ -22,6 +22,7 @@ import jakarta.mail.internet.AddressException;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 import jakarta.mail.internet.MimeMultipart;
+import org.cafienne.infrastructure.config.engine.MailServiceConfig;
 import org.cafienne.json.Value;
 import org.cafienne.json.ValueList;
 import org.cafienne.json.ValueMap;
@@ -30,7 +31,6 @@ import org.cafienne.processtask.implementation.mail.definition.AddressDefinition
 import org.cafienne.processtask.instance.ProcessTaskActor;
 
 import java.util.List;
-import java.util.Properties;
 import java.util.stream.Collectors;
 
 public class Mail extends SubProcess<MailDefinition> {
@@ -53,9 +53,6 @@ public class Mail extends SubProcess<MailDefinition> {
         start(); // Just do the call again.
     }
 
-    private Session mailSession;
-    private Transport transport;
-
     public String getSubject() {
         return subject;
     }
@@ -84,42 +81,15 @@ public class Mail extends SubProcess<MailDefinition> {
         return list.stream().map(MailAddress::getAddress).toArray(InternetAddress[]::new);
     }
 
-    private void connectMailServer() throws MessagingException {
-        processTaskActor.addDebugInfo(() -> "Connecting to mail server");
-        long now = System.currentTimeMillis();
-
-        Properties mailServerProperties = getDefinition().getMailProperties(processTaskActor);
-        String userName = mailServerProperties.get("authentication.user").toString();
-        String password = mailServerProperties.get("authentication.password").toString();
-        mailSession = Session.getInstance(mailServerProperties, new Authenticator() {
-            @Override
-            protected PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication(userName, password);
-            }
-        });
-
-        transport = mailSession.getTransport();
-        transport.connect();
-        long done = System.currentTimeMillis();
-//        System.out.println("Connect took " + (done - now) + " milliseconds");
-        processTaskActor.addDebugInfo(() -> "Connect to mail server took " + (done - now) + " milliseconds");
-    }
-
-    private void disconnectMailServer() throws MessagingException {
-        long now = System.currentTimeMillis();
-        transport.close();
-        long done = System.currentTimeMillis();
-        processTaskActor.addDebugInfo(() -> "Disconnecting from mail server took " + (done - now) + " milliseconds");
-    }
-
     @Override
     public void start() {
         input = processTaskActor.getMappedInputParameters();
 
+        MailServiceConfig config = processTaskActor.caseSystem.config().engine().mailService();
+        MailTransportPool mailServer = MailTransportPool.of(getDefinition().getMailProperties(processTaskActor), config.poolMaxConnections(), config.poolIdleTimeout().toMillis());
+
         // Setup email message and recipients
         try {
-            connectMailServer();
-
             // Read email addresses (can be both statically defined or dynamically taken from input parameters)
             from = resolveAddress(getDefinition().getFrom(), "from");
             replyTo = resolveAddress(getDefinition().getReplyTo(), "replyTo");
@@ -130,7 +100,7 @@ public class Mail extends SubProcess<MailDefinition> {
 
 
             // Create a mail session and message to fill.
-            MimeMessage mailMessage = new MimeMessage(mailSession);
+            MimeMessage mailMessage = new MimeMessage(mailServer.getSession());
 
             // First validate the recipient list.
             try {
@@ -186,25 +156,39 @@ public class Mail extends SubProcess<MailDefinition> {
             // Finally, set the multipart content of the mail
             mailMessage.setContent(multipart);
 
+            // Hand over the message to the mail server; this is done outside of the actor, the outcome is handled in handleCallOutcome
             processTaskActor.addDebugInfo(() -> "Sending message to mail server");
-            long now = System.currentTimeMillis();
             Address[] recipients = mailMessage.getAllRecipients();
-            transport.sendMessage(mailMessage, recipients);
-            long done = System.currentTimeMillis();
-//            System.out.println("Completed sending email in " + (done - now) + " milliseconds");
-
-            processTaskActor.addDebugInfo(() -> "Completed sending email in " + (done - now) + " milliseconds");
-            disconnectMailServer();
+            runOutsideActor(MailTransportPool::execute, () -> {
+                try {
+                    long duration = mailServer.send(mailMessage, recipients);
+                    return new ValueMap("successful", true, "duration", duration);
+                } catch (MessagingException | RuntimeException e) {
+                    return new ValueMap("successful", false, "description", "Failed to send email message", "exception", Value.convert(e));
+                }
+            });
         } catch (AddressException aex) {
             raiseFault("Invalid email address in from and/or replyTo", aex);
-            return;
         } catch (MessagingException mex) {
             raiseFault("Failed to generate email message", mex);
-            return;
         }
+    }
+
+    @Override
+    protected boolean callsOutsideActor() {
+        return true;
+    }
 
-        // Set processTaskActor to completed
-        raiseComplete();
+    @Override
+    protected void handleCallOutcome(ValueMap outcome) {
+        if (outcome.readBoolean("successful")) {
+            processTaskActor.addDebugInfo(() -> "Completed sending email in " + outcome.get("duration") + " milliseconds");
+            // Set processTaskActor to completed
+            raiseComplete();
+        } else {
+            setFault(outcome.get("exception"));
+            raiseFault(outcome.readString("description"));
+        }
     }
 
     @Override
@@ -213,6 +197,7 @@ public class Mail extends SubProcess<MailDefinition> {
 
     @Override
     public void terminate() {
+        // The mail may already be on its way, but its outcome will no longer be handled
     }
 
     @Override
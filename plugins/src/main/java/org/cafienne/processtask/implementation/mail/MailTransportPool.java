@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.processtask.implementation.mail;
+
+import jakarta.mail.*;
+import org.cafienne.system.metrics.DurationMetrics;
+import org.cafienne.system.metrics.MetricsMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+
+/**
+ * Keeps connections to a mail server open, so that subsequent mails need not connect and authenticate again.
+ * There is a pool for each mail server and user, see {@link #keyOf(Properties)}.
+ * Connections are checked to be alive before they are reused, and closed when they have been idle for too long.
+ * Pools without connections that have not been used within the idle timeout are removed.
+ * Mails are sent on virtual threads, so that process tasks need not wait for the mail server.
+ */
+class MailTransportPool {
+    private final static Logger logger = LoggerFactory.getLogger(MailTransportPool.class);
+    private final static Map<String, MailTransportPool> pools = new ConcurrentHashMap<>();
+    private final static DurationMetrics connectMetrics = MetricsMonitor.addDurations("mail-connect");
+    private final static DurationMetrics sendMetrics = MetricsMonitor.addDurations("mail-send");
+    private final static ExecutorService sender = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("mail-", 0).factory());
+    private final static ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("mail-pool-sweeper").daemon().factory());
+
+    static {
+        sweeper.scheduleWithFixedDelay(MailTransportPool::closeIdlePools, 10, 10, TimeUnit.SECONDS);
+    }
+
+    private final String key;
+    private final int maxConnections;
+    private final Session session;
+    private final Semaphore connections;
+    private final long idleTimeout;
+    private final Deque<IdleTransport> idleTransports = new ConcurrentLinkedDeque<>();
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    private MailTransportPool(String key, Properties properties, int maxConnections, long idleTimeout) {
+        this.key = key;
+        this.maxConnections = maxConnections;
+        String userName = String.valueOf(properties.get("authentication.user"));
+        String password = String.valueOf(properties.get("authentication.password"));
+        this.session = Session.getInstance(properties, new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication(userName, password);
+            }
+        });
+        this.connections = new Semaphore(maxConnections);
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Returns the pool for the mail server with these properties.
+     * Pool settings are taken from the first request for the mail server.
+     */
+    static MailTransportPool of(Properties properties, int maxConnections, long idleTimeout) {
+        MailTransportPool pool = pools.computeIfAbsent(keyOf(properties), key -> new MailTransportPool(key, properties, maxConnections, idleTimeout));
+        pool.lastUsed = System.currentTimeMillis();
+        return pool;
+    }
+
+    /**
+     * Returns the key of the pool for the mail server with these properties, in the form host:port/user#hash.
+     * The hash covers all properties, so that a change in e.g. the password leads to a new pool,
+     * without the password itself being kept in the key.
+     */
+    static String keyOf(Properties properties) {
+        String host = properties.getProperty("mail.smtp.host", properties.getProperty("mail.host", "localhost"));
+        String port = String.valueOf(properties.getOrDefault("mail.smtp.port", 25));
+        String user = String.valueOf(properties.getOrDefault("authentication.user", ""));
+        // Properties are a Hashtable, so sort them to get a stable hash
+        return host + ":" + port + "/" + user + "#" + hash(new TreeMap<>(properties).toString());
+    }
+
+    private static String hash(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Session to create messages with, such that they fit the mail server of this pool.
+     */
+    Session getSession() {
+        return session;
+    }
+
+    /**
+     * Runs the sending of a mail outside of the process task actor.
+     */
+    static void execute(Runnable job) {
+        sender.execute(job);
+    }
+
+    /**
+     * Sends the message over one of the connections of this pool, and returns the time it took in milliseconds.
+     * Waits for a connection if the maximum number of connections are in use.
+     */
+    long send(Message message, Address[] recipients) throws MessagingException {
+        lastUsed = System.currentTimeMillis();
+        connections.acquireUninterruptibly();
+        Transport transport = null;
+        try {
+            transport = borrow();
+            long start = System.nanoTime();
+            try {
+                transport.sendMessage(message, recipients);
+            } finally {
+                sendMetrics.record(System.nanoTime() - start);
+            }
+            lastUsed = System.currentTimeMillis();
+            if (pools.get(key) == this) {
+                idleTransports.push(new IdleTransport(transport));
+                transport = null;
+            } // else the pool has been removed in the meantime, and the connection is closed below
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        } finally {
+            // Failure while sending; better not reuse the connection
+            close(transport);
+            connections.release();
+        }
+    }
+
+    /**
+     * Returns the most recently used connection that is still alive, or opens a new one.
+     */
+    private Transport borrow() throws MessagingException {
+        IdleTransport idle;
+        while ((idle = idleTransports.poll()) != null) {
+            // Note: isConnected sends a NOOP to the mail server, and tells whether the connection can still be used
+            if (!idle.hasExpired(idleTimeout) && idle.transport.isConnected()) {
+                return idle.transport;
+            }
+            close(idle.transport);
+        }
+        long start = System.nanoTime();
+        Transport transport = session.getTransport();
+        try {
+            transport.connect();
+        } finally {
+            connectMetrics.record(System.nanoTime() - start);
+        }
+        return transport;
+    }
+
+    /**
+     * Closes the connections that have not been used within the idle timeout,
+     * and removes the pools that have not been used and have no connections left.
+     */
+    static void closeIdlePools() {
+        pools.values().forEach(pool -> {
+            pool.closeIdleTransports();
+            if (pool.isIdle()) {
+                pools.remove(pool.key, pool);
+            }
+        });
+    }
+
+    private boolean isIdle() {
+        return idleTransports.isEmpty()
+                && connections.availablePermits() == maxConnections
+                && System.currentTimeMillis() - lastUsed > idleTimeout;
+    }
+
+    /**
+     * Closes the connections that have not been used within the idle timeout.
+     */
+    private void closeIdleTransports() {
+        // Most recently used connections are at the head, so expired ones are at the tail.
+        IdleTransport oldest;
+        while ((oldest = idleTransports.peekLast()) != null && oldest.hasExpired(idleTimeout)) {
+            if (idleTransports.removeLastOccurrence(oldest)) {
+                close(oldest.transport);
+            }
+        }
+    }
+
+    private static void close(Transport transport) {
+        if (transport == null) return;
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            logger.debug("Failure while closing connection with mail server", e);
+        }
+    }
+
+    private static class IdleTransport {
+        private final Transport transport;
+        private final long since = System.currentTimeMillis();
+
+        private IdleTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        private boolean hasExpired(long idleTimeout) {
+            return System.currentTimeMillis() - since > idleTimeout;
+        }
+    }
+}
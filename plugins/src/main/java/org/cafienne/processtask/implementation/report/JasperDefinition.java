@@ -18,19 +18,15 @@
 package org.cafienne.processtask.implementation.report;
 
 import net.sf.jasperreports.engine.JRException;
-import net.sf.jasperreports.engine.JasperCompileManager;
 import net.sf.jasperreports.engine.JasperReport;
 import org.cafienne.cmmn.definition.CMMNElementDefinition;
 import org.cafienne.cmmn.definition.ModelDefinition;
 import org.cafienne.json.StringValue;
 import org.cafienne.json.Value;
+import org.cafienne.json.ValueMap;
 import org.cafienne.util.XMLHelper;
 import org.w3c.dom.Element;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-
 public class JasperDefinition extends CMMNElementDefinition {
     final static String JASPER_XML_TAG = "jasperReport";
 
@@ -56,20 +52,21 @@ public class JasperDefinition extends CMMNElementDefinition {
                 jasperDefinition = XMLHelper.printXMLNode(jasperXml);
             }
             try {
-                preCompiledReport = compile(jasperDefinition);
+                preCompiledReport = ReportGenerator.compile(jasperDefinition);
             } catch (JRException jre) {
                 getModelDefinition().fatalError("Cannot compile the Jasper report definition", jre);
             }
         }
     }
 
-    public JasperReport createInstance(PDFReport owner) throws JRException, MissingParameterException {
+    public JasperReport createInstance(ValueMap inputParameters, ReportGenerator generator) throws JRException, MissingParameterException {
         if (isStatic) {
             return preCompiledReport;
         } else {
-            Value<?> parameterValue = owner.getInputParameters().get(name);
+            Value<?> parameterValue = inputParameters.get(name);
             if (parameterValue instanceof StringValue) {
-                return compile(((StringValue) parameterValue).getValue());
+                // Templates from the input are often the same across tasks, so take them from the cache of compiled reports
+                return generator.compileCached(((StringValue) parameterValue).getValue());
             } else {
                 throw new MissingParameterException(this + " cannot be found in the task input parameters");
             }
@@ -81,11 +78,6 @@ public class JasperDefinition extends CMMNElementDefinition {
         return "Report definition '" + name + "'";
     }
 
-    private JasperReport compile(String xml) throws JRException {
-        InputStream is = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
-        return JasperCompileManager.compileReport(is);
-    }
-
     @Override
     public boolean equalsWith(Object object) {
         return notYetImplemented();
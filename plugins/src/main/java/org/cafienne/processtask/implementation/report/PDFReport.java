@@ -20,16 +20,21 @@ package org.cafienne.processtask.implementation.report;
 import net.sf.jasperreports.engine.*;
 import net.sf.jasperreports.engine.query.JsonQueryExecuterFactory;
 import org.cafienne.json.StringValue;
+import org.cafienne.json.Value;
 import org.cafienne.json.ValueMap;
-import org.cafienne.processtask.definition.SubProcessDefinition;
 import org.cafienne.processtask.implementation.SubProcess;
 import org.cafienne.processtask.instance.ProcessTaskActor;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 public class PDFReport extends SubProcess<PDFReportDefinition> {
 
@@ -55,6 +60,7 @@ public class PDFReport extends SubProcess<PDFReportDefinition> {
 
     @Override
     public void terminate() {
+        // Generation may still be running, but its outcome will no longer be handled
     }
 
     @Override
@@ -62,46 +68,93 @@ public class PDFReport extends SubProcess<PDFReportDefinition> {
     }
 
     private void generateReport() {
+        final ReportGenerator generator = ReportGenerator.of(processTaskActor.caseSystem.config().engine().pdfReport());
+        final PDFReportDefinition definition = getDefinition();
+        final ValueMap inputParameters = getInputParameters();
+        final InputStream reportData;
+        try {
+            reportData = definition.createDataStream(this);
+        } catch (MissingParameterException mpe) {
+            raiseFault("Missing parameter", mpe);
+            return;
+        }
+
+        // Compiling and filling the report can take a while, so it is done outside of the actor
+        processTaskActor.addDebugInfo(() -> "PDF Report - Scheduling report generation");
+        try {
+            runOutsideActor(generator::execute, () -> render(generator, definition, inputParameters, reportData));
+        } catch (RejectedExecutionException tooBusy) {
+            raiseFault("Too many reports are waiting to be generated; the task can be reactivated later", tooBusy);
+        }
+    }
+
+    private static ValueMap render(ReportGenerator generator, PDFReportDefinition definition, ValueMap inputParameters, InputStream reportData) {
         try {
             long start = System.currentTimeMillis();
 
             Map<String, Object> jasperParameters = new HashMap<>();
-            jasperParameters.put(JsonQueryExecuterFactory.JSON_INPUT_STREAM, getDefinition().createDataStream(this));
+            jasperParameters.put(JsonQueryExecuterFactory.JSON_INPUT_STREAM, reportData);
             jasperParameters.put(JsonQueryExecuterFactory.JSON_DATE_PATTERN, "yyyy-MM-dd");
             jasperParameters.put(JsonQueryExecuterFactory.JSON_NUMBER_PATTERN, "#,##0.##");
             jasperParameters.put(JsonQueryExecuterFactory.JSON_LOCALE, Locale.ENGLISH);
             jasperParameters.put(JRParameter.REPORT_LOCALE, Locale.US);
 
-            getDefinition().getSubReportDefinitions().forEach(subReport -> {
+            for (JasperSubReportDefinition subReport : definition.getSubReportDefinitions()) {
                 String subReportName = subReport.getSubReportName();
                 try {
-                    JasperReport subReportje = subReport.createInstance(this);
+                    JasperReport subReportje = subReport.createInstance(inputParameters, generator);
                     jasperParameters.put(subReportName, subReportje);
                 } catch (JRException e) {
-                    raiseFault("Could not compile parameter " + subReportName + " into report definition", e);
-                    return;
+                    return failure("Could not compile parameter " + subReportName + " into report definition", e);
                 } catch (IllegalArgumentException iae) {
-                    raiseFault(iae.getMessage(), iae);
-                    return;
+                    return failure(iae.getMessage(), iae);
                 }
-            });
+            }
 
-            JasperReport jReport = getDefinition().getReportDefinition().createInstance(this);
+            JasperReport jReport = definition.getReportDefinition().createInstance(inputParameters, generator);
             JasperPrint jPrint = JasperFillManager.fillReport(jReport, jasperParameters);
 
-            ByteArrayOutputStream reportOutput = new ByteArrayOutputStream();
-            JasperExportManager.exportReportToPdfStream(jPrint, reportOutput);
+            // Encode while exporting, to avoid keeping both the pdf and its encoded form in memory
+            ByteArrayOutputStream encodedOutput = new ByteArrayOutputStream();
+            try (OutputStream reportOutput = Base64.getEncoder().wrap(encodedOutput)) {
+                JasperExportManager.exportReportToPdfStream(jPrint, reportOutput);
+            }
 
-            String encodedOutput = Base64.getEncoder().encodeToString(reportOutput.toByteArray());
-            setRawOutputParameter(PDFReportDefinition.PDF_REPORT_DATA, new StringValue(encodedOutput));
+            return new ValueMap("successful", true, "pdf", encodedOutput.toString(StandardCharsets.ISO_8859_1), "duration", System.currentTimeMillis() - start);
+        } catch (JRException | IOException e) {
+            return failure("Error while generating pdf report", e);
+        } catch (MissingParameterException mpe) {
+            return failure("Missing parameter", mpe);
+        } catch (RuntimeException e) {
+            return failure("Unexpected failure while generating pdf report", e);
+        }
+    }
 
-            processTaskActor.addDebugInfo(() -> "PDF Report - Filling time : " + (System.currentTimeMillis() - start));
-            raiseComplete();
+    private static ValueMap failure(String description, Throwable cause) {
+        return new ValueMap("successful", false, "description", description, "exception", Value.convert(cause));
+    }
 
-        } catch (JRException e) {
-            raiseFault("Error while generating pdf report", e);
-        } catch (MissingParameterException mpe) {
-            raiseFault("Missing parameter", mpe);
+    @Override
+    protected boolean callsOutsideActor() {
+        return true;
+    }
+
+    @Override
+    protected void handleInterruptedCall() {
+        // Generating the report has no side effects, so it can simply be done again
+        processTaskActor.addDebugInfo(() -> "PDF Report - Generation got interrupted, starting it again");
+        generateReport();
+    }
+
+    @Override
+    protected void handleCallOutcome(ValueMap outcome) {
+        if (outcome.readBoolean("successful")) {
+            setRawOutputParameter(PDFReportDefinition.PDF_REPORT_DATA, new StringValue(outcome.readString("pdf")));
+            processTaskActor.addDebugInfo(() -> "PDF Report - Filling time : " + outcome.get("duration"));
+            raiseComplete();
+        } else {
+            setFault(outcome.get("exception"));
+            raiseFault(outcome.readString("description"));
         }
     }
 
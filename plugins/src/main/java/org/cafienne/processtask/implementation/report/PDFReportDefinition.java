@@ -69,7 +69,7 @@ public class PDFReportDefinition extends SubProcessDefinition {
 
     InputStream createDataStream(PDFReport report) {
         if (reportDataDefinition == null) { // Sometimes there is no report data. Then return a stream with an empty json.
-            return ReportDataDefinition.EMPTY_STREAM;
+            return ReportDataDefinition.emptyStream();
         }
         return reportDataDefinition.createDataStream(report);
     }
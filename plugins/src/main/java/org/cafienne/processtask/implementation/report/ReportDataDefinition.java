@@ -27,7 +27,13 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 
 public class ReportDataDefinition extends CMMNElementDefinition {
-    static InputStream EMPTY_STREAM = new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8));
+    /**
+     * Stream with an empty json. A new one for each report, as reports are generated in parallel.
+     */
+    static InputStream emptyStream() {
+        return new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8));
+    }
+
     private final String name;
 
     public ReportDataDefinition(Element element, ModelDefinition modelDefinition, CMMNElementDefinition parentElement) {
@@ -44,7 +50,7 @@ public class ReportDataDefinition extends CMMNElementDefinition {
 
         if (this.name.isEmpty()) {
             // Just return an empty data stream; apparently data is not needed for this report.
-            return EMPTY_STREAM;
+            return emptyStream();
         }
 
         if (!report.getInputParameters().has(name)) {
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2014  Batav B.V.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.cafienne.processtask.implementation.report;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import org.cafienne.infrastructure.config.engine.PDFReportConfig;
+import org.cafienne.util.ConcurrentCache;
+import org.cafienne.util.ContentDigest;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiles report templates and runs the generation of reports, shared across the {@link PDFReport} instances of a case system.
+ * Compiled templates are cached by the digest of their content, so that templates passed as task input
+ * are compiled only once. Reports are generated on a fixed pool of worker threads, with a bounded queue of waiting reports.
+ */
+class ReportGenerator {
+    /**
+     * Generator per configuration, i.e., per case system. Weak keys, so that the generator goes together with its case system.
+     */
+    private final static Map<PDFReportConfig, ReportGenerator> generators = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final ConcurrentCache<String, JasperReport> compiledReports;
+    private final ThreadPoolExecutor workers;
+
+    ReportGenerator(PDFReportConfig config) {
+        this(config.compiledReportCacheSize(), config.maxConcurrentReports(), config.maxQueuedReports());
+    }
+
+    ReportGenerator(int cacheSize, int maxConcurrentReports, int maxQueuedReports) {
+        this.compiledReports = new ConcurrentCache<>("jasper-compiled-reports", cacheSize, 0);
+        this.workers = new ThreadPoolExecutor(maxConcurrentReports, maxConcurrentReports, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(maxQueuedReports), Thread.ofPlatform().name("pdf-report-", 0).daemon().factory());
+        // Idle workers stop, so that nothing remains of a generator that is no longer used
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the generator for the given configuration; it is created upon first usage.
+     */
+    static ReportGenerator of(PDFReportConfig config) {
+        return generators.computeIfAbsent(config, ReportGenerator::new);
+    }
+
+    /**
+     * Compiles the template, or returns the earlier compiled report if the same template was compiled before.
+     * Concurrent requests to compile the same template share a single compilation.
+     */
+    JasperReport compileCached(String template) throws JRException {
+        try {
+            return compiledReports.getOrLoad(ContentDigest.sha256(template), digest -> {
+                try {
+                    return CompletableFuture.completedFuture(compile(template));
+                } catch (JRException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof JRException jre) {
+                throw jre;
+            } else if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+
+    static JasperReport compile(String template) throws JRException {
+        return JasperCompileManager.compileReport(new ByteArrayInputStream(template.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Runs the generation of a report on one of the workers.
+     * Throws a {@link RejectedExecutionException} if too many reports are waiting already.
+     */
+    void execute(Runnable job) {
+        workers.execute(job);
+    }
+}
@@ -17,6 +17,7 @@ import org.junit.Test;
 import java.util.Base64;
 
 import static org.cafienne.cmmn.test.TestScript.*;
+import static org.junit.Assert.assertNull;
 
 /**
  *
@@ -50,7 +51,9 @@ public class TestSMTPServer {
             casePlan.print();
 
             // Wait until sending the email has failed (as there is no mail server running, the task must fail...)
-            testCase.getEventListener().awaitPlanItemState("Send test email", State.Failed);
+            String taskId = testCase.getEventListener().awaitPlanItemState("Send test email", State.Failed).getPlanItemId();
+            // The outcome of sending has been handled, so the call is no longer registered
+            assertNull(testCase.getCaseSystem().processCalls().inProgress(taskId));
         });
 
         testCase.runTest();
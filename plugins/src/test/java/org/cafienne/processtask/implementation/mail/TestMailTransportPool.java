@@ -0,0 +1,45 @@
+package org.cafienne.processtask.implementation.mail;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class TestMailTransportPool {
+
+    private Properties mailServer(String host, String user, String password) {
+        Properties properties = new Properties();
+        properties.put("mail.host", host);
+        properties.put("mail.smtp.port", 1025);
+        properties.put("authentication.user", user);
+        properties.put("authentication.password", password);
+        return properties;
+    }
+
+    @Test
+    public void keyDoesNotContainThePassword() {
+        String key = MailTransportPool.keyOf(mailServer("key-test", "joop", "secret-password"));
+        assertTrue(key, key.startsWith("key-test:1025/joop#"));
+        assertFalse(key, key.contains("secret-password"));
+    }
+
+    @Test
+    public void poolPerMailServerAndCredentials() {
+        MailTransportPool pool = MailTransportPool.of(mailServer("pool-test", "joop", "secret"), 2, 60_000);
+        assertSame(pool, MailTransportPool.of(mailServer("pool-test", "joop", "secret"), 2, 60_000));
+        assertNotSame(pool, MailTransportPool.of(mailServer("pool-test", "piet", "secret"), 2, 60_000));
+        assertNotSame(pool, MailTransportPool.of(mailServer("pool-test", "joop", "changed"), 2, 60_000));
+        assertNotSame(pool, MailTransportPool.of(mailServer("other-pool-test", "joop", "secret"), 2, 60_000));
+    }
+
+    @Test
+    public void idlePoolsAreRemoved() throws InterruptedException {
+        MailTransportPool idle = MailTransportPool.of(mailServer("idle-test", "joop", "secret"), 2, 0);
+        MailTransportPool active = MailTransportPool.of(mailServer("active-test", "joop", "secret"), 2, 60_000);
+        Thread.sleep(10);
+        MailTransportPool.closeIdlePools();
+        assertNotSame(idle, MailTransportPool.of(mailServer("idle-test", "joop", "secret"), 2, 0));
+        assertSame(active, MailTransportPool.of(mailServer("active-test", "joop", "secret"), 2, 60_000));
+    }
+}
@@ -0,0 +1,77 @@
+package org.cafienne.processtask.implementation.report;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperReport;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class TestReportGenerator {
+
+    private String template() throws IOException {
+        try (InputStream stream = getClass().getClassLoader().getResourceAsStream("testdefinition/task/report/OrdersReport.jrxml")) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void concurrentCompilationsShareTheResult() throws Exception {
+        ReportGenerator generator = new ReportGenerator(10, 1, 10);
+        String template = template();
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<JasperReport>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(threads.submit(() -> generator.compileCached(template)));
+            }
+            JasperReport first = results.get(0).get();
+            for (Future<JasperReport> result : results) {
+                assertSame(first, result.get());
+            }
+            assertSame(first, generator.compileCached(template));
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    @Test(expected = JRException.class)
+    public void invalidTemplateFails() throws JRException {
+        new ReportGenerator(10, 1, 10).compileCached("<jasperReport>");
+    }
+
+    @Test
+    public void reportsBeyondTheQueueAreRejected() throws InterruptedException {
+        ReportGenerator generator = new ReportGenerator(0, 1, 1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        generator.execute(() -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        running.await();
+        generator.execute(() -> {}); // Waits in the queue
+        try {
+            generator.execute(() -> {});
+            fail("Report generation should have been rejected, as the queue is full");
+        } catch (RejectedExecutionException expected) {
+            // Fine
+        } finally {
+            release.countDown();
+        }
+    }
+}
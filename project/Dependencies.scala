@@ -75,6 +75,7 @@ object Dependencies {
     , jacksonModule("core")
     , jacksonModule("databind")
     , "com.fasterxml.jackson.module" %% "jackson-module-scala"            % jacksonVersion
+    , "com.fasterxml.jackson.dataformat" % "jackson-dataformat-cbor"      % jacksonVersion
     // Expression support (SPEL and JSONPath)
     , "com.jayway.jsonpath"     %  "json-path"                            % "2.9.0" // 2.7.0 is not compatible in expressions
     , "org.springframework"     %  "spring-expression"                    % "6.2.4"
@@ -34,6 +34,7 @@ import org.cafienne.cmmn.repository.MissingDefinitionException
 import org.cafienne.persistence.infrastructure.jdbc.query.{Area, Sort}
 import org.cafienne.persistence.infrastructure.lastmodified.Headers
 import org.cafienne.persistence.querydb.query.cmmn.filter.CaseFilter
+import org.cafienne.persistence.querydb.query.result.CaseList
 import org.cafienne.service.http.CaseEngineHttpServer
 import org.cafienne.service.http.cases.CaseAPIFormat._
 import org.cafienne.service.infrastructure.route.CaseTeamValidator
@@ -44,7 +45,7 @@ import scala.util.{Failure, Success}
 @SecurityRequirement(name = "oauth2", scopes = Array("openid"))
 @Path("/cases")
 class CaseRoute(override val httpService: CaseEngineHttpServer) extends CasesRoute with CaseTeamValidator {
-  override def routes: Route = concat(getCases, /*stats,*/ getCase, getCaseDefinition, startCase, debugCase)
+  override def routes: Route = concat(getCases, stats, getCase, getCaseDefinition, startCase, debugCase)
 
   @GET
   @Operation(
@@ -80,36 +81,33 @@ class CaseRoute(override val httpService: CaseEngineHttpServer) extends CasesRou
     }
   }
 
-//  @Path("/stats")
-//  @GET
-//  @Operation(
-//    summary = "Get statistics for all case definitions",
-//    description = "Returns statistics of all case definitions",
-//    tags = Array("case"),
-//    parameters = Array(
-//      new Parameter(name = "tenant", description = "Optionally provide a specific tenant to read the statistics in", in = ParameterIn.QUERY, schema = new Schema(implementation = classOf[String]), required = false),
-//      new Parameter(name = "offset", description = "Starting position", in = ParameterIn.QUERY, schema = new Schema(implementation = classOf[Integer], defaultValue = "0"), required = false),
-//      new Parameter(name = "numberOfResults", description = "Number of cases", in = ParameterIn.QUERY, schema = new Schema(implementation = classOf[Integer], defaultValue = "100"), required = false),
-//      new Parameter(name = "caseName", description = "Get cases with this name", in = ParameterIn.QUERY, schema = new Schema(implementation = classOf[String]), required = false),
-//      new Parameter(name = "state", description = "State of the cases", in = ParameterIn.QUERY, schema = new Schema(implementation = classOf[String]), required = false),
-//    ),
-//    responses = Array(
-//      new ApiResponse(description = "Statistics found and returned", responseCode = "200", content = Array(new Content(array = new ArraySchema(schema = new Schema(implementation = classOf[CaseList]))))),
-//      new ApiResponse(description = "No cases found based on query params", responseCode = "404")
-//    )
-//  )
-//  @Produces(Array("application/json"))
-//  def stats: Route = get {
-//    path("stats") {
-//      validUser { platformUser =>
-//        parameters("tenant".?, "offset".?(0), "numberOfResults".?(100), "caseName".?, "definition".?, "state".?
-//        ) { (tenant, offset, numOfResults, caseName, definition, status) =>
-//          val backwardsCompatibleNameFilter: Option[String] = caseName.fold(definition)(n => Some(n))
-//          runListQuery(caseQueries.getCasesStats(platformUser, tenant, offset, numOfResults, backwardsCompatibleNameFilter, status))
-//        }
-//      }
-//    }
-//  }
+  @Path("/stats")
+  @GET
+  @Operation(
+    summary = "Get statistics for all case definitions",
+    description = "Returns the number of cases per case name and state, read from the statistics maintained by the query database",
+    tags = Array("case"),
+    parameters = Array(
+      new Parameter(name = "tenant", description = "Optionally provide a specific tenant to read the statistics in", in = ParameterIn.QUERY, schema = new Schema(implementation = classOf[String]), required = false),
+      new Parameter(name = "caseName", description = "Get statistics of cases with this name", in = ParameterIn.QUERY, schema = new Schema(implementation = classOf[String]), required = false),
+      new Parameter(name = "state", description = "State of the cases", in = ParameterIn.QUERY, schema = new Schema(implementation = classOf[String]), required = false),
+    ),
+    responses = Array(
+      new ApiResponse(description = "Statistics found and returned", responseCode = "200", content = Array(new Content(array = new ArraySchema(schema = new Schema(implementation = classOf[CaseList]))))),
+      new ApiResponse(description = "No cases found based on query params", responseCode = "404")
+    )
+  )
+  @Produces(Array("application/json"))
+  def stats: Route = get {
+    path("stats") {
+      validUser { platformUser =>
+        parameters("tenant".?, "caseName".?, "definition".?, "state".?) { (tenant, caseName, definition, state) =>
+          val backwardsCompatibleNameFilter: Option[String] = caseName.fold(definition)(n => Some(n))
+          runListQuery(caselistQueries.getCaseStatistics(platformUser, tenant, backwardsCompatibleNameFilter, state))
+        }
+      }
+    }
+  }
 
   @Path("/{caseInstanceId}")
   @GET
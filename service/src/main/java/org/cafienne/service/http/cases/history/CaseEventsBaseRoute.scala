@@ -17,9 +17,10 @@
 
 package org.cafienne.service.http.cases.history
 
+import org.apache.pekko.NotUsed
 import org.apache.pekko.actor.ActorSystem
 import org.apache.pekko.http.scaladsl.server.Route
-import org.apache.pekko.stream.scaladsl.Sink
+import org.apache.pekko.stream.scaladsl.Source
 import org.cafienne.cmmn.actorapi.event.plan.CasePlanEvent
 import org.cafienne.infrastructure.cqrs.ModelEventEnvelope
 import org.cafienne.infrastructure.cqrs.instance.InstanceEventSource
@@ -27,6 +28,7 @@ import org.cafienne.persistence.querydb.query.exception.PlanItemSearchFailure
 import org.cafienne.persistence.querydb.record.PlanItemHistoryRecord
 import org.cafienne.service.http.cases.CasesRoute
 
+import scala.collection.mutable
 import scala.concurrent.Future
 
 trait CaseEventsBaseRoute extends CasesRoute {
@@ -45,45 +47,35 @@ trait CaseEventsBaseRoute extends CasesRoute {
     override val readJournal: String = caseSystem.config.persistence.readJournal
 
     /**
-      * Returns the events as a sequence. Note: do not override this along with overriding the query to make it a livestream,
-      * because then the seq never closes.
+      * Returns the events of the case as a stream, without collecting them in memory.
       */
-    def eventList(): Future[Seq[ModelEventEnvelope]] = {
-      // This code assumes checking for presence of events is done in the route on the query db tables.
-      events(caseInstanceId).runWith(Sink.seq[ModelEventEnvelope])
-    }
-
-    def allCasePlanEvents(): Future[Seq[ModelEventEnvelope]] = {
-      eventList().map(_.filter(_.event.isInstanceOf[CasePlanEvent]))
-    }
+    def eventStream(): Source[ModelEventEnvelope, NotUsed] = events(caseInstanceId)
 
-    def planitemEvents(planItemId: String): Future[Seq[ModelEventEnvelope]] = {
-      allCasePlanEvents().map(_.filter(_.event.asInstanceOf[CasePlanEvent].planItemId == planItemId))
+    def casePlanEvents(): Source[CasePlanEvent, NotUsed] = {
+      events(caseInstanceId).map(_.event).collect { case event: CasePlanEvent => event }
     }
 
+    /**
+      * Builds the history of all plan items in a single pass over the events.
+      * Only the history records are kept in memory, not the events themselves.
+      */
     def casePlanHistory(): Future[Seq[PlanItemHistory]] = {
-      allCasePlanEvents().map(envelopes => {
-        val planItemIdentifiers: Set[String] = envelopes.map(_.event.asInstanceOf[CasePlanEvent].planItemId).toSet
-        planItemIdentifiers.map(id => {
-          asHistory(id, envelopes.filter(_.event.asInstanceOf[CasePlanEvent].planItemId == id))
-        }).toSeq
-      })
+      casePlanEvents().runFold(new mutable.LinkedHashMap[String, mutable.ListBuffer[PlanItemHistoryRecord]]())((histories, event) => {
+        // Every plan item that has events gets a history, even if none of its events leads to a history record
+        val records = histories.getOrElseUpdate(event.planItemId, mutable.ListBuffer())
+        records ++= PlanItemHistoryMerger.mapEventToHistory(event)
+        histories
+      }).map(_.values.map(records => PlanItemHistory(records.toSeq)).toSeq)
     }
 
     def planitemHistory(planItemId: String): Future[PlanItemHistory] = {
-      planitemEvents(planItemId).map(events => asHistory(planItemId, events))
-    }
-
-    def asHistory(planItemId: String, events: Seq[ModelEventEnvelope]): PlanItemHistory = {
-      if (events.isEmpty) throw PlanItemSearchFailure(planItemId)
-      val historyRecords: Seq[PlanItemHistoryRecord] = events.map(PlanItemHistoryMerger.mapModelEventEnvelope).filter(_.isDefined).map(_.get)
-      var index = 0
-      historyRecords.map(item => {
-        val sequenced = item.copy(id = s"${planItemId}_$index", sequenceNr = index)
-        index += 1
-        sequenced
-      })
-      PlanItemHistory(historyRecords)
+      casePlanEvents().filter(_.planItemId == planItemId).runFold((false, mutable.ListBuffer[PlanItemHistoryRecord]()))((history, event) => {
+        history._2 ++= PlanItemHistoryMerger.mapEventToHistory(event)
+        (true, history._2)
+      }).map {
+        case (false, _) => throw PlanItemSearchFailure(planItemId)
+        case (true, records) => PlanItemHistory(records.toSeq)
+      }
     }
   }
 }
@@ -55,10 +55,7 @@ class CaseHistoryRoute(override val httpService: CaseEngineHttpServer) extends C
   def getCaseEvents: Route = get {
     caseEventsSubRoute { caseEvents =>
       path("history" / "events") {
-        onComplete(caseEvents.eventList()) {
-          case Success(events) => completeJson(Value.convert(events.map(_.event.rawJson())))
-          case Failure(err) => complete(StatusCodes.NotFound, err)
-        }
+        completeJsonStream(caseEvents.eventStream().map(_.event.rawJson()), t => complete(StatusCodes.NotFound, t.getLocalizedMessage))
       }
     }
   }
@@ -26,6 +26,7 @@ import org.apache.pekko.http.scaladsl.server.Directives._
 import org.cafienne.service.http.CaseEngineHttpServer
 import org.cafienne.service.infrastructure.route.CaseServiceRoute
 import org.cafienne.system.health.HealthMonitor
+import org.cafienne.system.metrics.MetricsMonitor
 
 @Path("/")
 class CaseEngineHealthRoute(override val httpService: CaseEngineHttpServer) extends CaseServiceRoute {
@@ -33,7 +34,7 @@ class CaseEngineHealthRoute(override val httpService: CaseEngineHttpServer) exte
 
   // For now, directly in the main, and not as child of PlatformRoutes;
   //  Otherwise, routes are not available when case system is not healthy (because platform routes are AuthenticatedRoute)
-  override def routes = concat(health, version, status)
+  override def routes = concat(health, metrics, version, status)
 
   registerAPIRoute(this)
 
@@ -80,6 +81,26 @@ class CaseEngineHealthRoute(override val httpService: CaseEngineHttpServer) exte
     }
   }
 
+  @Path("/metrics")
+  @GET
+  @Operation(
+    summary = "Get platform metrics",
+    description = "Retrieves runtime metrics of the Case Engine, like cache effectiveness",
+    tags = Array("platform"),
+    responses = Array(
+      new ApiResponse(responseCode = "200", description = "Platform metrics report", content = Array(new Content(schema = new Schema(implementation = classOf[Object])))),
+      new ApiResponse(responseCode = "500", description = "Not able to perform the action")
+    )
+  )
+  @Produces(Array("application/json"))
+  def metrics = get {
+    pathPrefix("metrics") {
+      pathEndOrSingleSlash {
+        completeJson(MetricsMonitor.report)
+      }
+    }
+  }
+
   @Path("/version")
   @GET
   @Operation(
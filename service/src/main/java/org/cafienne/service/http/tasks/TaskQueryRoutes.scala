@@ -137,7 +137,7 @@ class TaskQueryRoutes(override val httpService: CaseEngineHttpServer) extends Ta
   @GET
   @Operation(
     summary = "Get task count",
-    description = "Count of assigned tasks for current user",
+    description = "Count of assigned tasks for current user. The count of unclaimed tasks takes longer for users that are member of many cases",
     tags = Array("tasks"),
     parameters = Array(
       new Parameter(name = "tenant", description = "Optionally provide a specific tenant in which tasks must be counted", in = ParameterIn.QUERY, schema = new Schema(implementation = classOf[String]), required = false),
@@ -11,6 +11,7 @@ class TokenContext(val token: String) extends SecurityContext {
 
   private var _user: Option[AuthenticatedUser] = None
   private var _issuer: Option[IssuerConfiguration] = None
+  private var _expiresAt: Long = 0
 
   /**
    * This method is invoked from the KeySelector
@@ -23,10 +24,19 @@ class TokenContext(val token: String) extends SecurityContext {
   /**
    * This method is invoked from the ClaimsVerifier
    */
-  def createUser(id: String, claims: JWTClaimsSet): Unit = this._user = Some(new AuthenticatedUser(id))
+  def createUser(id: String, claims: JWTClaimsSet): Unit = {
+    this._user = Some(new AuthenticatedUser(id))
+    // The "exp" claim is required by the ClaimsVerifier, so it is always available here
+    this._expiresAt = claims.getExpirationTime.getTime
+  }
 
   /**
    * Returns the authenticatedUser object that is converted from the token
    */
   def authenticatedUser: AuthenticatedUser = this._user.get
+
+  /**
+   * Returns the moment (in epoch millis) at which the token expires
+   */
+  def expiresAt: Long = this._expiresAt
 }
@@ -24,6 +24,8 @@ import com.typesafe.scalalogging.LazyLogging
 import org.cafienne.actormodel.identity.IdentityRegistration
 import org.cafienne.service.infrastructure.configuration.OIDCConfiguration
 import org.cafienne.system.health.HealthMonitor
+import org.cafienne.system.metrics.{DurationMetrics, MetricsMonitor}
+import org.cafienne.util.{ConcurrentCache, ContentDigest}
 
 import java.text.ParseException
 import scala.concurrent.{ExecutionContext, Future}
@@ -31,15 +33,42 @@ import scala.concurrent.{ExecutionContext, Future}
 class TokenVerifier(val userRegistration: IdentityRegistration, val config: OIDCConfiguration)(implicit ec: ExecutionContext) extends LazyLogging {
 
   private val userReader = new AuthenticatedUserReader(this)
+  private val verificationMetrics: DurationMetrics = MetricsMonitor.addDurations("token-verification")
+  // Tokens that passed verification, keyed by their digest, so that the raw tokens are not kept in memory.
+  //  Entries are only used until the "exp" claim of the token.
+  private val verifiedTokens = new ConcurrentCache[String, VerifiedToken]("verified-tokens", config.parent.verifiedTokenCacheSize, 0)
 
-  def convertToAuthenticatedUser(token: String): Future[AuthenticatedUser] = Future {
+  def convertToAuthenticatedUser(token: String): Future[AuthenticatedUser] = {
+    val digest = ContentDigest.sha256(token)
+    verifiedTokens.get(digest) match {
+      case verified: VerifiedToken if verified.expiresAt > System.currentTimeMillis() =>
+        // The token registration may have a shorter time to live than the token itself, so refresh it
+        userRegistration.cacheUserToken(verified.user, token)
+        Future.successful(verified.user)
+      case _: VerifiedToken =>
+        // Expired tokens must go through full verification, which gives the proper error message
+        verifiedTokens.remove(digest)
+        verify(token, digest)
+      case _ => verify(token, digest)
+    }
+  }
+
+  /**
+    * Keep the user of a token that passed verification until the token expires
+    */
+  private[authentication] def rememberVerifiedToken(digest: String, user: AuthenticatedUser, expiresAt: Long): Unit = {
+    verifiedTokens.put(digest, new VerifiedToken(user, expiresAt))
+  }
+
+  private def verify(token: String, digest: String): Future[AuthenticatedUser] = Future {
     try {
       // First create a TokenContext. This context has information needed for the creation of the AuthenticatedUser
       val context = userReader.createUserContext(token)
-      userReader.process(token, context)
+      verificationMetrics.measure(userReader.process(token, context))
       // Reaching this point means no exceptions happened on contacting the IDP
       HealthMonitor.idp.isOK()
       userRegistration.cacheUserToken(context.authenticatedUser, token)
+      rememberVerifiedToken(digest, context.authenticatedUser, context.expiresAt)
       // Return the authenticated user that was created based on the token
       context.authenticatedUser
     } catch {
@@ -83,3 +112,8 @@ class TokenVerifier(val userRegistration: IdentityRegistration, val config: OIDC
     }
   }
 }
+
+/**
+  * The user that was read from a token that passed verification, along with the expiry moment of that token
+  */
+private class VerifiedToken(val user: AuthenticatedUser, val expiresAt: Long)
@@ -18,6 +18,8 @@
 package org.cafienne.service.infrastructure.route
 
 import com.typesafe.scalalogging.LazyLogging
+import org.apache.pekko.stream.scaladsl.{Sink, Source}
+import org.apache.pekko.util.ByteString
 import org.apache.pekko.http.cors.scaladsl.model.HttpHeaderRange
 import org.apache.pekko.http.cors.scaladsl.settings.CorsSettings
 import org.apache.pekko.http.scaladsl.model.HttpMethods._
@@ -31,6 +33,8 @@ import org.cafienne.system.CaseSystem
 import org.cafienne.util.XMLHelper
 import org.w3c.dom.Node
 
+import scala.util.{Failure, Success}
+
 /**
   * Base class for Case Service APIs. All cors enabled
   */
@@ -117,6 +121,24 @@ trait CaseServiceRoute extends LazyLogging {
 
   def completeJson(statusCode: StatusCode, v: Value[_]) = complete(statusCode, HttpEntity(ContentTypes.`application/json`, v.toString))
 
+  /**
+    * Completes with a chunked json array, serializing the elements one by one as they come out of the source,
+    * so that large responses need not be rendered into a single string in memory.
+    * The response starts only after the first element has been read, so that a failure to read it is handled by onFailure
+    * with the proper status code. Note that checks on presence and authorization must be done before invoking this method.
+    * A failure after the first element aborts the chunked response, as the status code has already been sent.
+    */
+  def completeJsonStream(source: Source[Value[_], _], onFailure: Throwable => Route = defaultExceptionHandler): Route = {
+    extractMaterializer { implicit materializer =>
+      onComplete(source.prefixAndTail(1).runWith(Sink.head)) {
+        case Success((first, tail)) =>
+          val json = (Source(first) ++ tail).map(_.toString).intersperse("[", ",", "]").map(ByteString(_))
+          complete(StatusCodes.OK, HttpEntity.Chunked.fromData(ContentTypes.`application/json`, json))
+        case Failure(t) => onFailure(t)
+      }
+    }
+  }
+
   def completeXML(n: Node, statusCode: StatusCode = StatusCodes.OK): Route = complete(statusCode, HttpEntity(ContentTypes.`text/xml(UTF-8)`, XMLHelper.printXMLNode(n)))
 
   private var concatenatedSubRoutes: Option[Route] = None
@@ -0,0 +1,55 @@
+package org.cafienne.service.infrastructure.authentication
+
+import org.cafienne.actormodel.identity.{IdentityRegistration, UserIdentity}
+import org.cafienne.infrastructure.config.util.SystemConfig
+import org.cafienne.service.infrastructure.configuration.OIDCConfiguration
+import org.cafienne.util.ContentDigest
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.collection.mutable
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{Await, ExecutionContext}
+
+class TokenVerifierSpec extends AnyFlatSpec with Matchers {
+  implicit val ec: ExecutionContext = ExecutionContext.global
+
+  /**
+    * Registration that keeps the tokens of the users, and can forget them like a cache with a time to live does
+    */
+  class TokenRegistration extends IdentityRegistration {
+    val tokens: mutable.Map[String, String] = mutable.Map()
+
+    override def cacheUserToken(user: UserIdentity, token: String): Unit = tokens.put(user.id, token)
+
+    override def getUserToken(user: UserIdentity): String = tokens.getOrElse(user.id, "")
+  }
+
+  val config = new OIDCConfiguration(SystemConfig.DEFAULT.cafienne.api.security)
+  val token = "header.claims.signature"
+  val user = new AuthenticatedUser("subject1")
+
+  "A verified token" should "register the token of the user again upon a cache hit" in {
+    val registration = new TokenRegistration
+    val verifier = new TokenVerifier(registration, config)
+    verifier.rememberVerifiedToken(ContentDigest.sha256(token), user, System.currentTimeMillis() + 60000)
+
+    Await.result(verifier.convertToAuthenticatedUser(token), 1.second) shouldBe user
+    registration.getUserToken(user) shouldBe token
+
+    // The time to live of the registered token passes, while the token itself is still valid
+    registration.tokens.clear()
+    Await.result(verifier.convertToAuthenticatedUser(token), 1.second) shouldBe user
+    registration.getUserToken(user) shouldBe token
+  }
+
+  it should "be verified again after it has expired" in {
+    val registration = new TokenRegistration
+    val verifier = new TokenVerifier(registration, config)
+    verifier.rememberVerifiedToken(ContentDigest.sha256(token), user, System.currentTimeMillis() - 1)
+
+    // The token is not a JWT, so full verification fails
+    a[TokenVerificationException] should be thrownBy Await.result(verifier.convertToAuthenticatedUser(token), 5.seconds)
+    registration.tokens shouldBe empty
+  }
+}
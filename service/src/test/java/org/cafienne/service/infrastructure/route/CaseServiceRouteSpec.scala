@@ -0,0 +1,61 @@
+package org.cafienne.service.infrastructure.route
+
+import org.apache.pekko.actor.ActorSystem
+import org.apache.pekko.http.scaladsl.model.{HttpEntity, StatusCodes}
+import org.apache.pekko.http.scaladsl.server.Directives._
+import org.apache.pekko.http.scaladsl.server.Route
+import org.apache.pekko.http.scaladsl.testkit.ScalatestRouteTest
+import org.apache.pekko.stream.scaladsl.Source
+import org.cafienne.json.{LongValue, Value}
+import org.cafienne.service.http.CaseEngineHttpServer
+import org.cafienne.system.CaseSystem
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+class CaseServiceRouteSpec extends AnyFlatSpec with Matchers with ScalatestRouteTest {
+  val caseSystem: CaseSystem = CaseSystem(ActorSystem("CaseServiceRouteTest"))
+
+  class StreamRoute(override val httpService: CaseEngineHttpServer) extends CaseServiceRoute {
+    override def routes: Route = concat(
+      path("numbers" / IntNumber) { count =>
+        completeJsonStream(Source(1 to count).map(i => new LongValue(i): Value[_]))
+      },
+      path("failure") {
+        completeJsonStream(Source.failed(new IllegalStateException("No events")), t => complete(StatusCodes.NotFound, t.getMessage))
+      },
+      path("failure-later") {
+        completeJsonStream(Source(1 to 3).map(i => if (i < 3) new LongValue(i): Value[_] else throw new IllegalStateException("Broken")))
+      })
+  }
+
+  val route: Route = Route.seal(new StreamRoute(new CaseEngineHttpServer(caseSystem)).routes)
+
+  "A json stream" should "be completed as a chunked json array" in {
+    Get("/numbers/3") ~> route ~> check {
+      status shouldBe StatusCodes.OK
+      response.entity shouldBe a[HttpEntity.Chunked]
+      responseAs[String] shouldBe "[1,2,3]"
+    }
+  }
+
+  it should "be an empty json array if there are no elements" in {
+    Get("/numbers/0") ~> route ~> check {
+      status shouldBe StatusCodes.OK
+      responseAs[String] shouldBe "[]"
+    }
+  }
+
+  it should "give the status of the failure handler when the first element cannot be read" in {
+    Get("/failure") ~> route ~> check {
+      status shouldBe StatusCodes.NotFound
+      responseAs[String] shouldBe "No events"
+    }
+  }
+
+  it should "abort the response if it fails after the first element" in {
+    Get("/failure-later") ~> route ~> check {
+      status shouldBe StatusCodes.OK
+      an[Exception] should be thrownBy responseAs[String]
+    }
+  }
+}